@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.bench;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.crums.tc.NotaryPolicy;
+import io.crums.tc.Receipt;
+import io.crums.tc.TimeBinner;
+import io.crums.tc.TimeChain;
+import io.crums.tc.notary.CargoChain;
+import io.crums.tc.notary.FreshCrum;
+import io.crums.tc.notary.NotaryLog;
+import io.crums.tc.notary.NotarySettings;
+
+/**
+ * Adding fresh crums thru the cargo chain, as every witness request does:
+ * the cargo block's file write, plus the crum's pre-build (its leaf hash,
+ * appended to the block's in-memory tree builder). The cost per crum
+ * should not grow with the no. of crums already in the block: compare
+ * the {@code prefill} settings.
+ * <p>
+ * The chain's blocks are long (about 18 hours), so that all the crums
+ * land in the same block.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddCrumBench {
+
+  private final static TimeBinner BINNER = TimeBinner.HOUR_19;
+
+  /** No. of crums added to the block before measuring. */
+  @Param({ "0", "100000" })
+  public int prefill;
+
+  private Random rand;
+  private File dir;
+  private TimeChain timechain;
+  private CargoChain cargoChain;
+
+
+  @Setup
+  public void setup() throws IOException {
+    rand = new Random(prefill);
+    dir = BenchDirs.newDir("add");
+    timechain = TimeChain.inceptNewChain(
+        new File(dir, "chain"), BINNER, System.currentTimeMillis());
+    var settings = new NotarySettings(
+        timechain.params(), NotaryPolicy.MIN_BLOCKS_RETAINED);
+    cargoChain = new CargoChain(
+        new CargoChain.InitArgs(
+            timechain, settings, new File(dir, "cargo"), NotaryLog.NULL));
+    for (int count = prefill; count-- > 0; )
+      addCrum();
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    cargoChain.close();
+    BenchDirs.remove(dir);
+  }
+
+
+  @Benchmark
+  public Receipt addCrum() {
+    return cargoChain.addCrum(new FreshCrum(BenchDirs.randomHash(rand)));
+  }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.bench;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+import io.crums.io.DirectoryRemover;
+import io.crums.io.FileUtils;
+import io.crums.tc.Constants;
+
+/**
+ * Scratch directories and random inputs for the benchmarks. The root
+ * scratch directory is set by the {@value #DIR_PROPERTY} system property,
+ * which selects the storage benchmarked (tmpfs vs. disk). The Maven
+ * profiles set it in the forked benchmark VMs.
+ */
+final class BenchDirs {
+
+  private BenchDirs() {  }
+
+  /** System property naming the root scratch directory. */
+  final static String DIR_PROPERTY = "bench.dir";
+
+
+  /** Returns the root scratch directory, creating it if necessary. */
+  static File root() {
+    String path = System.getProperty(DIR_PROPERTY);
+    File root =
+        path == null ?
+            new File(System.getProperty("java.io.tmpdir"), "crums-bench") :
+            new File(path);
+    FileUtils.ensureDir(root);
+    return root;
+  }
+
+
+  /** Creates and returns a new, empty scratch directory. */
+  static File newDir(String prefix) {
+    try {
+      return Files.createTempDirectory(root().toPath(), prefix).toFile();
+    } catch (IOException iox) {
+      throw new UncheckedIOException(iox);
+    }
+  }
+
+
+  /** Returns a new (not existing) path in a new scratch directory. */
+  static File newFile(String prefix, String name) {
+    return new File(newDir(prefix), name);
+  }
+
+
+  /** Removes the given scratch directory (or file), if not {@code null}. */
+  static void remove(File file) {
+    if (file != null && file.exists())
+      DirectoryRemover.removeTree(file);
+  }
+
+
+  /** Returns a random 32-byte hash. */
+  static ByteBuffer randomHash(Random rand) {
+    byte[] hash = new byte[Constants.HASH_WIDTH];
+    rand.nextBytes(hash);
+    return ByteBuffer.wrap(hash);
+  }
+
+
+  /** Returns the given number of random 32-byte hashes. */
+  static ByteBuffer[] randomHashes(int count, Random rand) {
+    var hashes = new ByteBuffer[count];
+    for (int index = 0; index < count; ++index)
+      hashes[index] = randomHash(rand);
+    return hashes;
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.bench;
+
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.crums.tc.ChainParams;
+import io.crums.tc.NotaryPolicy;
+import io.crums.tc.notary.CargoBlock;
+import io.crums.tc.notary.CargoHash;
+import io.crums.tc.notary.CrumTreeBuilder;
+import io.crums.tc.notary.NotaryLog;
+
+/**
+ * Building a cargo block at commit time from its pre-build (the crums
+ * collected in memory as they were added): sorting, the merkle tree,
+ * the hash filter, and writing the block's files. Single-shot, since a
+ * block is built only once.
+ * <p>
+ * Each iteration builds a new block. The pre-build is filled (and its
+ * leaves hashed) in the iteration's setup, as it would be while the
+ * block is open, so it is not measured.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BuildCargoBench {
+
+  /** The built block (in the past, so the commit lag has passed). */
+  private final static long BLOCK_NO = 2;
+
+  @Param({ "1000", "100000", "1000000" })
+  public int crums;
+
+  private NotaryPolicy policy;
+  private Random rand;
+  private File dir;
+  private CargoBlock block;
+  private CrumTreeBuilder prebuilt;
+
+
+  @Setup
+  public void setup() {
+    var binner = TrailFixture.BINNER;
+    var params = ChainParams.forStartUtc(
+        binner, System.currentTimeMillis() - 8L * binner.duration());
+    policy = new NotaryPolicy(params, NotaryPolicy.MIN_BLOCKS_RETAINED);
+    rand = new Random(crums);
+  }
+
+
+  @Setup(Level.Iteration)
+  public void newBlock() {
+    dir = BenchDirs.newDir("build");
+    block = new CargoBlock(
+        new CargoBlock.InitArgs(policy, BLOCK_NO, dir, NotaryLog.NULL));
+    prebuilt =
+        TrailFixture.newBuilder(policy.chainParams(), BLOCK_NO, crums, rand);
+  }
+
+
+  @TearDown(Level.Iteration)
+  public void removeBlock() {
+    prebuilt = null;
+    BenchDirs.remove(dir);
+  }
+
+
+  @Benchmark
+  public CargoHash buildCargo() {
+    return block.buildCargo(prebuilt);
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.bench;
+
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.crums.tc.ChainParams;
+import io.crums.tc.Crum;
+import io.crums.tc.NotaryPolicy;
+import io.crums.tc.TimeBinner;
+import io.crums.tc.notary.CargoBlock;
+import io.crums.tc.notary.FreshCrum;
+import io.crums.tc.notary.NotaryLog;
+
+/**
+ * Adding fresh crums to the current cargo block: one staged file write
+ * and rename per crum. Sensitive to the storage's metadata I/O (compare
+ * the tmpfs and disk profiles).
+ * <p>
+ * Each iteration writes to a new block directory (removed afterward).
+ * The chain's blocks are long (about 18 hours), so that crums stamped
+ * with the current time stay in the iteration's block.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CargoBlockBench {
+
+  private final static TimeBinner BINNER = TimeBinner.HOUR_19;
+
+  /** No. of hash-prefix shards in the block directory. */
+  @Param({ "1", "16" })
+  public int shards;
+
+  private NotaryPolicy policy;
+  private Random rand;
+  private File dir;
+  private CargoBlock block;
+
+
+  @Setup
+  public void setup() {
+    var params = ChainParams.forStartUtc(
+        BINNER, System.currentTimeMillis() - BINNER.duration());
+    policy = new NotaryPolicy(params, NotaryPolicy.MIN_BLOCKS_RETAINED);
+    rand = new Random(shards);
+  }
+
+
+  @Setup(Level.Iteration)
+  public void newBlock() {
+    dir = BenchDirs.newDir("cb");
+    long blockNo =
+        policy.chainParams().blockNoForUtc(System.currentTimeMillis());
+    block = new CargoBlock(
+        new CargoBlock.InitArgs(
+            policy, blockNo, dir, NotaryLog.NULL, false, shards));
+  }
+
+
+  @TearDown(Level.Iteration)
+  public void removeBlock() {
+    BenchDirs.remove(dir);
+  }
+
+
+  @Benchmark
+  public Crum addCrum() {
+    return block.addCrum(new FreshCrum(BenchDirs.randomHash(rand)));
+  }
+
+}
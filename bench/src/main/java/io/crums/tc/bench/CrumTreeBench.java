@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.bench;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.crums.io.FileUtils;
+import io.crums.tc.CargoProof;
+import io.crums.tc.ChainParams;
+import io.crums.tc.notary.CrumTreeBuffer;
+import io.crums.tc.notary.CrumTreeFile;
+
+/**
+ * Cargo proof lookups in a built cargo block's merkle tree: read from the
+ * file ({@linkplain CrumTreeFile}) vs. from memory
+ * ({@linkplain CrumTreeBuffer}). The notary loads trees up to
+ * {@linkplain io.crums.tc.notary.CargoBlock#MAX_MERKLE_MEM} bytes into
+ * memory; larger trees are read from file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CrumTreeBench {
+
+  private final static long BLOCK_NO = 2;
+  /** No. of distinct lookups cycled through. */
+  private final static int LOOKUPS = 4096;
+
+  @Param({ "1000", "100000" })
+  public int crums;
+
+  private File dir;
+  private CrumTreeFile treeFile;
+  private CrumTreeBuffer treeBuffer;
+  private ByteBuffer[] hashes;
+  private int next;
+
+
+  @Setup
+  public void setup() throws IOException {
+    var rand = new Random(crums);
+    var binner = TrailFixture.BINNER;
+    var params = ChainParams.forStartUtc(
+        binner, System.currentTimeMillis() - 8L * binner.duration());
+
+    dir = BenchDirs.newDir("tree");
+    var file = new File(dir, "MRKL");
+    var builder = TrailFixture.newBuilder(params, BLOCK_NO, crums, rand);
+    builder.buildToTarget(file);
+
+    var added = builder.crums();
+    hashes = new ByteBuffer[LOOKUPS];
+    for (int index = 0; index < LOOKUPS; ++index)
+      hashes[index] = added.get(rand.nextInt(crums)).hash();
+
+    treeFile = new CrumTreeFile(file);
+    treeBuffer = new CrumTreeBuffer(FileUtils.loadFileToMemory(file));
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    treeFile.close();
+    BenchDirs.remove(dir);
+  }
+
+
+  private ByteBuffer nextHash() {
+    var hash = hashes[next];
+    next = (next + 1) % LOOKUPS;
+    return hash;
+  }
+
+
+  @Benchmark
+  public CargoProof file() {
+    return treeFile.findProof(nextHash());
+  }
+
+
+  @Benchmark
+  public CargoProof buffer() {
+    return treeBuffer.findProof(nextHash());
+  }
+
+}
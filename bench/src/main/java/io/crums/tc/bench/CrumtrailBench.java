@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.bench;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.crums.tc.Crumtrail;
+import io.crums.tc.CrumtrailView;
+
+/**
+ * Loading serialized crumtrails, as clients (and trail repos) do.
+ * {@linkplain Crumtrail#load(ByteBuffer)} parses the trail and verifies
+ * it (its cargo proof, and its block proof's hashes); for comparison,
+ * {@linkplain CrumtrailView} reads only the crum's block no. in place.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CrumtrailBench {
+
+  /** No. of distinct trails cycled through. */
+  private final static int TRAILS = 64;
+
+  /** No. of crums in each trail's block (1 for lone trails). */
+  @Param({ "1", "1000" })
+  public int blockCrums;
+
+  /** Whether the trails are in the compact serial form. */
+  @Param({ "false", "true" })
+  public boolean compact;
+
+  private ByteBuffer[] trails;
+  private CrumtrailView view;
+  private int next;
+
+
+  @Setup
+  public void setup() throws IOException {
+    File dir = BenchDirs.newDir("trails");
+    try {
+      var list = TrailFixture.newTrails(
+          dir, TRAILS, blockCrums, new Random(blockCrums));
+      trails = new ByteBuffer[TRAILS];
+      for (int index = 0; index < TRAILS; ++index) {
+        var trail = list.get(index);
+        trails[index] = compact ? trail.serializeCompact() : trail.serialize();
+      }
+    } finally {
+      BenchDirs.remove(dir);
+    }
+    view = new CrumtrailView();
+  }
+
+
+  private ByteBuffer nextTrail() {
+    var trail = trails[next];
+    next = (next + 1) % TRAILS;
+    return trail;
+  }
+
+
+  @Benchmark
+  public Crumtrail load() {
+    return Crumtrail.load(nextTrail().duplicate());
+  }
+
+
+  /** Compact trails can't be read in place: they're materialized. */
+  @Benchmark
+  public long viewBlockNo() {
+    return view.wrap(nextTrail()).blockNo();
+  }
+
+}
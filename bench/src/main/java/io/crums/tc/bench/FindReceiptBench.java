@@ -0,0 +1,135 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.bench;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.crums.tc.Receipt;
+import io.crums.tc.TimeBinner;
+import io.crums.tc.TimeChain;
+import io.crums.tc.notary.CargoChain;
+import io.crums.tc.notary.FreshCrum;
+import io.crums.tc.notary.NotaryLog;
+import io.crums.tc.notary.NotarySettings;
+
+/**
+ * Searching the cargo chain for an existing crum, as every witness
+ * request does before adding a new one. A <em>hit</em> finds the hash
+ * in a committed block and returns a receipt with a crumtrail; a
+ * <em>miss</em> (the common case: a brand new hash) searches the last
+ * {@linkplain io.crums.tc.NotaryPolicy#blocksSearched() blocks-searched}
+ * blocks and finds nothing.
+ * <p>
+ * The trial setup fills and commits {@linkplain #COMMITTED_BLOCKS} blocks
+ * in real time, so it takes several seconds.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindReceiptBench {
+
+  private final static TimeBinner BINNER = TimeBinner.SEC;
+  private final static int COMMITTED_BLOCKS = 3;
+  /** No. of distinct misses cycled through. */
+  private final static int MISSES = 4096;
+
+  /** No. of crums added to each committed block. */
+  @Param({ "1000", "10000" })
+  public int blockCrums;
+
+  private File dir;
+  private TimeChain timechain;
+  private CargoChain cargoChain;
+  private ByteBuffer[] hits;
+  private ByteBuffer[] misses;
+  private int nextHit;
+  private int nextMiss;
+
+
+  @Setup
+  public void setup() throws IOException, InterruptedException {
+    var rand = new Random(blockCrums);
+    dir = BenchDirs.newDir("find");
+    long startUtc = System.currentTimeMillis();
+    timechain =
+        TimeChain.inceptNewChain(new File(dir, "chain"), BINNER, startUtc);
+    // (the crums may spill into an extra block or 2)
+    var settings = new NotarySettings(
+        timechain.params(), 4 * COMMITTED_BLOCKS, 2 * COMMITTED_BLOCKS);
+    cargoChain = new CargoChain(
+        new CargoChain.InitArgs(
+            timechain, settings, new File(dir, "cargo"), NotaryLog.NULL));
+
+    var added = new ArrayList<ByteBuffer>();
+    long lastUtc = 0;
+    for (int block = 0; block < COMMITTED_BLOCKS; ++block) {
+      for (int count = blockCrums; count-- > 0; ) {
+        var hash = BenchDirs.randomHash(rand);
+        lastUtc = cargoChain.addCrum(new FreshCrum(hash)).crum().utc();
+        added.add(hash);
+      }
+      Thread.sleep(BINNER.duration());
+    }
+
+    long lastBlockNo = settings.chainParams().blockNoForUtc(lastUtc);
+    long wait = cargoChain.commitDeadline(lastBlockNo) - System.currentTimeMillis();
+    if (wait > 0)
+      Thread.sleep(wait + 1);
+    int committed = cargoChain.buildAndCommit();
+    if (committed != added.size())
+      throw new IllegalStateException(
+          "expected " + added.size() + " crums committed; actual " + committed);
+
+    hits = added.toArray(new ByteBuffer[0]);
+    misses = BenchDirs.randomHashes(MISSES, rand);
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    cargoChain.close();
+    BenchDirs.remove(dir);
+  }
+
+
+  @Benchmark
+  public Optional<Receipt> hit() {
+    var hash = hits[nextHit];
+    nextHit = (nextHit + 1) % hits.length;
+    return cargoChain.findReceipt(hash, 1L);
+  }
+
+
+  @Benchmark
+  public Optional<Receipt> miss() {
+    var hash = misses[nextMiss];
+    nextMiss = (nextMiss + 1) % misses.length;
+    return cargoChain.findReceipt(hash, 1L);
+  }
+
+}
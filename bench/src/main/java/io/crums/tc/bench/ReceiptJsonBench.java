@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.bench;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.crums.tc.Receipt;
+import io.crums.tc.json.ReceiptParser;
+
+/**
+ * JSON encoding and decoding of receipts (with crumtrails) thru
+ * {@linkplain ReceiptParser}: what the REST server does on every witness
+ * response, and clients on every receipt. Decoding includes verifying
+ * the trail.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReceiptJsonBench {
+
+  /** No. of distinct receipts cycled through. */
+  private final static int RECEIPTS = 64;
+
+  /** No. of crums in each receipt's block (1 for lone trails). */
+  @Param({ "1", "1000" })
+  public int blockCrums;
+
+  /** Hash encoding. */
+  @Param({ "B64", "HEX" })
+  public String encoding;
+
+  private ReceiptParser parser;
+  private Receipt[] receipts;
+  private String[] jsons;
+  private int next;
+
+
+  @Setup
+  public void setup() throws IOException {
+    parser = "HEX".equals(encoding) ? ReceiptParser.HEX : ReceiptParser.B64;
+    File dir = BenchDirs.newDir("receipts");
+    try {
+      var trails = TrailFixture.newTrails(
+          dir, RECEIPTS, blockCrums, new Random(blockCrums));
+      receipts = new Receipt[RECEIPTS];
+      jsons = new String[RECEIPTS];
+      for (int index = 0; index < RECEIPTS; ++index) {
+        receipts[index] = new Receipt(trails.get(index));
+        jsons[index] = parser.toJsonObject(receipts[index]).toJSONString();
+      }
+    } finally {
+      BenchDirs.remove(dir);
+    }
+  }
+
+
+  private int nextIndex() {
+    int index = next;
+    next = (index + 1) % RECEIPTS;
+    return index;
+  }
+
+
+  @Benchmark
+  public String encode() {
+    return parser.toJsonObject(receipts[nextIndex()]).toJSONString();
+  }
+
+
+  @Benchmark
+  public Receipt decode() {
+    return parser.toEntity(jsons[nextIndex()]);
+  }
+
+}
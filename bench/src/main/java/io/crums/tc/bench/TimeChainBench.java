@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.bench;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.crums.tc.BlockProof;
+import io.crums.tc.TimeBinner;
+import io.crums.tc.TimeChain;
+
+/**
+ * Time chain reads and writes: the block proof of a receipt
+ * ({@linkplain TimeChain#stateProof(boolean, Long...)}, from block 1,
+ * thru a random block, to the last block), and appending a block
+ * ({@linkplain TimeChain#recordBlockNo(long, ByteBuffer)}, which forces
+ * the write to storage).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeChainBench {
+
+  /** Short blocks, so long chains fit in the past. */
+  private final static TimeBinner BINNER = TimeBinner.MILLIS_32;
+
+
+  private static TimeChain newChain(File dir, long blocks) throws IOException {
+    long startUtc =
+        System.currentTimeMillis() - (blocks + 1) * BINNER.duration();
+    return TimeChain.inceptNewChain(new File(dir, "chain"), BINNER, startUtc);
+  }
+
+
+  /** An existing chain, read from. */
+  @State(Scope.Thread)
+  public static class Chain {
+
+    /** No. of distinct proofs cycled through. */
+    private final static int PROOFS = 4096;
+
+    /** (Each block is forced to storage on setup: keep it modest.) */
+    @Param({ "1000", "10000" })
+    public int blocks;
+
+    File dir;
+    TimeChain chain;
+    Long[][] targets;
+    int next;
+
+    @Setup
+    public void setup() throws IOException {
+      var rand = new Random(blocks);
+      dir = BenchDirs.newDir("chain");
+      chain = newChain(dir, blocks);
+      for (long blockNo = 1; blockNo <= blocks; ++blockNo)
+        chain.recordBlockNo(blockNo, BenchDirs.randomHash(rand));
+
+      final Long lastNo = (long) blocks;
+      targets = new Long[PROOFS][];
+      for (int index = 0; index < PROOFS; ++index) {
+        long blockNo = 2 + rand.nextInt(blocks - 2);
+        targets[index] = new Long[] { 1L, blockNo, lastNo };
+      }
+    }
+
+    @TearDown
+    public void tearDown() {
+      chain.close();
+      BenchDirs.remove(dir);
+    }
+
+    Long[] nextTargets() {
+      var blockNos = targets[next];
+      next = (next + 1) % PROOFS;
+      return blockNos;
+    }
+  }
+
+
+  /** A new chain (each iteration), appended to. */
+  @State(Scope.Thread)
+  public static class NewChain {
+
+    /** Room for the blocks appended in an iteration. */
+    private final static long MAX_BLOCKS = 1L << 24;
+
+    File dir;
+    TimeChain chain;
+    long nextBlockNo;
+    ByteBuffer cargoHash;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+      dir = BenchDirs.newDir("append");
+      chain = newChain(dir, MAX_BLOCKS);
+      nextBlockNo = 1;
+      cargoHash = BenchDirs.randomHash(new Random(1));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+      chain.close();
+      BenchDirs.remove(dir);
+    }
+  }
+
+
+  @Benchmark
+  public BlockProof stateProof(Chain state) {
+    return state.chain.stateProof(false, state.nextTargets());
+  }
+
+
+  @Benchmark
+  public long recordBlockNo(NewChain state) throws IOException {
+    return state.chain.recordBlockNo(
+        state.nextBlockNo++, state.cargoHash.duplicate());
+  }
+
+}
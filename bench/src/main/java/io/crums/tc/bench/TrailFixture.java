@@ -0,0 +1,132 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.bench;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import io.crums.io.FileUtils;
+import io.crums.tc.ChainParams;
+import io.crums.tc.Constants;
+import io.crums.tc.Crum;
+import io.crums.tc.Crumtrail;
+import io.crums.tc.TimeBinner;
+import io.crums.tc.TimeChain;
+import io.crums.tc.notary.CrumTreeBuffer;
+import io.crums.tc.notary.CrumTreeBuilder;
+import io.crums.tc.notary.NotaryLog;
+
+/**
+ * Crumtrails from a real (on-disk) time chain, as a notary would issue
+ * them: each trail's block proof runs from block 1, thru the trail's block,
+ * to the last block in the chain.
+ */
+final class TrailFixture {
+
+  /** Chain block duration (about a minute). */
+  final static TimeBinner BINNER = TimeBinner.MINUTE;
+  /** No. of blocks in the chain (about 17 hours' worth). */
+  final static int BLOCKS = 1024;
+
+  private TrailFixture() {  }
+
+
+  /**
+   * Creates a new time chain in the given directory and returns the given
+   * number of crumtrails from it. The chain is closed on return.
+   *
+   * @param dir         scratch directory
+   * @param trails      no. of trails (each from a different block)
+   * @param blockCrums  no. of crums in each trail's block: if 1, the trails
+   *                    are lone; o.w., merkle
+   * @param rand        source of randomness
+   */
+  static List<Crumtrail> newTrails(
+      File dir, int trails, int blockCrums, Random rand) throws IOException {
+
+    final long startUtc =
+        System.currentTimeMillis() - (BLOCKS + 1L) * BINNER.duration();
+    var params = ChainParams.forStartUtc(BINNER, startUtc);
+
+    // pick the trail blocks; build their cargo
+    var cargo = new TreeMap<Long, CrumTreeBuffer>();
+    var loneCrums = new TreeMap<Long, Crum>();
+    while (cargo.size() + loneCrums.size() < trails) {
+      // (not the first or last block: those are already in the proof)
+      long blockNo = 2 + rand.nextInt(BLOCKS - 2);
+      if (cargo.containsKey(blockNo) || loneCrums.containsKey(blockNo))
+        continue;
+      if (blockCrums == 1)
+        loneCrums.put(blockNo, randomCrum(params, blockNo, rand));
+      else
+        cargo.put(blockNo, newCargoTree(dir, params, blockNo, blockCrums, rand));
+    }
+
+    var out = new ArrayList<Crumtrail>(trails);
+    try (var chain =
+        TimeChain.inceptNewChain(new File(dir, "chain"), BINNER, startUtc)) {
+
+      for (long blockNo = 1; blockNo <= BLOCKS; ++blockNo) {
+        ByteBuffer cargoHash;
+        if (cargo.containsKey(blockNo))
+          cargoHash = ByteBuffer.wrap(cargo.get(blockNo).hash());
+        else if (loneCrums.containsKey(blockNo))
+          cargoHash = ByteBuffer.wrap(loneCrums.get(blockNo).witnessHash());
+        else
+          cargoHash = BenchDirs.randomHash(rand);
+        chain.recordBlockNo(blockNo, cargoHash);
+      }
+
+      final long lastNo = chain.size();
+      for (var entry : cargo.entrySet()) {
+        var tree = entry.getValue();
+        var crum = tree.crums().get(rand.nextInt(blockCrums));
+        var blockProof = chain.stateProof(false, 1L, entry.getKey(), lastNo);
+        out.add(
+            Crumtrail.newMerkleTrail(blockProof, tree.findProof(crum.hash())));
+      }
+      for (var entry : loneCrums.entrySet()) {
+        var blockProof = chain.stateProof(false, 1L, entry.getKey(), lastNo);
+        out.add(Crumtrail.newLoneTrail(blockProof, entry.getValue()));
+      }
+    }
+    return out;
+  }
+
+
+  /** Returns a random crum in the given block. */
+  static Crum randomCrum(ChainParams params, long blockNo, Random rand) {
+    long utc =
+        params.utcForBlockNo(blockNo) + rand.nextInt((int) params.blockDuration());
+    byte[] hash = new byte[Constants.HASH_WIDTH];
+    rand.nextBytes(hash);
+    return new Crum(hash, utc);
+  }
+
+
+  /** Returns a builder loaded with random crums in the given block. */
+  static CrumTreeBuilder newBuilder(
+      ChainParams params, long blockNo, int crums, Random rand) {
+    var builder = new CrumTreeBuilder(params, blockNo, NotaryLog.NULL);
+    for (int count = crums; count-- > 0; )
+      builder.add(randomCrum(params, blockNo, rand));
+    return builder;
+  }
+
+
+  /** Builds a cargo merkle tree file in {@code dir}, and returns it loaded. */
+  private static CrumTreeBuffer newCargoTree(
+      File dir, ChainParams params, long blockNo, int crums, Random rand) {
+    var file = new File(dir, blockNo + ".mrkl");
+    newBuilder(params, blockNo, crums, rand).buildToTarget(file);
+    return new CrumTreeBuffer(FileUtils.loadFileToMemory(file));
+  }
+
+}
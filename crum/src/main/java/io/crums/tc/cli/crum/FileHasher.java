@@ -0,0 +1,174 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.cli.crum;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import io.crums.tc.Constants;
+
+/**
+ * Computes the SHA-256 hashes of many files concurrently, on a bounded
+ * pool of worker threads. Larger files are read through memory-mapped
+ * windows; smaller ones through a per-thread direct buffer. Either way,
+ * file contents are not copied into the heap.
+ *
+ * <h2>Note</h2>
+ * <p>
+ * A single SHA-256 digest is inherently sequential, so concurrency is
+ * across files, not within a file.
+ * </p>
+ */
+class FileHasher {
+
+  /** Files at least this size are memory-mapped. */
+  final static long MMAP_THRESHOLD = 1024 * 1024;
+  /** Maximum size of a memory-mapped window. */
+  final static long MMAP_WINDOW = 64 * 1024 * 1024;
+  /** Direct read-buffer size for smaller files. */
+  final static int READ_BUFFER_SIZE = 64 * 1024;
+
+
+  /** File paired with its SHA-256 hash. */
+  record FileHash(File file, byte[] hash) { }
+
+
+  private final static ThreadLocal<ByteBuffer> READ_BUFFER =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_SIZE));
+
+
+  /**
+   * Lists the non-empty regular files under the given directory,
+   * recursively, in path order.
+   */
+  static List<File> listFiles(File dir) throws UncheckedIOException {
+    try (Stream<Path> paths = Files.walk(dir.toPath())) {
+      return
+          paths.filter(Files::isRegularFile)
+          .map(Path::toFile)
+          .filter(f -> f.length() > 0)
+          .sorted()
+          .toList();
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on listing " + dir, iox);
+    }
+  }
+
+
+
+  /**
+   * Computes and returns the SHA-256 hash of the given file.
+   */
+  static byte[] hash(File file) throws UncheckedIOException {
+    var digester = Constants.DIGEST.newDigest();
+    try (var ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+      final long size = ch.size();
+      if (size >= MMAP_THRESHOLD) {
+        for (long pos = 0; pos < size; pos += MMAP_WINDOW) {
+          long len = Math.min(MMAP_WINDOW, size - pos);
+          digester.update(ch.map(FileChannel.MapMode.READ_ONLY, pos, len));
+        }
+      } else {
+        var buffer = READ_BUFFER.get().clear();
+        while (ch.read(buffer) != -1) {
+          if (buffer.flip().hasRemaining())
+            digester.update(buffer);
+          buffer.clear();
+        }
+      }
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on reading " + file, iox);
+    }
+    return digester.digest();
+  }
+
+
+
+
+  private final int threads;
+
+  private long bytesHashed;
+  private long millisElapsed;
+
+
+  /**
+   * @param threads   maximum no. of worker threads (&ge; 1)
+   */
+  FileHasher(int threads) {
+    this.threads = threads;
+    if (threads < 1)
+      throw new IllegalArgumentException("threads " + threads);
+  }
+
+
+  /**
+   * Hashes the given files concurrently and returns the results
+   * in the same order.
+   */
+  List<FileHash> hashAll(List<File> files) throws UncheckedIOException {
+    final long start = System.currentTimeMillis();
+    final int poolSize = Math.min(threads, Math.max(1, files.size()));
+
+    var out = new ArrayList<FileHash>(files.size());
+
+    try (var executor = Executors.newFixedThreadPool(poolSize)) {
+
+      var futures = new ArrayList<Future<FileHash>>(files.size());
+      for (var file : files)
+        futures.add(executor.submit(() -> new FileHash(file, hash(file))));
+
+      for (var future : futures)
+        out.add(future.get());
+
+    } catch (InterruptedException ix) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while hashing files", ix);
+
+    } catch (ExecutionException xx) {
+      if (xx.getCause() instanceof RuntimeException rx)
+        throw rx;
+      throw new IllegalStateException(xx.getCause());
+    }
+
+    for (var file : files)
+      bytesHashed += file.length();
+    millisElapsed += System.currentTimeMillis() - start;
+
+    return out;
+  }
+
+
+  /** Returns the total no. of bytes hashed. */
+  long bytesHashed() {
+    return bytesHashed;
+  }
+
+
+  /** Returns the total wall-time spent hashing in milliseconds. */
+  long millisElapsed() {
+    return millisElapsed;
+  }
+
+
+  /** Returns the hashing throughput in MB (10<sup>6</sup> bytes) per second. */
+  double throughput() {
+    return bytesHashed / (1000.0 * Math.max(1L, millisElapsed));
+  }
+
+}
+
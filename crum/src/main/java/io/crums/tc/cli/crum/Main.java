@@ -5,7 +5,6 @@ package io.crums.tc.cli.crum;
 
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.URI;
@@ -16,6 +15,7 @@ import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Base64;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 import io.crums.io.Opening;
@@ -31,6 +31,7 @@ import io.crums.tc.except.NetworkException;
 import io.crums.tc.except.NetworkException;
 import io.crums.tc.json.CrumtrailParser;
 import io.crums.util.IntegralStrings;
+import io.crums.util.Lists;
 import io.crums.util.Base64_32;
 import io.crums.util.Strings;
 import io.crums.util.TaskStack;
@@ -376,6 +377,48 @@ class HashOpt {
   }
 
 
+  File dir;
+
+  @Option(
+    names = { "--dir", "-D" },
+    paramLabel = "DIR",
+    description = {
+      "Sets hashes to the computed SHA-256 of every file in DIR",
+      "(recursive; empty files are skipped)"
+    }
+  )
+  void setDir(File dir) {
+    if (!dir.isDirectory())
+      throw new ParameterException(spec.commandLine(), "not a directory: " + dir);
+    this.dir = dir;
+  }
+
+
+  List<File> files;
+
+  @Option(
+    names = { "--files" },
+    paramLabel = "FILE",
+    arity = "1..*",
+    description = "Sets hashes to the computed SHA-256 of each FILE"
+  )
+  void setFiles(List<File> files) {
+    for (var file : files) {
+      if (!file.isFile())
+        throw new ParameterException(spec.commandLine(), "not a file: " + file);
+      if (file.length() == 0)
+        throw new ParameterException(spec.commandLine(), "empty file: " + file);
+    }
+    this.files = files;
+  }
+
+
+  /** Returns {@code true} if multiple files are to be witnessed. */
+  boolean isBatch() {
+    return dir != null || files != null;
+  }
+
+
   byte[] hash;
 
 
@@ -507,6 +550,9 @@ class SealNow {
     "crum trail. If the chain's blocks span less than 4.1 seconds, then this command",
     "also automatically waits and seals (use @|yellow --no-wait|@ or @|yellow --wait|@ to override).",
     "",
+    "With @|yellow --dir|@ or @|yellow --files|@, the files are hashed concurrently and their hashes",
+    "are submitted in batches; waiting and sealing work as above (for the last block noted).",
+    "",
   }
 )
 class Witness extends NetworkCommand {
@@ -535,6 +581,18 @@ class Witness extends NetworkCommand {
   @ArgGroup(exclusive = true, multiplicity="0..1")
   SealNow sealNow;
 
+
+  @Option(
+    names = { "--threads" },
+    paramLabel = "COUNT",
+    description = {
+      "Max no. of threads hashing files (with @|yellow --dir|@ or @|yellow --files|@)",
+      "Default: no. of available processors"
+    }
+  )
+  int threads = Runtime.getRuntime().availableProcessors();
+
+
   @Override
   void netRun() {
     File repoDir = repoRoot.rootDir().orElse(Repo.defaultUserRepoPath());
@@ -546,13 +604,19 @@ class Witness extends NetworkCommand {
 
     this.closer.pushClose(client);
 
+    if (threads < 1)
+      throw new ParameterException(spec.commandLine(),
+          "--threads must be positive: " + threads);
+
     byte[] hash;
     if (hashOpt.hash != null)
       hash = hashOpt.hash;
     else if (hashOpt.file != null)
       hash = computeFileHash(hashOpt.file);
+    else if (hashOpt.isBatch())
+      hash = null;
     else
-      throw new AssertionError("neither -H or -F options set");
+      throw new AssertionError("neither -H, -F, -D, or --files options set");
 
     if (!originIsSet() && client.getDefaultHost().isEmpty())
       throw new ParameterException(spec.commandLine(),
@@ -592,6 +656,11 @@ class Witness extends NetworkCommand {
       policy = client.getPolicy(host).get();
     }
 
+    if (hash == null) {
+      witnessFiles(client, host, policy);
+      return;
+    }
+
     final var bhash = ByteBuffer.wrap(hash);
 
     {
@@ -614,7 +683,18 @@ class Witness extends NetworkCommand {
       return;
     }
     
-    long millisToCommit = Main.printAck(rcpt, policy);
+    waitAndSeal(client, host, policy, Main.printAck(rcpt, policy));
+  }
+
+
+  /**
+   * Waits for the timechain to commit and seals the pending crums, if so
+   * configured (either by default, or by the {@linkplain SealNow} options).
+   * 
+   * @param millisToCommit  millis till the last noted crum is sealable
+   */
+  private void waitAndSeal(
+      Client client, String host, NotaryPolicy policy, long millisToCommit) {
     {
       boolean wait;
       if (millisToCommit <= 4100L)  // auto-seal
@@ -666,22 +746,55 @@ class Witness extends NetworkCommand {
 
 
   private byte[] computeFileHash(File file) throws UncheckedIOException {
-    final long len = file.length();
-    if (len <= 0)
+    if (file.length() <= 0)
       throw new ParameterException(spec.commandLine(),
         "bad filepath " + file);
-    var buffer = ByteBuffer.allocate((int) Math.min(len, 64 * 1024));
-    var digester = Constants.DIGEST.newDigest();
-    try (var ch = new FileInputStream(file).getChannel()) {
-      while (ch.read(buffer) != -1) {
-        if (buffer.flip().hasRemaining())
-          digester.update(buffer);
-        buffer.clear();
-      }
-    } catch (IOException iox) {
-      throw new UncheckedIOException("on reading " + file, iox);
+    return FileHasher.hash(file);
+  }
+
+
+
+  private void witnessFiles(Client client, String host, NotaryPolicy policy) {
+
+    List<File> files =
+        hashOpt.dir == null ? hashOpt.files : FileHasher.listFiles(hashOpt.dir);
+    if (files.isEmpty()) {
+      System.out.println("No files to witness.");
+      return;
+    }
+
+    var hasher = new FileHasher(threads);
+    var fileHashes = hasher.hashAll(files);
+
+    Main.printf(
+        "hashed %s (%,d bytes) in %.3f seconds: %.1f MB/s%n%n",
+        Strings.nOf(fileHashes.size(), "file"),
+        hasher.bytesHashed(),
+        hasher.millisElapsed() / 1000.0,
+        hasher.throughput());
+
+    var rcpts = client.witness(
+        Lists.map(fileHashes, fh -> ByteBuffer.wrap(fh.hash())), host);
+
+    int sealed = 0;
+    long millisToCommit = 0;
+    for (int index = 0; index < rcpts.size(); ++index) {
+      var rcpt = rcpts.get(index);
+      Main.printf("%s%n", "@|faint " + fileHashes.get(index).file() + "|@");
+      if (rcpt.hasTrail()) {
+        Main.printSealed(rcpt);
+        ++sealed;
+      } else
+        millisToCommit = Math.max(millisToCommit, Main.printAck(rcpt, policy));
     }
-    return digester.digest();
+
+    Main.printf(
+        "%n%s sealed, %s noted%n",
+        Strings.nOf(sealed, "crum trail"),
+        Strings.nOf(rcpts.size() - sealed, "crum"));
+
+    if (sealed < rcpts.size())
+      waitAndSeal(client, host, policy, millisToCommit);
   }
 
 
@@ -694,11 +807,18 @@ class Witness extends NetworkCommand {
   description = {
     "Retrieve and save permanent witness proofs",
     "",
+    "Pending crums are sealed in batches: each batch's trails are fetched",
+    "together (from any no. of blocks, sharing one block proof), the batches",
+    "concurrently. Older servers are sealed block by block. If interrupted,",
+    "running this command again resumes where it left off.",
+    "",
     "See also @|bold wit|@"
   }
 )
 class Seal extends NetworkCommand {
   
+  /** Above this many pending crums (per host), only progress is printed. */
+  final static int PRINT_LIMIT = 32;
   
   @Spec
   CommandSpec spec;
@@ -707,9 +827,24 @@ class Seal extends NetworkCommand {
   RepoRoot repoRoot;
 
 
+  @Option(
+    names = { "--concurrency" },
+    paramLabel = "COUNT",
+    description = {
+      "Max no. of concurrent requests per host",
+      "Default: " + Client.DEFAULT_UPDATE_CONCURRENCY
+    }
+  )
+  int concurrency = Client.DEFAULT_UPDATE_CONCURRENCY;
+
+
   @Override
   void netRun() {
 
+    if (concurrency < 1)
+      throw new ParameterException(spec.commandLine(),
+          "--concurrency must be positive: " + concurrency);
+
     Repo repo = repoRoot.openRepo(Opening.READ_WRITE_IF_EXISTS);
 
     var pending = repo.pendingByHost();
@@ -726,31 +861,50 @@ class Seal extends NetworkCommand {
     int tally = 0;
 
     for (var host : pending.keySet()) {
-      int count = pending.get(host).size();
+      final int count = pending.get(host).size();
+      final var policy = client.getPolicy(host).get();
+      final boolean printEach = count <= PRINT_LIMIT;
       Main.printf(
         "sealing %s from timechain %s%n  ..%n",
         Strings.nOf(count, "crum trail"),
         "@|bold " + host + "|@");
-      var rcpts = client.updatePending(host);
-      tally += rcpts.size();
+
       // how many crums remain to be trailed from this host
-      int remaining = 0;
-      for (var rcpt : rcpts) {
-        if (rcpt.hasTrail()) {
-          Main.printSealed(rcpt);
-        } else {
-          Main.printAck(rcpt, client.getPolicy(host).get());
-          ++remaining;
+      int[] remaining = { 0 };
+      int[] done = { 0 };
+
+      var rcpts = client.updatePending(host, concurrency, batchRcpts -> {
+        int batchRemaining = 0;
+        for (var rcpt : batchRcpts) {
+          if (rcpt.hasTrail()) {
+            if (printEach)
+              Main.printSealed(rcpt);
+          } else {
+            if (printEach)
+              Main.printAck(rcpt, policy);
+            ++batchRemaining;
+          }
         }
-      }
+        remaining[0] += batchRemaining;
+        done[0] += batchRcpts.size();
+        if (!printEach)
+          Main.printf(
+            "  %s: %s sealed, %d remaining  (%d/%d)%n",
+            blockRange(batchRcpts),
+            Strings.nOf(batchRcpts.size() - batchRemaining, "crum trail"),
+            batchRemaining,
+            done[0],
+            count);
+      });
+      tally += rcpts.size();
 
-      pendingTally += remaining;
+      pendingTally += remaining[0];
 
-      if (remaining > 0) {
+      if (remaining[0] > 0) {
         Main.printf(
           "%n%s sealed, %s remaining%n%n",
-          Strings.nOf(rcpts.size() - remaining, "crum trail"),
-          Strings.nOf(remaining, "crum"));
+          Strings.nOf(rcpts.size() - remaining[0], "crum trail"),
+          Strings.nOf(remaining[0], "crum"));
       } else {
         Main.printf("%n");
       }
@@ -765,6 +919,21 @@ class Seal extends NetworkCommand {
 
   }
 
+
+  /** Returns the block no. (or range) of the given receipts, for display. */
+  private static String blockRange(List<Receipt> rcpts) {
+    long lo = Long.MAX_VALUE;
+    long hi = 0;
+    for (var rcpt : rcpts) {
+      lo = Math.min(lo, rcpt.blockNo());
+      hi = Math.max(hi, rcpt.blockNo());
+    }
+    return
+        lo == hi ?
+            "block [" + lo + "]" :
+            "blocks [" + lo + "-" + hi + "]";
+  }
+
 }
 
 
@@ -26,15 +26,20 @@ import com.sun.net.httpserver.HttpHandler;
 
 import io.crums.sldg.json.HashEncoding;
 import io.crums.tc.BlockProof;
+import io.crums.tc.BlockTrails;
 import io.crums.tc.Constants;
 import io.crums.tc.Crum;
 import io.crums.tc.Crumtrail;
 import io.crums.tc.Receipt;
+import io.crums.tc.ReceiptBundle;
 import io.crums.tc.json.BlockProofParser;
+import io.crums.tc.json.BlockTrailsParser;
 import io.crums.tc.json.CrumtrailParser;
 import io.crums.tc.json.NotaryPolicyParser;
+import io.crums.tc.json.ReceiptBundleParser;
 import io.crums.tc.json.ReceiptParser;
 import io.crums.tc.notary.Notary;
+import io.crums.tc.notary.except.NotaryOverloadException;
 import io.crums.util.Lists;
 import io.crums.util.json.simple.JSONObject;
 
@@ -161,6 +166,11 @@ public class ApiHandlers {
 
         handleImpl(exchange);
       
+      } catch (NotaryOverloadException olx) {
+
+        HttpServerHelp.sendUnavailable(
+            exchange, olx.retryAfterMillis(), olx.getMessage());
+
       } catch (IOException | RuntimeException x) {
 
         StringWriter trace = new StringWriter();
@@ -437,6 +447,15 @@ public class ApiHandlers {
       if (fromBlockNo < 1L)
         return;
       
+      // shed load, if the notary is falling behind on commits
+      var backpressure = notary.backpressure();
+      if (!backpressure.admit()) {
+        HttpServerHelp.sendUnavailable(
+            exchange, backpressure.retryAfterMillis(),
+            "notary is behind on commits; retry later");
+        return;
+      }
+      
       List<Receipt> receipts;
       try {
         if (hashes.size() == 1)
@@ -446,6 +465,10 @@ public class ApiHandlers {
           for (var hash : hashes)
             receipts.add(notary.witness(hash, fromBlockNo));
         }
+      } catch (NotaryOverloadException olx) {
+        HttpServerHelp.sendUnavailable(
+            exchange, olx.retryAfterMillis(), olx.getMessage());
+        return;
       } catch (Exception x) {
         HttpServerHelp.sendText(
             exchange, 500, "internal server error: " + x.getMessage());
@@ -590,6 +613,202 @@ public class ApiHandlers {
     
     
   }   // class UpdateHandler
+
+
+
+  /**
+   * Handler for the "update_block" URI endpoint. Takes multiple
+   * {@code hash} / {@code utc} pairs (crums), all from the same block, and
+   * responds with their crumtrails sharing a single block proof. Crums not
+   * found in the block are omitted from the response. If none are found
+   * (or the block is not yet committed), then an empty JSON object is
+   * returned with status 202.
+   */
+  public static class UpdateBlockHandler extends Base {
+
+    public UpdateBlockHandler(Notary notary, ServerSettings settings) {
+      super(notary, settings);
+    }
+
+
+    @Override
+    protected void handleImpl(HttpExchange exchange) throws IOException {
+
+      if (!HttpServerHelp.screenGetOnly(exchange))
+        return;
+      
+      var queryMap = HttpServerHelp.queryMap(exchange);
+      
+      var strHashes = HttpServerHelp.requiredValues(
+          queryMap, Constants.Rest.QS_HASH, exchange);
+      if (strHashes == null)
+        return;
+      
+      var strUtcs = HttpServerHelp.requiredValues(
+          queryMap, Constants.Rest.QS_UTC, exchange);
+      if (strUtcs == null)
+        return;
+
+      if (strHashes.size() != strUtcs.size()) {
+        HttpServerHelp.sendBadRequest(
+            exchange,
+            "no. of '" + Constants.Rest.QS_HASH + "' (" + strHashes.size() +
+            ") and '" + Constants.Rest.QS_UTC + "' (" + strUtcs.size() +
+            ") values must match");
+        return;
+      }
+
+      if (strHashes.size() > settings.maxCrumsPerUpdate()) {
+        HttpServerHelp.sendBadRequest(
+            exchange,
+            "no. of submitted crums (" + strHashes.size() +
+            ") exceeds maximum (" + settings.maxCrumsPerUpdate() + ")");
+        return;
+      }
+
+      Optional<HashEncoding> encOpt = getEncoding(queryMap, exchange);
+      if (encOpt == null)
+        return;
+      
+      HashEncoding enc = pickEncoding(strHashes, exchange);
+      if (enc == null)
+        return;
+
+      final long maxUtc =
+          System.currentTimeMillis() +
+          notary.settings().maxCrossMachineTimeSkew();
+      
+      var crums = new ArrayList<Crum>(strHashes.size());
+      for (int index = 0; index < strHashes.size(); ++index) {
+        var hash = toBuffer(strHashes.get(index), enc, exchange);
+        if (hash == null)
+          return;
+        long utc;
+        try {
+          utc = Long.parseLong(strUtcs.get(index));
+        } catch (NumberFormatException nfx) {
+          HttpServerHelp.sendBadRequest(
+              exchange,
+              "Malformed integral query string value: " +
+              Constants.Rest.QS_UTC + "=" + strUtcs.get(index));
+          return;
+        }
+        if (utc < notary.chainParams().inceptionUtc() || utc > maxUtc) {
+          HttpServerHelp.sendBadRequest(
+              exchange,
+              "Out-of-bounds value in query string: " +
+              Constants.Rest.QS_UTC + "=" + utc);
+          return;
+        }
+        crums.add(new Crum(hash, utc));
+      }
+
+      final boolean compress;
+      {
+        var compressOpt = getCompressCode(queryMap, exchange);
+        if (compressOpt == null)
+          return;
+        int code = compressOpt.orElse(1);
+        compress = code == 1;
+      }
+
+      final long fromBlockNo = getFromBlockNo(queryMap, exchange);
+      if (fromBlockNo < 1L)
+        return;
+
+      respond(
+          exchange, crums, fromBlockNo, compress,
+          encOpt.orElse(HashEncoding.BASE64_32));
+    }
+
+
+    /**
+     * Sends the response for the given (validated) crums.
+     */
+    protected void respond(
+        HttpExchange exchange, List<Crum> crums, long fromBlockNo,
+        boolean compress, HashEncoding outCodec) throws IOException {
+
+      Optional<BlockTrails> blockTrails;
+      try {
+        blockTrails = notary.updateBlock(crums, fromBlockNo);
+      
+      } catch (IllegalArgumentException iax) {
+        HttpServerHelp.sendBadRequest(exchange, iax.getMessage());
+        return;
+      } catch (Exception x) {
+        HttpServerHelp.sendText(
+            exchange, 500, "internal server error: " + x.getMessage());
+        return;
+      }
+
+      if (blockTrails.isEmpty()) {
+        HttpServerHelp.sendJson(exchange, 202, new JSONObject());
+        return;
+      }
+
+      var trails = blockTrails.get();
+      if (compress)
+        trails = trails.compress();
+
+      var json = BlockTrailsParser.forEncoding(outCodec).toJsonObject(trails);
+
+      HttpServerHelp.sendJson(exchange, 200, json);
+    }
+
+  }   // class UpdateBlockHandler
+
+
+
+  /**
+   * Handler for the "update_bundle" URI endpoint. Takes the same query
+   * string as the {@linkplain UpdateBlockHandler "update_block"} endpoint,
+   * except the crums may span any no. of blocks; responds with their
+   * crumtrails sharing a single, multi-target block proof (a
+   * {@linkplain ReceiptBundle receipt bundle}). Crums not found are
+   * omitted from the response. If none are found, then an empty JSON
+   * object is returned with status 202.
+   */
+  public static class UpdateBundleHandler extends UpdateBlockHandler {
+
+    public UpdateBundleHandler(Notary notary, ServerSettings settings) {
+      super(notary, settings);
+    }
+
+
+    @Override
+    protected void respond(
+        HttpExchange exchange, List<Crum> crums, long fromBlockNo,
+        boolean compress, HashEncoding outCodec) throws IOException {
+
+      Optional<ReceiptBundle> bundle;
+      try {
+        bundle = notary.updateBundle(crums, fromBlockNo);
+      
+      } catch (IllegalArgumentException iax) {
+        HttpServerHelp.sendBadRequest(exchange, iax.getMessage());
+        return;
+      } catch (Exception x) {
+        HttpServerHelp.sendText(
+            exchange, 500, "internal server error: " + x.getMessage());
+        return;
+      }
+
+      if (bundle.isEmpty()) {
+        HttpServerHelp.sendJson(exchange, 202, new JSONObject());
+        return;
+      }
+
+      var receipts = bundle.get();
+      if (compress)
+        receipts = receipts.compress();
+
+      var json = ReceiptBundleParser.forEncoding(outCodec).toJsonObject(receipts);
+
+      HttpServerHelp.sendJson(exchange, 200, json);
+    }
+
+  }   // class UpdateBundleHandler
     
   
    
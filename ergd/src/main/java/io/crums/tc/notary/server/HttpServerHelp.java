@@ -76,6 +76,21 @@ public class HttpServerHelp {
   }
   
   
+  /**
+   * Sends a 503 (service unavailable) message, with a {@code Retry-After}
+   * header. Terminal operation.
+   * 
+   * @param retryAfterMillis  rounded up to the nearest second
+   */
+  public static void sendUnavailable(
+      HttpExchange exchange, long retryAfterMillis, String msg)
+      throws IOException {
+    long seconds = Math.max(1, (retryAfterMillis + 999) / 1000);
+    exchange.getResponseHeaders().set("Retry-After", Long.toString(seconds));
+    sendText(exchange, 503, msg);
+  }
+  
+  
   /**
    * Sends 400 level bad-request message. Terminal operation.
    */
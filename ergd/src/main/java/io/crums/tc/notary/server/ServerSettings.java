@@ -14,9 +14,14 @@ public class ServerSettings extends NotarySettings {
   
   public final static int DEFAULT_MAX_HASHES_PER_WITNESS = 8;
   
+  /** Default maximum no. of crums in a block-grouped update request. */
+  public final static int DEFAULT_MAX_CRUMS_PER_UPDATE = 64;
+  
   
   private final int maxHashesPerWitness;
   
+  private final int maxCrumsPerUpdate;
+  
 
   public ServerSettings(NotarySettings notarySettings) {
     this(notarySettings, DEFAULT_MAX_HASHES_PER_WITNESS);
@@ -30,11 +35,24 @@ public class ServerSettings extends NotarySettings {
       NotarySettings notarySettings,
       int maxHashesPerWitness) {
     
+    this(notarySettings, maxHashesPerWitness, DEFAULT_MAX_CRUMS_PER_UPDATE);
+  }
+  
+
+  public ServerSettings(
+      NotarySettings notarySettings,
+      int maxHashesPerWitness,
+      int maxCrumsPerUpdate) {
+    
     super(notarySettings);
     this.maxHashesPerWitness = maxHashesPerWitness;
+    this.maxCrumsPerUpdate = maxCrumsPerUpdate;
     if (maxHashesPerWitness < 1)
       throw new IllegalArgumentException(
           "maxHashesPerWitness: " + maxHashesPerWitness);
+    if (maxCrumsPerUpdate < 1)
+      throw new IllegalArgumentException(
+          "maxCrumsPerUpdate: " + maxCrumsPerUpdate);
   }
 
 
@@ -43,4 +61,10 @@ public class ServerSettings extends NotarySettings {
     return maxHashesPerWitness;
   }
 
+
+  /** Maximum no. of crums in a block-grouped update request. */
+  public final int maxCrumsPerUpdate() {
+    return maxCrumsPerUpdate;
+  }
+
 }
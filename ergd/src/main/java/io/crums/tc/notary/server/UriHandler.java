@@ -51,6 +51,14 @@ public record UriHandler(String uri, HttpHandler handler) {
         new UriHandler(
             Constants.Rest.UPDATE_URI,
             new ApiHandlers.UpdateHandler(notary, settings)));
+    out.add(
+        new UriHandler(
+            Constants.Rest.UPDATE_BLOCK_URI,
+            new ApiHandlers.UpdateBlockHandler(notary, settings)));
+    out.add(
+        new UriHandler(
+            Constants.Rest.UPDATE_BUNDLE_URI,
+            new ApiHandlers.UpdateBundleHandler(notary, settings)));
     out.add(
         new UriHandler(
             Constants.Rest.STATE_URI,
@@ -335,6 +335,31 @@ class Incept implements Callable<Integer> {
   }
   
   
+  private int cargoShards = NotarySettings.DEFAULT_CARGO_SHARDS;
+  
+  
+  @Option(
+      names = {
+          "--shards",
+      },
+      paramLabel = "SHARDS",
+      description = {
+          "No. of shard directories per cargo block (power of 2)",
+          "Spreads concurrent writes across directories",
+          "Maximum: " + NotarySettings.MAX_CARGO_SHARDS,
+          "Default: 1 (unsharded)"
+      }
+      )
+  public void setCargoShards(int cargoShards) {
+    if (cargoShards < 1 || cargoShards > NotarySettings.MAX_CARGO_SHARDS ||
+        Integer.bitCount(cargoShards) != 1)
+      throw new ParameterException(
+          spec.commandLine(),
+          "not a power of 2 (or out-of-bounds): --shards " + cargoShards);
+    this.cargoShards = cargoShards;
+  }
+  
+  
   
   @Mixin
   private PortOpt port;
@@ -350,8 +375,13 @@ class Incept implements Callable<Integer> {
     long now = System.currentTimeMillis();
     var chainParams = ChainParams.forStartUtc(binner, now);
     
-    var settings  = new NotarySettings(
+    var policy = new NotarySettings(
         chainParams, blocksRetained, blocksSearched);
+    var settings  = new NotarySettings(
+        policy,
+        policy.maxConcurrentLag(),
+        policy.maxCrossMachineTimeSkew(),
+        cargoShards);
     
     var out = System.out;
     out.println(" C H A I N    I N C E P T I O N");
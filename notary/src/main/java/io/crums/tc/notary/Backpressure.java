@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary;
+
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.crums.tc.notary.except.NotaryOverloadException;
+
+/**
+ * Ingest backpressure signal. A monitor (see
+ * {@code io.crums.tc.notary.d.LagMonitorRun}) sets the {@linkplain #pressure()
+ * pressure} from the commit lag and unbuilt backlog; front ends (e.g. the
+ * REST server) consult {@linkplain #admit()} before accepting new crums,
+ * and shed the request (e.g. with a 503) if not admitted.
+ * 
+ * <h2>Pressure</h2>
+ * <p>
+ * A value in the range [0, 1]: the probability a new request is shed.
+ * At zero, everything is admitted; at one, nothing.
+ * </p>
+ * 
+ * @see CargoChain#backpressure()
+ */
+public class Backpressure {
+  
+  private volatile double pressure;
+  private volatile long retryAfterMillis;
+  private final AtomicLong shedCount = new AtomicLong();
+  
+  
+  /**
+   * Sets the pressure.
+   * 
+   * @param pressure          clamped to the range [0, 1]
+   * @param retryAfterMillis  suggested retry delay for shed requests
+   */
+  public void set(double pressure, long retryAfterMillis) {
+    this.retryAfterMillis = Math.max(0, retryAfterMillis);
+    this.pressure = pressure > 1 ? 1 : pressure > 0 ? pressure : 0;
+  }
+  
+  
+  /** Returns the current pressure: the probability a request is shed. */
+  public double pressure() {
+    return pressure;
+  }
+  
+  
+  /** Returns {@code true} if all new requests are being shed. */
+  public boolean isShedding() {
+    return pressure >= 1;
+  }
+  
+  
+  /** Returns the suggested delay before shed requests are retried. */
+  public long retryAfterMillis() {
+    return retryAfterMillis;
+  }
+  
+  
+  /**
+   * Decides whether a new request is admitted; if not, the request is
+   * counted as shed.
+   */
+  public boolean admit() {
+    final double p = pressure;
+    if (p <= 0 || p < 1 && ThreadLocalRandom.current().nextDouble() >= p)
+      return true;
+    shedCount.incrementAndGet();
+    return false;
+  }
+  
+  
+  /**
+   * Throws a {@linkplain NotaryOverloadException}, if a new request is not
+   * {@linkplain #admit() admitted}.
+   */
+  public void check() throws NotaryOverloadException {
+    if (!admit())
+      throw new NotaryOverloadException(
+          "notary overloaded (pressure " + pressure + ")", retryAfterMillis);
+  }
+  
+  
+  /** Returns the no. of requests shed so far. */
+  public long shedCount() {
+    return shedCount.get();
+  }
+
+}
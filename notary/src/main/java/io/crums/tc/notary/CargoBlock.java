@@ -12,10 +12,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 import io.crums.io.FileUtils;
 import io.crums.io.Opening;
+import io.crums.io.SerialFormatException;
 import io.crums.io.channels.ChannelUtils;
 import io.crums.stowkwik.io.HexPathTree;
 import io.crums.tc.CargoProof;
@@ -34,6 +38,20 @@ import io.crums.util.TaskStack;
  * Each cargo block is associated with a new (committed or to-be-committed)
  * timechain block.
  * 
+ * <h2>Shards</h2>
+ * <p>
+ * A block's crums are either kept in a single hex path tree under the
+ * block directory (unsharded), or spread across a power-of-2 no. of shard
+ * directories by hash prefix, each with its own staging directory (see
+ * {@linkplain NotarySettings#cargoShards()}). The shards cover disjoint
+ * ranges of the <em>unsigned</em> first hash byte ({@code 00..ff}), whereas
+ * crum trees order hashes by signed bytes ({@code 80..ff} before
+ * {@code 00..7f}): so the crums are <em>not</em> streamed in tree order;
+ * the {@linkplain CrumTreeBuilder} sorts them. A block keeps the layout it
+ * was created with: sharded blocks are marked with a
+ * {@linkplain #SHARDS_MARKER} file.
+ * </p>
+ * 
  * <h2>FIXME</h2>
  * <p>
  * There should only be a single cargo-build file, not 2. This flaw presents
@@ -70,14 +88,32 @@ public class CargoBlock {
       long blockNo,
       File dir,
       NotaryLog log,
-      boolean readOnly) {
+      boolean readOnly,
+      int shards) {
     
+    /**
+     * @param shards  no. of shards, if the block is new (existing blocks
+     *                keep their layout): a power of 2
+     */
     public InitArgs {
       Objects.requireNonNull(policy);
       if (blockNo < 0)
         throw new IllegalArgumentException("blockNo: " + blockNo);
       Objects.requireNonNull(dir);
       Objects.requireNonNull(log);
+      if (shards < 1 || shards > MAX_SHARDS || Integer.bitCount(shards) != 1)
+        throw new IllegalArgumentException("shards: " + shards);
+    }
+    
+    
+    public InitArgs(
+        NotaryPolicy policy,
+        long blockNo,
+        File dir,
+        NotaryLog log,
+        boolean readOnly) {
+      
+      this(policy, blockNo, dir, log, readOnly, 1);
     }
     
     
@@ -96,12 +132,33 @@ public class CargoBlock {
   }
 
 
+  /** Maximum no. of shards (one per first-byte value). */
+  public final static int MAX_SHARDS = 256;
+  
+  /** Marker file in the block directory of sharded blocks. */
+  public final static String SHARDS_MARKER = "SHARDS";
+  
+  private final static String SHARD_PREFIX = "S";
+  
+  
+  /** Shard directory, its staging directory, and its crums. */
+  private record Shard(File dir, File stagingDir, HexPathTree crums) {
+    
+    Shard(File dir) {
+      this(dir, new File(dir, STAGING_DIR), new HexPathTree(dir, CRUM_EXT));
+    }
+  }
+  
+
   private final NotaryPolicy policy;
   private final ChainParams chainParams;
   private final long blockNo;
   private final File dir;
   private final File stagingDir;
-  private final HexPathTree crumsHexTree;
+  /** In hash-prefix order. Length is a power of 2. */
+  private final Shard[] shards;
+  /** No. of bits the first hash byte is shifted right to get shard index. */
+  private final int shardShift;
   
   private final NotaryLog log;
   
@@ -112,8 +169,10 @@ public class CargoBlock {
     this.blockNo = args.blockNo();
     this.dir = args.dir();
     this.stagingDir = new File(dir, STAGING_DIR);
+    this.log = args.log();
     try {
       FileUtils.ensureDir(args.readOnly() ? dir : stagingDir);
+      this.shards = openShards(args.shards(), args.readOnly());
     } catch (Exception x) {
       var nx = new NotaryException(
           "on block cargo <init> [" + blockNo + "]: " + x.getMessage(),
@@ -121,8 +180,114 @@ public class CargoBlock {
       args.log().fatal(nx);
       throw nx;
     }
-    this.crumsHexTree = new HexPathTree(dir, CRUM_EXT);
-    this.log = args.log();
+    this.shardShift = 8 - Integer.numberOfTrailingZeros(shards.length);
+  }
+  
+  
+  private static String shardName(int count, int index) {
+    return SHARD_PREFIX + count + "_" + String.format("%02x", index);
+  }
+  
+  
+  /** Returns the shard count encoded in the name; 0, if not a shard name. */
+  private static int shardCount(String name) {
+    int sep = name.indexOf('_');
+    if (!name.startsWith(SHARD_PREFIX) || sep < 2)
+      return 0;
+    try {
+      int count = Integer.parseInt(name.substring(1, sep));
+      return count > 1 && count <= MAX_SHARDS && Integer.bitCount(count) == 1 ?
+          count : 0;
+    } catch (NumberFormatException nfx) {
+      return 0;
+    }
+  }
+  
+  
+  /**
+   * Discovers the block's layout, or if the block is new (and writable),
+   * creates it. In the common case, this costs a single file probe.
+   */
+  private Shard[] openShards(int configured, boolean readOnly) {
+    
+    // common case: existing layout matches configuration
+    if (configured > 1 ?
+        new File(dir, shardName(configured, 0)).isDirectory() :
+        !new File(dir, SHARDS_MARKER).exists())
+      return shards(configured);
+    
+    // o.w., either a new block, or one created under a different setting
+    String[] names = dir.list();
+    if (names == null)
+      throw new NotaryException("failed to list " + dir);
+    boolean legacy = false;
+    for (var name : names) {
+      int count = shardCount(name);
+      if (count > 0) {
+        var out = shards(count);
+        if (!readOnly)  // (the layout may be in the works)
+          for (var shard : out)
+            FileUtils.ensureDir(shard.stagingDir());
+        return out;
+      }
+      // (built blocks don't get a new layout, either)
+      legacy |= !name.equals(STAGING_DIR) && !name.equals(SHARDS_MARKER);
+    }
+    
+    if (legacy || readOnly || configured == 1)
+      return shards(1);
+    
+    // new block: create the layout, shard zero last
+    // (its existence signals the layout is complete)
+    try {
+      new File(dir, SHARDS_MARKER).createNewFile();
+    } catch (IOException iox) {
+      throw new NotaryException(
+          "failed to create " + SHARDS_MARKER + " in " + dir, iox);
+    }
+    var out = shards(configured);
+    for (int index = out.length; index-- > 0; )
+      FileUtils.ensureDir(out[index].stagingDir());
+    return out;
+  }
+  
+  
+  private Shard[] shards(int count) {
+    if (count == 1)
+      return new Shard[] {
+          new Shard(dir, stagingDir, new HexPathTree(dir, CRUM_EXT)) };
+    var out = new Shard[count];
+    for (int index = 0; index < count; ++index)
+      out[index] = new Shard(new File(dir, shardName(count, index)));
+    return out;
+  }
+  
+  
+  /** Returns the shard the given hex hash belongs in. */
+  private Shard shard(String hex) {
+    if (shards.length == 1)
+      return shards[0];
+    int firstByte =
+        Character.digit(hex.charAt(0), 16) << 4 |
+        Character.digit(hex.charAt(1), 16);
+    return shards[firstByte >>> shardShift];
+  }
+  
+  
+  /** Returns the no. of shards (1, if unsharded). */
+  public final int shardCount() {
+    return shards.length;
+  }
+  
+  
+  /**
+   * Streams the crum entries, in hex path (unsigned) order: <em>not</em>
+   * the crum tree's hash order.
+   */
+  private Stream<HexPathTree.Entry> crumEntries() {
+    return shards.length == 1 ?
+        shards[0].crums().stream() :
+        Arrays.stream(shards).flatMap(s -> s.crums().stream());
   }
   
   
@@ -148,6 +313,21 @@ public class CargoBlock {
    * returned.
    */
   public CargoHash buildCargo() throws NotaryException {
+    return buildCargo(null);
+  }
+
+
+  /**
+   * Builds the block using the given (possibly {@code null}) pre-built
+   * collection of the block's crums. Only crums in the block not already
+   * in {@code prebuilt} (late arrivals, or crums added by other processes)
+   * are read from disk; the others are not opened.
+   * 
+   * @param prebuilt  crums collected as they were added to this block,
+   *                  or {@code null}. Every crum in it must also be in
+   *                  this block (added by {@linkplain #addCrum(FreshCrum)}).
+   */
+  public CargoHash buildCargo(CrumTreeBuilder prebuilt) throws NotaryException {
     
     // verify the policy block-commit lag
     {
@@ -173,8 +353,26 @@ public class CargoBlock {
     
     // prepare a merkle tree builder and add all the crums in this
     // [cargo] block
-    var builder = new CrumTreeBuilder(chainParams, blockNo, log);
-    builder.addAll( crumsHexTree.stream().map(e -> toCrum(e)));
+    final CrumTreeBuilder builder;
+    if (prebuilt == null) {
+      builder = new CrumTreeBuilder(chainParams, blockNo, log);
+      builder.addAll( crumEntries().map(e -> toCrum(e)));
+    } else {
+      if (prebuilt.blockNo() != blockNo)
+        throw new IllegalArgumentException(
+            "prebuilt block [" + prebuilt.blockNo() + "] for cargo block [" +
+            blockNo + "]");
+      builder = prebuilt;
+      // merge in only the crums not already collected
+      // (collected first: adding while filtering would re-sort the builder
+      // on every lookup)
+      var missing =
+          crumEntries()
+          .filter(e -> !builder.contains(IntegralStrings.hexToBytes(e.hex)))
+          .map(e -> toCrum(e))
+          .toList();
+      builder.addAll(missing.stream());
+    }
     
     final int cc = builder.count();
     
@@ -185,7 +383,11 @@ public class CargoBlock {
       return crum == null ? CargoHash.EMPTY : new CargoHash(crum.witnessHash(), 1);
     }
     
-    // o.w. build the merkle tree to staged file, then move it..
+    // o.w. write the hash filter (ahead of the merkle tree, whose
+    // presence marks the block built), then..
+    writeFilter(builder.toFilter());
+    
+    // build the merkle tree to staged file, then move it..
     
     var staged = newStagedFile(MRKL, "." + MRKL);
     var merkleRoot = builder.buildToTarget(staged);
@@ -270,6 +472,58 @@ public class CargoBlock {
   }
   
   
+  /**
+   * Writes the given filter to the {@linkplain #filterFile() filter file}.
+   * Since the filter is only an optimization, failures are logged, but
+   * not thrown.
+   */
+  private void writeFilter(CrumFilter filter) {
+    File staging = newStagedFile(FILTER, "." + FILTER);
+    try (var closer = new TaskStack()) {
+      
+      @SuppressWarnings("resource")
+      var ch = new FileOutputStream(staging).getChannel();
+      closer.pushClose(ch);
+      ChannelUtils.writeRemaining(ch, filter.serialize());
+      ch.close();
+      
+      moveStaged(staging, filterFile());
+    
+    } catch (IOException iox) {
+      log.warning(
+          "failed to write " + FILTER + " in cargo block [" + blockNo +
+          "] (ignored): " + iox.getMessage());
+      staging.delete();
+    }
+  }
+  
+  
+  /**
+   * Loads and returns the block's crum hash filter, if any. Only
+   * {@linkplain State#MRKL MRKL} blocks have filters. Blocks built before
+   * filters were introduced don't have one, either.
+   * 
+   * @return {@code null}, if the filter file is not found (or is corrupt)
+   */
+  public CrumFilter loadFilter() {
+    File filterFile = filterFile();
+    if (!filterFile.exists())
+      return null;
+    try {
+      var in = FileUtils.loadFileToMemory(filterFile);
+      var filter = CrumFilter.load(in);
+      if (in.hasRemaining())
+        throw new SerialFormatException(
+            in.remaining() + " trailing bytes");
+      return filter;
+    } catch (Exception x) {
+      log.warning(
+          "ignoring unreadable " + filterFile + ": " + x.getMessage());
+      return null;
+    }
+  }
+  
+  
   public final static int WHASH_LEN =
       Constants.HASH_WIDTH + Crum.DATA_SIZE;
   
@@ -297,6 +551,11 @@ public class CargoBlock {
   }
   
   
+  protected File filterFile() {
+    return new File(dir, FILTER);
+  }
+  
+  
   
   public final long blockNo() {
     return blockNo;
@@ -331,6 +590,12 @@ public class CargoBlock {
    */
   protected File newStagedFile(String hash, String ext)
       throws NotaryException {
+    return newStagedFile(stagingDir, hash, ext);
+  }
+  
+  
+  private File newStagedFile(File stagingDir, String hash, String ext)
+      throws NotaryException {
     
     File staged = new File(stagingDir, RandomId.RUN_INSTANCE + "_" + hash + ext);
     
@@ -410,11 +675,13 @@ public class CargoBlock {
       }
     }
     
+    final Shard shard = shard(hexHash);
+    
     try (TaskStack closer = new TaskStack()) {
       
       // write to the staged file..
       
-      File staged = newStagedFile(hexHash, CRUM_EXT);
+      File staged = newStagedFile(shard.stagingDir(), hexHash, CRUM_EXT);
       
       // the filepath encodes the crum's hash;
       // so the only remaining info to write is the crum's UTC..
@@ -429,7 +696,7 @@ public class CargoBlock {
       ch.close();
       
       // ask the crums hex tree where this file belongs
-      File cref = crumsHexTree.suggest(hexHash);
+      File cref = shard.crums().suggest(hexHash);
 
       // move it there
       boolean moved = moveStaged(staged, cref);
@@ -477,10 +744,23 @@ public class CargoBlock {
   
   
   public CargoProof findCargoProof(ByteBuffer hash) {
+    return findCargoProofs(List.of(hash)).get(0);
+  }
+
+
+  /**
+   * Finds and returns the cargo proofs for the given hashes, loading the
+   * block's merkle tree only once.
+   * 
+   * @return  list of cargo proofs, in the same order as the given hashes,
+   *          with {@code null} elements for those not found
+   */
+  public List<CargoProof> findCargoProofs(List<ByteBuffer> hashes) {
     
+    var proofs = new CargoProof[hashes.size()];
     File mrklFile = mrklFile();
     if (!mrklFile.exists())
-      return null;
+      return Arrays.asList(proofs);
     final long bytes = mrklFile.length();
     
     try (var closer = new TaskStack()) {
@@ -495,7 +775,10 @@ public class CargoBlock {
         mrklTree = ctf;
       }
       
-      return mrklTree.findProof(hash);
+      for (int index = 0; index < proofs.length; ++index)
+        proofs[index] = mrklTree.findProof(hashes.get(index));
+      
+      return Arrays.asList(proofs);
       
     } catch (TimeChainException tcx) {
       throw tcx;
@@ -620,7 +903,7 @@ public class CargoBlock {
     if (hex.length() != Constants.HASH_WIDTH * 2)
       throw new IllegalArgumentException("hash: " + hex);
 
-    File crumFile = crumsHexTree.find(hex);
+    File crumFile = shard(hex).crums().find(hex);
     if (crumFile == null)
       return null;
     
@@ -12,25 +12,39 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
 
 import io.crums.io.DirectoryRemover;
 import io.crums.io.FileUtils;
 import io.crums.tc.BlockProof;
+import io.crums.tc.BlockTrails;
 import io.crums.tc.CargoProof;
 import io.crums.tc.ChainParams;
 import io.crums.tc.Crum;
 import io.crums.tc.Crumtrail;
 import io.crums.tc.NotaryPolicy;
 import io.crums.tc.Receipt;
+import io.crums.tc.ReceiptBundle;
 import io.crums.tc.TimeBinner;
 import io.crums.tc.TimeChain;
 import io.crums.tc.except.TimeChainException;
 import io.crums.tc.notary.except.NotaryException;
+import io.crums.tc.notary.except.NotaryOverloadException;
 import io.crums.util.Lists;
 import io.crums.util.Strings;
 
@@ -127,6 +141,26 @@ public class CargoChain implements Channel {
   private final NotaryLog log;
   private final NotaryLog blockLog;
 
+  private volatile LongConsumer newBlockListener;
+
+  private volatile ExecutorService buildExecutor;
+
+  /**
+   * Crums collected (with their leaf hashes) for the yet-unbuilt blocks,
+   * as they're added. Keyed by block no.
+   */
+  private final Map<Long, CrumTreeBuilder> prebuilds;
+  
+  private final Backpressure backpressure;
+  
+  /**
+   * Crum hash filters of committed (MRKL) blocks, loaded on demand.
+   * Empty, if the block has no filter.
+   */
+  private final Map<Long, Optional<CrumFilter>> filters;
+  
+  private final FilterCounters filterCounters;
+
   /**
    * @see InitArgs
    */
@@ -146,6 +180,10 @@ public class CargoChain implements Channel {
     }
     this.log = args.log();
     this.blockLog = args.blockLog();
+    this.prebuilds = new ConcurrentHashMap<>();
+    this.backpressure = new Backpressure();
+    this.filters = new ConcurrentHashMap<>();
+    this.filterCounters = new FilterCounters();
   }
   
   
@@ -157,6 +195,12 @@ public class CargoChain implements Channel {
     this.dir = copy.dir;
     this.log = copy.log;
     this.blockLog = copy.blockLog;
+    this.newBlockListener = copy.newBlockListener;
+    this.buildExecutor = copy.buildExecutor;
+    this.prebuilds = copy.prebuilds;
+    this.backpressure = copy.backpressure;
+    this.filters = copy.filters;
+    this.filterCounters = copy.filterCounters;
   }
   
   
@@ -192,6 +236,18 @@ public class CargoChain implements Channel {
   }
 
 
+  /**
+   * Sets the listener notified with the block no. whenever a new cargo
+   * block is created for writing. The listener is invoked on the thread
+   * adding the crum, so it should return quickly.
+   * 
+   * @param listener  {@code null} to clear
+   */
+  public void setNewBlockListener(LongConsumer listener) {
+    this.newBlockListener = listener;
+  }
+
+
 
 
   private final static int CB_EXT_LEN = CARGO_BLOCK_EXT.length();
@@ -224,12 +280,58 @@ public class CargoChain implements Channel {
   }
   
   
+  /**
+   * Maximum no. of crums collected in memory per yet-unbuilt block. Beyond
+   * this, the block is built from disk.
+   * 
+   * @see CargoBlock#buildCargo(CrumTreeBuilder)
+   */
+  public final static int MAX_PREBUILD_CRUMS = 256 * 1024;
+  
+  
   public Receipt addCrum(FreshCrum crum) {
-    Crum out = getBlockForWrite(crum).addCrum(crum);
+    var block = getBlockForWrite(crum);
+    Crum out = block.addCrum(crum);
+    prebuild(block.blockNo(), out);
     return new Receipt(chainParams, out);
   }
   
   
+  /**
+   * Returns the no. of crums this instance has added to the given yet-unbuilt
+   * block (capped at {@linkplain #MAX_PREBUILD_CRUMS}), counting repeats of
+   * the same hash. Crums added by other processes sharing the chain's
+   * directory are not counted; crums {@linkplain #restoreCheckpoint()
+   * restored} from a checkpoint (added by an earlier instance) are.
+   * 
+   * @return zero, if none added (or if the block was since committed)
+   */
+  public int localCrumCount(long blockNo) {
+    var builder = prebuilds.get(blockNo);
+    return builder == null ? 0 : builder.size();
+  }
+  
+  
+  /**
+   * Adds the given crum to its block's pre-build, so that at commit time,
+   * only crums not in the pre-build (added by other processes, or past the
+   * {@linkplain #MAX_PREBUILD_CRUMS limit}) need be read from disk.
+   */
+  private void prebuild(long blockNo, Crum crum) {
+    var builder = prebuilds.get(blockNo);
+    if (builder == null) {
+      // new block: release pre-builds of blocks committed in the meantime
+      // (possibly by another process, if this instance is a follower)
+      final long commitNo = timechain.size();
+      prebuilds.keySet().removeIf(bn -> bn <= commitNo);
+      builder = prebuilds.computeIfAbsent(
+          blockNo, bn -> new CrumTreeBuilder(chainParams, bn, blockLog));
+    }
+    if (builder.size() < MAX_PREBUILD_CRUMS)
+      builder.add(crum);
+  }
+  
+  
   
   protected final CargoBlock getBlockForWrite(FreshCrum crum) {
     
@@ -270,17 +372,20 @@ public class CargoChain implements Channel {
       // (1) threads or processes
       // (2) in quotes cuz it's the same w/ virtual threads
       //
+      // (if it has, the crum's block may already be in the works:
+      // reject the crum, and let the caller retry)
       final long now = System.currentTimeMillis();
       final long utcDiff = now - crum.utc();
       if (utcDiff > settings.maxConcurrentLag()) {
         
         int maxLag = settings.maxConcurrentLag();
-        var error = new AssertionError(
+        var olx = new NotaryOverloadException(
             "maxConcurrentLag (" + maxLag +
             ") breached by " + (utcDiff - maxLag) + " millis: " +
-            crum);
-        log.fatal(error);
-        throw error;
+            crum,
+            chainParams.blockDuration());
+        log.warning(olx.getMessage());
+        throw olx;
       }
       
       // check for cross machine time skews..
@@ -339,7 +444,11 @@ public class CargoChain implements Channel {
   
   
   private CargoBlock createNewBlock(long blockNo) {
-    return getCargoBlock(blockNo, false);
+    var block = getCargoBlock(blockNo, false);
+    var listener = newBlockListener;
+    if (listener != null)
+      listener.accept(blockNo);
+    return block;
   }
   
   
@@ -369,7 +478,8 @@ public class CargoChain implements Channel {
       return null;
     
     var args = new CargoBlock.InitArgs(
-        settings, blockNo, cbDir, blockLog, readOnly);
+        settings, blockNo, cbDir, blockLog, readOnly,
+        settings.cargoShards());
     return new CargoBlock(args);
   }
   
@@ -385,6 +495,12 @@ public class CargoChain implements Channel {
    * search path, are determined by block no. (the logical block),
    * not by existing cargo directories (whose block no.s may contain
    * gaps.)
+   * <p>
+   * Committed blocks whose {@linkplain CrumFilter filter} rules out the
+   * hash are not searched.
+   * </p>
+   *
+   * @see #filterMetrics()
    */
   public Optional<Receipt> findReceipt(ByteBuffer hash, long fromBlockNo) {
 
@@ -437,40 +553,33 @@ public class CargoChain implements Channel {
     
     
     if (block.blockNo() <= commitNo) {
-      
-      BlockProof blockProof;
-      {
-        Long[] blockNos;
-        if (fromBlockNo == block.blockNo())
-          blockNos = commitNo == fromBlockNo ?
-              new Long[] { fromBlockNo } :
-              new Long[] { fromBlockNo, commitNo };
-        else
-          blockNos = commitNo == block.blockNo() ?
-              new Long[] { fromBlockNo, commitNo } :
-              new Long[] { fromBlockNo, block.blockNo(), commitNo };
-  
-        blockProof = timechain.stateProof(false, blockNos);
-      }
-      
 
       switch (block.state()) {
       case MRKL:
         {
+          CrumFilter filter = filter(block, commitNo);
+          if (filter != null) {
+            filterCounters.lookups.increment();
+            if (!filter.mightContain(hash)) {
+              filterCounters.negatives.increment();
+              return null;
+            }
+          }
           CargoProof cargoProof = block.findCargoProof(hash);
           if (cargoProof != null) {
-            // var blockProof = timechain.getBlockProof(block.blockNo());
-
+            var blockProof = blockProof(block.blockNo(), commitNo, fromBlockNo);
             var crumtrail = Crumtrail.newMerkleTrail(blockProof, cargoProof);
             return new Receipt(crumtrail);
             
           }
+          if (filter != null)
+            filterCounters.falsePositives.increment();
           return null;
         }
       case LONE:
         Crum crum = block.findLoneCommit();
         if (crum != null && crum.hash().equals(hash)) {
-          // var blockProof = timechain.getBlockProof(block.blockNo());
+          var blockProof = blockProof(block.blockNo(), commitNo, fromBlockNo);
           var crumtrail = Crumtrail.newLoneTrail(blockProof, crum);
           return new Receipt(crumtrail);
         }
@@ -493,6 +602,263 @@ public class CargoChain implements Channel {
   
   
   
+  /**
+   * Returns the given (committed) block's crum hash filter, if any;
+   * {@code null}, o.w. Filters are loaded on first use, and cached
+   * for as long as the block is retained.
+   */
+  private CrumFilter filter(CargoBlock block, long commitNo) {
+    var filter = filters.get(block.blockNo());
+    if (filter == null) {
+      final long retainedNo = commitNo - settings.blocksRetained();
+      filters.keySet().removeIf(bn -> bn <= retainedNo);
+      filter = Optional.ofNullable(block.loadFilter());
+      filters.put(block.blockNo(), filter);
+    }
+    return filter.orElse(null);
+  }
+  
+  
+  /**
+   * Snapshot of the crum hash filter statistics.
+   * 
+   * @param lookups         no. of committed-block searches that consulted
+   *                        a filter
+   * @param negatives       no. of those ruled out by the filter (the block
+   *                        was not searched)
+   * @param falsePositives  no. of those not ruled out by the filter, but
+   *                        not found in the block, either
+   * 
+   * @see CargoChain#filterMetrics()
+   */
+  public record FilterMetrics(long lookups, long negatives, long falsePositives) {
+    
+    /**
+     * Returns the observed false positive rate: the fraction of lookups
+     * of hashes not in the block, that the filter failed to rule out.
+     * Zero, if there are no such lookups.
+     */
+    public double falsePositiveRate() {
+      long absent = negatives + falsePositives;
+      return absent == 0 ? 0 : (double) falsePositives / absent;
+    }
+  }
+  
+  
+  private static class FilterCounters {
+    final LongAdder lookups = new LongAdder();
+    final LongAdder negatives = new LongAdder();
+    final LongAdder falsePositives = new LongAdder();
+  }
+  
+  
+  /**
+   * Returns a snapshot of the crum hash filter statistics (shared with
+   * copies).
+   * 
+   * @see CrumFilter
+   */
+  public FilterMetrics filterMetrics() {
+    return new FilterMetrics(
+        filterCounters.lookups.sum(),
+        filterCounters.negatives.sum(),
+        filterCounters.falsePositives.sum());
+  }
+  
+  
+  
+  /**
+   * Returns the block proof for a receipt from the given (committed)
+   * block.
+   */
+  private BlockProof blockProof(long blockNo, long commitNo, long fromBlockNo) {
+    Long[] blockNos;
+    if (fromBlockNo == blockNo)
+      blockNos = commitNo == fromBlockNo ?
+          new Long[] { fromBlockNo } :
+          new Long[] { fromBlockNo, commitNo };
+    else
+      blockNos = commitNo == blockNo ?
+          new Long[] { fromBlockNo, commitNo } :
+          new Long[] { fromBlockNo, blockNo, commitNo };
+
+    return timechain.stateProof(false, blockNos);
+  }
+  
+  
+  
+  /**
+   * Finds and returns the crumtrails for the given {@code crums}, all from
+   * the same block, sharing one block proof. Crums not found in the block
+   * are omitted. Empty is returned if the block is not committed, or
+   * no longer retained, or if none of the crums are found.
+   * <p>
+   * Like {@linkplain #findCrumReceipt(Crum, long)}, this method
+   * searches at most one cargo block.
+   * </p>
+   * 
+   * @param crums         not empty, and all from the same block
+   * @param fromBlockNo   starting block no. in the block proof
+   * 
+   * @throws IllegalArgumentException
+   *          if {@code crums} is empty or spans more than one block
+   */
+  public Optional<BlockTrails> findBlockTrails(
+      List<Crum> crums, long fromBlockNo) {
+    
+    assertFromBlockNoPositive(fromBlockNo);
+    if (crums.isEmpty())
+      throw new IllegalArgumentException("empty crums");
+
+    final long blockNo = chainParams.blockNoForUtcUnchecked(crums.get(0).utc());
+    for (var crum : crums) {
+      if (chainParams.blockNoForUtcUnchecked(crum.utc()) != blockNo)
+        throw new IllegalArgumentException(
+            "crums span multiple blocks: " + crums.get(0) + ", " + crum);
+    }
+    if (blockNo <= 0)
+      return Optional.empty();
+    
+    final long commitNo = timechain.size();
+    if (blockNo > commitNo)
+      return Optional.empty();
+    
+    var block = getBlockIfPresent(blockNo, commitNo);
+    if (block == null)
+      return Optional.empty();
+    
+    if (fromBlockNo > blockNo)
+      throw new IllegalArgumentException(
+        "fromBlockNo " + fromBlockNo + " > cargo block no. " + blockNo);
+    
+    switch (block.state()) {
+    case MRKL:
+      {
+        var cargoProofs =
+            block.findCargoProofs(Lists.map(crums, Crum::hash)).stream()
+            .filter(Objects::nonNull)
+            .toList();
+        if (cargoProofs.isEmpty())
+          return Optional.empty();
+        return Optional.of(
+            new BlockTrails(
+                blockProof(blockNo, commitNo, fromBlockNo), cargoProofs));
+      }
+    case LONE:
+      {
+        Crum lone = block.findLoneCommit();
+        if (lone == null ||
+            crums.stream().noneMatch(c -> c.hash().equals(lone.hash())))
+          return Optional.empty();
+        return Optional.of(
+            BlockTrails.forLone(
+                blockProof(blockNo, commitNo, fromBlockNo), lone));
+      }
+    default:
+      var error = new AssertionError(
+          "expected commit file not found cargo block [" + blockNo +
+          "]; chain commit at [" + commitNo + "]");
+      
+      log.fatal(error);
+      throw error;
+    }
+  }
+  
+  
+  
+  /**
+   * Finds and returns the crumtrails for the given {@code crums}, from any
+   * no. of blocks, sharing one multi-target block proof. The block proof
+   * is computed once for all the blocks found, instead of once per
+   * receipt; so both the proof's serial size and the work to build it
+   * grow with the no. of distinct blocks, rather than crums. Crums not
+   * found (in blocks not committed, or no longer retained, or not
+   * recorded at all) are omitted. Empty is returned if none are found.
+   * 
+   * @param crums         not empty
+   * @param fromBlockNo   starting block no. in the block proof
+   * 
+   * @throws IllegalArgumentException
+   *          if {@code crums} is empty, or if {@code fromBlockNo} is greater
+   *          than the lowest (positive) block no. of the crums
+   */
+  public Optional<ReceiptBundle> findReceiptBundle(
+      List<Crum> crums, long fromBlockNo) {
+
+    assertFromBlockNoPositive(fromBlockNo);
+    if (crums.isEmpty())
+      throw new IllegalArgumentException("empty crums");
+
+    final long commitNo = timechain.size();
+
+    // group by block no.
+    Map<Long, List<Crum>> crumsByBlock = new TreeMap<>();
+    for (var crum : crums) {
+      long blockNo = chainParams.blockNoForUtcUnchecked(crum.utc());
+      if (blockNo > 0 && blockNo <= commitNo)
+        crumsByBlock.computeIfAbsent(blockNo, bn -> new ArrayList<>()).add(crum);
+    }
+    if (crumsByBlock.isEmpty())
+      return Optional.empty();
+
+    long lowestBlockNo = crumsByBlock.keySet().iterator().next();
+    if (fromBlockNo > lowestBlockNo)
+      throw new IllegalArgumentException(
+        "fromBlockNo " + fromBlockNo + " > cargo block no. " + lowestBlockNo);
+
+    var cargoProofs = new ArrayList<CargoProof>();
+    var loneCrums = new ArrayList<Crum>();
+    var blockNos = new TreeSet<Long>();
+
+    for (var entry : crumsByBlock.entrySet()) {
+      final long blockNo = entry.getKey();
+      var block = getBlockIfPresent(blockNo, commitNo);
+      if (block == null)
+        continue;
+      var blockCrums = entry.getValue();
+      switch (block.state()) {
+      case MRKL:
+        {
+          int count = cargoProofs.size();
+          block.findCargoProofs(Lists.map(blockCrums, Crum::hash)).stream()
+              .filter(Objects::nonNull)
+              .forEach(cargoProofs::add);
+          if (cargoProofs.size() > count)
+            blockNos.add(blockNo);
+        }
+        break;
+      case LONE:
+        {
+          Crum lone = block.findLoneCommit();
+          if (lone != null &&
+              blockCrums.stream().anyMatch(c -> c.hash().equals(lone.hash()))) {
+            loneCrums.add(lone);
+            blockNos.add(blockNo);
+          }
+        }
+        break;
+      default:
+        var error = new AssertionError(
+            "expected commit file not found cargo block [" + blockNo +
+            "]; chain commit at [" + commitNo + "]");
+        
+        log.fatal(error);
+        throw error;
+      }
+    }
+
+    if (blockNos.isEmpty())
+      return Optional.empty();
+
+    blockNos.add(fromBlockNo);
+    blockNos.add(commitNo);
+    var blockProof = timechain.stateProof(false, blockNos.toArray(Long[]::new));
+
+    return Optional.of(new ReceiptBundle(blockProof, cargoProofs, loneCrums));
+  }
+  
+  
+  
   /**
    * Finds and returns the receipt for the given {@code crum}.
    * If the given crum is indeed recorded in its appropriate
@@ -537,10 +903,22 @@ public class CargoChain implements Channel {
   }
 
 
+  /**
+   * Returns the number of purged cargo blocks in the graveyard, awaiting
+   * deletion.
+   */
+  public int graveyardBacklog() {
+    var plots = graveyardDir().list();
+    return plots == null ? 0 : plots.length;
+  }
+
+
   /**
    * Sweeps clean (deletes) the contents of the {@linkplain #graveyardDir()
    * graveyard directory} and returns the number objects (files and directories)
-   * deleted. This may be useful on startup.
+   * deleted. The deletes are not rate-limited.
+   * 
+   * @see io.crums.tc.notary.d.SweepRun
    */
   public int sweepGraveyard() {
     int tally = 0;
@@ -564,9 +942,13 @@ public class CargoChain implements Channel {
   
   /**
    * Purges the inactive blocks and returns the number
-   * of blocks purged.
+   * of blocks purged. This is the first (fast) phase of a 2-phase purge:
+   * the inactive cargo block directories are only moved (renamed) into the
+   * {@linkplain #graveyardDir() graveyard}; their contents are deleted
+   * later, separately (see {@linkplain #sweepGraveyard()}).
    * 
    * @return count of blocks purged
+   * @see #graveyardBacklog()
    */
   public int purgeInactiveBlocks() {
     
@@ -607,46 +989,30 @@ public class CargoChain implements Channel {
       File plot = new File(graveyard, bd.dirname());
       File deadDir = bd.toFile(dir);
       boolean moved = deadDir.renameTo(plot);
-      if (!moved) {
-        var msg =
-            "[RACE]: purge failed to move cargo block [" + bd.blockNo() +
-            "] to graveyard in possible race: ";
-        
-        if (deadDir.exists())
-          msg += "block still exists; ";
-        else
-          msg += "block no longer exists; ";
-
-        boolean plotExists = plot.exists();
-        if (plotExists) {
-          msg += "plot exists (proceeding with purge)";
-        } else
-          msg += "plot does not exist";
-        log.warning(msg);
-        
-        if (!plotExists) {
-          ++errors;
-          continue;
-        }
-      }
-      int rmCount = DirectoryRemover.removeTree(plot);
-      if (rmCount < 0) {
-        log.warning(
-            "[RACE]: failed to complete purge of cargo block dir [" + bd.blockNo() +
-            "]; " + Strings.nOf(-rmCount, "object") + " removed");
-        ++errors;
-      } else {
+      if (moved) {
         ++tally;
-        log.info(
-            "[PURGE]: cargo block [" + bd.blockNo() + "] removed (" +
-            Strings.nOf(rmCount, "object") + ")");
+        log.info("[PURGE]: cargo block [" + bd.blockNo() + "] moved to graveyard");
+        continue;
       }
+      var msg =
+          "[RACE]: purge failed to move cargo block [" + bd.blockNo() +
+          "] to graveyard in possible race: ";
+      
+      if (deadDir.exists()) {
+        msg += "block still exists";
+        ++errors;
+      } else
+        msg += "block no longer exists";
+
+      if (plot.exists())
+        msg += "; plot exists";
+      log.warning(msg);
     }
     
 
     if (tally > 1 || errors > 0)
       log.info(
-          "         " + tally + " cargo blocks removed; " +
+          "         " + tally + " cargo blocks moved to graveyard; " +
           Strings.nOf(errors, "error"));
     
     
@@ -654,9 +1020,206 @@ public class CargoChain implements Channel {
   }
   
   
+  /**
+   * Sets the executor used to build cargo blocks in pipelined commit mode.
+   * When set, and more than one cargo block is due, the blocks' merkle trees
+   * are built in parallel on the executor, while their hashes are still
+   * appended to the time chain strictly in order (as each build completes).
+   * The executor is not owned by this instance.
+   * 
+   * @param executor  {@code null} for sequential (build-append, build-append..)
+   *                  mode (the default)
+   * 
+   * @see #buildAndCommit()
+   */
+  public void setBuildExecutor(ExecutorService executor) {
+    this.buildExecutor = executor;
+  }
+
+
+  /**
+   * Returns the UTC at which the cargo block with the given no. becomes
+   * committable: {@linkplain NotaryPolicy#blockCommitLag()} millis (plus one)
+   * after the block closes.
+   */
+  public long commitDeadline(long blockNo) {
+    return
+        chainParams.utcForBlockNo(blockNo + 1) +
+        settings.blockCommitLag() + 1;
+  }
+
+
+  /** Returns the {@linkplain NotaryConstants#CHECKPOINT checkpoint} file. */
+  public File checkpointFile() {
+    return new File(dir, NotaryConstants.CHECKPOINT);
+  }
+
+
+  /**
+   * Writes a {@linkplain Checkpoint checkpoint} of the pre-builds of
+   * yet-unbuilt cargo blocks. Committed blocks are not checkpointed (their
+   * state is rediscovered lazily, as usual). Errors are logged, not thrown.
+   * 
+   * @return {@code true} if written
+   */
+  public boolean writeCheckpoint() {
+    try {
+      final long commitNo = timechain.size();
+      var entries = new ArrayList<Checkpoint.Entry>();
+      for (var e : new TreeMap<>(prebuilds).entrySet()) {
+        final long blockNo = e.getKey();
+        var crums = e.getValue().crums();
+        if (blockNo > commitNo && !crums.isEmpty())
+          entries.add(new Checkpoint.Entry(blockNo, crums));
+      }
+      Checkpoint.write(
+          checkpointFile(), commitNo, timechain.rowHash(commitNo), entries);
+      return true;
+    
+    } catch (Exception x) {
+      log.warning("[CHECKPOINT]: write failed: " + x);
+      return false;
+    }
+  }
+
+
+  /**
+   * Restores in-memory state from the {@linkplain #checkpointFile()
+   * checkpoint}, if any, and if {@linkplain Checkpoint#isValid(TimeChain)
+   * valid}: the pre-builds of blocks still unbuilt are seeded from the
+   * checkpoint's crums. Otherwise, state is rediscovered lazily (as if
+   * there were no checkpoint). Errors are logged, not thrown.
+   * <p>
+   * Restored crums count toward {@linkplain #localCrumCount(long)}: they
+   * were added by an earlier instance in this directory.
+   * </p>
+   * 
+   * @return {@code true} if restored
+   */
+  public boolean restoreCheckpoint() {
+    final File file = checkpointFile();
+    try {
+      var checkpoint = Checkpoint.load(file);
+      if (checkpoint == null)
+        return false;
+      if (!checkpoint.isValid(timechain)) {
+        log.warning(
+            "[CHECKPOINT]: ignoring stale or foreign checkpoint (commit no. " +
+            checkpoint.commitNo() + "); chain commit no. " + timechain.size());
+        return false;
+      }
+      final long commitNo = timechain.size();
+      int blocks = 0;
+      int crums = 0;
+      for (var entry : checkpoint.entries()) {
+        final long blockNo = entry.blockNo();
+        if (blockNo > commitNo) {
+          if (entry.crums().isEmpty() || !blockDirFile(blockNo).isDirectory())
+            continue;
+          int count = Math.min(entry.crums().size(), MAX_PREBUILD_CRUMS);
+          var seed = entry.crums().subList(0, count);
+          if (seed.stream().anyMatch(
+              c -> chainParams.blockNoForUtcUnchecked(c.utc()) != blockNo)) {
+            log.warning(
+                "[CHECKPOINT]: skipping misplaced crums for block [" +
+                blockNo + "]");
+            continue;
+          }
+          var builder = new CrumTreeBuilder(chainParams, blockNo, blockLog);
+          seed.forEach(builder::add);
+          prebuilds.putIfAbsent(blockNo, builder);
+          ++blocks;
+          crums += count;
+        }
+      }
+      log.info(
+          "[CHECKPOINT]: warm start from checkpoint at commit no. " +
+          checkpoint.commitNo() + ": " + Strings.nOf(crums, "crum") +
+          " pre-built in " + Strings.nOf(blocks, "block"));
+      return true;
+    
+    } catch (Exception x) {
+      log.warning(
+          "[CHECKPOINT]: ignoring unreadable checkpoint " + file + ": " + x);
+      return false;
+    }
+  }
+
+
+  /**
+   * Returns the ingest backpressure signal (shared with copies).
+   * 
+   * @see io.crums.tc.notary.d.LagMonitorRun
+   */
+  public Backpressure backpressure() {
+    return backpressure;
+  }
+
+
+  /**
+   * Returns the commit lag: how far past its {@linkplain
+   * #commitDeadline(long) commit deadline} the oldest uncommitted cargo
+   * block is. Zero, if there is no uncommitted block, or if the oldest is
+   * not yet due: an idle chain (one with no new blocks) is not lagging,
+   * however long ago its last block was committed. Lists the cargo block
+   * directories.
+   * 
+   * @see #nextCommitDeadline()
+   */
+  public long commitLag() {
+    var deadline = nextCommitDeadline();
+    return deadline.isEmpty() ?
+        0 :
+        Math.max(0, System.currentTimeMillis() - deadline.getAsLong());
+  }
+
+
+  /**
+   * Returns the no. of cargo blocks past their {@linkplain
+   * #commitDeadline(long) commit deadline}, not yet committed. Lists the
+   * cargo block directories.
+   */
+  public int unbuiltBacklog() {
+    final long commitNo = timechain.size();
+    final long now = System.currentTimeMillis();
+    int count = 0;
+    for (var bd : sortedBlockDirs()) {
+      if (bd.blockNo() <= commitNo)
+        continue;
+      if (commitDeadline(bd.blockNo()) > now)
+        break;
+      ++count;
+    }
+    return count;
+  }
+
+
+  /**
+   * Returns the earliest {@linkplain #commitDeadline(long) commit deadline}
+   * among the existing, uncommitted cargo blocks, if any. Lists the cargo
+   * block directories.
+   */
+  public OptionalLong nextCommitDeadline() {
+    final long commitNo = timechain.size();
+    var bds = sortedBlockDirs();
+    int index =
+        Collections.binarySearch(
+            Lists.map(bds, BlockDir::blockNo),
+            commitNo + 1);
+    if (index < 0)
+      index = -1 - index;
+    return
+        index == bds.size() ?
+            OptionalLong.empty() :
+            OptionalLong.of(commitDeadline(bds.get(index).blockNo()));
+  }
+  
+  
   /**
    * Builds the committable cargo blocks, commits their hashes to the
-   * time chain and returns a tally of the crums added.
+   * time chain and returns a tally of the crums added. If a
+   * {@linkplain #setBuildExecutor(ExecutorService) build executor} is set,
+   * then the blocks are built in parallel.
    * 
    * @return no. of crums added. A reporting statistic,
    *         not directly used in logic anywhere
@@ -687,15 +1250,9 @@ public class CargoChain implements Channel {
         }
         
         // find the end index..
-        final long commitMillisPad =
-            settings.blockCommitLag() + 1;
-
         int iend = bds.size();
         for (int index = iend; index-- > 0; ) { // at least once
-          long nextBlockUtc =
-              chainParams.utcForBlockNo(
-                  bds.get(index).blockNo() + 1);
-          if (nextBlockUtc + commitMillisPad <= now)
+          if (commitDeadline(bds.get(index).blockNo()) <= now)
             break;
           iend = index;
         }
@@ -712,11 +1269,14 @@ public class CargoChain implements Channel {
             " blocks) is breaching blocks-retained setting (" +
             settings.blocksRetained() + ")");
       }
+      var builds = submitBuilds(buildDirs);
       int tally = 0;
-      for (var bd : buildDirs) {
-        var block = toCargoBlock(bd);
-        var cargoHash = block.buildCargo();
-        final long blockNo = block.blockNo();
+      for (int index = 0; index < buildDirs.size(); ++index) {
+        final long blockNo = buildDirs.get(index).blockNo();
+        final CargoHash cargoHash =
+            builds == null ?
+                buildCargo(buildDirs.get(index)) :
+                getBuild(builds, index, blockNo);
         long blocksAdded = timechain.recordBlockNo(blockNo, cargoHash.hash());
         
         if (blocksAdded <= 0) {
@@ -733,6 +1293,12 @@ public class CargoChain implements Channel {
         }
       }
       
+      // release the pre-builds of committed blocks
+      final long commitNo = timechain.size();
+      prebuilds.keySet().removeIf(bn -> bn <= commitNo);
+      final long retainedNo = commitNo - settings.blocksRetained();
+      filters.keySet().removeIf(bn -> bn <= retainedNo);
+
       return tally;
       
     } catch (TimeChainException tcx) {
@@ -750,6 +1316,56 @@ public class CargoChain implements Channel {
   
   
   
+  /**
+   * Submits the builds of the given cargo blocks to the build executor,
+   * if pipelined; returns {@code null}, o.w.
+   */
+  private List<Future<CargoHash>> submitBuilds(List<BlockDir> buildDirs) {
+    var executor = buildExecutor;
+    if (executor == null || buildDirs.size() < 2)
+      return null;
+    var builds = new ArrayList<Future<CargoHash>>(buildDirs.size());
+    for (var bd : buildDirs)
+      builds.add(executor.submit(() -> buildCargo(bd)));
+    return builds;
+  }
+
+
+  /** Builds the given cargo block, using its pre-build, if any. */
+  private CargoHash buildCargo(BlockDir bd) {
+    return toCargoBlock(bd).buildCargo(prebuilds.get(bd.blockNo()));
+  }
+
+
+  /**
+   * Awaits and returns the build at the given index. On failure, builds not
+   * yet started are cancelled. (Builds already completed are not lost: they
+   * are retrieved on the next run.)
+   */
+  private CargoHash getBuild(
+      List<Future<CargoHash>> builds, int index, long blockNo) {
+    try {
+      return builds.get(index).get();
+
+    } catch (InterruptedException ix) {
+      builds.forEach(f -> f.cancel(false));
+      Thread.currentThread().interrupt();
+      throw new NotaryException(
+          "interrupted awaiting build of cargo block [" + blockNo + "]", ix);
+
+    } catch (ExecutionException xx) {
+      builds.forEach(f -> f.cancel(false));
+      if (xx.getCause() instanceof RuntimeException rx)
+        throw rx;
+      throw new NotaryException(
+          "on building cargo block [" + blockNo + "]: " + xx.getCause(),
+          xx.getCause());
+    }
+  }
+  
+  
+  
+  
   protected final List<CargoBlock> activeBlocksLazy() {
     return Lists.map(activeBlockDirs(), this::toCargoBlock);
   }
@@ -846,7 +1462,8 @@ public class CargoChain implements Channel {
   
   protected final CargoBlock toCargoBlock(BlockDir bDir) {
     var args = new CargoBlock.InitArgs(
-        settings, bDir.blockNo(), bDir.toFile(dir), blockLog);
+        settings, bDir.blockNo(), bDir.toFile(dir), blockLog, false,
+        settings.cargoShards());
     return new CargoBlock(args);
   }
   
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import io.crums.io.channels.ChannelUtils;
+import io.crums.tc.Constants;
+import io.crums.tc.Crum;
+import io.crums.tc.TimeChain;
+import io.crums.util.Lists;
+
+/**
+ * Compact snapshot of a cargo chain's pre-builds, written periodically so
+ * that a restarted notary can start warm. The file is memory-mapped on load;
+ * crums are read from the mapping on demand.
+ *
+ * <h2>Contents</h2>
+ * <p>
+ * The commit no. (and the chain's row hash at that no., for validation),
+ * followed by an entry for each yet-unbuilt cargo block: its no. and its
+ * pre-built crums (the compact hash index). On restore, these seed the
+ * block's pre-build. Nothing else is checkpointed: the state of committed
+ * blocks is rediscovered lazily from the file system.
+ * </p>
+ * <h2>Validity</h2>
+ * <p>
+ * A checkpoint is {@linkplain #isValid(TimeChain) valid} only if its
+ * commit no. is no greater than the chain's, and the chain's row hash at
+ * that no. matches. Otherwise, it's ignored and state is rediscovered from
+ * the file system, as if there were none.
+ * </p>
+ * <h2>Format</h2>
+ * <pre>
+ *   MAGIC (int) VERSION (byte) PAD (3 bytes)
+ *   WRITTEN_UTC (long) COMMIT_NO (long) COMMIT_HASH (32 bytes)
+ *   ENTRY_COUNT (int)
+ *   ENTRY*   : BLOCK_NO (long) INDEX_COUNT (int)
+ *   CRUM*    : INDEX_COUNT crums per entry, in entry order
+ * </pre>
+ *
+ * @see NotaryConstants#CHECKPOINT
+ * @see CargoChain#writeCheckpoint()
+ */
+public class Checkpoint {
+
+  /** File magic: "cPnT". */
+  public final static int MAGIC = 0x63506e54;
+
+  public final static byte VERSION = 2;
+
+  private final static int HEADER_BYTES = 4 + 4 + 8 + 8 + Constants.HASH_WIDTH + 4;
+
+  private final static int ENTRY_BYTES = 8 + 4;
+
+
+  /**
+   * Unbuilt cargo block entry.
+   *
+   * @param blockNo     cargo block no.
+   * @param crums       the block's pre-built crums (possibly empty)
+   */
+  public record Entry(long blockNo, List<Crum> crums) {
+
+    public Entry {
+      Objects.requireNonNull(crums, "null crums");
+      if (blockNo < 1)
+        throw new IllegalArgumentException("blockNo " + blockNo);
+    }
+  }
+
+
+
+  /**
+   * Writes a checkpoint file. The file is first written to a sibling
+   * temp file, and then atomically moved into place.
+   *
+   * @param file        the checkpoint file
+   * @param commitNo    the chain's commit no.
+   * @param commitHash  the chain's row hash at {@code commitNo}
+   * @param entries     unbuilt cargo block entries
+   */
+  public static void write(
+      File file, long commitNo, ByteBuffer commitHash, List<Entry> entries)
+          throws IOException {
+
+    if (commitNo < 0)
+      throw new IllegalArgumentException("commitNo " + commitNo);
+    if (commitHash.remaining() != Constants.HASH_WIDTH)
+      throw new IllegalArgumentException("commitHash " + commitHash);
+
+    long size = HEADER_BYTES + ((long) ENTRY_BYTES) * entries.size();
+    for (var e : entries)
+      size += ((long) Crum.DATA_SIZE) * e.crums().size();
+    if (size > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("checkpoint too large: " + size);
+
+    var buffer = ByteBuffer.allocate((int) size);
+    buffer.putInt(MAGIC).put(VERSION).put(new byte[3]);
+    buffer.putLong(System.currentTimeMillis()).putLong(commitNo);
+    buffer.put(commitHash.slice());
+    buffer.putInt(entries.size());
+    for (var e : entries) {
+      buffer.putLong(e.blockNo()).putInt(e.crums().size());
+    }
+    for (var e : entries)
+      for (var crum : e.crums())
+        crum.writeTo(buffer);
+    buffer.flip();
+
+    File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+    try (var ch = FileChannel.open(
+        temp.toPath(),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE)) {
+      ChannelUtils.writeRemaining(ch, buffer);
+      ch.force(false);
+    }
+    Files.move(
+        temp.toPath(), file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+
+  /**
+   * Loads (memory-maps) the given checkpoint file.
+   *
+   * @return {@code null}, if the file does not exist
+   * @throws IOException if the file is malformed, or on I/O error
+   */
+  public static Checkpoint load(File file) throws IOException {
+    if (!file.exists())
+      return null;
+    try (var ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final long size = ch.size();
+      if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+        throw new IOException("bad checkpoint size (" + size + "): " + file);
+      return new Checkpoint(ch.map(FileChannel.MapMode.READ_ONLY, 0, size), file);
+    }
+  }
+
+
+
+
+  private final ByteBuffer mapped;
+  private final long writtenUtc;
+  private final long commitNo;
+  private final List<Entry> entries;
+
+
+  private Checkpoint(ByteBuffer mapped, File file) throws IOException {
+    this.mapped = mapped;
+    if (mapped.getInt(0) != MAGIC || mapped.get(4) != VERSION)
+      throw new IOException("bad checkpoint header: " + file);
+    this.writtenUtc = mapped.getLong(8);
+    this.commitNo = mapped.getLong(16);
+    final int count = mapped.getInt(HEADER_BYTES - 4);
+
+    long crumsOffset = HEADER_BYTES + ((long) ENTRY_BYTES) * count;
+    if (count < 0 || crumsOffset > mapped.capacity())
+      throw new IOException("bad checkpoint entry count (" + count + "): " + file);
+
+    var list = new ArrayList<Entry>(count);
+    for (int index = 0; index < count; ++index) {
+      final int offset = HEADER_BYTES + index * ENTRY_BYTES;
+      final long blockNo = mapped.getLong(offset);
+      final int indexCount = mapped.getInt(offset + 8);
+      final long end = crumsOffset + ((long) Crum.DATA_SIZE) * indexCount;
+      if (indexCount < 0 || end > mapped.capacity())
+        throw new IOException(
+            "bad checkpoint entry [" + index + "] (block [" + blockNo +
+            "]): " + file);
+
+      final int base = (int) crumsOffset;
+      List<Crum> crums = Lists.functorList(
+          indexCount,
+          i -> new Crum(
+              mapped.slice(base + i * Crum.DATA_SIZE, Crum.DATA_SIZE)));
+
+      try {
+        list.add(new Entry(blockNo, crums));
+      } catch (IllegalArgumentException iax) {
+        throw new IOException(
+            "bad checkpoint entry [" + index + "]: " + iax.getMessage(), iax);
+      }
+      crumsOffset = end;
+    }
+    this.entries = Lists.asReadOnlyList(list.toArray(new Entry[count]));
+  }
+
+
+  /** Returns the UTC the checkpoint was written. */
+  public long writtenUtc() {
+    return writtenUtc;
+  }
+
+
+  /** Returns the chain's commit no. as of the checkpoint. */
+  public long commitNo() {
+    return commitNo;
+  }
+
+
+  /** Returns the chain's row hash at {@linkplain #commitNo()}. */
+  public ByteBuffer commitHash() {
+    return mapped.slice(24, Constants.HASH_WIDTH).asReadOnlyBuffer();
+  }
+
+
+  /** Returns the unbuilt cargo block entries, in the order written. */
+  public List<Entry> entries() {
+    return entries;
+  }
+
+
+  /**
+   * Determines whether the checkpoint is consistent with the given
+   * chain: the chain must be at least as long as the checkpoint's
+   * commit no., and have the same row hash there.
+   */
+  public boolean isValid(TimeChain chain) {
+    return
+        commitNo <= chain.size() &&
+        chain.rowHash(commitNo).equals(commitHash());
+  }
+
+}
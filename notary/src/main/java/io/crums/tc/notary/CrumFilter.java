@@ -0,0 +1,239 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary;
+
+
+import static io.crums.tc.Constants.HASH_WIDTH;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import io.crums.io.SerialFormatException;
+import io.crums.tc.CrumArray;
+
+/**
+ * Bloom filter over the crum hashes in a (committed) cargo block. It
+ * answers whether a hash is <em>definitely not</em> in the block, so
+ * that witness lookups for brand new hashes can skip searching the
+ * block's merkle tree on disk.
+ *
+ * <h2>Hashing</h2>
+ * <p>
+ * Bit indexes are derived from the crum hash itself (2 mixed words,
+ * combined by double hashing). Since the hashes are user-supplied, the
+ * words are first passed thru a mixing function: a poorly distributed
+ * set of hashes may raise the false positive rate, but never causes
+ * false negatives.
+ * </p>
+ * <h2>Serial Form</h2>
+ * <p>
+ * A 1-byte hash-function count, a 4-byte crum count, a 4-byte word
+ * count, followed by the filter's bits in 8-byte words. The word count
+ * is a power of 2.
+ * </p>
+ *
+ * @see CargoBlock#loadFilter()
+ */
+public final class CrumFilter {
+
+  /** Filter bits allotted per crum (before rounding up). */
+  public final static int BITS_PER_CRUM = 10;
+  /** No. of hash functions (optimal for {@linkplain #BITS_PER_CRUM}). */
+  public final static int HASH_FUNCS = 7;
+
+  private final static int HEADER_SIZE = 1 + 4 + 4;
+  private final static int MAX_HASH_FUNCS = 32;
+  private final static int MAX_WORDS = 1 << 22;
+
+
+  private final int hashFuncs;
+  private final long[] words;
+  private final int bitMask;
+  private int count;
+
+
+  /**
+   * Creates an empty filter sized for the given no. of crums.
+   *
+   * @param expectedCrums &ge; 0
+   */
+  public CrumFilter(int expectedCrums) {
+    if (expectedCrums < 0)
+      throw new IllegalArgumentException("expectedCrums: " + expectedCrums);
+    long bits = Math.max(64L, (long) expectedCrums * BITS_PER_CRUM);
+    int wordCount = (int) Math.min(MAX_WORDS, Long.highestOneBit(bits - 1) >>> 5);
+    this.hashFuncs = HASH_FUNCS;
+    this.words = new long[Math.max(1, wordCount)];
+    this.bitMask = words.length * 64 - 1;
+  }
+
+
+  private CrumFilter(int hashFuncs, long[] words, int count) {
+    this.hashFuncs = hashFuncs;
+    this.words = words;
+    this.bitMask = words.length * 64 - 1;
+    this.count = count;
+  }
+
+
+  /**
+   * Builds and returns a filter containing the hashes of the given crums.
+   */
+  public static CrumFilter of(CrumArray crums) {
+    var filter = new CrumFilter(crums.size());
+    for (int index = 0; index < crums.size(); ++index)
+      filter.add(
+          crums.hashWord(index, 0), crums.hashWord(index, 1),
+          crums.hashWord(index, 2), crums.hashWord(index, 3));
+    return filter;
+  }
+
+
+  /**
+   * Adds the given hash. Not thread-safe.
+   *
+   * @param hash  with 32 remaining bytes (not modified)
+   */
+  public void add(ByteBuffer hash) {
+    int pos = checkHash(hash);
+    add(
+        word(hash, pos), word(hash, pos + 8),
+        word(hash, pos + 16), word(hash, pos + 24));
+  }
+
+
+  private void add(long w0, long w1, long w2, long w3) {
+    long h1 = mix(w0 ^ w2);
+    final long h2 = mix(w1 ^ w3) | 1;
+    for (int k = hashFuncs; k-- > 0; h1 += h2) {
+      int bit = (int) h1 & bitMask;
+      words[bit >>> 6] |= 1L << bit;
+    }
+    ++count;
+  }
+
+
+  /**
+   * Returns {@code false} if the given hash was definitely not
+   * {@linkplain #add(ByteBuffer) added}; {@code true}, if it may
+   * have been.
+   *
+   * @param hash  with 32 remaining bytes (not modified)
+   */
+  public boolean mightContain(ByteBuffer hash) {
+    int pos = checkHash(hash);
+    long h1 = mix(word(hash, pos) ^ word(hash, pos + 16));
+    final long h2 = mix(word(hash, pos + 8) ^ word(hash, pos + 24)) | 1;
+    for (int k = hashFuncs; k-- > 0; h1 += h2) {
+      int bit = (int) h1 & bitMask;
+      if ((words[bit >>> 6] & (1L << bit)) == 0)
+        return false;
+    }
+    return true;
+  }
+
+
+  private static int checkHash(ByteBuffer hash) {
+    if (hash.remaining() != HASH_WIDTH)
+      throw new IllegalArgumentException(
+          "hash remaining bytes: " + hash.remaining());
+    return hash.position();
+  }
+
+
+  /** Reads the big-endian word at the given absolute offset. */
+  private static long word(ByteBuffer hash, int offset) {
+    long word = hash.getLong(offset);
+    return hash.order() == ByteOrder.BIG_ENDIAN ? word : Long.reverseBytes(word);
+  }
+
+
+  /** 64-bit finalizer (from SplitMix64). */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+
+  /** Returns the no. of hashes added. */
+  public int count() {
+    return count;
+  }
+
+
+  /** Returns the size of the filter in bits. */
+  public long bits() {
+    return bitMask + 1L;
+  }
+
+
+  /**
+   * Returns the expected false positive rate, given the no. of hashes
+   * {@linkplain #count() added}.
+   */
+  public double expectedFalsePositiveRate() {
+    double exp = -(double) hashFuncs * count / bits();
+    return Math.pow(1 - Math.exp(exp), hashFuncs);
+  }
+
+
+  /** Returns the size of the serial form in bytes. */
+  public int serialSize() {
+    return HEADER_SIZE + words.length * 8;
+  }
+
+
+  /**
+   * Writes the serial form of this instance to the given buffer.
+   *
+   * @return {@code out}
+   */
+  public ByteBuffer writeTo(ByteBuffer out) throws BufferOverflowException {
+    if (out.remaining() < serialSize())
+      throw new BufferOverflowException();
+    out.put((byte) hashFuncs).putInt(count).putInt(words.length);
+    for (long word : words)
+      out.putLong(word);
+    return out;
+  }
+
+
+  /** Returns the serial form of this instance as a new buffer. */
+  public ByteBuffer serialize() {
+    return writeTo(ByteBuffer.allocate(serialSize())).flip();
+  }
+
+
+  /**
+   * Loads and returns an instance from its serial form.
+   *
+   * @param in  advanced by the instance's serial size
+   */
+  public static CrumFilter load(ByteBuffer in) throws SerialFormatException {
+    if (in.remaining() < HEADER_SIZE)
+      throw new SerialFormatException(
+          "too few bytes for filter header: " + in.remaining());
+    int hashFuncs = in.get() & 0xff;
+    int count = in.getInt();
+    int wordCount = in.getInt();
+    if (hashFuncs < 1 || hashFuncs > MAX_HASH_FUNCS)
+      throw new SerialFormatException("hash functions: " + hashFuncs);
+    if (count < 0)
+      throw new SerialFormatException("count: " + count);
+    if (wordCount < 1 || wordCount > MAX_WORDS ||
+        Integer.bitCount(wordCount) != 1)
+      throw new SerialFormatException("word count: " + wordCount);
+    if (in.remaining() < wordCount * 8)
+      throw new SerialFormatException(
+          "too few bytes for " + wordCount + " filter words: " +
+          in.remaining());
+    long[] words = new long[wordCount];
+    for (int index = 0; index < wordCount; ++index)
+      words[index] = in.getLong();
+    return new CrumFilter(hashFuncs, words, count);
+  }
+
+}
@@ -46,14 +46,12 @@ public abstract class CrumMerkleTree extends Tree {
   
   
   public CargoProof proof(Crum crum) throws CrumNotFoundException {
-    List<Crum> crums = crums();
-    var hashes = Lists.map(crums, c -> c.hash());
-    int index = Collections.binarySearch(hashes, crum.hash());
+    int index = indexOf(crum.hash());
     if (index < 0)
       throw new CrumNotFoundException(
           "failed to find " + crum + " in merkle tree");
     
-    Crum recordCrum = crums.get(index);
+    Crum recordCrum = crums().get(index);
     if (recordCrum.utc() != crum.utc())
       checkUnmatchedUtcs(recordCrum, crum);
     
@@ -67,18 +65,29 @@ public abstract class CrumMerkleTree extends Tree {
    * {@code null}, otherwise.
    */
   public CargoProof findProof(ByteBuffer hash) {
-    List<Crum> crums = crums();
-    var hashes = Lists.map(crums, c -> c.hash());
-    int index = Collections.binarySearch(hashes, hash);
+    int index = indexOf(hash);
     if (index < 0)
       return null;
     
-    Crum recordCrum = crums.get(index);
+    Crum recordCrum = crums().get(index);
     var vanillaProof = proof(index);
     return new CargoProof(vanillaProof, recordCrum);
   }
   
   
+  /**
+   * Returns the index of the crum with the given hash, if found;
+   * a negative no., otherwise. The base implementation binary searches
+   * the {@linkplain #crums()} list.
+   * 
+   * @param hash  32 remaining bytes
+   */
+  protected int indexOf(ByteBuffer hash) {
+    var hashes = Lists.map(crums(), c -> c.hash());
+    return Collections.binarySearch(hashes, hash);
+  }
+  
+  
   private void checkUnmatchedUtcs(Crum recordCrum, Crum crum) {
     if (recordCrum.utc() > crum.utc())
       throw new CrumNotFoundException(
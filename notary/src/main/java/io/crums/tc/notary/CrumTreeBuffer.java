@@ -7,10 +7,12 @@ package io.crums.tc.notary;
 import static io.crums.tc.Constants.HASH_WIDTH;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.List;
 import java.util.Objects;
 
 import io.crums.tc.Crum;
+import io.crums.tc.HashUtc;
 import io.crums.util.Lists;
 
 /**
@@ -92,6 +94,35 @@ public class CrumTreeBuffer extends CrumMerkleTree {
     };
   }
 
+  /**
+   * Binary searches the crums in place, without creating crum
+   * instances.
+   */
+  @Override
+  protected int indexOf(ByteBuffer hash) {
+    if (hash.remaining() != HASH_WIDTH)
+      throw new IllegalArgumentException(
+          "hash remaining bytes: " + hash.remaining());
+    if (hash.order() != ByteOrder.BIG_ENDIAN)
+      hash = hash.duplicate();
+    final int crumsZeroOffset = NODE_DATA_HEAD + idx().totalCount() * HASH_WIDTH;
+    final int pos = hash.position();
+    int lo = 0;
+    int hi = idx().count() - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int comp = HashUtc.compareHashes(
+          data, crumsZeroOffset + mid * Crum.DATA_SIZE, hash, pos);
+      if (comp < 0)
+        lo = mid + 1;
+      else if (comp > 0)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return -(lo + 1);
+  }
+
   // I *hate this copying, but note it mostly happens
   // on constructing (small) merkle proofs
   @Override
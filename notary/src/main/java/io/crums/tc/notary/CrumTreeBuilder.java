@@ -8,26 +8,54 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
-import java.util.TreeMap;
 import java.util.stream.Stream;
 
 import io.crums.io.channels.ChannelUtils;
 import io.crums.tc.ChainParams;
 import io.crums.tc.Constants;
 import io.crums.tc.Crum;
+import io.crums.tc.CrumArray;
 import io.crums.tc.notary.except.NotaryException;
 import io.crums.util.TaskStack;
 import io.crums.util.mrkl.FixedLeafBuilder;
 import io.crums.util.mrkl.FixedLeafTree;
 
 /**
+ * Collects a block's crums, in hash order, and builds their merkle tree.
+ * Each crum's leaf hash is computed as it's added, so an instance may be
+ * fed incrementally (as crums land) and then built at commit time without
+ * rehashing the leaves. The hash is computed before taking the instance's
+ * lock: concurrent adds only contend on the (short) append.
  * 
+ * <h2>Storage</h2>
+ * <p>
+ * Crums are appended to a {@linkplain CrumArray} (not one object per crum),
+ * and are only sorted (and de-duplicated) when they're next read. Crums
+ * with the same hash are resolved to the one with the earliest UTC.
+ * </p>
+ * 
+ * @see CargoBlock#buildCargo(CrumTreeBuilder)
  */
 public class CrumTreeBuilder {
 
+  /** No. of crums written per write-buffer. */
+  private final static int WRITE_BATCH = 4096;
+  
+  /** Per-thread digest for leaf hashes (computed outside the lock). */
+  private final static ThreadLocal<MessageDigest> LEAF_DIGEST =
+      ThreadLocal.withInitial(Constants.DIGEST::newDigest);
   
-  private final TreeMap<ByteBuffer, Crum> crums = new TreeMap<>();
+  /** Crums; the first {@linkplain #sorted} are sorted, and distinct. */
+  private CrumArray crums = new CrumArray();
+  /** Leaf hashes, parallel to {@linkplain #crums}. */
+  private byte[][] leaves = new byte[16][];
+  /** No. of leading crums that are sorted (and distinct). */
+  private int sorted;
   private final ChainParams chainParams;
   private final long blockNo;
   private final NotaryLog log;
@@ -42,7 +70,7 @@ public class CrumTreeBuilder {
   }
   
   
-  public synchronized void add(Crum crum) throws NotaryException {
+  public void add(Crum crum) throws NotaryException {
     // sanity check the crum belongs to the block
     {
       long utc = crum.utc();
@@ -54,41 +82,115 @@ public class CrumTreeBuilder {
       }
     }
     
-    ByteBuffer hash = crum.hash();
-    Crum prev = crums.put(hash, crum);
-    if (prev == null)
+    append(crum, crum.witnessHash(LEAF_DIGEST.get()));
+  }
+  
+  
+  private synchronized void append(Crum crum, byte[] leaf) {
+    final int index = crums.size();
+    if (index == leaves.length)
+      leaves = Arrays.copyOf(leaves, index + (index >> 1));
+    leaves[index] = leaf;
+    crums.add(crum);
+  }
+  
+  
+  /**
+   * Sorts and de-duplicates the crums added since the last invocation.
+   * Conflicting crums (same hash) resolve to the earliest UTC.
+   */
+  private void consolidate() {
+    final int size = crums.size();
+    if (sorted == size)
       return;
     
-    if (prev.utc() < crum.utc()) {
-      crums.put(hash, prev);
-      log.warning(
-          "crum conflict resolved by rollback: " + crum.hashHex() +
-          " " + prev.utc() + " <-- " + crum.utc());
-    } else if (prev.utc() > crum.utc()) {
-      log.warning(
-          "crum conflict resolved by override: " + crum.hashHex() +
-          " " + prev.utc() + " --> " + crum.utc());
-    } else {
-      log.warning("duplicate crum ignored: " + crum);
+    int[] order = crums.sortOrder();
+    var distinct = new CrumArray(size);
+    var distinctLeaves = new byte[Math.max(16, size)][];
+    int count = 0;
+    for (int index : order) {
+      if (count != 0 && distinct.hashEquals(count - 1, crums, index)) {
+        long kept = distinct.utc(count - 1);
+        long utc = crums.utc(index);
+        if (kept == utc)
+          log.warning("duplicate crum ignored: " + crums.get(index));
+        else
+          log.warning(
+              "crum conflict resolved to earlier UTC: " +
+              crums.get(index).hashHex() + " " + kept + " <-- " + utc);
+        continue;
+      }
+      distinct.add(crums, index);
+      distinctLeaves[count++] = leaves[index];
     }
+    this.crums = distinct;
+    this.leaves = distinctLeaves;
+    this.sorted = count;
+  }
+  
+  
+  /** Returns the block no. the crums belong to. */
+  public final long blockNo() {
+    return blockNo;
+  }
+  
+  
+  /**
+   * Determines whether a crum with the given hash has been added. Crums
+   * added since the last read are first sorted, so interleaving this
+   * method with {@linkplain #add(Crum) add}s is expensive: collect the
+   * crums to add, first.
+   */
+  public synchronized boolean contains(byte[] hash) {
+    consolidate();
+    return crums.binarySearch(0, sorted, ByteBuffer.wrap(hash)) >= 0;
   }
   
   
+  /**
+   * Returns the number of crums added, counting duplicates not yet
+   * consolidated. Unlike {@linkplain #count()}, this doesn't sort.
+   */
+  public synchronized int size() {
+    return crums.size();
+  }
+  
 
-  /** Returns the number of crums added. */
+  /**
+   * Returns the number of (distinct) crums added. Crums added since the
+   * last read are first sorted.
+   */
   public synchronized int count() {
+    consolidate();
     return crums.size();
   }
   
+  /** Returns a snapshot of the crums added, in hash order. */
+  public synchronized List<Crum> crums() {
+    consolidate();
+    return new ArrayList<>(crums.asList());
+  }
+  
   /** Returns the first crum, if any; {@code null} o.w. */
   public synchronized Crum first() {
-    var entry = crums.firstEntry();
-    return entry == null ? null : entry.getValue();
+    consolidate();
+    return crums.isEmpty() ? null : crums.get(0);
   }
   
   
   
-  public synchronized void addAll(Stream<Crum> crumStream) {
+  /**
+   * Returns a new filter over the (distinct) crums added.
+   * 
+   * @see CargoBlock#loadFilter()
+   */
+  public synchronized CrumFilter toFilter() {
+    consolidate();
+    return CrumFilter.of(crums);
+  }
+  
+  
+  public void addAll(Stream<Crum> crumStream) {
     crumStream.forEach(crum -> add(crum));
   }
   
@@ -106,6 +208,7 @@ public class CrumTreeBuilder {
           "target file is a directory: " + target);
     
     // note the crum count
+    consolidate();
     final int cc = crums.size();
     if (cc < 2)
       throw new IllegalStateException(
@@ -113,13 +216,8 @@ public class CrumTreeBuilder {
     
     var builder = new FixedLeafBuilder(Constants.HASH_ALGO, false);
     
-    byte[] serialized = new byte[Crum.DATA_SIZE];
-    
-    for (var crum : crums.values()) {
-      crum.serialForm().get(serialized);
-      byte[] crumHash = builder.hash(serialized);
-      builder.add(crumHash);
-    }
+    for (int index = 0; index < cc; ++index)
+      builder.add(leaves[index]);
     
     var baseTree = (FixedLeafTree) builder.build();
     assert baseTree.idx().count() == cc;
@@ -134,8 +232,15 @@ public class CrumTreeBuilder {
       ChannelUtils.writeRemaining(file, ccBuf);
       ChannelUtils.writeRemaining(file, baseTree.dataBlock());
       
-      for (var crum : crums.values())
-        ChannelUtils.writeRemaining(file, crum.serialForm());
+      var buffer = ByteBuffer.allocate(Math.min(cc, WRITE_BATCH) * Crum.DATA_SIZE);
+      for (int index = 0; index < cc; ++index) {
+        if (!buffer.hasRemaining()) {
+          ChannelUtils.writeRemaining(file, buffer.flip());
+          buffer.clear();
+        }
+        crums.writeTo(index, buffer);
+      }
+      ChannelUtils.writeRemaining(file, buffer.flip());
       
       byte[] rootHash = baseTree.hash();
       return ByteBuffer.wrap(rootHash).asReadOnlyBuffer();
@@ -13,15 +13,19 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 import io.crums.io.FileUtils;
 import io.crums.tc.BlockProof;
+import io.crums.tc.BlockTrails;
 import io.crums.tc.ChainParams;
 import io.crums.tc.Crum;
 import io.crums.tc.NotaryPolicy;
 import io.crums.tc.NotaryService;
 import io.crums.tc.Receipt;
+import io.crums.tc.ReceiptBundle;
 import io.crums.tc.TimeBinner;
 import io.crums.tc.TimeChain;
 import io.crums.util.TaskStack;
@@ -158,6 +162,8 @@ public class Notary implements NotaryService, Channel {
       var settings = NotarySettings.load(settingsFile, chain.params());
       
       var notary = new Notary(chain, settings, log, null);
+      // warm start, if there's a valid checkpoint
+      notary.cargoChain.restoreCheckpoint();
       closeOnFail.clear();
       
       return notary;
@@ -281,6 +287,26 @@ public class Notary implements NotaryService, Channel {
     return settings();
   }
 
+  
+  /**
+   * Returns the ingest backpressure signal. Front ends should consult it
+   * before witnessing new hashes. (It is only driven by a background
+   * monitor, such as {@code NotaryD}'s.)
+   */
+  public Backpressure backpressure() {
+    return cargoChain.backpressure();
+  }
+
+
+  /**
+   * Returns a snapshot of the witness-dedup filter statistics.
+   * 
+   * @see CargoChain#filterMetrics()
+   */
+  public CargoChain.FilterMetrics filterMetrics() {
+    return cargoChain.filterMetrics();
+  }
+
 
   /**
    * Witnesses the given {@code hash} and returns the
@@ -318,6 +344,28 @@ public class Notary implements NotaryService, Channel {
 
 
 
+  /**
+   * Returns the crumtrails for the given crums (all from the same block),
+   * sharing a single block proof. Unlike {@linkplain #update(Crum, long)},
+   * crums not found are simply omitted (they're not witnessed anew).
+   * 
+   * @see CargoChain#findBlockTrails(List, long)
+   */
+  @Override
+  public Optional<BlockTrails> updateBlock(List<Crum> crums, long fromBlockNo) {
+    return cargoChain.findBlockTrails(crums, fromBlockNo);
+  }
+
+
+
+  @Override
+  public Optional<ReceiptBundle> updateBundle(
+      List<Crum> crums, long fromBlockNo) {
+    return cargoChain.findReceiptBundle(crums, fromBlockNo);
+  }
+
+
+
   @Override
   public BlockProof stateProof(boolean hi, Long... blockNos) {
     return cargoChain.timechain().stateProof(hi, blockNos);
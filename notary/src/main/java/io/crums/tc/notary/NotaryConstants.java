@@ -19,14 +19,20 @@ public class NotaryConstants {
   public final static String MRKL = "MRKL";
   /** Crum witness hash filename. */
   public final static String WHASH = "WHASH";
+  /** Crum hash (Bloom) filter filename. Written beside {@linkplain #MRKL}. */
+  public final static String FILTER = "FILTER";
   
 
   public final static String TIME_CHAIN_EXT = ".ergo";
   public final static String CHAIN = "CHAIN" + TIME_CHAIN_EXT;
+  /** Commit leader lease filename (in the same directory as the chain). */
+  public final static String LEADER_LEASE = "leader.lease";
   /** Cargo directory  */
   public final static String CARGO_DIR = "CARGO";
   /** Cargo directory  */
   public final static String GRAVEYARD_DIR = "graveyard";
+  /** Checkpoint filename (in the cargo directory). */
+  public final static String CHECKPOINT = "checkpoint";
   
   
 //  public final static String CARGO_CHAIN_EXT = ".ccc";
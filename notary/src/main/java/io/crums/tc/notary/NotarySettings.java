@@ -22,6 +22,11 @@ import io.crums.util.TidyProperties;
 public class NotarySettings extends NotaryPolicy {
   
   public final static int DEFAULT_MAX_CROSS_MACHINE_TIME_SKEW = 1024;
+  
+  /** Default no. of cargo shards per block (unsharded). */
+  public final static int DEFAULT_CARGO_SHARDS = 1;
+  /** Maximum no. of cargo shards per block. */
+  public final static int MAX_CARGO_SHARDS = 256;
 
   /**
    * Returns the maximum value {@link #maxConcurrentLag()} can
@@ -37,6 +42,7 @@ public class NotarySettings extends NotaryPolicy {
 
   private final int maxConcurrentLag;
   private final int maxCrossMachineTimeSkew;
+  private final int cargoShards;
   
   
 
@@ -46,6 +52,7 @@ public class NotarySettings extends NotaryPolicy {
     this.maxConcurrentLag = maxConcurrentLag(params);
     this.maxCrossMachineTimeSkew =
         DEFAULT_MAX_CROSS_MACHINE_TIME_SKEW;
+    this.cargoShards = DEFAULT_CARGO_SHARDS;
   }
   
   
@@ -57,6 +64,7 @@ public class NotarySettings extends NotaryPolicy {
     this.maxConcurrentLag = maxConcurrentLag(params);
     this.maxCrossMachineTimeSkew =
         DEFAULT_MAX_CROSS_MACHINE_TIME_SKEW;
+    this.cargoShards = DEFAULT_CARGO_SHARDS;
   }
   
   /** Constructs an instance with reasonable defaults. */
@@ -65,10 +73,11 @@ public class NotarySettings extends NotaryPolicy {
     this.maxConcurrentLag = maxConcurrentLag(policy.chainParams());
     this.maxCrossMachineTimeSkew =
         DEFAULT_MAX_CROSS_MACHINE_TIME_SKEW;
+    this.cargoShards = DEFAULT_CARGO_SHARDS;
   }
   
   /**
-   * Full constructor.
+   * Creates an unsharded instance.
    * 
    * @param policy                  base settings (public)
    * @param maxConcurrentLag        see {@link #maxConcurrentLag()}
@@ -78,10 +87,27 @@ public class NotarySettings extends NotaryPolicy {
       NotaryPolicy policy,
       int maxConcurrentLag,
       int maxCrossMachineTimeSkew) {
+    this(policy, maxConcurrentLag, maxCrossMachineTimeSkew, DEFAULT_CARGO_SHARDS);
+  }
+  
+  /**
+   * Full constructor.
+   * 
+   * @param policy                  base settings (public)
+   * @param maxConcurrentLag        see {@link #maxConcurrentLag()}
+   * @param maxCrossMachineTimeSkew see {@link #maxCrossMachineTimeSkew()}
+   * @param cargoShards             see {@link #cargoShards()}
+   */
+  public NotarySettings(
+      NotaryPolicy policy,
+      int maxConcurrentLag,
+      int maxCrossMachineTimeSkew,
+      int cargoShards) {
     
     super(policy);
     this.maxConcurrentLag = maxConcurrentLag;
     this.maxCrossMachineTimeSkew = maxCrossMachineTimeSkew;
+    this.cargoShards = cargoShards;
     
     if (maxConcurrentLag > maxConcurrentLag(chainParams()))
       throw new IllegalArgumentException(
@@ -93,6 +119,12 @@ public class NotarySettings extends NotaryPolicy {
     if (maxCrossMachineTimeSkew <= 0)
       throw new IllegalArgumentException(
           "negative maxCrossMachineTimeSkew: " + maxCrossMachineTimeSkew);
+    
+    if (cargoShards < 1 || cargoShards > MAX_CARGO_SHARDS ||
+        Integer.bitCount(cargoShards) != 1)
+      throw new IllegalArgumentException(
+          "cargoShards (" + cargoShards +
+          ") must be a power of 2, no greater than " + MAX_CARGO_SHARDS);
           
   }
   
@@ -101,6 +133,7 @@ public class NotarySettings extends NotaryPolicy {
     super(copy);
     this.maxConcurrentLag = copy.maxConcurrentLag;
     this.maxCrossMachineTimeSkew = copy.maxCrossMachineTimeSkew;
+    this.cargoShards = copy.cargoShards;
   }
   
   
@@ -135,6 +168,21 @@ public class NotarySettings extends NotaryPolicy {
     return maxCrossMachineTimeSkew;
   }
   
+  /**
+   * No. of shard directories each new cargo block's crums are spread
+   * across, by hash prefix. Sharding reduces directory contention under
+   * concurrent ingest. A power of 2: {@code 1} means unsharded.
+   * <p>
+   * Changing this setting (across restarts) is safe: existing cargo blocks
+   * keep the layout they were created with.
+   * </p>
+   * 
+   * @see CargoBlock
+   */
+  public final int cargoShards() {
+    return cargoShards;
+  }
+  
   
   
   
@@ -145,7 +193,8 @@ public class NotarySettings extends NotaryPolicy {
     return this == other ||
         equalPolicy(other) &&
         maxConcurrentLag == other.maxConcurrentLag &&
-        maxCrossMachineTimeSkew == other.maxCrossMachineTimeSkew;
+        maxCrossMachineTimeSkew == other.maxCrossMachineTimeSkew &&
+        cargoShards == other.cargoShards;
   }
   
   
@@ -173,6 +222,9 @@ public class NotarySettings extends NotaryPolicy {
         ROOT + "maxConcurrentLag";
     public final static String MAX_CROSS_MACHINE_TIME_SKEW =
         ROOT + "maxCrossMachineTimeSkew";
+    /** Optional (defaults to 1). */
+    public final static String CARGO_SHARDS =
+        ROOT + "cargoShards";
     
     
     public final static List<String> inOrder() {
@@ -181,7 +233,8 @@ public class NotarySettings extends NotaryPolicy {
           BLOCKS_RETAINED,
           BLOCKS_SEARCHED,
           MAX_CONCURRENT_LAG,
-          MAX_CROSS_MACHINE_TIME_SKEW);
+          MAX_CROSS_MACHINE_TIME_SKEW,
+          CARGO_SHARDS);
     }
     private PropNames() {  }
   }
@@ -212,6 +265,9 @@ public class NotarySettings extends NotaryPolicy {
     props.put(
         PropNames.MAX_CROSS_MACHINE_TIME_SKEW,
         Integer.toString(maxCrossMachineTimeSkew()));
+    props.put(
+        PropNames.CARGO_SHARDS,
+        Integer.toString(cargoShards()));
     
     return props;
   }
@@ -263,10 +319,15 @@ public class NotarySettings extends NotaryPolicy {
     int maxConcurrentLag = getIntProperty(props, PropNames.MAX_CONCURRENT_LAG);
     int maxCrossMachineTimeSkew =
         getIntProperty(props, PropNames.MAX_CROSS_MACHINE_TIME_SKEW);
+    // (optional, for backward compatibility)
+    int cargoShards =
+        props.containsKey(PropNames.CARGO_SHARDS) ?
+            getIntProperty(props, PropNames.CARGO_SHARDS) :
+            DEFAULT_CARGO_SHARDS;
     
     var policy = new NotaryPolicy(chainParams, blocksRetained, blockCommitLag, blocksSearched);
     return new NotarySettings(
-        policy, maxConcurrentLag, maxCrossMachineTimeSkew);
+        policy, maxConcurrentLag, maxCrossMachineTimeSkew, cargoShards);
   }
   
   
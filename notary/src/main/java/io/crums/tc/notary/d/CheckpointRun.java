@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary.d;
+
+
+import io.crums.tc.notary.CargoChain;
+
+/**
+ * A {@linkplain CargoChain#writeCheckpoint()} run.
+ * An instance can be run multiple times.
+ * 
+ * @see io.crums.tc.notary.Checkpoint
+ */
+public class CheckpointRun extends Run {
+  
+  private volatile boolean written;
+  
+
+  public CheckpointRun(CargoChain cargoChain) {
+    super(cargoChain);
+  }
+  
+
+  @Override
+  protected void runImpl() {
+    written = cargoChain.writeCheckpoint();
+  }
+  
+
+  /**
+   * @return {@code true} if the checkpoint was written in the last run
+   */
+  @Override
+  public boolean advanced() {
+    return written;
+  }
+  
+  
+  /**
+   * Once every 4 blocks. (The checkpoint is also written on close.)
+   * 
+   * @return 0.25
+   */
+  @Override
+  public float blockFrequency() {
+    return 0.25f;
+  }
+
+}
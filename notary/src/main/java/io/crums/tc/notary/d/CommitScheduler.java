@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary.d;
+
+
+import io.crums.tc.notary.CargoChain;
+
+/**
+ * Commit daemon driven by deadlines, rather than a fixed period. After
+ * each run, the scheduler parks until the next uncommitted cargo block's
+ * {@linkplain CargoChain#commitDeadline(long) commit deadline}, or until
+ * {@linkplain #blockCreated(long) woken} by the creation of a new cargo
+ * block with an earlier deadline.
+ *
+ * <h2>Idle Rescan</h2>
+ * <p>
+ * When there are no uncommitted cargo blocks, the scheduler parks for
+ * {@linkplain #IDLE_RESCAN_BLOCKS} block durations (unless woken). This
+ * picks up blocks created by other processes sharing the cargo chain
+ * directory, which this process is not notified of.
+ * </p>
+ *
+ * @see CargoChain#setNewBlockListener(java.util.function.LongConsumer)
+ */
+public class CommitScheduler extends Daemon<CommitRun> {
+
+  /**
+   * No. of block durations the scheduler parks for when there are no
+   * uncommitted cargo blocks.
+   */
+  public final static int IDLE_RESCAN_BLOCKS = 8;
+
+
+  public CommitScheduler(CommitRun job) {
+    super(job);
+  }
+
+
+
+  /**
+   * Notifies the scheduler that a new cargo block was created. If the
+   * block's commit deadline is earlier than the one the scheduler is
+   * parked until, then it is woken (or its next scheduled run brought
+   * forward).
+   *
+   * @param blockNo   the new cargo block's no.
+   * @see #wakeAt(long)
+   */
+  public void blockCreated(long blockNo) {
+    wakeAt(job.cargoChain.commitDeadline(blockNo));
+  }
+
+
+  /**
+   * Returns the delay until the next commit deadline. If the last run
+   * failed to commit a block that was already due (e.g. on a race with
+   * another process, or because it was skipped as a non-leader), then the
+   * next attempt is made after {@linkplain #sleepMillis()}, in order not
+   * to spin.
+   */
+  @Override
+  protected long nextDelayMillis() {
+    // (the directory listing is done outside the lock)
+    final long now = System.currentTimeMillis();
+    long deadline =
+        job.cargoChain.nextCommitDeadline().orElse(now + idleMillis());
+
+    if (deadline <= now && (job.skipped() || !job.advanced()))
+      deadline = now + sleepMillis();
+
+    return Math.max(0, deadline - now);
+  }
+
+
+  /** Returns the milliseconds parked for when idle. */
+  public long idleMillis() {
+    return
+        IDLE_RESCAN_BLOCKS *
+        job.cargoChain.settings().chainParams().blockDuration();
+  }
+
+
+  @Override
+  public String toString() {
+    return "CommitScheduler<" + job.name() + ">";
+  }
+
+}
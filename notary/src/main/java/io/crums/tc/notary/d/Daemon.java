@@ -5,12 +5,25 @@ package io.crums.tc.notary.d;
 
 
 import java.nio.channels.Channel;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import io.crums.tc.ChainParams;
 
 /**
  * Managed {@code Runnable} task.
  * 
+ * <h2>Execution Modes</h2>
+ * <p>
+ * An instance either runs on a dedicated thread, looping and parking
+ * between runs of its job ({@linkplain #run()}), or is
+ * {@linkplain #schedule(ScheduledExecutorService) scheduled} on a shared
+ * scheduler, occupying a thread only while its job runs. Either way, the
+ * delay between runs is determined by {@linkplain #nextDelayMillis()}, and
+ * a pending run can be brought forward with {@linkplain #wakeAt(long)}.
+ * </p>
+ * 
  * @see #run()
  * @see #stop()
  * @see #isOpen()
@@ -39,10 +52,18 @@ public class Daemon<T extends Run> implements Runnable, Channel {
   protected final T job;
   
   // private int readyCount;
-  private long runCount;
-  private long successCount;
+  private volatile long runCount;
+  private volatile long successCount;
   private volatile boolean stop;
   
+  /** Earliest wake-up UTC requested since the last run. Guarded by lock. */
+  private long wakeUtc = Long.MAX_VALUE;
+  
+  // scheduled mode (guarded by lock)
+  private ScheduledExecutorService scheduler;
+  private ScheduledFuture<?> pending;
+  private long pendingUtc;
+  
   
   // private void clear() {
   //   runCount = successCount = 0;
@@ -72,9 +93,10 @@ public class Daemon<T extends Run> implements Runnable, Channel {
   /**
    * Runs the loop while {@linkplain #isOpen() open}. In each
    * round of the loop, the underlying {@linkplain #getJob() job}
-   * is first run, and then the thread waits {@linkplain #sleepMillis()},
-   * before the next run.
+   * is first run, and then the thread {@linkplain #await() waits}
+   * (by default, {@linkplain #sleepMillis()}) before the next run.
    * 
+   * @see #schedule(ScheduledExecutorService)
    */
   @Override
   public void run() {
@@ -88,30 +110,12 @@ public class Daemon<T extends Run> implements Runnable, Channel {
     while (isOpen()) {
 
       // run the job
-      try {
-        job.run();
-        ++runCount;
-        if (job.succeeded())
-          ++successCount;
-        else if (job.hasException()) {
-          job.log().error(job.name() + " failed: " + job.getException() + " exiting");
-          break;
-        }
-
-      } catch (Exception x) {
-        job.log().error(
-            job.name() +
-            " encountered an error. Stopping daemon. Detail: " + x);
+      if (!runJob())
         break;
-      }
 
       // sleep
       try {
-        synchronized (lock) {
-          if (stop)
-            break;
-          lock.wait(sleepMillis());
-        }
+        await();
       } catch (InterruptedException ix) {
         Thread.interrupted();
         job.log().info(job.name() + " exiting via interrupt");
@@ -122,6 +126,132 @@ public class Daemon<T extends Run> implements Runnable, Channel {
   }
   
   
+  /**
+   * Runs the job once and returns {@code true} if it did not fail.
+   */
+  private boolean runJob() {
+    synchronized (lock) {
+      wakeUtc = Long.MAX_VALUE;   // (this run serves prior wake-ups)
+    }
+    try {
+      job.run();
+      ++runCount;
+      if (job.succeeded())
+        ++successCount;
+      else if (job.hasException()) {
+        job.log().error(job.name() + " failed: " + job.getException() + " exiting");
+        return false;
+      }
+      return true;
+
+    } catch (Exception x) {
+      job.log().error(
+          job.name() +
+          " encountered an error. Stopping daemon. Detail: " + x);
+      return false;
+    }
+  }
+  
+  
+  /**
+   * Schedules the job to run on the given (shared) scheduler, instead of
+   * on a dedicated thread: the job runs immediately, and thereafter each
+   * run is scheduled {@linkplain #nextDelayMillis()} after the last,
+   * until {@linkplain #stop() stop}ped (or the job fails). Instances may be
+   * scheduled only once, and must not also be {@linkplain #run() run}.
+   * 
+   * @param scheduler   not owned by this instance
+   */
+  public void schedule(ScheduledExecutorService scheduler) {
+    synchronized (lock) {
+      if (!isOpen())
+        throw new IllegalStateException(this + " is closed");
+      if (this.scheduler != null)
+        throw new IllegalStateException(this + " already scheduled");
+      this.scheduler = scheduler;
+      job.log().info("Scheduling daemon: " + job.name());
+      scheduleAt(System.currentTimeMillis());
+    }
+  }
+  
+  
+  /** Scheduled mode run. */
+  private void tick() {
+    if (!isOpen())
+      return;
+    if (!runJob()) {
+      stop();
+      return;
+    }
+    long next = System.currentTimeMillis() + nextDelayMillis();
+    synchronized (lock) {
+      if (isOpen())
+        scheduleAt(Math.min(next, wakeUtc));
+    }
+  }
+  
+  
+  /** Invoked with the lock held, in scheduled mode. */
+  private void scheduleAt(long utc) {
+    long delay = Math.max(0, utc - System.currentTimeMillis());
+    pendingUtc = utc;
+    pending = scheduler.schedule(this::tick, delay, TimeUnit.MILLISECONDS);
+  }
+  
+  
+  /**
+   * Requests the next run occur no later than the given UTC. If the
+   * job is currently running, then the request applies to the run
+   * that follows.
+   * 
+   * @param utc   wake-up time (if in the past, then as soon as possible)
+   */
+  public void wakeAt(long utc) {
+    synchronized (lock) {
+      if (utc >= wakeUtc)
+        return;
+      wakeUtc = utc;
+      if (scheduler == null)
+        lock.notifyAll();
+      else if (pending != null && utc < pendingUtc && pending.cancel(false))
+        scheduleAt(utc);
+    }
+  }
+  
+  
+  /**
+   * Returns the delay in milliseconds before the next run, computed
+   * just after the last run.
+   * 
+   * @return defaults to {@linkplain #sleepMillis()}
+   */
+  protected long nextDelayMillis() {
+    return sleepMillis();
+  }
+  
+  
+  /**
+   * Waits before the next run of the job (in dedicated-thread mode):
+   * waits {@linkplain #nextDelayMillis()} on the {@linkplain #lock}, unless
+   * stopped or {@linkplain #wakeAt(long) woken} earlier. Invoked
+   * <em>without</em> the lock held.
+   * 
+   * @see #stop()
+   */
+  protected void await() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + nextDelayMillis();
+    synchronized (lock) {
+      while (!stop) {
+        long millis =
+            Math.min(deadline, wakeUtc) - System.currentTimeMillis();
+        if (millis <= 0)
+          break;
+        lock.wait(millis);
+      }
+    }
+  }
+  
+  
   /**
    * The {@code Run} this instance was constructed with.
    * 
@@ -144,15 +274,27 @@ public class Daemon<T extends Run> implements Runnable, Channel {
   
   
   
-  /** Signals the daemon thread to stop. */
+  /** Signals the daemon thread to stop (or cancels its next scheduled run). */
   public void stop() {
     stop = true;
     synchronized (lock) {
+      if (pending != null)
+        pending.cancel(false);
       lock.notifyAll();
     }
   }
   
   
+  /**
+   * Returns the job's run statistics.
+   * 
+   * @see Run#stats()
+   */
+  public Run.Stats stats() {
+    return job.stats();
+  }
+  
+  
   /** Returns the number of times the job has run. */
   public long runCount() {
     return runCount;
@@ -3,6 +3,8 @@
  */
 package io.crums.tc.notary.d;
 
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
 import io.crums.tc.Constants;
@@ -10,24 +12,77 @@ import io.crums.tc.notary.CargoChain;
 import io.crums.tc.notary.FreshCrum;
 
 /**
+ * Injects a random (noise) crum into cargo blocks with little or no real
+ * traffic, so that a block's commitment never reveals a lone user hash.
+ * At most one noise crum is added per block, and none, if the block already
+ * has at least {@linkplain #trafficThreshold()} real crums. The injection
+ * is meant to happen just before the block closes (see
+ * {@linkplain EntropyScheduler}), when the block's traffic is known.
  * 
+ * <h2>Randomness</h2>
+ * <p>
+ * Noise is drawn from a non-blocking DRBG, seeded once on construction and
+ * never reseeded on demand, so that the daemon does not stall on a depleted
+ * system entropy pool.
+ * </p>
+ * 
+ * @see CargoChain#localCrumCount(long)
  */
 public class EntropyRun extends Run {
 
+  /**
+   * Default no. of real crums in a block at and beyond which no noise
+   * is injected.
+   */
+  public final static int DEFAULT_TRAFFIC_THRESHOLD = 2;
+  
   private final SecureRandom random;
+  private final int trafficThreshold;
   
+  /** Last block noise was injected into (0, if none). */
+  private volatile long noiseBlockNo;
   
   private volatile boolean finished;
+  
+  private volatile long injected;
+  private volatile long skippedBlocks;
+  
 
   protected EntropyRun(CargoChain cargoChain) {
+    this(cargoChain, DEFAULT_TRAFFIC_THRESHOLD);
+  }
+  
+  
+  /**
+   * @param trafficThreshold  no. of real crums (&ge; 1) in a block at and
+   *                          beyond which no noise is injected
+   */
+  protected EntropyRun(CargoChain cargoChain, int trafficThreshold) {
     super(cargoChain);
-    this.random = new SecureRandom();
+    if (trafficThreshold < 1)
+      throw new IllegalArgumentException(
+          "trafficThreshold " + trafficThreshold);
+    this.trafficThreshold = trafficThreshold;
+    this.random = newDrbg();
     // seed the random generator..
     // (seeds itself on first use)
     makeNoise();
   }
   
   
+  private SecureRandom newDrbg() {
+    try {
+      return SecureRandom.getInstance(
+          "DRBG",
+          DrbgParameters.instantiation(
+              256, DrbgParameters.Capability.RESEED_ONLY, null));
+    } catch (NoSuchAlgorithmException nsax) {
+      log().warning("[NOISE]: DRBG not available; using default: " + nsax);
+      return new SecureRandom();
+    }
+  }
+  
+  
   private byte[] makeNoise() {
     byte[] noise = new byte[Constants.HASH_WIDTH];
     random.nextBytes(noise);
@@ -38,10 +93,46 @@ public class EntropyRun extends Run {
   protected void runImpl() {
     finished = false;
     var crum = new FreshCrum(makeNoise());
+    final long blockNo =
+        cargoChain.settings().chainParams().blockNoForUtc(crum.utc());
+    if (blockNo == noiseBlockNo)
+      return;
+    if (cargoChain.localCrumCount(blockNo) >= trafficThreshold) {
+      ++skippedBlocks;
+      noiseBlockNo = blockNo;   // (decided for this block)
+      return;
+    }
     cargoChain.addCrum(crum);
+    noiseBlockNo = blockNo;
+    ++injected;
     finished = true;
   }
+  
+  
+  /**
+   * Returns the no. of real crums in a block at and beyond which no noise
+   * is injected.
+   */
+  public final int trafficThreshold() {
+    return trafficThreshold;
+  }
+  
+  
+  /** Returns the no. of noise crums injected. */
+  public long injected() {
+    return injected;
+  }
+  
+  
+  /** Returns the no. of blocks noise was not injected into, on account of traffic. */
+  public long skippedBlocks() {
+    return skippedBlocks;
+  }
 
+  
+  /**
+   * @return {@code true} if a noise crum was added in the last run
+   */
   @Override
   public boolean advanced() {
     return finished;
@@ -50,34 +141,13 @@ public class EntropyRun extends Run {
 
 
   /**
-   * We aim for <em>every</em> block.
-   * <h4>Note</h4>
-   * <p>
-   * Still experimenting with optimal value.
-   * </p>
+   * Once per block (timed by {@linkplain EntropyScheduler}).
    * 
-   * @return 2.5
+   * @return 1
    */
   @Override
   public float blockFrequency() {
-    return 2.5f;
+    return 1;
   }
 
 }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary.d;
+
+
+import io.crums.tc.ChainParams;
+
+/**
+ * Entropy daemon timed to run once per block, just before the block
+ * closes: {@linkplain #CLOSE_MARGIN_DIVISOR 1/8th} of a block duration
+ * before the next block begins. By then, the block's real traffic is
+ * mostly known, so the run can decide whether noise is needed.
+ * 
+ * @see EntropyRun
+ */
+public class EntropyScheduler extends Daemon<EntropyRun> {
+  
+  /**
+   * The run is scheduled a block duration divided by this value
+   * before the block closes.
+   */
+  public final static int CLOSE_MARGIN_DIVISOR = 8;
+  
+
+  public EntropyScheduler(EntropyRun job) {
+    super(job);
+  }
+  
+  
+  /**
+   * Returns the delay until just before the current block closes; if that
+   * moment has already passed, until just before the next block closes.
+   */
+  @Override
+  protected long nextDelayMillis() {
+    final ChainParams params = job.cargoChain.settings().chainParams();
+    final long now = System.currentTimeMillis();
+    final long margin = Math.max(1, params.blockDuration() / CLOSE_MARGIN_DIVISOR);
+    long blockNo = params.blockNoForUtc(now);
+    long runUtc = params.utcForBlockNo(blockNo + 1) - margin;
+    if (runUtc <= now)
+      runUtc += params.blockDuration();
+    return runUtc - now;
+  }
+  
+  
+  @Override
+  public String toString() {
+    return "EntropyScheduler<" + job.name() + ">";
+  }
+
+}
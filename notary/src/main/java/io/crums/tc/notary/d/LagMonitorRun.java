@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary.d;
+
+
+import io.crums.tc.notary.Backpressure;
+import io.crums.tc.notary.CargoChain;
+
+/**
+ * Commit lag monitor. Measures the {@linkplain CargoChain#commitLag()
+ * commit lag} and {@linkplain CargoChain#unbuiltBacklog() unbuilt backlog},
+ * and sets the chain's {@linkplain Backpressure backpressure} accordingly,
+ * so that ingest degrades gracefully (shedding witness requests) instead of
+ * running past the retention window.
+ * 
+ * <h2>Thresholds</h2>
+ * <p>
+ * Both measures are expressed in blocks overdue: the backlog directly;
+ * the lag, in block durations past the oldest uncommitted block's commit
+ * deadline. Both only count existing blocks, which are committed whether
+ * or not there's new traffic: so an idle chain (however long since its
+ * last commit) is under no pressure, and pressure from overdue blocks
+ * clears as they're committed. Pressure is zero at or below
+ * {@linkplain #SHED_START_RATIO} times {@linkplain
+ * io.crums.tc.NotaryPolicy#blocksRetained() blocks-retained}, rises
+ * linearly beyond, and reaches one (all new requests shed) at
+ * blocks-retained.
+ * </p>
+ */
+public class LagMonitorRun extends Run {
+  
+  /**
+   * Fraction of blocks-retained overdue at which requests begin to be shed.
+   */
+  public final static double SHED_START_RATIO = 0.5;
+  
+  private volatile long commitLag;
+  private volatile int backlog;
+  private volatile double pressure;
+  
+
+  public LagMonitorRun(CargoChain cargoChain) {
+    super(cargoChain);
+  }
+  
+
+  @Override
+  protected void runImpl() {
+    final var settings = cargoChain.settings();
+    final long blockDuration = settings.chainParams().blockDuration();
+    
+    commitLag = cargoChain.commitLag();
+    backlog = cargoChain.unbuiltBacklog();
+    
+    final long lagOverdue = commitLag / blockDuration;
+    final long overdue = Math.max(backlog, lagOverdue);
+    
+    final int full = settings.blocksRetained();
+    final int start = (int) Math.max(1, full * SHED_START_RATIO);
+    
+    final double p;
+    if (overdue < start)
+      p = 0;
+    else if (overdue >= full)
+      p = 1;
+    else
+      p = ((double) (overdue - start + 1)) / (full - start + 1);
+    
+    final double prev = pressure;
+    pressure = p;
+    cargoChain.backpressure().set(p, Math.max(1000, blockDuration));
+    
+    if (p > 0 && prev == 0)
+      log().warning(
+          "[LAG]: shedding witness requests (pressure " + p + "); commit lag " +
+          commitLag + " millis, unbuilt backlog " + backlog + " blocks");
+    else if (p == 0 && prev > 0)
+      log().info("[LAG]: recovered; commit lag " + commitLag + " millis");
+  }
+  
+  
+  /** Returns the commit lag measured in the last run (millis). */
+  public long commitLag() {
+    return commitLag;
+  }
+  
+  
+  /** Returns the unbuilt backlog measured in the last run (blocks). */
+  public int backlog() {
+    return backlog;
+  }
+  
+  
+  /** Returns the pressure set in the last run. */
+  public double pressure() {
+    return pressure;
+  }
+  
+
+  /**
+   * @return {@code true} if not under pressure
+   */
+  @Override
+  public boolean advanced() {
+    return pressure == 0;
+  }
+  
+  
+  /**
+   * Measured several times per block, so that shedding starts (and stops)
+   * promptly.
+   * 
+   * @return 4
+   */
+  @Override
+  public float blockFrequency() {
+    return 4;
+  }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary.d;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.UUID;
+
+import io.crums.tc.notary.NotaryLog;
+
+/**
+ * Lease-based leader election among processes sharing a notary
+ * directory. The lease is a small text file recording the leader's
+ * ID and the lease's expiration UTC. Reads and writes of the file
+ * are serialized across processes with a (briefly held) file lock.
+ *
+ * <h2>Protocol</h2>
+ * <p>
+ * Each contender periodically invokes {@linkplain #heartbeat()}. If the
+ * lease is unheld, expired, or already held by the contender, then the
+ * contender (re)writes it with a fresh expiration and becomes (or
+ * remains) leader. Otherwise, it's a follower. The leader should heartbeat
+ * at several times the lease's frequency, so that a live leader never
+ * loses its lease, while a dead one's is taken over once it expires.
+ * </p>
+ * <h2>Clocks</h2>
+ * <p>
+ * Since contenders may run on different machines, a lease is only
+ * considered expired by others after an additional clock-skew grace
+ * period. Conversely, a leader considers itself
+ * {@linkplain #isLeader() leader} only until its own lease expires, even
+ * if its heartbeats stall.
+ * </p>
+ * <h2>Restarts</h2>
+ * <p>
+ * A contender's ID is its hostname, process ID, and a random UUID. A
+ * lease held by a process on the same host that is no longer alive (e.g.
+ * the previous incarnation of a restarted process that exited uncleanly)
+ * is taken over immediately, without waiting for it to expire. This
+ * assumes hostnames are unique among the machines sharing the directory;
+ * if the local hostname can't be determined, the check is skipped.
+ * </p>
+ */
+public class LeaderLease implements AutoCloseable {
+
+  /** Local hostname; {@code null}, if it can't be determined. */
+  final static String HOST = localHost();
+
+  private static String localHost() {
+    try {
+      var host = InetAddress.getLocalHost().getHostName();
+      return host == null || host.isBlank() || host.contains("/") ?
+          null : host.strip();
+    } catch (IOException | SecurityException x) {
+      return null;
+    }
+  }
+
+  /** Returns the contender ID for the given process ID. */
+  static String newId(long pid) {
+    return (HOST == null ? "?" : HOST) + "/" + pid + "/" + UUID.randomUUID();
+  }
+
+
+  /**
+   * Determines whether the given contender ID is that of a process on this
+   * host that is no longer alive. IDs from other hosts (or in an older
+   * format) return {@code false}.
+   */
+  static boolean isDeadLocal(String id) {
+    var parts = id.split("/");
+    if (HOST == null || parts.length != 3 || !parts[0].equals(HOST))
+      return false;
+    try {
+      return ProcessHandle.of(Long.parseLong(parts[1])).isEmpty();
+    } catch (NumberFormatException nfx) {
+      return false;
+    }
+  }
+
+
+  private final File file;
+  private final String id;
+  private final long leaseMillis;
+  private final long skewMillis;
+  private final NotaryLog log;
+
+  /** Expiration UTC of our lease; 0, if not leader. */
+  private volatile long expiresUtc;
+
+
+  /**
+   * @param file        the lease file (created on demand)
+   * @param leaseMillis lease duration (&ge; 1)
+   * @param skewMillis  maximum clock skew across machines (&ge; 0)
+   * @param log         not {@code null}
+   */
+  public LeaderLease(
+      File file, long leaseMillis, long skewMillis, NotaryLog log) {
+    this.file = Objects.requireNonNull(file, "null file");
+    this.leaseMillis = leaseMillis;
+    this.skewMillis = skewMillis;
+    this.log = Objects.requireNonNull(log, "null log");
+    this.id = newId(ProcessHandle.current().pid());
+    if (leaseMillis < 1)
+      throw new IllegalArgumentException("leaseMillis " + leaseMillis);
+    if (skewMillis < 0)
+      throw new IllegalArgumentException("skewMillis " + skewMillis);
+  }
+
+
+  /** Returns this contender's (unique) ID. */
+  public final String id() {
+    return id;
+  }
+
+
+  /** Returns the lease duration in milliseconds. */
+  public final long leaseMillis() {
+    return leaseMillis;
+  }
+
+
+  /**
+   * Determines whether this contender holds an unexpired lease.
+   */
+  public boolean isLeader() {
+    return System.currentTimeMillis() < expiresUtc;
+  }
+
+
+  /**
+   * Acquires or renews the lease, if possible, and returns whether
+   * this contender is now leader. I/O errors are logged (not thrown),
+   * and return {@code false}.
+   */
+  public synchronized boolean heartbeat() {
+    final boolean wasLeader = isLeader();
+    try (var ch = open(); var lock = ch.lock()) {
+
+      final long now = System.currentTimeMillis();
+      var holder = read(ch);
+      boolean free =
+          holder == null ||
+          holder.id.equals(id) ||
+          holder.expiresUtc + skewMillis < now ||
+          isDeadLocal(holder.id);
+
+      if (!free) {
+        expiresUtc = 0;
+        if (wasLeader)
+          log.warning("[LEASE]: leadership lost to " + holder.id);
+        return false;
+      }
+      final long expires = now + leaseMillis;
+      write(ch, expires);
+      expiresUtc = expires;
+      if (!wasLeader)
+        log.info(
+            "[LEASE]: " + id + " is commit leader" +
+            (holder == null || holder.id.equals(id) ?
+                "" : " (took over from " + holder.id + ")"));
+      return true;
+
+    } catch (OverlappingFileLockException olx) {
+      // another contender in this JVM holds the file lock: try next time
+      return isLeader();
+
+    } catch (IOException iox) {
+      expiresUtc = 0;
+      log.warning("[LEASE]: heartbeat failed on " + file + ": " + iox);
+      return false;
+    }
+  }
+
+
+  /**
+   * Releases the lease, if held, so that another contender may take
+   * over without waiting for it to expire.
+   */
+  @Override
+  public synchronized void close() {
+    if (expiresUtc == 0)
+      return;
+    expiresUtc = 0;
+    try (var ch = open(); var lock = ch.lock()) {
+      var holder = read(ch);
+      if (holder != null && holder.id.equals(id))
+        ch.truncate(0);
+    } catch (IOException | OverlappingFileLockException x) {
+      log.warning("[LEASE]: release failed on " + file + ": " + x);
+    }
+  }
+
+
+  private FileChannel open() throws IOException {
+    return FileChannel.open(
+        file.toPath(),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+
+  private record Holder(String id, long expiresUtc) { }
+
+
+  /** Returns the lease holder, or {@code null} if none (or unreadable). */
+  private Holder read(FileChannel ch) throws IOException {
+    final int size = (int) Math.min(ch.size(), 1024);
+    if (size == 0)
+      return null;
+    var buffer = ByteBuffer.allocate(size);
+    while (buffer.hasRemaining() && ch.read(buffer, buffer.position()) != -1);
+    var text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    var tokens = text.trim().split("\\s+");
+    if (tokens.length != 2) {
+      log.warning("[LEASE]: ignoring malformed lease " + file + ": " + text);
+      return null;
+    }
+    try {
+      return new Holder(tokens[0], Long.parseLong(tokens[1]));
+    } catch (NumberFormatException nfx) {
+      log.warning("[LEASE]: ignoring malformed lease " + file + ": " + text);
+      return null;
+    }
+  }
+
+
+  private void write(FileChannel ch, long expires) throws IOException {
+    var bytes = (id + " " + expires + "\n").getBytes(StandardCharsets.UTF_8);
+    var buffer = ByteBuffer.wrap(bytes);
+    ch.truncate(0);
+    while (buffer.hasRemaining())
+      ch.write(buffer, buffer.position());
+    ch.force(false);
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary.d;
+
+
+import java.util.Objects;
+
+import io.crums.tc.notary.CargoChain;
+
+/**
+ * Commit leader {@linkplain LeaderLease#heartbeat() heartbeat} run.
+ * Runs once per block; the lease should last several blocks.
+ *
+ * @see NotaryD#newLeaderLease()
+ */
+public class LeaseRun extends Run {
+
+  private final LeaderLease lease;
+
+  private volatile boolean leader;
+
+
+  public LeaseRun(CargoChain cargoChain, LeaderLease lease) {
+    super(cargoChain);
+    this.lease = Objects.requireNonNull(lease, "null lease");
+  }
+
+
+  @Override
+  protected void runImpl() {
+    leader = lease.heartbeat();
+  }
+
+
+  /**
+   * @return {@code true} if leader after the last heartbeat
+   */
+  @Override
+  public boolean advanced() {
+    return leader;
+  }
+
+
+  /** Returns the lease. */
+  public LeaderLease lease() {
+    return lease;
+  }
+
+}
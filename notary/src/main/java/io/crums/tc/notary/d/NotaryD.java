@@ -4,14 +4,51 @@
 package io.crums.tc.notary.d;
 
 
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import io.crums.tc.notary.Notary;
+import io.crums.tc.notary.NotaryConstants;
 import io.crums.util.TaskStack;
 
 /**
- * Notary with background commit-, purge-, and entropy- daemons.
+ * Notary with background commit-, purge-, sweep-, lag monitor-, checkpoint-,
+ * and entropy- daemons.
+ * Cargo blocks are committed in pipelined mode: when more than one is due,
+ * they're built in parallel on a separate build pool
+ * (see {@linkplain #newBuildExecutor()}).
+ * 
+ * <h2>Executor Model</h2>
+ * <p>
+ * By default, the daemons run as scheduled tasks on a small, shared
+ * {@linkplain ScheduledExecutorService scheduler}, occupying a thread only
+ * while running (see {@linkplain Daemon#schedule(ScheduledExecutorService)}).
+ * The scheduler has a thread per daemon, since some runs are long (a paced
+ * sweep, a single-block commit). The leader lease's heartbeat is scheduled
+ * on its own thread, so that it's never delayed by the others.
+ * The scheduler's threads may be virtual (see
+ * {@linkplain #newScheduler(boolean)}), since the daemons mostly do I/O;
+ * CPU-bound hashing (building cargo blocks) is done on a separate,
+ * platform-thread, worker pool. If the executor given at construction
+ * is not a scheduler, then each daemon runs on a dedicated (parked)
+ * thread, as before.
+ * </p>
+ * 
+ * <h2>Shared Directories</h2>
+ * <p>
+ * Multiple instances (processes) may share the same notary directory. Only
+ * one of them, the commit leader, builds, commits, and purges cargo blocks;
+ * the others (followers) only witness and serve reads. Leadership is
+ * decided by a {@linkplain LeaderLease lease} file in the chain's directory
+ * (see {@linkplain #newLeaderLease()}). A restarted process (the usual
+ * single-process deployment) takes over the lease left by its dead
+ * predecessor on the same host right away, rather than after it expires.
+ * </p>
  * 
  * @see #close()
  */
@@ -19,13 +56,43 @@ public class NotaryD extends Notary {
   
   
 
+  /** Leader lease duration, in block durations. */
+  public final static int LEASE_BLOCKS = 3;
+
+  /** Maximum no. of threads in the default cargo block build pool. */
+  public final static int MAX_BUILD_THREADS = 4;
+
+  /**
+   * No. of threads in the default scheduler: one for each daemon sharing it
+   * (commit, purge, sweep, lag monitor, checkpoint, entropy).
+   */
+  public final static int SCHEDULER_THREADS = 6;
+
+  /**
+   * No. of daemons always run: commit, purge, sweep, lag monitor, and
+   * checkpoint. (The entropy and lease daemons are optional.)
+   */
+  private final static int DAEMONS = 5;
+
   private final ExecutorService executor;
+
+  /** Optional: may be null. */
+  private final ExecutorService buildExecutor;
   
   private final Daemon<CommitRun> commitD;
   private final Daemon<PurgeRun> purgeD;
+  private final Daemon<SweepRun> sweepD;
+  private final Daemon<LagMonitorRun> lagD;
+  private final Daemon<CheckpointRun> checkpointD;
   
   /** Optional: may be null. */
   private final Daemon<EntropyRun> noiseD;
+
+  /** Optional: may be null. */
+  private final Daemon<LeaseRun> leaseD;
+
+  /** Dedicated lease heartbeat scheduler. Optional: may be null. */
+  private final ScheduledExecutorService leaseExecutor;
   
   
   /**
@@ -39,51 +106,215 @@ public class NotaryD extends Notary {
   
   
   /**
-   * Creates an instance with using a fixed (regular) thread pool.
+   * Creates an instance with its daemons scheduled on a shared
+   * (platform thread) scheduler.
    * 
    * @param promote   the "basic" instance
    * @param noise     if {@code false}, then the entropy daemon is not run
+   * @see #newScheduler(boolean)
    */
   public NotaryD(Notary promote, boolean noise) {
-    this(promote, Executors.newFixedThreadPool(noise ? 3 : 2), noise);
+    this(promote, newScheduler(false), null, noise);
   }
   
   
   /**
-   * Full constructor. Promotes the given "basic" instance.
+   * Creates an instance with the default build pool.
    * 
    * @param promote   the "basic" instance
    * @param executor  thread pool (virtual or regular),
-   *                  owned by the instance.
+   *                  owned by the instance. If a
+   *                  {@code ScheduledExecutorService}, then the daemons
+   *                  are scheduled on it (the lease heartbeat excepted),
+   *                  so it should have {@linkplain #SCHEDULER_THREADS}
+   *                  threads; otherwise, each daemon parks a thread of
+   *                  its own (up to 7, with the entropy and lease daemons)
    * @param noise     if {@code false}, then the entropy daemon is not run
+   * @throws IllegalArgumentException
+   *         if {@code executor} is a (non-scheduled)
+   *         {@code ThreadPoolExecutor} whose maximum pool size is less than
+   *         the no. of daemons
    */
   public NotaryD(Notary promote, ExecutorService executor, boolean noise) {
+    this(promote, executor, null, noise);
+  }
+  
+  
+  /**
+   * Full constructor. Promotes the given "basic" instance.
+   * 
+   * @param promote   the "basic" instance
+   * @param executor  thread pool (virtual or regular),
+   *                  owned by the instance. If a
+   *                  {@code ScheduledExecutorService}, then the daemons
+   *                  are scheduled on it (the lease heartbeat excepted),
+   *                  so it should have {@linkplain #SCHEDULER_THREADS}
+   *                  threads; otherwise, each daemon parks a thread of
+   *                  its own (up to 7, with the entropy and lease daemons)
+   * @param workers   CPU-bound pool for building cargo blocks, owned by the
+   *                  instance. If {@code null}, then
+   *                  {@linkplain #newBuildExecutor()} is used.
+   * @param noise     if {@code false}, then the entropy daemon is not run
+   * @throws IllegalArgumentException
+   *         if {@code executor} is a (non-scheduled)
+   *         {@code ThreadPoolExecutor} whose maximum pool size is less than
+   *         the no. of daemons
+   */
+  public NotaryD(
+      Notary promote, ExecutorService executor, ExecutorService workers,
+      boolean noise) {
     super(promote);
     if (promote instanceof NotaryD)
       throw new IllegalArgumentException(
           "promote is an instance of NotaryD: " + promote);
     this.executor = executor;
+    var lease = newLeaderLease();
+    checkPoolSize(executor, noise, lease != null);
     this.commitD = newCommitDaemon();
     this.purgeD = newPurgeDaemon();
+    this.sweepD = newSweepDaemon();
+    this.lagD = new Daemon<>(new LagMonitorRun(cargoChain));
+    this.checkpointD = new Daemon<>(new CheckpointRun(cargoChain));
+    if (commitD instanceof CommitScheduler scheduler)
+      cargoChain.setNewBlockListener(scheduler::blockCreated);
+    this.buildExecutor = workers == null ? newBuildExecutor() : workers;
+    cargoChain.setBuildExecutor(buildExecutor);
+
+    if (lease != null) {
+      lease.heartbeat();  // (decide before the first commit run)
+      this.leaseD = new Daemon<>(new LeaseRun(cargoChain, lease));
+      commitD.getJob().setGate(lease::isLeader);
+      purgeD.getJob().setGate(lease::isLeader);
+      sweepD.getJob().setGate(lease::isLeader);
+      checkpointD.getJob().setGate(lease::isLeader);
+      if (executor instanceof ScheduledExecutorService) {
+        // not on the shared scheduler: heartbeats must not wait on
+        // long-running jobs (lest the lease lapse)
+        this.leaseExecutor = Executors.newSingleThreadScheduledExecutor();
+        leaseD.schedule(leaseExecutor);
+      } else {
+        this.leaseExecutor = null;
+        start(leaseD);
+      }
+    } else {
+      this.leaseD = null;
+      this.leaseExecutor = null;
+    }
     
     if (noise) {
       this.noiseD = newEntropyDaemon();
-      executor.execute(noiseD);
+      start(noiseD);
     } else {
       this.noiseD = null;
     }
-    executor.execute(commitD);
-
-    this.cargoChain.sweepGraveyard();
-    executor.execute(purgeD);
+    start(commitD);
+    start(purgeD);
+    // (any graveyard backlog left over from before is swept here, too)
+    start(sweepD);
+    // (followers monitor lag, too: they shed load if the leader stalls)
+    start(lagD);
+    start(checkpointD);
+  }
+  
+  
+  /**
+   * Fails fast, if the given (non-scheduled) executor is a thread pool
+   * too small to park a thread for each daemon: the extra daemons would
+   * otherwise queue forever, never run.
+   */
+  private static void checkPoolSize(
+      ExecutorService executor, boolean noise, boolean lease) {
+    
+    if (executor instanceof ScheduledExecutorService ||
+        !(executor instanceof ThreadPoolExecutor pool))
+      return;
+    
+    int daemons = DAEMONS;
+    if (noise)
+      ++daemons;
+    if (lease)
+      ++daemons;
+    if (pool.getMaximumPoolSize() < daemons)
+      throw new IllegalArgumentException(
+          "executor max pool size (" + pool.getMaximumPoolSize() +
+          ") < no. of daemons (" + daemons + "): " + executor);
+  }
+  
+  
+  private void start(Daemon<?> daemon) {
+    if (executor instanceof ScheduledExecutorService scheduler)
+      daemon.schedule(scheduler);
+    else
+      executor.execute(daemon);
+  }
+  
+  
+  /**
+   * Returns a new scheduler for the daemons, with
+   * {@linkplain #SCHEDULER_THREADS} threads.
+   * 
+   * @param virtual   if {@code true}, then the threads are virtual
+   */
+  public static ScheduledExecutorService newScheduler(boolean virtual) {
+    return virtual ?
+        Executors.newScheduledThreadPool(
+            SCHEDULER_THREADS, Thread.ofVirtual().name("notaryd-", 0).factory()) :
+        Executors.newScheduledThreadPool(SCHEDULER_THREADS);
   }
 
 
 
   
   
+  /**
+   * Returns a new {@linkplain CommitScheduler} (woken on the creation of
+   * new cargo blocks).
+   */
   protected Daemon<CommitRun> newCommitDaemon() {
-    return new Daemon<>(new CommitRun(cargoChain));
+    return new CommitScheduler(new CommitRun(cargoChain));
+  }
+  
+  
+  /**
+   * Returns a new thread pool for building cargo blocks in parallel
+   * (owned by this instance), or {@code null} for sequential builds.
+   * 
+   * @return fixed pool of at most {@linkplain #MAX_BUILD_THREADS} threads;
+   *         {@code null}, if there's only one processor
+   * @see io.crums.tc.notary.CargoChain#setBuildExecutor(ExecutorService)
+   */
+  protected ExecutorService newBuildExecutor() {
+    int threads = Math.min(
+        MAX_BUILD_THREADS, Runtime.getRuntime().availableProcessors());
+    return threads < 2 ? null : Executors.newFixedThreadPool(threads);
+  }
+  
+  
+  /**
+   * Returns the commit leader lease, or {@code null} if this instance
+   * should always act as leader (i.e. if it never shares its directory).
+   * 
+   * @return lease file {@linkplain NotaryConstants#LEADER_LEASE} in the
+   *         chain's directory, lasting {@linkplain #LEASE_BLOCKS} blocks
+   */
+  protected LeaderLease newLeaderLease() {
+    var chainDir = cargoChain.timechain().file().getParentFile();
+    var settings = cargoChain.settings();
+    return new LeaderLease(
+        new File(chainDir, NotaryConstants.LEADER_LEASE),
+        LEASE_BLOCKS * settings.chainParams().blockDuration(),
+        settings.maxCrossMachineTimeSkew(),
+        cargoChain.log());
+  }
+  
+  
+  /**
+   * Determines whether this instance builds, commits, and purges cargo
+   * blocks. If there's no {@linkplain #newLeaderLease() lease}, then this
+   * is always {@code true}.
+   */
+  public boolean isLeader() {
+    return leaseD == null || leaseD.getJob().lease().isLeader();
   }
   
   
@@ -92,8 +323,23 @@ public class NotaryD extends Notary {
   }
   
   
+  /**
+   * Returns the graveyard sweeper (the 2nd phase of purge). Override to
+   * change the deletion budget.
+   * 
+   * @see SweepRun#DEFAULT_FILES_PER_SECOND
+   */
+  protected Daemon<SweepRun> newSweepDaemon() {
+    return new Daemon<>(new SweepRun(cargoChain));
+  }
+  
+  
+  /**
+   * Returns a new {@linkplain EntropyScheduler} (injecting noise only
+   * into low-traffic blocks).
+   */
   protected Daemon<EntropyRun> newEntropyDaemon() {
-    return new Daemon<>(new EntropyRun(cargoChain));
+    return new EntropyScheduler(new EntropyRun(cargoChain));
   }
 
   
@@ -106,18 +352,84 @@ public class NotaryD extends Notary {
   @Override
   public void close() {
     try (var closer = new TaskStack()) {
-      closer.pushClose(cargoChain, commitD, purgeD);
+      closer.pushClose(cargoChain);
+      if (leaseD != null) {
+        // released after the final checkpoint, before the chain is closed
+        closer.pushClose(leaseD.getJob().lease());
+      }
+      // (written after the daemons are stopped)
+      closer.pushRun(this::finalCheckpoint);
+      closer.pushClose(commitD, purgeD, sweepD, lagD, checkpointD);
       if (noiseD != null) {
         closer.pushClose(noiseD);
         noiseD.stop();
       }
+      cargoChain.setNewBlockListener(null);
       commitD.stop();
       purgeD.stop();
+      sweepD.stop();
+      lagD.stop();
+      checkpointD.stop();
+      if (leaseD != null) {
+        closer.pushClose(leaseD);
+        leaseD.stop();
+      }
       executor.shutdown();
+      if (leaseExecutor != null)
+        leaseExecutor.shutdown();
+      if (buildExecutor != null) {
+        cargoChain.setBuildExecutor(null);
+        buildExecutor.shutdown();
+      }
     }
   }
 
   
+  private void finalCheckpoint() {
+    if (cargoChain.isOpen() && isLeader())
+      cargoChain.writeCheckpoint();
+  }
+
+  
+  /**
+   * Returns the no. of purged cargo blocks awaiting deletion.
+   * 
+   * @see SweepRun#backlog()
+   */
+  public int purgeBacklog() {
+    return sweepD.getJob().backlog();
+  }
+  
+  
+  /** Returns the commit lag monitor (for its metrics). */
+  public LagMonitorRun lagMonitor() {
+    return lagD.getJob();
+  }
+  
+  
+  /** Returns the graveyard sweeper job (for its metrics). */
+  public SweepRun sweeper() {
+    return sweepD.getJob();
+  }
+  
+  
+  /**
+   * Returns the run statistics of each background job, keyed by
+   * {@linkplain Run#name() job name}.
+   */
+  public Map<String, Run.Stats> jobStats() {
+    var stats = new LinkedHashMap<String, Run.Stats>();
+    stats.put(commitD.getJob().name(), commitD.stats());
+    stats.put(purgeD.getJob().name(), purgeD.stats());
+    stats.put(sweepD.getJob().name(), sweepD.stats());
+    stats.put(lagD.getJob().name(), lagD.stats());
+    stats.put(checkpointD.getJob().name(), checkpointD.stats());
+    if (leaseD != null)
+      stats.put(leaseD.getJob().name(), leaseD.stats());
+    if (noiseD != null)
+      stats.put(noiseD.getJob().name(), noiseD.stats());
+    return stats;
+  }
 
 }
 
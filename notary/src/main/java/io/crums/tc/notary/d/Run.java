@@ -4,6 +4,7 @@
 package io.crums.tc.notary.d;
 
 import java.util.Objects;
+import java.util.function.BooleanSupplier;
 
 import io.crums.tc.notary.CargoChain;
 import io.crums.tc.notary.NotaryLog;
@@ -20,6 +21,20 @@ public abstract class Run implements Runnable {
   
   private volatile Exception error;
   
+  private volatile BooleanSupplier gate;
+  
+  private volatile boolean skipped;
+  
+  // run stats (written only by the running thread)
+  private volatile long runs;
+  private volatile long successes;
+  private volatile long failures;
+  private volatile long skips;
+  private volatile long totalNanos;
+  private volatile long maxNanos;
+  private volatile long lastNanos;
+  private volatile long lastStartUtc;
+  
   
   protected Run(CargoChain cargoChain) {
     this.cargoChain = Objects.requireNonNull(cargoChain);
@@ -27,6 +42,28 @@ public abstract class Run implements Runnable {
 
 
   
+  /**
+   * Sets the gate consulted before each run: if the gate returns
+   * {@code false}, then the run is {@linkplain #skipped() skipped}.
+   * 
+   * @param gate  {@code null} for no gate (always run)
+   * @see LeaderLease#isLeader()
+   */
+  public void setGate(BooleanSupplier gate) {
+    this.gate = gate;
+  }
+  
+  
+  /**
+   * Returns {@code true} if the last run was skipped by the
+   * {@linkplain #setGate(BooleanSupplier) gate}. (If so, the other
+   * run stats are those of the last run not skipped.)
+   */
+  public final boolean skipped() {
+    return skipped;
+  }
+
+
   /**
    * Invokes {@linkplain #runImpl()} after clearing the
    * {@linkplain #getException() exception}; if {@code runImpl()}
@@ -39,19 +76,82 @@ public abstract class Run implements Runnable {
     
     error = null;
     
+    var gate = this.gate;
+    skipped = gate != null && !gate.getAsBoolean();
+    if (skipped) {
+      ++skips;
+      return;
+    }
+    
     if (!cargoChain.isOpen()) {
       cargoChain.log().error(
         "Cargo chain is closed.. " + getClass().getSimpleName());
       return;
     }
     
+    lastStartUtc = System.currentTimeMillis();
+    final long start = System.nanoTime();
     try {
       runImpl();
     } catch (Exception x) {
       this.error = x;
       exceptionCaught(x);
+    } finally {
+      final long nanos = System.nanoTime() - start;
+      lastNanos = nanos;
+      totalNanos += nanos;
+      if (nanos > maxNanos)
+        maxNanos = nanos;
+      ++runs;
+      if (error != null)
+        ++failures;
+      else if (advanced())
+        ++successes;
+    }
+  }
+  
+  
+  /**
+   * Run statistics. Run times are measured over {@linkplain #runImpl()};
+   * {@linkplain Run#skipped() skipped} runs are counted separately, and
+   * are not included in {@code runs}.
+   * 
+   * @param runs          no. of (unskipped) runs
+   * @param successes     no. of runs that {@linkplain Run#succeeded() succeeded}
+   * @param failures      no. of runs that failed with an exception
+   * @param skips         no. of runs skipped by the gate
+   * @param totalMillis   cumulative run time
+   * @param maxMillis     longest run time
+   * @param lastMillis    last run time
+   * @param lastStartUtc  start time of the last run; 0, if never run
+   */
+  public record Stats(
+      long runs, long successes, long failures, long skips,
+      long totalMillis, long maxMillis, long lastMillis, long lastStartUtc) {
+    
+    /** Returns the average run time in milliseconds. */
+    public double avgMillis() {
+      return runs == 0 ? 0 : ((double) totalMillis) / runs;
+    }
+    
+    /** Returns the fraction of (unskipped) runs that took place without error. */
+    public double errorFreeRatio() {
+      return runs == 0 ? 1 : ((double) (runs - failures)) / runs;
     }
   }
+  
+  
+  /**
+   * Returns a snapshot of this instance's run statistics. (The
+   * snapshot is not atomic: it may straddle a run.)
+   */
+  public Stats stats() {
+    final long million = 1_000_000L;
+    return new Stats(
+        runs, successes, failures, skips,
+        totalNanos / million, maxNanos / million, lastNanos / million,
+        lastStartUtc);
+  }
 
 
   public NotaryLog log() {
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary.d;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.locks.LockSupport;
+
+import io.crums.tc.notary.CargoChain;
+import io.crums.util.Strings;
+
+/**
+ * Second phase of the 2-phase purge: deletes the contents of the
+ * {@linkplain CargoChain#graveyardDir() graveyard} at a limited rate,
+ * so that deleting large (file-per-crum) cargo blocks does not saturate
+ * the disk's metadata I/O at the expense of live witness requests.
+ * An instance can be run multiple times.
+ *
+ * <h2>Metrics</h2>
+ * <p>
+ * The no. of cargo blocks awaiting deletion is reported by
+ * {@linkplain #backlog()}; cumulative totals, by
+ * {@linkplain #filesDeleted()} and {@linkplain #blocksSwept()}.
+ * </p>
+ *
+ * @see CargoChain#purgeInactiveBlocks()
+ */
+public class SweepRun extends Run {
+
+  /** Default deletion budget: files (or directories) per second. */
+  public final static int DEFAULT_FILES_PER_SECOND = 2000;
+
+
+  private final long nanosPerFile;
+
+  /** Earliest time (nano clock) the next delete is permitted. */
+  private long nextPermit;
+
+  private volatile int backlog;
+  private volatile int swept;
+  private volatile long filesDeleted;
+  private volatile int blocksSwept;
+
+
+  public SweepRun(CargoChain cargoChain) {
+    this(cargoChain, DEFAULT_FILES_PER_SECOND);
+  }
+
+
+  /**
+   * @param filesPerSecond  deletion budget (&ge; 1): maximum no. of files
+   *                        (and directories) deleted per second
+   */
+  public SweepRun(CargoChain cargoChain, int filesPerSecond) {
+    super(cargoChain);
+    if (filesPerSecond < 1)
+      throw new IllegalArgumentException("filesPerSecond " + filesPerSecond);
+    this.nanosPerFile = 1_000_000_000L / filesPerSecond;
+  }
+
+
+  @Override
+  protected void runImpl() throws IOException {
+    swept = 0;
+    File[] plots = cargoChain.graveyardDir().listFiles();
+    if (plots == null)
+      plots = new File[0];
+    backlog = plots.length;
+    nextPermit = System.nanoTime();
+
+    for (var plot : plots) {
+      if (!cargoChain.isOpen())
+        break;
+      long count = sweep(plot.toPath());
+      --backlog;
+      if (count < 0) {
+        log().warning(
+            "[PURGE]: failed to complete sweep of " + plot + "; " +
+            Strings.nOf(-count, "object") + " removed");
+        continue;
+      }
+      ++swept;
+      ++blocksSwept;
+      log().info(
+          "[PURGE]: " + plot.getName() + " removed (" +
+          Strings.nOf(count, "object") + ")");
+    }
+  }
+
+
+  /**
+   * Deletes the given file tree at the budgeted rate, and returns
+   * the no. of objects deleted; if not all were deleted, then the
+   * negative of that count is returned.
+   */
+  private long sweep(Path plot) throws IOException {
+    long[] count = { 0 };
+    boolean[] failed = { false };
+
+    Files.walkFileTree(plot, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        return delete(file);
+      }
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException iox) {
+        failed[0] = true;
+        return FileVisitResult.CONTINUE;
+      }
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException iox) {
+        return delete(dir);
+      }
+      private FileVisitResult delete(Path path) {
+        if (!cargoChain.isOpen())
+          return FileVisitResult.TERMINATE;
+        acquirePermit();
+        try {
+          Files.delete(path);
+          ++count[0];
+          ++filesDeleted;
+        } catch (IOException iox) {
+          failed[0] = true;
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+
+    return failed[0] || Files.exists(plot) ? -count[0] : count[0];
+  }
+
+
+  /** Paces deletes to the budget. */
+  private void acquirePermit() {
+    long now = System.nanoTime();
+    long wait = nextPermit - now;
+    if (wait > 0)
+      LockSupport.parkNanos(wait);
+    nextPermit = Math.max(nextPermit, now) + nanosPerFile;
+  }
+
+
+  /**
+   * @return {@code true} if at least one cargo block was deleted
+   *         in the last run
+   */
+  @Override
+  public boolean advanced() {
+    return swept > 0;
+  }
+
+
+  /**
+   * Returns the no. of cargo blocks in the graveyard awaiting deletion
+   * (as of the start of the current or last run, less those since swept).
+   *
+   * @see CargoChain#graveyardBacklog()
+   */
+  public int backlog() {
+    return backlog;
+  }
+
+
+  /** Returns the total no. of files (and directories) deleted. */
+  public long filesDeleted() {
+    return filesDeleted;
+  }
+
+
+  /** Returns the total no. of cargo blocks deleted. */
+  public int blocksSwept() {
+    return blocksSwept;
+  }
+
+
+  /** Returns the deletion budget in files per second. */
+  public long filesPerSecond() {
+    return 1_000_000_000L / nanosPerFile;
+  }
+
+}
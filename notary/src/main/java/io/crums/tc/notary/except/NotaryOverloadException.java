@@ -0,0 +1,33 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary.except;
+
+/**
+ * Thrown when a request is shed on account of load. The condition
+ * is transient: the request may be retried after
+ * {@linkplain #retryAfterMillis()}.
+ * 
+ * @see io.crums.tc.notary.Backpressure
+ */
+@SuppressWarnings("serial")
+public class NotaryOverloadException extends NotaryException {
+  
+  private final long retryAfterMillis;
+
+  /**
+   * @param message           the detail message
+   * @param retryAfterMillis  suggested retry delay (&ge; 0)
+   */
+  public NotaryOverloadException(String message, long retryAfterMillis) {
+    super(message);
+    this.retryAfterMillis = Math.max(0, retryAfterMillis);
+  }
+  
+  
+  /** Returns the suggested delay, in milliseconds, before retrying. */
+  public long retryAfterMillis() {
+    return retryAfterMillis;
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.crums.tc.Constants;
+import io.crums.tc.CrumArray;
+
+/**
+ *
+ */
+public class CrumFilterTest {
+
+
+  private static List<ByteBuffer> randomHashes(int count, Random rand) {
+    var hashes = new ArrayList<ByteBuffer>(count);
+    for (int index = 0; index < count; ++index) {
+      byte[] hash = new byte[Constants.HASH_WIDTH];
+      rand.nextBytes(hash);
+      hashes.add(ByteBuffer.wrap(hash));
+    }
+    return hashes;
+  }
+
+
+  @Test
+  public void testNoFalseNegatives() {
+    var rand = new Random(1);
+    var hashes = randomHashes(10_000, rand);
+    var crums = new CrumArray();
+    hashes.forEach(h -> crums.add(h, 1L));
+    var filter = CrumFilter.of(crums);
+    assertEquals(hashes.size(), filter.count());
+    for (var hash : hashes) {
+      assertTrue(filter.mightContain(hash));
+      // byte order of the query buffer doesn't matter
+      assertTrue(
+          filter.mightContain(hash.duplicate().order(ByteOrder.LITTLE_ENDIAN)));
+    }
+  }
+
+
+  @Test
+  public void testFalsePositiveRate() {
+    var rand = new Random(2);
+    final int count = 20_000;
+    var filter = new CrumFilter(count);
+    randomHashes(count, rand).forEach(filter::add);
+
+    final int trials = 200_000;
+    int positives = 0;
+    for (var hash : randomHashes(trials, rand))
+      if (filter.mightContain(hash))
+        ++positives;
+    double rate = (double) positives / trials;
+    assertTrue(rate < 0.02, "false positive rate: " + rate);
+    assertTrue(filter.expectedFalsePositiveRate() < 0.02);
+  }
+
+
+  @Test
+  public void testSerialRoundTrip() {
+    var rand = new Random(3);
+    var hashes = randomHashes(1_000, rand);
+    var filter = new CrumFilter(hashes.size());
+    hashes.forEach(filter::add);
+
+    var serial = filter.serialize();
+    assertEquals(filter.serialSize(), serial.remaining());
+    var rt = CrumFilter.load(serial);
+    assertFalse(serial.hasRemaining());
+    assertEquals(filter.count(), rt.count());
+    assertEquals(filter.bits(), rt.bits());
+    for (var hash : hashes)
+      assertTrue(rt.mightContain(hash));
+    for (var hash : randomHashes(1_000, rand))
+      assertEquals(filter.mightContain(hash), rt.mightContain(hash));
+  }
+
+}
@@ -9,10 +9,14 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 
 import io.crums.sldg.json.HashEncoding;
+import io.crums.tc.ChainParams;
 import io.crums.tc.Constants;
 import io.crums.tc.Crum;
 import io.crums.tc.Crumtrail;
@@ -514,12 +518,103 @@ public class NotaryTest extends IoTestCase {
     
     int blocksPurged = notary.cargoChain.purgeInactiveBlocks();
     assertTrue(blocksPurged > 0);
+    // 2-phase purge: blocks are only moved to the graveyard..
+    assertEquals(blocksPurged, notary.cargoChain.graveyardBacklog());
+    assertTrue(notary.cargoChain.sweepGraveyard() > 0);
+    assertEquals(0, notary.cargoChain.graveyardBacklog());
     
     notary.close();
   }
   
   
   
+  @Test
+  public void testShardedCommit() throws Exception {
+    
+    final Object label = new Object() { };
+    final TimeBinner binner = CargoChain.FINEST_BINNER;
+    final int blocksRetained = 12;
+    final int shards = 16;
+    final Random random = new Random(40L);
+    final int count = 40;
+
+    final File dir = newMethodRunDir(label);
+    
+    var base = new NotarySettings(
+        ChainParams.forStartUtc(binner, System.currentTimeMillis()),
+        blocksRetained);
+    var settings = new NotarySettings(
+        base, base.maxConcurrentLag(), base.maxCrossMachineTimeSkew(), shards);
+    
+    var notary = Notary.incept(dir, settings);
+    var crums = new ArrayList<Crum>();
+    for (int index = 0; index < count; ++index) {
+      byte[] rhash = new byte[Constants.HASH_WIDTH];
+      random.nextBytes(rhash);
+      crums.add(notary.witness(ByteBuffer.wrap(rhash)).crum());
+    }
+    var block = notary.cargoChain.getCargoBlock(
+        settings.chainParams().blockNoForUtc(crums.get(0).utc()), true);
+    assertEquals(shards, block.shardCount());
+    notary.close();
+    
+    // reload (sans pre-builds), so the blocks are built from the shards
+    notary = Notary.load(dir);
+    assertEquals(shards, notary.settings().cargoShards());
+    Thread.sleep(3 * binner.duration());
+    assertEquals(count, notary.cargoChain.buildAndCommit());
+    for (var crum : crums) {
+      var rcpt = notary.update(crum);
+      assertTrue(rcpt.hasTrail());
+      assertEquals(crum, rcpt.trail().crum());
+    }
+    notary.close();
+  }
+  
+  
+  
+  @Test
+  public void testCheckpointWarmStart() throws Exception {
+    
+    final Object label = new Object() { };
+    final TimeBinner binner = TimeBinner.SEC_4;
+    final long startUtc = System.currentTimeMillis();
+    final int blocksRetained = 3;
+    final Random random = new Random(39L);
+
+    final File dir = newMethodRunDir(label);
+    
+    var notary = Notary.incept(
+          dir,
+          binner,
+          startUtc,
+          blocksRetained);
+    
+    final int count = 5;
+    var receipts = new ArrayList<Receipt>();
+    for (int index = 0; index < count; ++index) {
+      byte[] rhash = new byte[Constants.HASH_WIDTH];
+      random.nextBytes(rhash);
+      receipts.add(notary.witness(ByteBuffer.wrap(rhash)));
+    }
+    // (the crums may straddle 2 blocks)
+    final long firstBlockNo = receipts.get(0).blockNo();
+    final long lastBlockNo = receipts.get(count - 1).blockNo();
+    
+    assertTrue(notary.cargoChain.writeCheckpoint());
+    assertTrue(notary.cargoChain.checkpointFile().isFile());
+    notary.close();
+    
+    var rt = Notary.load(dir);
+    int restored = 0;
+    for (long blockNo = firstBlockNo; blockNo <= lastBlockNo; ++blockNo)
+      restored += rt.cargoChain.localCrumCount(blockNo);
+    assertEquals(count, restored);
+    rt.close();
+  }
+  
+  
+  
   
   
   
@@ -532,6 +627,100 @@ public class NotaryTest extends IoTestCase {
   
   
   
+  @Test
+  public void testReceiptBundle() throws Exception {
+    
+    final Object label = new Object() { };
+    final TimeBinner binner = CargoChain.FINEST_BINNER;
+    final long startUtc = System.currentTimeMillis();
+    final int blocksRetained = 12;
+    final Random random = new Random(44L);
+    final int[] groups = { 3, 1, 2 };
+
+    final File dir = newMethodRunDir(label);
+    
+    var notary = Notary.incept(
+          dir,
+          binner,
+          startUtc,
+          blocksRetained);
+    
+    // witness the groups in (likely) different blocks
+    var crums = new ArrayList<Crum>();
+    Map<Long, Integer> blockCounts = new TreeMap<>();
+    for (int group : groups) {
+      for (int count = group; count-- > 0; ) {
+        byte[] rhash = new byte[Constants.HASH_WIDTH];
+        random.nextBytes(rhash);
+        var rcpt = notary.witness(ByteBuffer.wrap(rhash));
+        crums.add(rcpt.crum());
+        blockCounts.merge(rcpt.blockNo(), 1, Integer::sum);
+      }
+      Thread.sleep(binner.duration());
+    }
+    // (the block counts are what they are: merkle if > 1, lone if 1)
+    int merkleCount = 0;
+    int loneCount = 0;
+    for (int count : blockCounts.values()) {
+      if (count == 1)
+        ++loneCount;
+      else
+        merkleCount += count;
+    }
+    
+    Thread.sleep(3 * binner.duration());
+    assertEquals(crums.size(), notary.cargoChain.buildAndCommit());
+    final long commitNo = notary.cargoChain.timechain().size();
+    
+    // a crum never witnessed (in a committed block) is omitted
+    byte[] unknown = new byte[Constants.HASH_WIDTH];
+    random.nextBytes(unknown);
+    var unknownCrum = new Crum(unknown, crums.get(0).utc());
+    var request = new ArrayList<>(crums);
+    request.add(1, unknownCrum);
+    
+    var bundle = notary.cargoChain.findReceiptBundle(request, 1L).get();
+    assertEquals(crums.size(), bundle.size());
+    assertEquals(merkleCount, bundle.cargoProofs().size());
+    assertEquals(loneCount, bundle.loneCrums().size());
+    assertEquals(blockCounts.keySet(), bundle.blockNos());
+    assertEquals(commitNo, bundle.blockProof().blockNo());
+    
+    // split trails match the notary's individual receipts
+    Map<ByteBuffer, Crumtrail> trails = new HashMap<>();
+    for (var trail : bundle.split()) {
+      assertEquals(commitNo, trail.blockProof().blockNo());
+      trails.put(trail.crum().hash(), trail);
+    }
+    assertFalse(trails.containsKey(unknownCrum.hash()));
+    for (var crum : crums) {
+      var trail = trails.get(crum.hash());
+      assertEquals(crum, trail.crum());
+      var rcpt = notary.update(crum);
+      assertTrue(rcpt.hasTrail());
+      assertEquals(rcpt.trail().blockNo(), trail.blockNo());
+    }
+    
+    // from the first block (the lowest allowed)
+    final long firstBlockNo = blockCounts.keySet().iterator().next();
+    assertEquals(
+        crums.size(),
+        notary.cargoChain.findReceiptBundle(crums, firstBlockNo).get().size());
+    
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> notary.cargoChain.findReceiptBundle(crums, firstBlockNo + 1));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> notary.cargoChain.findReceiptBundle(List.of(), 1L));
+    assertTrue(
+        notary.cargoChain.findReceiptBundle(List.of(unknownCrum), 1L).isEmpty());
+    
+    notary.close();
+  }
+  
+  
+  
   private void print(Crumtrail trail) {
     JsonPrinter.println(
         new CrumtrailParser(HashEncoding.HEX).toJsonObject(trail));
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary.d;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.crums.tc.Constants;
+import io.crums.tc.TimeBinner;
+import io.crums.tc.TimeChain;
+import io.crums.tc.notary.CargoChain;
+import io.crums.tc.notary.FreshCrum;
+import io.crums.tc.notary.NotaryLog;
+import io.crums.tc.notary.NotarySettings;
+import io.crums.testing.IoTestCase;
+
+public class LagMonitorRunTest extends IoTestCase {
+
+
+  @Test
+  public void testIdleChain() throws Exception {
+    final Object label = new Object() { };
+    final File dir = newMethodRunDir(label);
+    final TimeBinner binner = TimeBinner.MILLIS_64;
+    final int blocksRetained = 3;
+    final long idleMillis = (blocksRetained + 2) * binner.duration();
+
+    var timechain = TimeChain.inceptNewChain(
+        new File(dir, "chain"), binner, System.currentTimeMillis());
+    var cargoChain = new CargoChain(
+        new CargoChain.InitArgs(
+            timechain,
+            new NotarySettings(timechain.params(), blocksRetained),
+            new File(dir, "cargo"),
+            NotaryLog.NULL));
+    var monitor = new LagMonitorRun(cargoChain);
+
+    // a new chain, idle past the retention window: no pressure
+    Thread.sleep(idleMillis);
+    monitor.run();
+    assertFalse(monitor.hasException());
+    assertEquals(0, monitor.commitLag());
+    assertEquals(0, monitor.pressure());
+
+    // an uncommitted block, overdue: full pressure, until committed
+    byte[] hash = new byte[Constants.HASH_WIDTH];
+    new Random(38L).nextBytes(hash);
+    var rcpt = cargoChain.addCrum(new FreshCrum(ByteBuffer.wrap(hash)));
+    final long overdueUtc =
+        cargoChain.commitDeadline(rcpt.blockNo()) +
+        (blocksRetained + 1) * binner.duration();
+    Thread.sleep(Math.max(0, overdueUtc - System.currentTimeMillis()));
+    monitor.run();
+    assertTrue(monitor.commitLag() > 0);
+    assertEquals(1, monitor.pressure());
+    assertTrue(cargoChain.backpressure().isShedding());
+
+    assertEquals(1, cargoChain.buildAndCommit());
+    monitor.run();
+    assertEquals(0, monitor.commitLag());
+    assertEquals(0, monitor.pressure());
+
+    // idle again, long after the last commit: still no pressure
+    Thread.sleep(idleMillis);
+    monitor.run();
+    assertEquals(0, monitor.commitLag());
+    assertEquals(0, monitor.backlog());
+    assertEquals(0, monitor.pressure());
+    assertTrue(cargoChain.backpressure().admit());
+
+    cargoChain.close();
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.notary.d;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import io.crums.tc.notary.NotaryConstants;
+import io.crums.tc.notary.NotaryLog;
+import io.crums.testing.IoTestCase;
+
+public class LeaderLeaseTest extends IoTestCase {
+
+
+  @Test
+  public void testTakeover() throws Exception {
+    final Object label = new Object() { };
+    final File dir = newMethodRunDir(label);
+    dir.mkdirs();
+    final File file = new File(dir, NotaryConstants.LEADER_LEASE);
+    final long leaseMillis = 100;
+
+    var a = new LeaderLease(file, leaseMillis, 0, NotaryLog.NULL);
+    var b = new LeaderLease(file, leaseMillis, 0, NotaryLog.NULL);
+
+    assertTrue(a.heartbeat());
+    assertFalse(b.heartbeat());
+    assertTrue(a.heartbeat());    // renewal
+    assertTrue(a.isLeader());
+    assertFalse(b.isLeader());
+
+    // a dies (stops heart-beating): b takes over after expiry
+    Thread.sleep(leaseMillis + 10);
+    assertFalse(a.isLeader());
+    assertTrue(b.heartbeat());
+    assertFalse(a.heartbeat());
+
+    // b releases: a takes over without waiting
+    b.close();
+    assertFalse(b.isLeader());
+    assertTrue(a.heartbeat());
+    a.close();
+  }
+
+
+
+  @Test
+  public void testRestartAfterUncleanExit() throws Exception {
+    Assumptions.assumeTrue(LeaderLease.HOST != null, "unknown local host");
+    final Object label = new Object() { };
+    final File dir = newMethodRunDir(label);
+    dir.mkdirs();
+    final File file = new File(dir, NotaryConstants.LEADER_LEASE);
+    final long leaseMillis = 60_000;
+    final long expires = System.currentTimeMillis() + leaseMillis;
+
+    // a lease (far from expiring) held by a live process on another host,
+    // or by a live process on this host, is not taken over
+    writeLease(file, "other.example.com/1/" + UUID.randomUUID(), expires);
+    var lease = new LeaderLease(file, leaseMillis, 0, NotaryLog.NULL);
+    assertFalse(lease.heartbeat());
+    writeLease(file, LeaderLease.newId(ProcessHandle.current().pid()), expires);
+    assertFalse(lease.heartbeat());
+
+    // the previous incarnation exited uncleanly, leaving its lease behind
+    writeLease(file, LeaderLease.newId(deadPid()), expires);
+    assertTrue(lease.heartbeat());
+    assertTrue(lease.isLeader());
+    lease.close();
+  }
+
+
+  private void writeLease(File file, String id, long expiresUtc)
+      throws Exception {
+    Files.writeString(
+        file.toPath(), id + " " + expiresUtc + "\n", StandardCharsets.UTF_8);
+  }
+
+
+  /** Returns the PID of a process that has exited. */
+  private long deadPid() throws Exception {
+    var java = new File(new File(System.getProperty("java.home"), "bin"), "java");
+    var process = new ProcessBuilder(java.getPath(), "-version")
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+        .start();
+    assertEquals(0, process.waitFor());
+    final long pid = process.pid();
+    assertTrue(ProcessHandle.of(pid).isEmpty());
+    return pid;
+  }
+
+}
@@ -69,6 +69,35 @@ public class NotaryDTest extends IoTestCase {
     
   }
   
+  
+  @Test
+  public void testUndersizedPool() throws Exception {
+    
+    final Object label = new Object() { };
+    final TimeBinner binner = TimeBinner.MILLIS_64;
+    final long startUtc = System.currentTimeMillis();
+    final int blocksRetained = 100;
+
+    final File dir = newMethodRunDir(label);
+    
+    var notary = Notary.incept(
+        dir,
+        binner,
+        startUtc,
+        blocksRetained);
+    
+    // the 5 fixed daemons, plus entropy, plus (maybe) lease
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> new NotaryD(notary, executor, true));
+    } finally {
+      executor.shutdownNow();
+      notary.close();
+    }
+  }
+  
 
   @Test
   public void test1000() throws Exception {
@@ -25,6 +25,23 @@ import io.crums.sldg.SkipLedger;
  */
 public class BlockProof implements Serial {
   
+  /**
+   * Leading byte of the compact (version 1) serial forms of block proofs
+   * and {@linkplain Crumtrail crumtrails}. The original serial form begins
+   * with the chain's time bin exponent, which is always positive: so the
+   * two forms are distinguished by the first byte.
+   * <h4>Compact Form</h4>
+   * <p>
+   * Counts, indices, and the inception UTC are written as varints.
+   * The skip ledger path is written in its usual (library-defined)
+   * {@linkplain PathPack} form.
+   * </p>
+   * 
+   * @see #writeCompactTo(ByteBuffer)
+   * @see Crumtrail#writeCompactTo(ByteBuffer)
+   */
+  public final static byte COMPACT_V1 = (byte) 0x81;
+  
   private final ChainParams params;
   private final Path chainState;
   
@@ -313,6 +330,39 @@ public class BlockProof implements Serial {
   }
   
   
+  /**
+   * Returns the size of the {@linkplain #COMPACT_V1 compact} serial form.
+   * 
+   * @see #writeCompactTo(ByteBuffer)
+   */
+  public int compactSize() {
+    return 1 + params.compactSize() + chainState.pack().serialSize();
+  }
+  
+  
+  /**
+   * Writes the {@linkplain #COMPACT_V1 compact} serial form.
+   * 
+   * @see #load(ByteBuffer)
+   */
+  public ByteBuffer writeCompactTo(ByteBuffer out)
+      throws BufferOverflowException {
+    out.put(COMPACT_V1);
+    params.writeCompactTo(out);
+    chainState.pack().writeTo(out);
+    return out;
+  }
+  
+  
+  /**
+   * Determines whether the serial form at the given buffer's position is
+   * {@linkplain #COMPACT_V1 compact}. The buffer's position is not advanced.
+   */
+  public static boolean isCompact(ByteBuffer in) {
+    return in.get(in.position()) == COMPACT_V1;
+  }
+  
+  
   /**
    * Loads and returns a memo-ized block proof instance.
    * 
@@ -324,14 +374,21 @@ public class BlockProof implements Serial {
   
   
   /**
-   * Loads and returns an instance, reading the given buffer.
+   * Loads and returns an instance, reading the given buffer. Either
+   * serial form (original, or {@linkplain #COMPACT_V1 compact}) is
+   * accepted.
    * 
    * @param precompute  if {@code true} the returned instance's
    *                    hash computations are memo-ised (faster to use)
    * @return            deserialized instance
    */
   public static BlockProof load(ByteBuffer in, boolean precompute) {
-    var params = ChainParams.load(in);
+    ChainParams params;
+    if (isCompact(in)) {
+      in.get();
+      params = ChainParams.loadCompact(in);
+    } else
+      params = ChainParams.load(in);
     Path chainState;
     {
       var pack = PathPack.load(in);
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import io.crums.tc.except.TimeChainException;
+
+/**
+ * Crumtrails from the <em>same</em> block, sharing a single
+ * {@linkplain BlockProof}. This is the response to a block-grouped
+ * update: rather than vend out a separate block proof with each
+ * crumtrail, the block proof is sent once.
+ *
+ * <h2>Cargo Proofs</h2>
+ * <p>
+ * If the block contains more than one crum, then each trail is
+ * represented by a {@linkplain CargoProof}; if it contains exactly
+ * one crum, then there is only one (lone) trail.
+ * </p>
+ *
+ * @see NotaryService#updateBlock(List, long)
+ * @see #trails()
+ */
+public class BlockTrails {
+
+
+  /**
+   * Creates and returns an instance for a block with only one
+   * (lone) crum.
+   */
+  public static BlockTrails forLone(BlockProof blockProof, Crum crum)
+      throws TimeChainException {
+    return new BlockTrails(
+        blockProof, Crumtrail.newLoneTrail(blockProof, crum));
+  }
+
+
+
+
+  private final BlockProof blockProof;
+  private final List<CargoProof> cargoProofs;
+  private final List<Crumtrail> trails;
+
+
+  /**
+   * Creates an instance for a block containing multiple crums.
+   * The cargo proofs are validated against the block proof.
+   *
+   * @param blockProof    proof containing the block all the
+   *                      cargo proofs belong to
+   * @param cargoProofs   not empty
+   */
+  public BlockTrails(BlockProof blockProof, List<CargoProof> cargoProofs)
+      throws TimeChainException {
+
+    this.blockProof = Objects.requireNonNull(blockProof, "null block proof");
+    this.cargoProofs = List.copyOf(cargoProofs);
+    if (this.cargoProofs.isEmpty())
+      throw new IllegalArgumentException("empty cargo proofs");
+
+    var trails = new ArrayList<Crumtrail>(this.cargoProofs.size());
+    for (var cargoProof : this.cargoProofs)
+      trails.add(Crumtrail.newMerkleTrail(blockProof, cargoProof));
+    this.trails = List.copyOf(trails);
+
+    checkSameBlock();
+  }
+
+
+  private BlockTrails(BlockProof blockProof, Crumtrail loneTrail) {
+    this.blockProof = blockProof;
+    this.cargoProofs = List.of();
+    this.trails = List.of(loneTrail);
+  }
+
+
+  private void checkSameBlock() {
+    final long blockNo = trails.get(0).blockNo();
+    for (int index = trails.size(); index-- > 1; ) {
+      if (trails.get(index).blockNo() != blockNo)
+        throw new IllegalArgumentException(
+            "crums from different blocks [" + blockNo + "] and [" +
+            trails.get(index).blockNo() + "]");
+    }
+  }
+
+
+  /** Returns the shared block proof. */
+  public final BlockProof blockProof() {
+    return blockProof;
+  }
+
+
+  /** Returns the block no. all the crums belong to. */
+  public final long blockNo() {
+    return trails.get(0).blockNo();
+  }
+
+
+  /**
+   * Determines whether the block contains only one (lone) crum.
+   * If {@code true}, then there are no cargo proofs.
+   *
+   * @see #cargoProofs()
+   */
+  public final boolean isLone() {
+    return cargoProofs.isEmpty();
+  }
+
+
+  /**
+   * Returns the cargo proofs. Empty, if {@linkplain #isLone()}.
+   */
+  public final List<CargoProof> cargoProofs() {
+    return cargoProofs;
+  }
+
+
+  /**
+   * Returns the crumtrails, each using the shared block proof.
+   *
+   * @return immutable, not empty list
+   */
+  public final List<Crumtrail> trails() {
+    return trails;
+  }
+
+
+  /** Returns the no. of crumtrails. */
+  public final int size() {
+    return trails.size();
+  }
+
+
+  /**
+   * Returns a version of this instance with a compressed block proof.
+   * If already compressed, then {@code this} is returned.
+   */
+  public BlockTrails compress() {
+    if (blockProof.isCompressed())
+      return this;
+    var bp = blockProof.compress();
+    return
+        isLone() ?
+            forLone(bp, trails.get(0).crum()) :
+            new BlockTrails(bp, cargoProofs);
+  }
+
+}
+
@@ -118,6 +118,19 @@ public class CargoProof extends Proof implements Serial {
   }
   
   public static CargoProof load(ByteBuffer in, int leafCount) throws BufferUnderflowException {
+    return load(in, leafCount, true);
+  }
+  
+  
+  /**
+   * Loads an instance, optionally without validating it.
+   * 
+   * @param verify  if {@code false}, then the returned instance is
+   *                <em>not</em> validated (the caller must)
+   * @see TrailVerifier
+   */
+  static CargoProof load(ByteBuffer in, int leafCount, boolean verify)
+      throws BufferUnderflowException {
 
     final int leafIndex = in.getInt();
 
@@ -149,7 +162,7 @@ public class CargoProof extends Proof implements Serial {
     
     Crum crum = new Crum(cbuf.flip());
     
-    return new CargoProof(leafCount, leafIndex, chain, crum);
+    return new CargoProof(leafCount, leafIndex, chain, crum, verify);
   }
   
   
@@ -188,6 +201,18 @@ public class CargoProof extends Proof implements Serial {
     verifyProof();
   }
 
+  /**
+   * Constructs an instance, verified only if {@code verify} is
+   * {@code true}.
+   */
+  private CargoProof(
+      int leafCount, int leafIndex, byte[][] chain, Crum crum, boolean verify) {
+    super(Constants.HASH_ALGO, leafCount, leafIndex, chain);
+    this.crum = Objects.requireNonNull(crum, "null crum");
+    if (verify)
+      verifyProof();
+  }
+
   /**
    * Constructs a verified instance.
    * 
@@ -240,7 +265,7 @@ public class CargoProof extends Proof implements Serial {
    * proof and that the leaf hash in the Merkle proof indeed
    * matches the hash of the crum.
    */
-  private void verifyProof() {
+  void verifyProof() {
     var digest = DIGEST.newDigest();
     if (!verify(digest))
       throw new MerkleProofException(
@@ -267,6 +292,103 @@ public class CargoProof extends Proof implements Serial {
   public int serialSize() {
     return Crum.DATA_SIZE + 8 + HASH_WIDTH * chainLength(leafCount(), leafIndex());
   }
+
+  
+  /**
+   * Returns the size of the compact serial form. The leaf count and index
+   * are written as varints, the crum's UTC as an offset from its block's
+   * starting UTC; and the first and last hashes in the chain are omitted.
+   * (The first is the crum's witness hash; the last, the merkle root, is
+   * the block's cargo hash.)
+   * 
+   * @param blockUtc  starting UTC of the crum's block
+   * @see #loadCompact(ByteBuffer, int, long, byte[])
+   */
+  int compactSize(long blockUtc) {
+    return
+        Varints.size(leafCount()) + Varints.size(leafIndex()) +
+        HASH_WIDTH * (chainLength(leafCount(), leafIndex()) - 2) +
+        crum.compactSize(blockUtc);
+  }
+
+
+  /**
+   * Writes the compact serial form.
+   * 
+   * @param blockUtc  starting UTC of the crum's block
+   * @see #compactSize(long)
+   */
+  ByteBuffer writeCompactTo(ByteBuffer out, long blockUtc)
+      throws BufferOverflowException {
+    Varints.put(out, leafCount());
+    Varints.put(out, leafIndex());
+    final int last = chainLength(leafCount(), leafIndex()) - 1;
+    int index = 0;
+    for (byte[] link : hashChain()) {
+      if (index != 0 && index != last)
+        out.put(link);
+      ++index;
+    }
+    return crum.writeCompactTo(out, blockUtc);
+  }
+
+
+  /**
+   * Loads and returns a (verified) instance from its compact serial form.
+   * 
+   * @param in        positioned just past the leaf count
+   * @param leafCount &ge; 2
+   * @param blockUtc  starting UTC of the crum's block
+   * @param rootHash  the block's cargo hash
+   * @see #writeCompactTo(ByteBuffer, long)
+   */
+  static CargoProof loadCompact(
+      ByteBuffer in, int leafCount, long blockUtc, byte[] rootHash)
+      throws BufferUnderflowException {
+    return loadCompact(in, leafCount, blockUtc, rootHash, true);
+  }
+
+
+  /**
+   * Loads an instance from its compact serial form, optionally without
+   * validating it.
+   * 
+   * @param verify  if {@code false}, then the returned instance is
+   *                <em>not</em> validated (the caller must)
+   * @see TrailVerifier
+   */
+  static CargoProof loadCompact(
+      ByteBuffer in, int leafCount, long blockUtc, byte[] rootHash,
+      boolean verify)
+      throws BufferUnderflowException {
+
+    final int leafIndex = Varints.getInt(in);
+    final int chainLength = chainLength(leafCount, leafIndex);
+
+    byte[][] chain = new byte[chainLength][];
+    for (int index = 1; index < chainLength - 1; ++index) {
+      byte[] hash = new byte[HASH_WIDTH];
+      in.get(hash);
+      chain[index] = hash;
+    }
+    chain[chainLength - 1] = rootHash;
+
+    Crum crum = Crum.loadCompact(in, blockUtc);
+    chain[0] = crum.witnessHash();
+
+    return new CargoProof(leafCount, leafIndex, chain, crum, verify);
+  }
+
+  
+  /**
+   * Returns the no. of hashes in the {@linkplain #hashChain() hash chain}
+   * of a proof with the given arguments (including the item and the root).
+   * 
+   * @see CargoProofView
+   */
+  static int hashChainLength(int leafCount, int leafIndex) {
+    return chainLength(leafCount, leafIndex);
+  }
   
   
   
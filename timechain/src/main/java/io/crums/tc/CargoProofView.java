@@ -0,0 +1,305 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import static io.crums.tc.Constants.HASH_WIDTH;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Objects;
+
+import io.crums.util.mrkl.Tree;
+
+/**
+ * Flyweight, read-only view of a serialized {@linkplain CargoProof}.
+ * Unlike {@linkplain CargoProof#load(ByteBuffer)}, which copies every
+ * hash in the chain into its own array and verifies on construction,
+ * an instance {@linkplain #verify() verifies} in place, using a
+ * thread-local digest and scratch space: a verification does not
+ * allocate. Instances can be re-pointed at another proof via
+ * {@linkplain #wrap(ByteBuffer, int)}.
+ *
+ * <h2>Tree Shape</h2>
+ * <p>
+ * The left/right position of each node in the proof is computed
+ * arithmetically from the leaf count and index. When a level has
+ * an odd no. of nodes, its last node is carried up, and joined (on the
+ * right) with the last node of the next level that also has an odd
+ * no. of nodes. If the proof does not verify in place, then it's
+ * verified again the usual (allocating) way; so a mismatch here can
+ * only cost performance, not correctness.
+ * </p>
+ * <h2>Thread Safety</h2>
+ * <p>
+ * Instances are <em>not</em> safe under concurrent access; the
+ * intended use is one (reused) instance per thread.
+ * </p>
+ *
+ * @see CargoProof#writeTo(ByteBuffer)
+ */
+public final class CargoProofView {
+
+  private final static byte LEAF_PAD = Tree.LEAF_PAD;
+  private final static byte BRANCH_PAD = Tree.BRANCH_PAD;
+
+
+  /** Per-thread digest and scratch space. */
+  private static class Scratch {
+    final MessageDigest digest = Constants.DIGEST.newDigest();
+    final byte[] value = new byte[HASH_WIDTH];
+    final byte[] link = new byte[HASH_WIDTH];
+    final byte[] crum = new byte[Crum.DATA_SIZE];
+  }
+
+  private final static ThreadLocal<Scratch> SCRATCH =
+      ThreadLocal.withInitial(Scratch::new);
+
+
+
+  private ByteBuffer buffer;
+  private int offset;
+  private int leafCount;
+  private int leafIndex;
+  private int chainLength;
+
+
+  /**
+   * Creates an empty view. It must be {@linkplain #wrap(ByteBuffer, int)
+   * wrapped} before use.
+   */
+  public CargoProofView() {  }
+
+
+  /**
+   * Creates a view of the proof at the given buffer's position.
+   *
+   * @see #wrap(ByteBuffer, int)
+   */
+  public CargoProofView(ByteBuffer buffer) {
+    wrap(buffer, buffer.position());
+  }
+
+
+  /**
+   * Points this view at the serialized proof at the given offset.
+   * Only the proof's header (leaf count and index) is read here; the
+   * rest is read on demand.
+   *
+   * @param buffer  not modified; must not be modified while viewed
+   * @param offset  absolute offset into {@code buffer}
+   * @return {@code this}
+   * @throws BufferUnderflowException if {@code buffer} is too short
+   */
+  public CargoProofView wrap(ByteBuffer buffer, int offset)
+      throws BufferUnderflowException {
+
+    Objects.checkIndex(offset, buffer.limit());
+    if (buffer.limit() - offset < 8)
+      throw new BufferUnderflowException();
+    int count = buffer.getInt(offset);
+    int index = buffer.getInt(offset + 4);
+    if (count < 2 || index < 0 || index >= count)
+      throw new IllegalArgumentException(
+          "leaf count/index " + count + "/" + index + " at offset " + offset);
+    int length = CargoProof.hashChainLength(count, index);
+    if (buffer.limit() - offset < 8 + length * HASH_WIDTH + Crum.DATA_SIZE)
+      throw new BufferUnderflowException();
+
+    this.buffer = buffer;
+    this.offset = offset;
+    this.leafCount = count;
+    this.leafIndex = index;
+    this.chainLength = length;
+    return this;
+  }
+
+
+  /** Returns the no. of leaves in the merkle tree. */
+  public int leafCount() {
+    return leafCount;
+  }
+
+
+  /** Returns the crum's leaf index. */
+  public int leafIndex() {
+    return leafIndex;
+  }
+
+
+  /** Returns the no. of bytes the proof occupies in the buffer. */
+  public int serialSize() {
+    return 8 + chainLength * HASH_WIDTH + Crum.DATA_SIZE;
+  }
+
+
+  /** Returns the crum's UTC. */
+  public long utc() {
+    return buffer.getLong(crumOffset() + HASH_WIDTH);
+  }
+
+
+  /**
+   * Copies the merkle root hash into the given array.
+   *
+   * @param out   at least 32 bytes long
+   * @return {@code out}
+   */
+  public byte[] rootHash(byte[] out) {
+    buffer.get(linkOffset(chainLength - 1), out, 0, HASH_WIDTH);
+    return out;
+  }
+
+
+  /**
+   * Verifies the proof. Does not allocate unless the proof fails to
+   * verify in place (see class note).
+   *
+   * @return {@code true} iff the proof is valid
+   */
+  public boolean verify() {
+    return verifyInPlace() || verifyCopy();
+  }
+
+
+  /**
+   * Returns a (verified) {@linkplain CargoProof} copy. Allocates.
+   */
+  public CargoProof toCargoProof() {
+    return CargoProof.load(buffer.duplicate().position(offset));
+  }
+
+
+
+  /** Verifies without allocating. Package-private for testing. */
+  boolean verifyInPlace() {
+    var s = SCRATCH.get();
+    var digest = s.digest;
+    try {
+      // the first link is the hash of the crum
+      buffer.get(crumOffset(), s.crum);
+      digest.reset();
+      digest.update(s.crum);
+      digest.digest(s.value, 0, HASH_WIDTH);
+      readLink(0, s.link);
+      if (!Arrays.equals(s.value, s.link))
+        return false;
+
+      int count = leafCount;
+      int index = leafIndex;
+      int level = 0;
+      int carryLevel = -1;      // level the pending carry is from; -1, if none
+      boolean carried = false;  // whether our node is the pending carry
+      boolean leaf = true;      // whether our node is a leaf
+      int link = 1;
+      final int rootLink = chainLength - 1;
+
+      for (; count > 1 || carryLevel != -1; ++level) {
+        final boolean odd = (count & 1) == 1;
+        if (carried) {
+          if (odd) {
+            // joined with the last node at this level, on our left
+            if (link == rootLink)
+              return false;
+            readLink(link++, s.link);
+            hashBranch(digest, s.link, false, s.value, leaf, s.value);
+            carried = false;
+            leaf = false;
+            index = count / 2;
+          }
+        } else if (odd && index == count - 1) {
+          if (carryLevel == -1)
+            carried = true;
+          else {
+            // joined with the carry, on our right
+            if (link == rootLink)
+              return false;
+            readLink(link++, s.link);
+            hashBranch(digest, s.value, leaf, s.link, carryLevel == 0, s.value);
+            leaf = false;
+            index = count / 2;
+          }
+        } else {
+          if (link == rootLink)
+            return false;
+          readLink(link++, s.link);
+          if ((index & 1) == 1)
+            hashBranch(digest, s.link, level == 0, s.value, leaf, s.value);
+          else
+            hashBranch(digest, s.value, leaf, s.link, level == 0, s.value);
+          leaf = false;
+          index >>= 1;
+        }
+
+        if (!odd)
+          count >>= 1;
+        else if (carryLevel == -1) {
+          count >>= 1;
+          carryLevel = level;
+        } else {
+          count = (count + 1) >> 1;
+          carryLevel = -1;
+        }
+      }
+
+      if (link != rootLink)
+        return false;
+      readLink(rootLink, s.link);
+      return Arrays.equals(s.value, s.link);
+
+    } catch (DigestException dx) {
+      throw new RuntimeException("on verifying " + this + ": " + dx, dx);
+    }
+  }
+
+
+  /** Verifies the usual way, on a copy. */
+  private boolean verifyCopy() {
+    try {
+      toCargoProof();
+      return true;
+    } catch (RuntimeException x) {
+      return false;
+    }
+  }
+
+
+  private int linkOffset(int link) {
+    return offset + 8 + link * HASH_WIDTH;
+  }
+
+  private int crumOffset() {
+    return linkOffset(chainLength);
+  }
+
+  private void readLink(int link, byte[] out) {
+    buffer.get(linkOffset(link), out, 0, HASH_WIDTH);
+  }
+
+
+  private static void hashBranch(
+      MessageDigest digest,
+      byte[] left, boolean leftLeaf, byte[] right, boolean rightLeaf,
+      byte[] out) throws DigestException {
+    digest.reset();
+    digest.update(leftLeaf ? LEAF_PAD : BRANCH_PAD);
+    digest.update(left);
+    digest.update(rightLeaf ? LEAF_PAD : BRANCH_PAD);
+    digest.update(right);
+    digest.digest(out, 0, HASH_WIDTH);
+  }
+
+
+  @Override
+  public String toString() {
+    return
+        buffer == null ?
+            "CargoProofView[]" :
+            "CargoProofView[" + leafIndex + "/" + leafCount + " @" + offset + "]";
+  }
+
+}
@@ -219,6 +219,37 @@ public class ChainParams implements Serial {
   }
   
   
+  /**
+   * Returns the size of the compact serial form: the inception UTC
+   * is written as a varint.
+   * 
+   * @see #writeCompactTo(ByteBuffer)
+   */
+  int compactSize() {
+    return 1 + Varints.size(inceptionUtc);
+  }
+  
+  
+  /**
+   * Writes the compact serial form.
+   * 
+   * @see #loadCompact(ByteBuffer)
+   */
+  ByteBuffer writeCompactTo(ByteBuffer out) throws BufferOverflowException {
+    out.put((byte) timeBinner.shift);
+    return Varints.put(out, inceptionUtc);
+  }
+  
+  
+  /** Loads an instance from its compact serial form. */
+  static ChainParams loadCompact(ByteBuffer data) {
+    int binExponent = data.get();
+    TimeBinner timeBinner = TimeBinner.forExponent(binExponent);
+    long inceptionUtc = Varints.get(data);
+    return new ChainParams(timeBinner, inceptionUtc);
+  }
+  
+  
   /**
    * Loads and returns an instance, reading the given buffer.
    * 
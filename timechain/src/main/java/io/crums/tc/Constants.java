@@ -51,6 +51,18 @@ public class Constants {
     public final static String WITNESS_URI = API + WITNESS;
     public final static String UPDATE = "update";
     public final static String UPDATE_URI = API + UPDATE;
+    /**
+     * Block-grouped update. Takes multiple {@linkplain #QS_HASH hash} /
+     * {@linkplain #QS_UTC utc} pairs, all from the same block.
+     */
+    public final static String UPDATE_BLOCK = "update_block";
+    public final static String UPDATE_BLOCK_URI = API + UPDATE_BLOCK;
+    /**
+     * Bundled update. Takes multiple {@linkplain #QS_HASH hash} /
+     * {@linkplain #QS_UTC utc} pairs, from any no. of blocks.
+     */
+    public final static String UPDATE_BUNDLE = "update_bundle";
+    public final static String UPDATE_BUNDLE_URI = API + UPDATE_BUNDLE;
     public final static String STATE = "state";
     public final static String STATE_URI = API + STATE;
     
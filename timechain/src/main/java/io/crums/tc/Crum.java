@@ -108,6 +108,41 @@ public class Crum extends HashUtc implements Comparable<Crum>, Serial {
   }
   
   
+  /**
+   * Returns the size of the compact serial form: the UTC is written as a
+   * varint offset from the given block's starting UTC.
+   * 
+   * @param blockUtc  starting UTC of the crum's block (&le; {@code utc()})
+   */
+  final int compactSize(long blockUtc) {
+    return Constants.HASH_WIDTH + Varints.size(utc() - blockUtc);
+  }
+  
+  /**
+   * Writes the compact serial form.
+   * 
+   * @param blockUtc  starting UTC of the crum's block (&le; {@code utc()})
+   * @see #compactSize(long)
+   */
+  final ByteBuffer writeCompactTo(ByteBuffer out, long blockUtc)
+      throws BufferOverflowException {
+    out.put(hash());
+    return Varints.put(out, utc() - blockUtc);
+  }
+  
+  /**
+   * Loads an instance from its compact serial form.
+   * 
+   * @param blockUtc  starting UTC of the crum's block
+   * @see #writeCompactTo(ByteBuffer, long)
+   */
+  static Crum loadCompact(ByteBuffer in, long blockUtc) {
+    byte[] hash = new byte[Constants.HASH_WIDTH];
+    in.get(hash);
+    return new Crum(hash, blockUtc + Varints.get(in));
+  }
+  
+  
 
 }
 
@@ -0,0 +1,450 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import static io.crums.tc.Constants.HASH_WIDTH;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import io.crums.util.Lists;
+
+/**
+ * Crums stored contiguously in a flat {@code long[]}, {@linkplain #STRIDE 5}
+ * longs per crum: the hash's 4 (big endian) longs, followed by the UTC.
+ * Unlike a collection of {@linkplain Crum} instances (each wrapping its own
+ * buffer), adding a crum here does not allocate (once the array's capacity
+ * is reached, it's grown, as with an {@code ArrayList}); elements are
+ * accessed by index.
+ *
+ * <h2>Ordering</h2>
+ * <p>
+ * Crums are ordered by hash, then UTC (as with
+ * {@linkplain Crum#compareTo(Crum)}). The hash order is
+ * {@linkplain HashUtc#HASH_COMPARATOR}'s (which is also
+ * {@code ByteBuffer}'s): lexicographic by <em>signed</em> byte. The
+ * hash longs are stored with the sign bit of every byte flipped, so
+ * that comparing them as <em>unsigned</em> longs yields that order;
+ * a hash comparison is at most 4 long comparisons. (See also
+ * {@linkplain HashUtc#compareHashes(ByteBuffer, int, ByteBuffer, int)}.)
+ * </p>
+ * <h2>Sorting</h2>
+ * <p>
+ * {@linkplain #sort()} is an MSD radix sort (on the hash bytes) of an
+ * index array, followed by an in-place permutation of the crums;
+ * {@linkplain #sortOrder()} returns just the index array (for callers that
+ * keep data parallel to the crums).
+ * </p>
+ * <h2>Thread Safety</h2>
+ * <p>
+ * Not thread-safe.
+ * </p>
+ */
+public final class CrumArray {
+
+  /** No. of longs per crum. */
+  public final static int STRIDE = 5;
+
+  /** Flips the sign bit of every byte. */
+  private final static long BIAS = 0x8080808080808080L;
+
+  private final static int HASH_LONGS = HASH_WIDTH / 8;
+
+  /** Ranges no larger than this are insertion-sorted. */
+  private final static int INSERTION_SORT_MAX = 24;
+
+
+
+  private static long getLongBE(ByteBuffer buffer, int offset) {
+    long value = buffer.getLong(offset);
+    return
+        buffer.order() == ByteOrder.BIG_ENDIAN ?
+            value : Long.reverseBytes(value);
+  }
+
+
+
+  private long[] data;
+  private int size;
+
+
+  /** Creates an empty instance with capacity for 16 crums. */
+  public CrumArray() {
+    this(16);
+  }
+
+
+  /**
+   * Creates an empty instance with the given initial capacity.
+   *
+   * @param capacity  no. of crums (&ge; 0)
+   */
+  public CrumArray(int capacity) {
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity: " + capacity);
+    this.data = new long[Math.multiplyExact(capacity, STRIDE)];
+  }
+
+
+  /** Returns the no. of crums. */
+  public int size() {
+    return size;
+  }
+
+
+  /** Returns {@code size() == 0}. */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+
+  /** Removes all the crums. The capacity is retained. */
+  public void clear() {
+    size = 0;
+  }
+
+
+  private int ensureNext() {
+    int offset = size * STRIDE;
+    if (offset == data.length) {
+      int capacity = Math.max(16, size + (size >> 1));
+      data = Arrays.copyOf(data, Math.multiplyExact(capacity, STRIDE));
+    }
+    return offset;
+  }
+
+
+  /** Appends the given crum. */
+  public void add(Crum crum) {
+    var serial = crum.serialForm();
+    long utc = serial.getLong(HASH_WIDTH);
+    add(serial.limit(HASH_WIDTH), utc);
+  }
+
+
+  /**
+   * Appends a crum with the given hash and UTC. Unlike the
+   * {@linkplain Crum} constructor, the UTC is not sanity checked.
+   *
+   * @param hash  with 32 remaining bytes (not modified)
+   */
+  public void add(ByteBuffer hash, long utc) {
+    if (hash.remaining() != HASH_WIDTH)
+      throw new IllegalArgumentException(
+          "hash remaining bytes: " + hash.remaining());
+    int offset = ensureNext();
+    int pos = hash.position();
+    for (int index = 0; index < HASH_LONGS; ++index)
+      data[offset + index] = getLongBE(hash, pos + index * 8) ^ BIAS;
+    data[offset + HASH_LONGS] = utc;
+    ++size;
+  }
+
+
+  /** Appends the crum at the given index in {@code other}. */
+  public void add(CrumArray other, int index) {
+    Objects.checkIndex(index, other.size);
+    int offset = ensureNext();
+    System.arraycopy(other.data, index * STRIDE, data, offset, STRIDE);
+    ++size;
+  }
+
+
+  /** Returns the UTC of the crum at the given index. */
+  public long utc(int index) {
+    Objects.checkIndex(index, size);
+    return data[index * STRIDE + HASH_LONGS];
+  }
+
+
+  /** Returns (a copy of) the hash of the crum at the given index. */
+  public byte[] hash(int index) {
+    var hash = ByteBuffer.allocate(HASH_WIDTH);
+    putHash(index, hash);
+    return hash.array();
+  }
+
+
+  /**
+   * Returns the given 8-byte word of the hash of the crum at the given
+   * index, read big-endian. Does not allocate.
+   *
+   * @param word  in the range [0, 4)
+   */
+  public long hashWord(int index, int word) {
+    Objects.checkIndex(index, size);
+    Objects.checkIndex(word, HASH_LONGS);
+    return data[index * STRIDE + word] ^ BIAS;
+  }
+
+
+  private ByteBuffer putHash(int index, ByteBuffer out) {
+    Objects.checkIndex(index, size);
+    int offset = index * STRIDE;
+    for (int w = 0; w < HASH_LONGS; ++w)
+      out.putLong(data[offset + w] ^ BIAS);
+    return out;
+  }
+
+
+  /**
+   * Writes the crum at the given index in its {@linkplain Crum#serialForm()
+   * serial form}.
+   *
+   * @return {@code out}
+   */
+  public ByteBuffer writeTo(int index, ByteBuffer out)
+      throws BufferOverflowException {
+    if (out.remaining() < Crum.DATA_SIZE)
+      throw new BufferOverflowException();
+    putHash(index, out);
+    return out.putLong(data[index * STRIDE + HASH_LONGS]);
+  }
+
+
+  /** Returns the crum at the given index as a new instance. */
+  public Crum get(int index) {
+    return new Crum(writeTo(index, ByteBuffer.allocate(Crum.DATA_SIZE)).flip());
+  }
+
+
+  /**
+   * Returns a read-only list view of the crums. Each invocation of
+   * {@code get(int)} creates a new instance.
+   */
+  public List<Crum> asList() {
+    return new Lists.RandomAccessList<Crum>() {
+      @Override
+      public Crum get(int index) {
+        return CrumArray.this.get(index);
+      }
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+
+  /**
+   * Compares the crums at the given indices, by hash, then UTC.
+   */
+  public int compare(int i, int j) {
+    Objects.checkIndex(i, size);
+    Objects.checkIndex(j, size);
+    return compareAt(data, i * STRIDE, data, j * STRIDE);
+  }
+
+
+  /**
+   * Determines whether the crum at index {@code i} has the same hash as
+   * the crum at index {@code j} in {@code other}.
+   */
+  public boolean hashEquals(int i, CrumArray other, int j) {
+    Objects.checkIndex(i, size);
+    Objects.checkIndex(j, other.size);
+    return
+        Arrays.equals(
+            data, i * STRIDE, i * STRIDE + HASH_LONGS,
+            other.data, j * STRIDE, j * STRIDE + HASH_LONGS);
+  }
+
+
+  /**
+   * Compares the hash of the crum at the given index with the given hash.
+   *
+   * @param hash  with 32 remaining bytes (not modified)
+   */
+  public int compareHash(int index, ByteBuffer hash) {
+    Objects.checkIndex(index, size);
+    return compareHashAt(index * STRIDE, hash);
+  }
+
+
+  private int compareHashAt(int offset, ByteBuffer hash) {
+    int pos = hash.position();
+    for (int w = 0; w < HASH_LONGS; ++w) {
+      long key = getLongBE(hash, pos + w * 8) ^ BIAS;
+      if (data[offset + w] != key)
+        return Long.compareUnsigned(data[offset + w], key);
+    }
+    return 0;
+  }
+
+
+  /**
+   * Searches the given range of sorted crums for a crum with the given
+   * hash, and returns its index, if found; otherwise,
+   * {@code -(insertion point) - 1}.
+   *
+   * @param hash  with 32 remaining bytes (not modified)
+   *
+   * @see Arrays#binarySearch(long[], int, int, long)
+   */
+  public int binarySearch(int fromIndex, int toIndex, ByteBuffer hash) {
+    Objects.checkFromToIndex(fromIndex, toIndex, size);
+    if (hash.remaining() != HASH_WIDTH)
+      throw new IllegalArgumentException(
+          "hash remaining bytes: " + hash.remaining());
+    int lo = fromIndex;
+    int hi = toIndex - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int comp = compareHashAt(mid * STRIDE, hash);
+      if (comp < 0)
+        lo = mid + 1;
+      else if (comp > 0)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return -(lo + 1);
+  }
+
+
+  /**
+   * Searches the (sorted) crums for a crum with the given hash.
+   *
+   * @return {@code binarySearch(0, size(), hash)}
+   */
+  public int binarySearch(ByteBuffer hash) {
+    return binarySearch(0, size, hash);
+  }
+
+
+  /** Determines whether the crums are sorted. */
+  public boolean isSorted() {
+    for (int index = 1; index < size; ++index)
+      if (compareAt(data, (index - 1) * STRIDE, data, index * STRIDE) > 0)
+        return false;
+    return true;
+  }
+
+
+  /** Sorts the crums by hash, then UTC. */
+  public void sort() {
+    permute(sortOrder());
+  }
+
+
+  /**
+   * Returns the sort order of the crums without moving them: the
+   * {@code k}<sup>th</sup> element of the returned array is the
+   * index of the {@code k}<sup>th</sup> crum in sort order.
+   */
+  public int[] sortOrder() {
+    int[] order = new int[size];
+    for (int index = 0; index < size; ++index)
+      order[index] = index;
+    if (size > 1)
+      new RadixSorter(data, order).sort(0, size, 0);
+    return order;
+  }
+
+
+  /** Rearranges the crums so that crum {@code order[k]} lands at {@code k}. */
+  private void permute(int[] order) {
+    var done = new boolean[order.length];
+    long[] tmp = new long[STRIDE];
+    for (int start = 0; start < order.length; ++start) {
+      if (done[start] || order[start] == start) {
+        done[start] = true;
+        continue;
+      }
+      System.arraycopy(data, start * STRIDE, tmp, 0, STRIDE);
+      int dest = start;
+      while (true) {
+        done[dest] = true;
+        int src = order[dest];
+        if (src == start) {
+          System.arraycopy(tmp, 0, data, dest * STRIDE, STRIDE);
+          break;
+        }
+        System.arraycopy(data, src * STRIDE, data, dest * STRIDE, STRIDE);
+        dest = src;
+      }
+    }
+  }
+
+
+  private static int compareAt(long[] a, int aOffset, long[] b, int bOffset) {
+    for (int w = 0; w < HASH_LONGS; ++w) {
+      if (a[aOffset + w] != b[bOffset + w])
+        return Long.compareUnsigned(a[aOffset + w], b[bOffset + w]);
+    }
+    return Long.compare(a[aOffset + HASH_LONGS], b[bOffset + HASH_LONGS]);
+  }
+
+
+  /**
+   * MSD radix sort of an index array, one (biased) hash byte per level.
+   * Counting arrays are allocated once per level, not per bucket.
+   */
+  private static class RadixSorter {
+
+    private final long[] data;
+    private final int[] order;
+    private final int[] aux;
+    private final int[][] counts = new int[HASH_WIDTH][];
+
+    RadixSorter(long[] data, int[] order) {
+      this.data = data;
+      this.order = order;
+      this.aux = new int[order.length];
+    }
+
+    private int digit(int index, int level) {
+      long word = data[index * STRIDE + (level >>> 3)];
+      return (int) (word >>> (56 - ((level & 7) << 3))) & 0xff;
+    }
+
+    void sort(int lo, int hi, int level) {
+      if (hi - lo <= INSERTION_SORT_MAX || level == HASH_WIDTH) {
+        insertionSort(lo, hi);
+        return;
+      }
+      int[] count = counts[level];
+      if (count == null)
+        count = counts[level] = new int[257];
+      else
+        Arrays.fill(count, 0);
+
+      for (int k = lo; k < hi; ++k)
+        ++count[digit(order[k], level) + 1];
+      for (int d = 0; d < 256; ++d)
+        count[d + 1] += count[d];
+      for (int k = lo; k < hi; ++k) {
+        int index = order[k];
+        aux[lo + count[digit(index, level)]++] = index;
+      }
+      System.arraycopy(aux, lo, order, lo, hi - lo);
+
+      // count[d] is now the end of bucket d (relative to lo)
+      int start = lo;
+      for (int d = 0; d < 256; ++d) {
+        int end = lo + count[d];
+        if (end - start > 1)
+          sort(start, end, level + 1);
+        start = end;
+      }
+    }
+
+    private void insertionSort(int lo, int hi) {
+      for (int k = lo + 1; k < hi; ++k) {
+        int index = order[k];
+        int j = k - 1;
+        for (; j >= lo &&
+            compareAt(data, order[j] * STRIDE, data, index * STRIDE) > 0; --j)
+          order[j + 1] = order[j];
+        order[j + 1] = index;
+      }
+    }
+  }
+
+}
@@ -235,7 +235,7 @@ public abstract class Crumtrail implements Serial {
     }
 
 
-    private MerkleTrail(BlockProof blockProof, CargoProof cargoProof, boolean trustMe) {
+    MerkleTrail(BlockProof blockProof, CargoProof cargoProof, boolean trustMe) {
       super(blockProof);
       this.cargoProof = cargoProof;
     }
@@ -308,7 +308,7 @@ public abstract class Crumtrail implements Serial {
     }
 
 
-    private LoneTrail(BlockProof blockProof, Crum crum, boolean trustMe) {
+    LoneTrail(BlockProof blockProof, Crum crum, boolean trustMe) {
       super(blockProof);
       this.crum = crum;
     }
@@ -354,7 +354,76 @@ public abstract class Crumtrail implements Serial {
   }
   
   
+  /**
+   * Returns the size of the {@linkplain BlockProof#COMPACT_V1 compact}
+   * serial form.
+   * 
+   * @see #writeCompactTo(ByteBuffer)
+   */
+  public final int compactSize() {
+    final long blockNo = blockNo();
+    final long blockUtc = chainParams().utcForBlockNo(blockNo);
+    int size =
+        blockProof.compactSize() +
+        Varints.size(blockProof.blockNo() - blockNo);
+    return
+        size + (isMerkled() ?
+            asMerkleTrail().cargoProof().compactSize(blockUtc) :
+            Varints.size(1) + crum().compactSize(blockUtc));
+  }
+
+
+  /**
+   * Writes the {@linkplain BlockProof#COMPACT_V1 compact} serial form.
+   * Besides the compact block proof, the crum's block no. is written as
+   * a varint offset from the block proof's last block no., and the crum's
+   * UTC as a varint offset from its block's starting UTC. For a merkle
+   * trail, the first and last hashes of the cargo proof are not written
+   * (both are recovered on load).
+   * <h4>Format</h4>
+   * <pre>
+   *   COMPACT_BLOCK_PROOF
+   *   BLOCK_OFFSET (varint)
+   *   CRUM_COUNT (varint)
+   *   [LEAF_INDEX (varint) HASH*]      (if CRUM_COUNT &gt; 1)
+   *   CRUM_HASH UTC_OFFSET (varint)
+   * </pre>
+   * 
+   * @see #load(ByteBuffer)
+   */
+  public final ByteBuffer writeCompactTo(ByteBuffer out)
+      throws BufferOverflowException {
+    final long blockNo = blockNo();
+    final long blockUtc = chainParams().utcForBlockNo(blockNo);
+    blockProof.writeCompactTo(out);
+    Varints.put(out, blockProof.blockNo() - blockNo);
+    if (isMerkled())
+      return asMerkleTrail().cargoProof().writeCompactTo(out, blockUtc);
+    Varints.put(out, 1);
+    return crum().writeCompactTo(out, blockUtc);
+  }
+
+
+  /**
+   * Returns the {@linkplain BlockProof#COMPACT_V1 compact} serial form in a
+   * new buffer.
+   */
+  public final ByteBuffer serializeCompact() {
+    return writeCompactTo(ByteBuffer.allocate(compactSize())).flip();
+  }
+  
+  
+  /**
+   * Loads and returns an instance from either its original or its
+   * {@linkplain BlockProof#COMPACT_V1 compact} serial form. The form is
+   * detected from the first byte.
+   * 
+   * @see #writeTo(ByteBuffer)
+   * @see #writeCompactTo(ByteBuffer)
+   */
   public static Crumtrail load(ByteBuffer in) throws SerialFormatException {
+    if (in.hasRemaining() && BlockProof.isCompact(in))
+      return loadCompact(in);
     try {
       var blockProof = BlockProof.load(in);
       int crums = in.getInt();
@@ -376,6 +445,33 @@ public abstract class Crumtrail implements Serial {
       throw new SerialFormatException(x);
     }
   }
+
+  
+  private static Crumtrail loadCompact(ByteBuffer in)
+      throws SerialFormatException {
+    try {
+      var blockProof = BlockProof.load(in);
+      final long blockNo = blockProof.blockNo() - Varints.get(in);
+      final long blockUtc = blockProof.chainParams().utcForBlockNo(blockNo);
+      int crums = Varints.getInt(in);
+      if (crums < 1)
+        throw new SerialFormatException("crum count: " + crums);
+
+      if (crums == 1)
+        return new LoneTrail(blockProof, Crum.loadCompact(in, blockUtc));
+
+      byte[] rootHash = new byte[Constants.HASH_WIDTH];
+      blockProof.chainState().getRowByNumber(blockNo).inputHash()
+          .duplicate().get(rootHash);
+      var cargoProof = CargoProof.loadCompact(in, crums, blockUtc, rootHash);
+      return new MerkleTrail(blockProof, cargoProof);
+
+    } catch (SerialFormatException sfx) {
+      throw sfx;
+    } catch (Exception x) {
+      throw new SerialFormatException(x);
+    }
+  }
   
 
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import static io.crums.tc.Constants.HASH_WIDTH;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import io.crums.io.SerialFormatException;
+
+/**
+ * Lazy, read-only view of a serialized {@linkplain Crumtrail}. Unlike
+ * {@linkplain Crumtrail#load(ByteBuffer)}, which parses the whole
+ * structure, memo-ises the block proof's hashes, and verifies it all, an
+ * instance only reads the fields asked for (the crum, its block no.),
+ * straight from the buffer. Use it to scan (e.g. memory-mapped) trail
+ * archives, and only {@linkplain #materialize() materialize} (or
+ * {@linkplain #verify() verify}) the trails that pass the filter.
+ * Instances can be re-pointed at another trail via
+ * {@linkplain #wrap(ByteBuffer, int, int)}.
+ *
+ * <h2>Serial Forms</h2>
+ * <p>
+ * The trail's extent must be known (trails are stored one per file, or
+ * length-delimited). In the original serial form, the crum is always the
+ * last 40 bytes, and the chain parameters (from which the crum's block
+ * no. is computed) are the first 9: so the view reads these in place,
+ * without allocating. In the {@linkplain BlockProof#COMPACT_V1 compact}
+ * form, the crum can only be located by parsing what comes before it;
+ * for such trails, the view's accessors materialize the trail (once) and
+ * read from that.
+ * </p>
+ * <h2>Thread Safety</h2>
+ * <p>
+ * Instances are <em>not</em> safe under concurrent access.
+ * </p>
+ *
+ * @see Crumtrail#writeTo(ByteBuffer)
+ */
+public final class CrumtrailView {
+
+  /** Chain params, lone crum count, and crum: the least a trail takes. */
+  private final static int MIN_SIZE = ChainParams.BYTE_SIZE + 4 + Crum.DATA_SIZE;
+
+
+  private ByteBuffer buffer;
+  private int offset;
+  private int length;
+  private boolean compact;
+  /** Materialized trail; set only on demand. */
+  private Crumtrail trail;
+
+
+  /**
+   * Creates an empty view. It must be {@linkplain #wrap(ByteBuffer, int, int)
+   * wrapped} before use.
+   */
+  public CrumtrailView() {  }
+
+
+  /**
+   * Points this view at the trail occupying the given buffer's remaining
+   * bytes.
+   *
+   * @return {@code wrap(buffer, buffer.position(), buffer.remaining())}
+   */
+  public CrumtrailView wrap(ByteBuffer buffer) {
+    return wrap(buffer, buffer.position(), buffer.remaining());
+  }
+
+
+  /**
+   * Points this view at the serialized trail at the given extent.
+   * Only the first byte is read here (to detect the serial form).
+   *
+   * @param buffer  not modified; must not be modified while viewed
+   * @param offset  absolute offset into {@code buffer}
+   * @param length  the trail's {@linkplain Crumtrail#serialSize() serial size}
+   * @return {@code this}
+   */
+  public CrumtrailView wrap(ByteBuffer buffer, int offset, int length) {
+    Objects.checkFromIndexSize(offset, length, buffer.limit());
+    boolean compact = length > 0 && buffer.get(offset) == BlockProof.COMPACT_V1;
+    if (!compact && length < MIN_SIZE)
+      throw new BufferUnderflowException();
+
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+    this.compact = compact;
+    this.trail = null;
+    return this;
+  }
+
+
+  /**
+   * Determines whether the trail is in the {@linkplain BlockProof#COMPACT_V1
+   * compact} serial form.
+   */
+  public boolean isCompact() {
+    return compact;
+  }
+
+
+  /** Returns the no. of bytes the trail occupies in the buffer. */
+  public int serialSize() {
+    return length;
+  }
+
+
+  private int crumOffset() {
+    return offset + length - Crum.DATA_SIZE;
+  }
+
+
+  /** Returns the crum's UTC. */
+  public long utc() {
+    return
+        compact ?
+            materialize().crum().utc() :
+            buffer.getLong(crumOffset() + HASH_WIDTH);
+  }
+
+
+  /**
+   * Returns the block no. the crum is recorded in.
+   *
+   * @see Crumtrail#blockNo()
+   */
+  public long blockNo() {
+    if (compact)
+      return materialize().blockNo();
+    var binner = TimeBinner.forExponent(buffer.get(offset));
+    long inceptionUtc = buffer.getLong(offset + 1);
+    long utc = utc();
+    if (utc < inceptionUtc)
+      throw new SerialFormatException(
+          "crum utc " + utc + " < inception utc " + inceptionUtc);
+    return binner.toBinNo(utc - inceptionUtc) + 1;
+  }
+
+
+  /**
+   * Determines whether the crum's hash equals the given hash. Does not
+   * allocate (unless {@linkplain #isCompact() compact}).
+   *
+   * @param hash  with 32 remaining bytes (not modified)
+   */
+  public boolean hashEquals(ByteBuffer hash) {
+    if (hash.remaining() != HASH_WIDTH)
+      throw new IllegalArgumentException(
+          "hash remaining bytes: " + hash.remaining());
+    if (compact)
+      return materialize().crum().hash().equals(hash);
+    return HashUtc.equalHashes(
+        buffer, crumOffset(), hash.duplicate(), hash.position());
+  }
+
+
+  /**
+   * Copies the crum's hash into the given array.
+   *
+   * @param out   at least 32 bytes long
+   * @return {@code out}
+   */
+  public byte[] hash(byte[] out) {
+    if (compact)
+      materialize().crum().hash().get(out, 0, HASH_WIDTH);
+    else
+      buffer.get(crumOffset(), out, 0, HASH_WIDTH);
+    return out;
+  }
+
+
+  /** Returns the crum (as a new instance). */
+  public Crum crum() {
+    if (compact)
+      return materialize().crum();
+    var data = ByteBuffer.allocate(Crum.DATA_SIZE);
+    buffer.get(crumOffset(), data.array());
+    return new Crum(data);
+  }
+
+
+  /**
+   * Parses, verifies, and returns the trail. The result is cached
+   * (until the next {@linkplain #wrap(ByteBuffer, int, int) wrap}).
+   *
+   * @throws SerialFormatException if the trail is malformed, or fails
+   *         verification
+   */
+  public Crumtrail materialize() throws SerialFormatException {
+    if (trail == null) {
+      var in = buffer.duplicate().limit(offset + length).position(offset);
+      var loaded = Crumtrail.load(in);
+      if (in.hasRemaining())
+        throw new SerialFormatException(
+            in.remaining() + " trailing bytes in trail at offset " + offset);
+      trail = loaded;
+    }
+    return trail;
+  }
+
+
+  /**
+   * Verifies the trail.
+   *
+   * @return {@code true} iff the trail materializes (and is therefore valid)
+   * @see #materialize()
+   */
+  public boolean verify() {
+    try {
+      materialize();
+      return true;
+    } catch (RuntimeException x) {
+      return false;
+    }
+  }
+
+
+  @Override
+  public String toString() {
+    return
+        buffer == null ?
+            "CrumtrailView[]" :
+            "CrumtrailView[" + length + " bytes @" + offset +
+            (compact ? ", compact]" : "]");
+  }
+
+}
@@ -20,9 +20,30 @@ import io.crums.util.IntegralStrings;
 public class HashUtc {
   
   /**
-   * Compares 2 instances solely by {@linkplain #hash() hash}.
+   * Compares 2 instances solely by {@linkplain #hash() hash}. The order
+   * is lexicographic by <em>signed</em> byte (the same as
+   * {@code ByteBuffer}'s). This order is baked into persisted structures
+   * (e.g. the notary's sorted merkle tree files), so it is retained; but
+   * the comparison is done 8 bytes at a time (see
+   * {@linkplain #compareHashes(ByteBuffer, int, ByteBuffer, int)}).
+   * 
+   * @see #LEGACY_HASH_COMPARATOR
+   * @see #UNSIGNED_HASH_COMPARATOR
    */
   public final static Comparator<HashUtc> HASH_COMPARATOR = new Comparator<>() {
+    @Override
+    public int compare(HashUtc a, HashUtc b) {
+      return a == b ? 0 : compareHashes(a.data, 0, b.data, 0);
+    }
+  };
+  
+  
+  /**
+   * The original, byte-by-byte implementation of
+   * {@linkplain #HASH_COMPARATOR}. Imposes the same order; retained as
+   * a reference (for testing and benchmarking).
+   */
+  public final static Comparator<HashUtc> LEGACY_HASH_COMPARATOR = new Comparator<>() {
     @Override
     public int compare(HashUtc a, HashUtc b) {
       for (int index = 0; index < HASH_WIDTH; ++index) {
@@ -33,6 +54,72 @@ public class HashUtc {
       return 0;
     }
   };
+  
+  
+  /**
+   * Compares 2 instances solely by {@linkplain #hash() hash}, lexicographic
+   * by <em>unsigned</em> byte (i.e. as big endian, unsigned 256-bit
+   * integers). This is <em>not</em> the order persisted structures use;
+   * it's provided for new uses that want the natural order.
+   * 
+   * @see #HASH_COMPARATOR
+   */
+  public final static Comparator<HashUtc> UNSIGNED_HASH_COMPARATOR = new Comparator<>() {
+    @Override
+    public int compare(HashUtc a, HashUtc b) {
+      for (int index = 0; index < HASH_WIDTH; index += 8) {
+        long la = a.data.getLong(index);
+        long lb = b.data.getLong(index);
+        if (la != lb)
+          return Long.compareUnsigned(la, lb);
+      }
+      return 0;
+    }
+  };
+  
+  
+  /** Flips the sign bit of every byte. */
+  private final static long SIGN_BIAS = 0x8080808080808080L;
+  
+  
+  /**
+   * Compares the 32-byte hashes at the given absolute offsets in the
+   * {@linkplain #HASH_COMPARATOR} order (lexicographic by signed byte),
+   * 8 bytes at a time: flipping the sign bit of every byte maps signed
+   * byte order to unsigned, so each 8 byte word is compared as an unsigned
+   * long. Neither buffer's positional state is modified.
+   * 
+   * @param a         big endian buffer
+   * @param aOffset   absolute offset into {@code a}
+   * @param b         big endian buffer
+   * @param bOffset   absolute offset into {@code b}
+   */
+  public static int compareHashes(
+      ByteBuffer a, int aOffset, ByteBuffer b, int bOffset) {
+    for (int index = 0; index < HASH_WIDTH; index += 8) {
+      long la = a.getLong(aOffset + index);
+      long lb = b.getLong(bOffset + index);
+      if (la != lb)
+        return Long.compareUnsigned(la ^ SIGN_BIAS, lb ^ SIGN_BIAS);
+    }
+    return 0;
+  }
+  
+  
+  /**
+   * Determines whether the 32-byte hashes at the given absolute offsets
+   * are equal.
+   * 
+   * @see #compareHashes(ByteBuffer, int, ByteBuffer, int)
+   */
+  public static boolean equalHashes(
+      ByteBuffer a, int aOffset, ByteBuffer b, int bOffset) {
+    return
+        a.getLong(aOffset) == b.getLong(bOffset) &&
+        a.getLong(aOffset + 8) == b.getLong(bOffset + 8) &&
+        a.getLong(aOffset + 16) == b.getLong(bOffset + 16) &&
+        a.getLong(aOffset + 24) == b.getLong(bOffset + 24);
+  }
 
 
   /** Compares 2 instances solely by {@linkplain #utc() utc}. */
@@ -253,14 +340,16 @@ public class HashUtc {
    * Typed {@linkplain #equals(Object)}.
    */
   public final boolean equalsHashUtc(HashUtc o) {
-    return HASH_COMPARATOR.compare(this, o) == 0 && utc() == o.utc();
+    return
+        utc() == o.utc() &&
+        equalHashes(data, 0, o.data, 0);
   }
   
   /**
    * Tests if this instance's hash is the same as the other.
    */
   public final boolean hashEquals(HashUtc o) {
-    return HASH_COMPARATOR.compare(this, o) == 0;
+    return equalHashes(data, 0, o.data, 0);
   }
   
   
@@ -4,6 +4,8 @@
 package io.crums.tc;
 
 import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Main abstraction for witnessing hashes and vending out
@@ -67,6 +69,50 @@ public interface NotaryService {
   }
 
 
+  /**
+   * Returns updated crumtrails for the given crums, all from the same
+   * block, sharing a single block proof. Crums not found in the block
+   * (expired, or made up) are omitted; if none are found, or if the
+   * block is not yet committed, then empty is returned. Use
+   * {@linkplain #update(Crum, long)} for crums omitted from the result.
+   * <p>
+   * The default implementation always returns empty, so that callers fall
+   * back to per-crum {@linkplain #update(Crum, long) update}s.
+   * </p>
+   * 
+   * @param crums         crums from the same block (not empty)
+   * @param fromBlockNo   starting block no. in the shared block proof
+   * 
+   * @see BlockTrails
+   */
+  default Optional<BlockTrails> updateBlock(
+      List<Crum> crums, long fromBlockNo) {
+    return Optional.empty();
+  }
+
+
+  /**
+   * Returns updated crumtrails for the given crums, from any no. of
+   * blocks, sharing a single (multi-target) block proof. Crums not found
+   * (expired, made up, or in blocks not yet committed) are omitted; if
+   * none are found, then empty is returned.
+   * <p>
+   * The default implementation always returns empty, so that callers fall
+   * back to per-crum {@linkplain #update(Crum, long) update}s.
+   * </p>
+   * 
+   * @param crums         not empty
+   * @param fromBlockNo   starting block no. in the shared block proof
+   *                      (&le; the lowest block no. of the crums found)
+   * 
+   * @see ReceiptBundle
+   */
+  default Optional<ReceiptBundle> updateBundle(
+      List<Crum> crums, long fromBlockNo) {
+    return Optional.empty();
+  }
+
+
 
 
   /**
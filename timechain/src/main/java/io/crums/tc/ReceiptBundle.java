@@ -0,0 +1,165 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import io.crums.tc.except.TimeChainException;
+
+/**
+ * Crumtrails from <em>any number</em> of blocks, sharing a single
+ * multi-target {@linkplain BlockProof}. This generalizes
+ * {@linkplain BlockTrails} (which is limited to one block): the block
+ * proof's skip path runs through every block in the bundle, so the
+ * upper rows of the chain (shared by all the trails) are sent only
+ * once, instead of once per receipt.
+ *
+ * <h2>Cargo Proofs and Lone Crums</h2>
+ * <p>
+ * A crum in a block with multiple crums is represented by its
+ * {@linkplain CargoProof}; the crum in a block with exactly one
+ * crum, is represented by itself (a <em>lone</em> crum).
+ * </p>
+ * <h2>Splitting</h2>
+ * <p>
+ * The {@linkplain #trails() trails} share the bundle's block proof
+ * as is. Use {@linkplain #split()} to get individual crumtrails, each
+ * with its own (abbreviated) block proof.
+ * </p>
+ *
+ * @see NotaryService#updateBundle(List, long)
+ */
+public class ReceiptBundle {
+
+
+  private final BlockProof blockProof;
+  private final List<CargoProof> cargoProofs;
+  private final List<Crum> loneCrums;
+  private final List<Crumtrail> trails;
+
+
+  /**
+   * Creates a new instance. The cargo proofs and lone crums are validated
+   * against the block proof.
+   *
+   * @param blockProof    proof containing the blocks of all the cargo proofs
+   *                      and lone crums
+   * @param cargoProofs   may be empty, if {@code loneCrums} is not
+   * @param loneCrums     may be empty, if {@code cargoProofs} is not
+   */
+  public ReceiptBundle(
+      BlockProof blockProof, List<CargoProof> cargoProofs, List<Crum> loneCrums)
+      throws TimeChainException {
+
+    this.blockProof = Objects.requireNonNull(blockProof, "null block proof");
+    this.cargoProofs = List.copyOf(cargoProofs);
+    this.loneCrums = List.copyOf(loneCrums);
+    if (this.cargoProofs.isEmpty() && this.loneCrums.isEmpty())
+      throw new IllegalArgumentException("empty bundle");
+
+    var trails = new ArrayList<Crumtrail>(
+        this.cargoProofs.size() + this.loneCrums.size());
+    for (var cargoProof : this.cargoProofs)
+      trails.add(Crumtrail.newMerkleTrail(blockProof, cargoProof));
+    for (var crum : this.loneCrums)
+      trails.add(Crumtrail.newLoneTrail(blockProof, crum));
+    this.trails = List.copyOf(trails);
+  }
+
+
+  /** Returns the shared block proof. */
+  public final BlockProof blockProof() {
+    return blockProof;
+  }
+
+
+  /** Returns the cargo proofs. Possibly empty. */
+  public final List<CargoProof> cargoProofs() {
+    return cargoProofs;
+  }
+
+
+  /** Returns the lone crums. Possibly empty. */
+  public final List<Crum> loneCrums() {
+    return loneCrums;
+  }
+
+
+  /**
+   * Returns the crumtrails, each using the shared block proof. The trails
+   * from the cargo proofs come first, followed by the lone trails.
+   *
+   * @return immutable, not empty list
+   */
+  public final List<Crumtrail> trails() {
+    return trails;
+  }
+
+
+  /** Returns the no. of crumtrails. */
+  public final int size() {
+    return trails.size();
+  }
+
+
+  /** Returns the (distinct) block nos. of the crumtrails. */
+  public final SortedSet<Long> blockNos() {
+    var blockNos = new TreeSet<Long>();
+    for (var trail : trails)
+      blockNos.add(trail.blockNo());
+    return blockNos;
+  }
+
+
+  /**
+   * Splits the bundle into individual crumtrails. Each trail's block proof
+   * is abbreviated to the lineage from the first block in the shared proof,
+   * thru the trail's block, to the last block (the same shape as a
+   * receipt's). Trails from the same block share the same block proof
+   * instance.
+   * <p>
+   * If the shared block proof is {@linkplain BlockProof#isCompressed()
+   * compressed}, then it cannot be abbreviated, and the
+   * {@linkplain #trails() trails} are returned as is.
+   * </p>
+   *
+   * @return immutable list, in the same order as {@linkplain #trails()}
+   */
+  public List<Crumtrail> split() {
+    if (blockProof.isCompressed())
+      return trails;
+
+    var out = new ArrayList<Crumtrail>(trails.size());
+    Map<Long, BlockProof> proofs = new HashMap<>();
+    for (var trail : trails) {
+      var proof = proofs.computeIfAbsent(
+          trail.blockNo(),
+          bn -> blockProof.forBlockNo(bn, true).orElseThrow(
+              () -> new TimeChainException(
+                  "block [" + bn + "] missing in bundle block proof")));
+      out.add(trail.setBlockProof(proof));
+    }
+    return List.copyOf(out);
+  }
+
+
+  /**
+   * Returns a version of this instance with a compressed block proof.
+   * If already compressed, then {@code this} is returned.
+   */
+  public ReceiptBundle compress() {
+    return
+        blockProof.isCompressed() ?
+            this :
+            new ReceiptBundle(blockProof.compress(), cargoProofs, loneCrums);
+  }
+
+}
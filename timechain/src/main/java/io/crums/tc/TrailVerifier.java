@@ -0,0 +1,523 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import io.crums.io.SerialFormatException;
+import io.crums.io.buffer.BufferUtils;
+import io.crums.sldg.HashConflictException;
+import io.crums.sldg.MemoPathPack;
+import io.crums.sldg.Path;
+import io.crums.sldg.PathPack;
+import io.crums.util.mrkl.Tree;
+import io.crums.util.mrkl.index.AbstractNode;
+import io.crums.util.mrkl.index.TreeIndex;
+
+/**
+ * Batch verifier for serialized {@linkplain Crumtrail}s, e.g. an archive
+ * of trails from the same chain. Each trail is verified as in
+ * {@linkplain Crumtrail#load(ByteBuffer)}, but facts already established
+ * by earlier trails are not re-verified.
+ *
+ * <h2>Memo-ised Facts</h2>
+ * <ol>
+ * <li><em>Block proofs.</em> Identical (serialized) block proofs are
+ * loaded and verified only once. Trails from the same block fetched at
+ * around the same time share the same block proof.</li>
+ * <li><em>Block hashes.</em> The block (row) hashes in each verified
+ * block proof are recorded by block no. A block proof that disagrees
+ * with an earlier one (a fork) fails with a {@linkplain
+ * HashConflictException}.</li>
+ * <li><em>Merkle nodes.</em> The nodes on the path from a cargo proof's
+ * leaf to its root (and their siblings) are recorded per root hash, once
+ * the proof is verified. Later proofs in the same tree stop hashing
+ * as soon as they join a known node.</li>
+ * </ol>
+ * <p>
+ * Memo-ised state is kept for the life of the instance (so that a large
+ * archive may be verified in several calls); {@linkplain #clear()}
+ * releases it.
+ * </p>
+ * <h2>Concurrency</h2>
+ * <p>
+ * {@linkplain #verify(Stream, Consumer)} reads the stream on the calling
+ * thread, and verifies the trails in batches of {@linkplain #BATCH_SIZE}
+ * across a fixed no. of threads. Instances are thread-safe.
+ * </p>
+ *
+ * @see Report
+ */
+public class TrailVerifier {
+
+  /** No. of trails verified per task. */
+  public final static int BATCH_SIZE = 256;
+
+  /** Maximum no. of {@linkplain Failure}s retained in a report. */
+  public final static int MAX_FAILURES = 1024;
+
+
+  /**
+   * A trail that failed verification.
+   *
+   * @param index   the trail's (zero-based) position in the input stream
+   * @param error   the reason it failed
+   */
+  public record Failure(long index, RuntimeException error) { }
+
+
+  /**
+   * Verification report.
+   *
+   * @param trails          no. of trails read
+   * @param failed          no. of trails that failed verification (or
+   *                        that the sink failed on)
+   * @param blockProofs     no. of distinct block proofs verified
+   * @param blockProofHits  no. of trails whose block proof was already
+   *                        verified
+   * @param merkleHits      no. of merkle node hashes skipped, because
+   *                        they were already verified
+   * @param millis          elapsed time
+   * @param failures        up to {@linkplain #MAX_FAILURES} failures,
+   *                        ordered by index
+   */
+  public record Report(
+      long trails, long failed, long blockProofs, long blockProofHits,
+      long merkleHits, long millis, List<Failure> failures) {
+
+    /**
+     * Returns the no. of trails that verified (and, if there's a sink,
+     * were accepted by it).
+     */
+    public long verified() {
+      return trails - failed;
+    }
+
+    /** Returns {@code true} iff no trail failed. */
+    public boolean ok() {
+      return failed == 0;
+    }
+
+    /** Returns the throughput in trails per second. */
+    public double trailsPerSecond() {
+      return trails * 1000.0 / Math.max(1, millis);
+    }
+  }
+
+
+
+  private final int threads;
+
+  private final Map<ByteBuffer, BlockProof> blockProofs =
+      new ConcurrentHashMap<>();
+  private final Map<Long, ByteBuffer> blockHashes =
+      new ConcurrentHashMap<>();
+  private final Map<ByteBuffer, MerkleMemo> merkleMemos =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Cleared if the merkle library ever verifies a proof our memo rejected;
+   * i.e. our hashing disagrees with the library's. (Memo-ised nodes are
+   * only ever recorded from proofs that reproduce their root hash, so this
+   * costs performance, not correctness.)
+   */
+  private volatile boolean merkleMemoEnabled = true;
+
+
+  /** Creates an instance using as many threads as there are cores. */
+  public TrailVerifier() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param threads no. of verification threads (&ge; 1)
+   */
+  public TrailVerifier(int threads) {
+    if (threads < 1)
+      throw new IllegalArgumentException("threads " + threads);
+    this.threads = threads;
+  }
+
+
+  /** Returns the no. of verification threads. */
+  public final int threads() {
+    return threads;
+  }
+
+
+
+  /**
+   * Verifies the given stream of serialized trails.
+   *
+   * @see #verify(Stream, Consumer)
+   */
+  public Report verify(Stream<ByteBuffer> trails) {
+    return verify(trails, null);
+  }
+
+
+  /**
+   * Verifies the given stream of serialized trails, and hands each
+   * verified trail to the given {@code sink}. Failures do not stop
+   * verification; they are reported.
+   *
+   * @param trails  serialized trails (as in {@linkplain
+   *                Crumtrail#writeTo(ByteBuffer)}, or {@linkplain
+   *                Crumtrail#writeCompactTo(ByteBuffer)}); the buffers'
+   *                positions are not modified
+   * @param sink    optional (may be {@code null}); invoked concurrently,
+   *                in no particular order. A trail the sink throws on is
+   *                reported as failed (with the sink's exception)
+   */
+  public Report verify(
+      Stream<ByteBuffer> trails, Consumer<? super Crumtrail> sink) {
+
+    final long startNanos = System.nanoTime();
+    final var tally = new Tally();
+    final var inFlight = new Semaphore(threads * 2);
+    long count = 0;
+
+    try (var executor = Executors.newFixedThreadPool(threads)) {
+      var iter = trails.iterator();
+      while (iter.hasNext()) {
+        var batch = new ArrayList<ByteBuffer>(BATCH_SIZE);
+        while (batch.size() < BATCH_SIZE && iter.hasNext())
+          batch.add(iter.next());
+
+        final long firstIndex = count;
+        count += batch.size();
+        inFlight.acquireUninterruptibly();
+        executor.execute(() -> {
+          try {
+            verifyBatch(batch, firstIndex, tally, sink);
+          } finally {
+            inFlight.release();
+          }
+        });
+      }
+    } // (waits for the tasks to finish)
+
+    List<Failure> failures;
+    synchronized (tally.failures) {
+      tally.failures.sort(Comparator.comparingLong(Failure::index));
+      failures = List.copyOf(tally.failures);
+    }
+    return new Report(
+        count,
+        tally.failed.sum(),
+        tally.blockProofs.sum(),
+        tally.blockProofHits.sum(),
+        tally.merkleHits.sum(),
+        (System.nanoTime() - startNanos) / 1_000_000,
+        failures);
+  }
+
+
+  /**
+   * Verifies and returns a single serialized trail, on the calling thread.
+   *
+   * @param trail   serialized trail; its position is not modified
+   */
+  public Crumtrail verify(ByteBuffer trail) {
+    return verifyTrail(trail, Constants.DIGEST.newDigest(), new Tally());
+  }
+
+
+  /** Releases all memo-ised state. */
+  public void clear() {
+    blockProofs.clear();
+    blockHashes.clear();
+    merkleMemos.clear();
+  }
+
+
+
+  /** Per-call counters. */
+  private static class Tally {
+    final LongAdder failed = new LongAdder();
+    final LongAdder blockProofs = new LongAdder();
+    final LongAdder blockProofHits = new LongAdder();
+    final LongAdder merkleHits = new LongAdder();
+    final List<Failure> failures = new ArrayList<>();
+
+    void fail(long index, RuntimeException error) {
+      failed.increment();
+      synchronized (failures) {
+        if (failures.size() < MAX_FAILURES)
+          failures.add(new Failure(index, error));
+      }
+    }
+  }
+
+
+  private void verifyBatch(
+      List<ByteBuffer> batch, long firstIndex, Tally tally,
+      Consumer<? super Crumtrail> sink) {
+
+    var digest = Constants.DIGEST.newDigest();
+    for (int index = 0; index < batch.size(); ++index) {
+      Crumtrail trail;
+      try {
+        trail = verifyTrail(batch.get(index), digest, tally);
+      } catch (RuntimeException x) {
+        tally.fail(firstIndex + index, x);
+        continue;
+      }
+      if (sink != null) {
+        try {
+          sink.accept(trail);
+        } catch (RuntimeException x) {
+          tally.fail(firstIndex + index, x);
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Mirrors {@linkplain Crumtrail#load(ByteBuffer)}, with memo-isation.
+   * Either serial form is accepted.
+   */
+  private Crumtrail verifyTrail(
+      ByteBuffer trail, MessageDigest digest, Tally tally) {
+
+    var in = trail.slice();
+    final boolean compact = BlockProof.isCompact(in);
+    var blockProof = blockProof(in, compact, tally);
+
+    Crumtrail out;
+    if (compact) {
+      final long blockNo = blockProof.blockNo() - Varints.get(in);
+      final long blockUtc = blockProof.chainParams().utcForBlockNo(blockNo);
+      int crums = Varints.getInt(in);
+      if (crums < 1)
+        throw new SerialFormatException("crum count: " + crums);
+
+      if (crums == 1)
+        out = new Crumtrail.LoneTrail(
+            blockProof, Crum.loadCompact(in, blockUtc), true);
+      else {
+        byte[] rootHash = new byte[Constants.HASH_WIDTH];
+        blockProof.chainState().getRowByNumber(blockNo).inputHash()
+            .duplicate().get(rootHash);
+        var cargoProof =
+            CargoProof.loadCompact(in, crums, blockUtc, rootHash, false);
+        verifyCargoProof(cargoProof, digest, tally);
+        out = new Crumtrail.MerkleTrail(blockProof, cargoProof, true);
+      }
+    } else {
+      int crums = in.getInt();
+      if (crums < 1)
+        throw new SerialFormatException("crum count: " + crums);
+
+      if (crums == 1) {
+        var crum = new Crum(BufferUtils.slice(in, Crum.DATA_SIZE));
+        out = new Crumtrail.LoneTrail(blockProof, crum, true);
+      } else {
+        var cargoProof = CargoProof.load(in, crums, false);
+        verifyCargoProof(cargoProof, digest, tally);
+        out = new Crumtrail.MerkleTrail(blockProof, cargoProof, true);
+      }
+    }
+    out.verifyCargoHashInChain();
+    return out;
+  }
+
+
+  /**
+   * Loads the block proof at the given buffer's position, and returns
+   * the (verified) instance. If an identical block proof was already
+   * verified, then that instance is returned.
+   *
+   * @param compact   whether the block proof is in the
+   *                  {@linkplain BlockProof#COMPACT_V1 compact} form
+   */
+  private BlockProof blockProof(ByteBuffer in, boolean compact, Tally tally) {
+    final int start = in.position();
+    ChainParams params;
+    if (compact) {
+      in.get();
+      params = ChainParams.loadCompact(in);
+    } else
+      params = ChainParams.load(in);
+    var pack = PathPack.load(in);
+
+    var key = ByteBuffer.allocate(in.position() - start);
+    key.put(in.duplicate().position(start).limit(in.position())).flip();
+
+    var proof = blockProofs.get(key);
+    if (proof != null) {
+      tally.blockProofHits.increment();
+      return proof;
+    }
+    // (Path construction verifies the hash links)
+    proof = new BlockProof(params, new MemoPathPack(pack).path());
+    recordBlockHashes(proof.chainState());
+    tally.blockProofs.increment();
+    var prior = blockProofs.putIfAbsent(key, proof);
+    return prior == null ? proof : prior;
+  }
+
+
+  private void recordBlockHashes(Path path) throws HashConflictException {
+    for (long blockNo : path.rowNumbers()) {
+      var hash = path.getRowHash(blockNo);
+      var prior = blockHashes.putIfAbsent(blockNo, hash);
+      if (prior != null && !prior.equals(hash))
+        throw new HashConflictException(
+            "at block [" + blockNo + "]: block proof conflicts with another");
+    }
+  }
+
+
+  private void verifyCargoProof(
+      CargoProof proof, MessageDigest digest, Tally tally) {
+
+    boolean memoTried = false;
+    if (merkleMemoEnabled) {
+      var root = ByteBuffer.wrap(proof.rootHash());
+      var memo = merkleMemos.get(root);
+      if (memo == null) {
+        var fresh = new MerkleMemo(proof.leafCount());
+        memo = merkleMemos.putIfAbsent(root, fresh);
+        if (memo == null)
+          memo = fresh;
+      }
+      if (memo.leafCount == proof.leafCount()) {
+        if (memo.verify(proof, digest, tally))
+          return;
+        memoTried = true;
+      }
+    }
+    proof.verifyProof();
+    // the library verified what our memo rejected
+    if (memoTried && merkleMemoEnabled) {
+      merkleMemoEnabled = false;
+      merkleMemos.clear();
+    }
+  }
+
+
+
+  /**
+   * Verified merkle nodes under a given root hash. Leaf nodes are valued
+   * by their data; branch nodes, by their hash. A node is only recorded
+   * once a proof through it is verified: so, if a node is recorded, then
+   * (barring a concurrent insert) so are its ancestors and their siblings.
+   */
+  private static class MerkleMemo {
+
+    private final static byte LEAF_PAD = Tree.LEAF_PAD;
+    private final static byte BRANCH_PAD = Tree.BRANCH_PAD;
+
+    final int leafCount;
+    final TreeIndex<?> tree;
+    final Map<Long, byte[]> nodes = new ConcurrentHashMap<>();
+
+    MerkleMemo(int leafCount) {
+      this.leafCount = leafCount;
+      this.tree = TreeIndex.newGeneric(leafCount);
+    }
+
+
+    /**
+     * Verifies the given proof, skipping the hashes of known nodes. Returns
+     * {@code false} if the proof fails (or is malformed); on success, the
+     * proof's nodes are recorded.
+     */
+    boolean verify(CargoProof proof, MessageDigest digest, Tally tally) {
+      byte[] value = proof.item();
+      if (!Arrays.equals(proof.crum().witnessHash(digest), value))
+        return false;
+
+      final List<byte[]> chain = proof.hashChain();
+      final int height = tree.height();
+      final long[] keys = new long[2 * chain.size()];
+      final byte[][] values = new byte[keys.length][];
+      int count = 0;
+
+      int level = 0;
+      int index = proof.leafIndex();
+      boolean leaf = true;
+      int c = 1;
+      try {
+        for (; level != height; ++c) {
+          AbstractNode sib = tree.getSibling(level, index);
+          AbstractNode parent = tree.getParent(sib);
+          byte[] sibValue = chain.get(c);
+
+          final long key = key(level, index);
+          final long sibKey = key(sib.level(), sib.index());
+          byte[] known = nodes.get(key);
+          byte[] knownSib = nodes.get(sibKey);
+          if (known != null && !Arrays.equals(known, value) ||
+              knownSib != null && !Arrays.equals(knownSib, sibValue))
+            return false;
+
+          keys[count] = key;
+          values[count++] = value;
+          keys[count] = sibKey;
+          values[count++] = sibValue;
+
+          byte[] knownParent =
+              known == null || knownSib == null ?
+                  null : nodes.get(key(parent.level(), parent.index()));
+          if (knownParent != null) {
+            value = knownParent;
+            tally.merkleHits.increment();
+          } else if (sib.isLeft())
+            value = hashBranch(digest, sibValue, sib.isLeaf(), value, leaf);
+          else
+            value = hashBranch(digest, value, leaf, sibValue, sib.isLeaf());
+
+          level = parent.level();
+          index = parent.index();
+          leaf = false;
+        }
+      } catch (IndexOutOfBoundsException | IllegalArgumentException x) {
+        return false;   // malformed
+      }
+
+      if (c != chain.size() - 1 ||
+          !Arrays.equals(value, chain.get(c)) ||
+          !Arrays.equals(value, proof.rootHash()))
+        return false;
+
+      for (int i = 0; i < count; ++i)
+        nodes.putIfAbsent(keys[i], values[i]);
+      return true;
+    }
+
+
+    private static long key(int level, int index) {
+      return ((long) level << 32) | (index & 0xffff_ffffL);
+    }
+
+
+    private static byte[] hashBranch(
+        MessageDigest digest,
+        byte[] left, boolean leftLeaf, byte[] right, boolean rightLeaf) {
+      digest.reset();
+      digest.update(leftLeaf ? LEAF_PAD : BRANCH_PAD);
+      digest.update(left);
+      digest.update(rightLeaf ? LEAF_PAD : BRANCH_PAD);
+      digest.update(right);
+      return digest.digest();
+    }
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import io.crums.io.SerialFormatException;
+
+/**
+ * Unsigned LEB128 variable-length integers, used in the compact serial
+ * forms. Values in the range [0, 127] take 1 byte; a full 64-bit value
+ * (or a negative one), 10.
+ *
+ * @see BlockProof#COMPACT_V1
+ */
+final class Varints {
+
+  private Varints() {  }
+
+
+  /** Returns the no. of bytes the given value is encoded in. */
+  static int size(long value) {
+    int bytes = 1;
+    while ((value >>>= 7) != 0)
+      ++bytes;
+    return bytes;
+  }
+
+
+  /** Writes the given value and returns {@code out}. */
+  static ByteBuffer put(ByteBuffer out, long value)
+      throws BufferOverflowException {
+    while ((value & ~0x7fL) != 0) {
+      out.put((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    return out.put((byte) value);
+  }
+
+
+  /** Reads and returns the next value. */
+  static long get(ByteBuffer in)
+      throws BufferUnderflowException, SerialFormatException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.get();
+      value |= (b & 0x7fL) << shift;
+      if (b >= 0)
+        return value;
+    }
+    throw new SerialFormatException("varint overflow at " + (in.position() - 1));
+  }
+
+
+  /**
+   * Reads and returns the next value as an {@code int}.
+   *
+   * @throws SerialFormatException if the value does not fit in a
+   *         non-negative {@code int}
+   */
+  static int getInt(ByteBuffer in)
+      throws BufferUnderflowException, SerialFormatException {
+    long value = get(in);
+    if (value < 0 || value > Integer.MAX_VALUE)
+      throw new SerialFormatException("varint out of int range: " + value);
+    return (int) value;
+  }
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.client;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import io.crums.io.channels.ChannelUtils;
+import io.crums.tc.BlockProof;
+import io.crums.util.RandomId;
+
+/**
+ * Append-only journal of {@linkplain TrailRepo} chain updates. Rather
+ * than write a new block proof file every time the repo's chain (or
+ * state patch) advances, the update is appended here as a record; the
+ * journal is periodically compacted into the canonical files.
+ *
+ * <h2>Format</h2>
+ * <pre>
+ *   MAGIC (int) GENERATION (long)
+ *   RECORD*  : TYPE (byte) SIZE (int) CRC32 (int) BLOCK_PROOF (SIZE bytes)
+ * </pre>
+ * <p>
+ * A torn (partially written, or undecodable) last record is ignored on
+ * read, and overwritten on the next append. The generation is bumped every
+ * time the journal is {@linkplain #reset(long) reset} (after compaction), so
+ * that readers can tell the file was replaced.
+ * </p>
+ * <h2>Concurrency</h2>
+ * <p>
+ * Readers take no locks. Writers (appends, resets, and whatever the caller
+ * does under {@linkplain #lock()}) are serialized both within the JVM, and
+ * across processes, thru a file lock on a sibling {@code .lock} file. (The
+ * journal file itself can't be locked: a reset replaces it.)
+ * </p>
+ */
+final class ChainJournal {
+
+  /** File magic: "cJnl". */
+  final static int MAGIC = 0x634a6e6c;
+
+  final static int HEADER_BYTES = 4 + 8;
+
+  private final static int RECORD_HEADER_BYTES = 1 + 4 + 4;
+
+  /** Record type: tail appended to the repo's chain block proof. */
+  final static byte CHAIN = 'C';
+  /** Record type: new state patch. */
+  final static byte PATCH = 'P';
+
+
+  /** Journal record. */
+  record Entry(byte type, BlockProof proof) {
+    Entry {
+      if (type != CHAIN && type != PATCH)
+        throw new IllegalArgumentException("type " + type);
+    }
+  }
+
+
+  /**
+   * Journal lock. Reentrant: only the outermost {@linkplain #close()}
+   * releases it.
+   */
+  interface Lock extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+
+  /**
+   * In-JVM write locks, keyed by lock file path. (A {@linkplain FileLock}
+   * is held on behalf of the whole JVM, so it can't serialize threads, or
+   * instances on the same file.)
+   */
+  private final static Map<Path, ReentrantLock> JVM_LOCKS =
+      new ConcurrentHashMap<>();
+
+
+  private final File file;
+  private final File stagingDir;
+  private final Path lockPath;
+
+
+  ChainJournal(File file, File stagingDir) {
+    this.file = file;
+    this.stagingDir = stagingDir;
+    this.lockPath =
+        new File(file.getParentFile(), file.getName() + ".lock")
+        .toPath().toAbsolutePath().normalize();
+  }
+
+
+  /**
+   * Acquires the journal's write lock, blocking until it's available.
+   * Callers that must validate against the journal's state before appending
+   * to it, do both under this lock.
+   */
+  Lock lock() {
+    var jvmLock = JVM_LOCKS.computeIfAbsent(lockPath, p -> new ReentrantLock());
+    jvmLock.lock();
+    if (jvmLock.getHoldCount() > 1)
+      return jvmLock::unlock;
+    try {
+      var ch = FileChannel.open(
+          lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      final FileLock fileLock;
+      try {
+        fileLock = ch.lock();
+      } catch (IOException | RuntimeException x) {
+        ch.close();
+        throw x;
+      }
+      return () -> {
+        try {
+          fileLock.release();
+          ch.close();
+        } catch (IOException iox) {
+          throw new UncheckedIOException("on unlocking " + lockPath, iox);
+        } finally {
+          jvmLock.unlock();
+        }
+      };
+    } catch (IOException iox) {
+      jvmLock.unlock();
+      throw new UncheckedIOException("on locking " + lockPath, iox);
+    } catch (RuntimeException rx) {
+      jvmLock.unlock();
+      throw rx;
+    }
+  }
+
+
+  File file() {
+    return file;
+  }
+
+
+  /** Returns the file size; zero, if it doesn't exist. */
+  long size() {
+    return file.length();
+  }
+
+
+  /**
+   * Returns the journal's generation; zero, if it doesn't exist (or is
+   * unreadable).
+   */
+  long generation() {
+    if (!file.exists())
+      return 0;
+    try (var ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return readGeneration(ch);
+    } catch (IOException iox) {
+      return 0;
+    }
+  }
+
+
+  private long readGeneration(FileChannel ch) throws IOException {
+    if (ch.size() < HEADER_BYTES)
+      return 0;
+    var header = ByteBuffer.allocate(HEADER_BYTES);
+    ChannelUtils.readRemaining(ch, 0, header);
+    header.flip();
+    if (header.getInt() != MAGIC)
+      throw new IOException("bad journal header: " + file);
+    return header.getLong();
+  }
+
+
+  /**
+   * Reads the records starting from the given offset, and returns the
+   * offset past the last whole record read.
+   *
+   * @param generation  expected generation
+   * @param offset      &ge; {@linkplain #HEADER_BYTES}
+   * @param reader      record consumer
+   *
+   * @return -1, if the journal's generation is not {@code generation}
+   */
+  long read(long generation, long offset, Consumer<Entry> reader) {
+    if (!file.exists())
+      return generation == 0 ? offset : -1;
+    try (var ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (readGeneration(ch) != generation)
+        return -1;
+      final long size = ch.size();
+      var header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+      var crc = new CRC32();
+      while (size - offset >= RECORD_HEADER_BYTES) {
+        header.clear();
+        ChannelUtils.readRemaining(ch, offset, header);
+        header.flip();
+        byte type = header.get();
+        int len = header.getInt();
+        int checksum = header.getInt();
+        if (len < 0 || size - offset - RECORD_HEADER_BYTES < len)
+          break;  // torn
+        var data = ByteBuffer.allocate(len);
+        ChannelUtils.readRemaining(ch, offset + RECORD_HEADER_BYTES, data);
+        data.flip();
+        crc.reset();
+        crc.update(data.duplicate());
+        if ((int) crc.getValue() != checksum)
+          break;  // torn
+        Entry entry;
+        try {
+          entry = new Entry(type, BlockProof.load(data));
+        } catch (RuntimeException x) {
+          break;  // torn (checksum collision on garbage)
+        }
+        reader.accept(entry);
+        offset += RECORD_HEADER_BYTES + len;
+      }
+      return offset;
+
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on reading " + file, iox);
+    }
+  }
+
+
+  /**
+   * Appends the given entries past the last whole record, under the
+   * {@linkplain #lock() lock}. Anything past that (a torn record) is
+   * overwritten. If the journal does not exist, it is created with
+   * generation 1.
+   *
+   * @param generation  expected generation (zero, if the journal is not
+   *                    expected to exist)
+   * @param offset      a whole record offset in the journal (as returned by
+   *                    {@linkplain #read(long, long, Consumer)}); the journal
+   *                    is scanned from here for its end under the lock
+   *
+   * @throws IllegalStateException
+   *          if the journal's generation is not {@code generation}: the
+   *          caller's view of the journal is stale. (Callers that validate
+   *          against that view must hold the lock.)
+   */
+  void append(long generation, long offset, List<Entry> entries) {
+    if (entries.isEmpty())
+      return;
+    var buffer = serialize(entries);
+    try (var lock = lock()) {
+      if (!file.exists()) {
+        if (generation != 0)
+          throw new IllegalStateException(
+              "journal generation " + generation + " removed: " + file);
+        reset(1);
+        offset = HEADER_BYTES;
+      } else {
+        if (offset < HEADER_BYTES || offset > file.length())
+          offset = HEADER_BYTES;
+        offset = read(generation, offset, e -> { });
+        if (offset == -1)
+          throw new IllegalStateException(
+              "journal generation " + generation + " replaced: " + file);
+      }
+      try (var ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+        if (ch.size() > offset)
+          ch.truncate(offset);
+        ch.position(offset);
+        ChannelUtils.writeRemaining(ch, buffer);
+      } catch (IOException iox) {
+        throw new UncheckedIOException("on appending to " + file, iox);
+      }
+    }
+  }
+
+
+  private ByteBuffer serialize(List<Entry> entries) {
+    int size = 0;
+    var datas = new ByteBuffer[entries.size()];
+    for (int index = 0; index < datas.length; ++index) {
+      datas[index] = entries.get(index).proof().serialize();
+      size += RECORD_HEADER_BYTES + datas[index].remaining();
+    }
+    var buffer = ByteBuffer.allocate(size);
+    var crc = new CRC32();
+    for (int index = 0; index < datas.length; ++index) {
+      crc.reset();
+      crc.update(datas[index].duplicate());
+      buffer.put(entries.get(index).type())
+          .putInt(datas[index].remaining())
+          .putInt((int) crc.getValue())
+          .put(datas[index]);
+    }
+    return buffer.flip();
+  }
+
+
+  /**
+   * Replaces the journal with an empty one of the given generation, under
+   * the {@linkplain #lock() lock}. The new (empty) journal is staged first,
+   * and then moved into place.
+   */
+  void reset(long generation) {
+    try (var lock = lock()) {
+      stageReset(generation);
+    }
+  }
+
+
+  private void stageReset(long generation) {
+    var staged = new File(
+        stagingDir, RandomId.RUN_INSTANCE + "_" + file.getName());
+    var header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(MAGIC).putLong(generation).flip();
+    try {
+      try (var ch = FileChannel.open(
+          staged.toPath(),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.WRITE)) {
+        ChannelUtils.writeRemaining(ch, header);
+      }
+      Files.move(
+          staged.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on resetting " + file, iox);
+    }
+  }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.client;
+
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.crums.tc.except.NetworkException;
+
+/**
+ * Per-host circuit breaker, with request metrics. Instances are shared
+ * by all {@linkplain RemoteChain}s to the same host with the same breaker
+ * settings (and so survive {@linkplain RemoteChain#reboot()}). Chains with
+ * different settings get their own breakers: one never reconfigures
+ * another's.
+ *
+ * <h2>States</h2>
+ * <p>
+ * The breaker starts {@linkplain State#CLOSED closed}. After a configured
+ * number of consecutive failed attempts, it trips {@linkplain State#OPEN
+ * open}: requests then fail fast with a {@linkplain NetworkException}.
+ * Once the cool-down period elapses, it goes {@linkplain State#HALF_OPEN
+ * half-open} and lets a single trial request through: if that succeeds,
+ * the breaker closes; otherwise, it opens again.
+ * </p><p>
+ * Any definitive HTTP response (including an error status, other than
+ * 502, 503, or 504) counts as a success: the host is up. An attempt that
+ * ends with no outcome (e.g. interrupted) is {@linkplain #onAbandon()
+ * abandoned}, releasing the trial if it was one.
+ * </p>
+ *
+ * @see TransportProfile#breakerThreshold()
+ * @see TransportProfile#breakerCooldownMillis()
+ */
+public class CircuitBreaker {
+
+  /** Breaker state. */
+  public enum State {
+    /** Requests pass through. */
+    CLOSED,
+    /** Requests fail fast. */
+    OPEN,
+    /** A single trial request is in flight. */
+    HALF_OPEN;
+  }
+
+
+  /**
+   * Snapshot of a breaker's metrics.
+   *
+   * @param host        host URL
+   * @param state       breaker state
+   * @param requests    no. of attempts made (including retries and hedges)
+   * @param failures    no. of failed attempts
+   * @param retries     no. of retries
+   * @param hedges      no. of hedged (duplicate) state requests sent
+   * @param hedgeWins   no. of hedged requests that completed first
+   * @param rejected    no. of requests failed fast (breaker open)
+   * @param trips       no. of times the breaker tripped open
+   */
+  public record Metrics(
+      String host,
+      State state,
+      long requests,
+      long failures,
+      long retries,
+      long hedges,
+      long hedgeWins,
+      long rejected,
+      long trips) {
+
+  }
+
+
+  /** Breaker registry key. */
+  private record Key(String host, int threshold, long cooldownMillis) {
+
+    Key(String host, TransportProfile profile) {
+      this(host, profile.breakerThreshold(), profile.breakerCooldownMillis());
+    }
+  }
+
+
+  private final static Map<Key, CircuitBreaker> BREAKERS =
+      new ConcurrentHashMap<>();
+
+
+  /**
+   * Returns the breaker for the given host and the given profile's breaker
+   * settings, creating it if necessary.
+   */
+  static CircuitBreaker forHost(String hostUrl, TransportProfile profile) {
+    return BREAKERS.computeIfAbsent(
+        new Key(hostUrl, profile), CircuitBreaker::new);
+  }
+
+
+  private final String host;
+
+  private final int threshold;
+  private final long cooldownMillis;
+
+  // guarded by this
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAt;
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder trips = new LongAdder();
+
+
+  private CircuitBreaker(Key key) {
+    this.host = key.host();
+    this.threshold = key.threshold();
+    this.cooldownMillis = key.cooldownMillis();
+  }
+
+
+  /** Returns the host URL. */
+  public final String host() {
+    return host;
+  }
+
+
+  /** Returns the current state. */
+  public synchronized State state() {
+    return state;
+  }
+
+
+  /** Returns a snapshot of the metrics. */
+  public Metrics metrics() {
+    return new Metrics(
+        host, state(),
+        requests.sum(), failures.sum(), retries.sum(),
+        hedges.sum(), hedgeWins.sum(), rejected.sum(), trips.sum());
+  }
+
+
+  /**
+   * Acquires permission to make a request attempt.
+   *
+   * @param url   the request URL (for the error message)
+   * @throws NetworkException if the breaker is open (or half-open, with
+   *                          the trial request still in flight)
+   */
+  void acquire(String url) throws NetworkException {
+    if (threshold > 0) {
+      synchronized (this) {
+        switch (state) {
+        case CLOSED:
+          break;
+        case OPEN:
+          long remaining = openedAt + cooldownMillis - System.currentTimeMillis();
+          if (remaining <= 0) {
+            state = State.HALF_OPEN;
+            break;
+          }
+          rejected.increment();
+          throw new NetworkException(
+              "circuit open for " + host + " (retry in " + remaining +
+              " ms); not attempting " + url);
+        case HALF_OPEN:
+          rejected.increment();
+          throw new NetworkException(
+              "circuit half-open for " + host + " (trial request pending); " +
+              "not attempting " + url);
+        }
+      }
+    }
+    requests.increment();
+  }
+
+
+  /** Records a successful attempt. */
+  synchronized void onSuccess() {
+    consecutiveFailures = 0;
+    state = State.CLOSED;
+  }
+
+
+  /** Records a failed attempt. */
+  void onFailure() {
+    failures.increment();
+    synchronized (this) {
+      ++consecutiveFailures;
+      if (threshold > 0 &&
+          (state == State.HALF_OPEN || consecutiveFailures >= threshold)) {
+        if (state != State.OPEN)
+          trips.increment();
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+      }
+    }
+  }
+
+
+  /**
+   * Records an attempt that ended without an outcome (e.g. it was
+   * interrupted). If the breaker is half-open, it reopens, without
+   * restarting its cool-down: the next request is a new trial. A no-op,
+   * if the attempt's outcome was already recorded.
+   */
+  synchronized void onAbandon() {
+    if (state == State.HALF_OPEN)
+      state = State.OPEN;
+  }
+
+
+  void onRetry() {
+    retries.increment();
+  }
+
+
+  void onHedge() {
+    hedges.increment();
+  }
+
+
+  void onHedgeWin() {
+    hedgeWins.increment();
+  }
+
+}
@@ -6,21 +6,36 @@ package io.crums.tc.client;
 import java.io.File;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
+import io.crums.tc.BlockTrails;
 import io.crums.tc.Constants;
 import io.crums.tc.Crum;
 import io.crums.tc.Crumtrail;
 import io.crums.tc.NotaryPolicy;
 import io.crums.tc.Receipt;
+import io.crums.tc.ReceiptBundle;
+import io.crums.tc.except.HttpStatusException;
+import io.crums.tc.except.NetworkException;
 import io.crums.tc.client.Repo.ChainRepo;
+import io.crums.util.Lists;
 
 /**
  * Repo-aware timechain client. Repos are finnicky with respect
@@ -36,12 +51,25 @@ import io.crums.tc.client.Repo.ChainRepo;
  */
 public class Client implements AutoCloseable {
 
+  /**
+   * Maximum number of hashes submitted per witness request. Matches the
+   * server's default maximum.
+   * 
+   * @see #witness(List, String)
+   */
+  public final static int WITNESS_BATCH_SIZE = 8;
+
   private final Map<String, RemoteChain> remotes = new TreeMap<>();
 
+  /** Hosts that don't serve receipt bundles (older servers). */
+  private final Set<String> noBundleHosts = ConcurrentHashMap.newKeySet();
+
   protected final Object lock() { return remotes; }
 
   private final Repo repo;
 
+  private volatile TransportProfile transportProfile = TransportProfile.DEFAULT;
+
 
 
   /**
@@ -72,6 +100,28 @@ public class Client implements AutoCloseable {
 
 
 
+  /**
+   * Returns the transport profile new remote chain instances are
+   * created with.
+   */
+  public final TransportProfile transportProfile() {
+    return transportProfile;
+  }
+
+
+  /**
+   * Sets the transport profile new remote chain instances are created with.
+   * Existing instances are unaffected.
+   * 
+   * @see TransportProfile#DEFAULT
+   */
+  public Client transportProfile(TransportProfile profile) {
+    this.transportProfile = Objects.requireNonNull(profile, "null profile");
+    return this;
+  }
+
+
+
   public Optional<URI> getDefaultHostURI() {
     return repo.defaultChainRepo().map(ChainRepo::origin);
   }
@@ -229,6 +279,66 @@ public class Client implements AutoCloseable {
 
 
 
+  /**
+   * Witnesses the given hashes at the given host and returns their receipts
+   * in the same order. Hashes that are already trailed or pending in the
+   * repo are handled individually (as in {@linkplain #witness(ByteBuffer, String)});
+   * the rest are submitted in batches of up to {@linkplain #WITNESS_BATCH_SIZE}
+   * hashes per request.
+   * 
+   * @param hashes  32-byte hashes
+   * @param host    hostname for <em>existing</em> chain repo
+   * 
+   * @return immutable list of receipts, one per hash
+   */
+  @SuppressWarnings("resource")
+  public List<Receipt> witness(List<ByteBuffer> hashes, String host) {
+
+    final int count = hashes.size();
+    var receipts = new Receipt[count];
+    var freshIndices = new ArrayList<Integer>(count);
+
+    for (int index = 0; index < count; ++index) {
+      var hash = hashes.get(index);
+      if (hash.remaining() != Constants.HASH_WIDTH)
+        throw new IllegalArgumentException(
+            "hash must be 32 bytes long: " + hash);
+      
+      if (findTrail(hash, host).isPresent() ||
+          !repo.listPending(hash, host).isEmpty())
+        receipts[index] = witness(hash, host);
+      else
+        freshIndices.add(index);
+    }
+
+    if (!freshIndices.isEmpty()) {
+      
+      var remote = getRemoteOrThrow(host);
+      var trailRepo = repo.getChainRepo(remote).trails();
+      
+      for (int start = 0; start < freshIndices.size(); start += WITNESS_BATCH_SIZE) {
+        
+        var batchIndices = freshIndices.subList(
+            start,
+            Math.min(start + WITNESS_BATCH_SIZE, freshIndices.size()));
+        
+        long fromBlockNo = Math.max(1L, trailRepo.blockNo());
+        var batch = remote.witness(
+            Lists.map(batchIndices, hashes::get), fromBlockNo);
+        
+        for (int b = 0; b < batch.size(); ++b) {
+          var rcpt = batch.get(b);
+          record(rcpt, trailRepo, host);
+          receipts[batchIndices.get(b)] = rcpt;
+        }
+      }
+    }
+    
+    return List.of(receipts);
+  }
+
+
+
   public Map<String, List<Receipt>> updatePending() {
     Map<String, List<Receipt>> out = new TreeMap<>();
     for (var host : repo.listChainHosts()) {
@@ -240,7 +350,65 @@ public class Client implements AutoCloseable {
   }
 
 
+  /**
+   * Updates the pending crums from the given host, with up to
+   * {@linkplain #DEFAULT_UPDATE_CONCURRENCY} concurrent requests.
+   * 
+   * @return {@code updatePending(host, DEFAULT_UPDATE_CONCURRENCY, r -> { })}
+   * @see #updatePending(String, int, Consumer)
+   */
   public List<Receipt> updatePending(String host) {
+    return updatePending(host, DEFAULT_UPDATE_CONCURRENCY, r -> { });
+  }
+
+
+  /**
+   * Updates (seals) the pending crums from the given host and returns
+   * their receipts, in UTC order.
+   * 
+   * <h4>Pipeline</h4>
+   * <p>
+   * Pending crums old enough to have been committed are sorted by block
+   * no., and updated in batches of up to {@linkplain #UPDATE_BLOCK_BATCH_SIZE}
+   * crums: one {@linkplain RemoteChain#updateBundle(List, long, boolean)
+   * receipt bundle} request per batch, its trails (from any no. of blocks)
+   * sharing a single block proof. The requests are issued concurrently;
+   * each batch's {@code fromBlockNo} is the last block of the batch before
+   * it, so that the bundles, recorded in order, each extend the chain's
+   * block proof in the repo ({@linkplain TrailRepo#addBundle(ReceiptBundle)},
+   * which saves the trails {@linkplain ReceiptBundle#split() split}). Crums
+   * omitted from the responses are updated individually; any trails these
+   * return are left pending (they're picked up on the next pass).
+   * </p><p>
+   * If the server predates receipt bundles (responds with 404), then
+   * the remaining crums are updated block by block instead: each block's
+   * crums using block-grouped requests
+   * ({@linkplain RemoteChain#updateBlock(List, long)}), issued concurrently,
+   * all from the same {@code fromBlockNo}, and their trails written in one
+   * batch ({@linkplain TrailRepo#addAll(List)}).
+   * </p>
+   * <h4>Resumption</h4>
+   * <p>
+   * A pending note is only removed after its trail is written. So if this
+   * method fails (or the process is interrupted), invoking it again picks up
+   * where it left off; trails already written are not fetched again.
+   * </p>
+   * 
+   * @param host            hostname for <em>existing</em> chain repo
+   * @param maxConcurrent   maximum no. of concurrent requests (&ge; 1)
+   * @param progress        invoked with each batch's (or in block by block
+   *                        mode, each block's) receipts, after they're
+   *                        recorded in the repo
+   *                        
+   * @return immutable list of receipts
+   */
+  public List<Receipt> updatePending(
+      String host, int maxConcurrent, Consumer<List<Receipt>> progress) {
+
+    if (maxConcurrent < 1)
+      throw new IllegalArgumentException(
+          "maxConcurrent must be positive: " + maxConcurrent);
+
     ChainRepo chainRepo = repo.findChainRepo(host).orElseThrow(
             () -> new IllegalArgumentException("unkown host: " + host));
     var policy = chainRepo.policy();
@@ -252,14 +420,365 @@ public class Client implements AutoCloseable {
             binTime :
             binTime - policy.chainParams().blockDuration();
 
-    // final long expiry = 
-
-    return
+    var notes =
         repo.listPendingByHost(host).stream()
         .filter(note -> note.crum().utc() < maxTime)
         .sorted()
-        .map(this::update)
         .toList();
+    
+    if (notes.isEmpty())
+      return List.of();
+
+    // group by block no. (since the notes are sorted by UTC,
+    // they remain sorted within each group)
+    var chainParams = policy.chainParams();
+    Map<Long, List<Crum>> crumsByBlock = new TreeMap<>();
+    for (var note : notes) {
+      long blockNo = chainParams.blockNoForUtc(note.crum().utc());
+      crumsByBlock.computeIfAbsent(blockNo, bn -> new ArrayList<>())
+          .add(note.crum());
+    }
+
+    var remote = getRemoteOrThrow(host);
+    var trailRepo = repo.getChainRepo(remote).trails();
+
+    var out = new ArrayList<Receipt>(notes.size());
+    final int poolSize = Math.min(maxConcurrent, notes.size());
+    
+    try (var executor = Executors.newFixedThreadPool(poolSize)) {
+      if (!noBundleHosts.contains(host)) {
+        try {
+          sealBundles(
+              crumsByBlock, host, remote, trailRepo, executor, out, progress);
+          return Collections.unmodifiableList(out);
+
+        } catch (HttpStatusException hsx) {
+          if (hsx.statusCode() != 404)
+            throw hsx;
+          noBundleHosts.add(host);
+          // older server: the crums not yet sealed go block by block
+          var sealed = new HashSet<ByteBuffer>();
+          for (var rcpt : out)
+            sealed.add(rcpt.crum().hash());
+          for (var crums : crumsByBlock.values())
+            crums.removeIf(crum -> sealed.contains(crum.hash()));
+        }
+      }
+      for (var crums : crumsByBlock.values()) {
+        if (crums.isEmpty())
+          continue;
+        var rcpts = sealBlock(crums, host, remote, trailRepo, executor);
+        out.addAll(rcpts);
+        progress.accept(rcpts);
+      }
+    }
+    return Collections.unmodifiableList(out);
+  }
+
+
+  /** Default max no. of concurrent requests on updating pending crums. */
+  public final static int DEFAULT_UPDATE_CONCURRENCY = 4;
+
+
+  /**
+   * Maximum number of crums per bundle (or block-grouped) update request.
+   * Matches the server's default maximum.
+   * 
+   * @see RemoteChain#updateBundle(List, long, boolean)
+   * @see RemoteChain#updateBlock(List, long)
+   */
+  public final static int UPDATE_BLOCK_BATCH_SIZE = 64;
+
+
+  /**
+   * A batch of crums, indexed [{@code start}, {@code end}) into the sorted
+   * crums in {@linkplain #sealBundles}.
+   * 
+   * @param request       the crums not already trailed in the repo
+   * @param firstBlockNo  block no. of the first crum in {@code request}
+   * @param future        the bundle request ({@code null}, if
+   *                      {@code request} is empty)
+   */
+  private record Batch(
+      int start, int end, List<Crum> request,
+      long firstBlockNo, long fromBlockNo,
+      Future<Optional<ReceiptBundle>> future) {
+
+    void cancel() {
+      if (future != null)
+        future.cancel(true);
+    }
+  }
+
+
+  /**
+   * Seals the given crums (grouped by block no., in ascending order) thru
+   * receipt bundles. The batches are requested concurrently, but recorded
+   * in order; each batch's receipts are added to {@code out} and passed to
+   * {@code progress} as they're recorded. If any request fails, then the
+   * batches before it are still recorded, before the error is rethrown.
+   * 
+   * @throws HttpStatusException
+   *          with status 404, if the server doesn't serve receipt bundles
+   */
+  private void sealBundles(
+      Map<Long, List<Crum>> crumsByBlock, String host,
+      RemoteChain remote, TrailRepo trailRepo, ExecutorService executor,
+      List<Receipt> out, Consumer<List<Receipt>> progress) {
+
+    var crums = new ArrayList<Crum>();
+    var blockNos = new ArrayList<Long>();
+    for (var e : crumsByBlock.entrySet()) {
+      for (var crum : e.getValue()) {
+        crums.add(crum);
+        blockNos.add(e.getKey());
+      }
+    }
+
+    // 1. crums already trailed in the repo (e.g. on resumption)
+    Map<ByteBuffer, Receipt> rcpts = new HashMap<>();
+    for (var crum : crums)
+      trailRepo.findTrail(crum.hash()).ifPresent(
+          trail -> rcpts.put(crum.hash(), new Receipt(trail)));
+
+    // 2. bundle requests (one block proof per response), issued concurrently;
+    //    each from the last block of the batch before it
+    var batches = new ArrayList<Batch>();
+    long prevBlockNo = Math.max(1L, trailRepo.blockNo());
+    for (int start = 0; start < crums.size(); start += UPDATE_BLOCK_BATCH_SIZE) {
+      final int end = Math.min(start + UPDATE_BLOCK_BATCH_SIZE, crums.size());
+      var request = new ArrayList<Crum>();
+      long firstBlockNo = 0;
+      for (int index = start; index < end; ++index) {
+        var crum = crums.get(index);
+        if (rcpts.containsKey(crum.hash()))
+          continue;
+        if (request.isEmpty())
+          firstBlockNo = blockNos.get(index);
+        request.add(crum);
+      }
+      final long fromBlockNo = Math.min(prevBlockNo, firstBlockNo);
+      Future<Optional<ReceiptBundle>> future =
+          request.isEmpty() ?
+              null :
+              executor.submit(
+                  () -> remote.updateBundle(request, fromBlockNo, false));
+      batches.add(
+          new Batch(start, end, request, firstBlockNo, fromBlockNo, future));
+      prevBlockNo = Math.max(prevBlockNo, blockNos.get(end - 1));
+    }
+
+    try {
+      for (var batch : batches) {
+        var batchRcpts =
+            sealBatch(batch, crums, rcpts, host, remote, trailRepo, executor);
+        out.addAll(batchRcpts);
+        progress.accept(batchRcpts);
+      }
+    } finally {
+      batches.forEach(Batch::cancel);   // (no-op, if done)
+    }
+  }
+
+
+  /**
+   * Records the given batch's bundle, updating the crums it omits
+   * individually, and returns the batch's receipts.
+   */
+  private List<Receipt> sealBatch(
+      Batch batch, List<Crum> crums, Map<ByteBuffer, Receipt> rcpts,
+      String host, RemoteChain remote, TrailRepo trailRepo,
+      ExecutorService executor) {
+
+    var errors = new ArrayList<RuntimeException>();
+
+    if (!batch.request().isEmpty()) {
+      var bundle = await(batch.future());
+
+      // if a batch before didn't advance the repo's chain to its last block
+      // (e.g. its crums in that block expired), then this bundle may not
+      // link to the chain: fetch it again, from the chain's last block
+      final long repoBlockNo = trailRepo.blockNo();
+      if (bundle.isPresent() &&
+          !links(bundle.get(), repoBlockNo) &&
+          repoBlockNo <= batch.firstBlockNo())
+        bundle = remote.updateBundle(batch.request(), repoBlockNo, false);
+
+      if (bundle.isPresent()) {
+        trailRepo.addBundle(bundle.get());
+        for (var trail : bundle.get().split())
+          rcpts.put(trail.crum().hash(), new Receipt(trail));
+      }
+
+      // 3. crums omitted from the bundle (e.g. expired) are updated
+      //    individually (and so may be witnessed anew)
+      var futures = new ArrayList<Future<Receipt>>();
+      for (var crum : batch.request()) {
+        if (!rcpts.containsKey(crum.hash()))
+          futures.add(executor.submit(
+              () -> remote.update(crum, batch.fromBlockNo())));
+      }
+      for (var rcpt : awaitAll(futures, errors)) {
+        // a trail here may not chain with the bundle's:
+        // leave it pending (it's picked up on the next pass)
+        if (rcpt.hasTrail())
+          rcpt = new Receipt(rcpt.chainParams(), rcpt.crum());
+        rcpts.put(rcpt.crum().hash(), rcpt);
+      }
+    }
+
+    var out = new ArrayList<Receipt>(batch.end() - batch.start());
+    for (var crum : crums.subList(batch.start(), batch.end())) {
+      var rcpt = rcpts.get(crum.hash());
+      if (rcpt == null)
+        continue;   // failed
+      out.add(rcpt);
+      if (rcpt.hasTrail())
+        repo.removePending(rcpt.crum().hash(), host);
+      else
+        repo.addPending(rcpt.crum(), host);
+    }
+
+    if (!errors.isEmpty())
+      throw errors.get(0);
+
+    return out;
+  }
+
+
+  /**
+   * Returns {@code true} if the bundle's trails can be added to a repo
+   * chain ending at the given block no. without any other trail.
+   */
+  private static boolean links(ReceiptBundle bundle, long repoBlockNo) {
+    return
+        repoBlockNo == 0 ||
+        bundle.blockNos().last() <= repoBlockNo ||
+        bundle.blockProof().chainState().hasRow(repoBlockNo);
+  }
+
+
+  /**
+   * Seals the given crums (all from the same block), then records the
+   * results in a batch. If any request fails, then the others are still
+   * recorded before the first error is rethrown.
+   */
+  private List<Receipt> sealBlock(
+      List<Crum> crums, String host,
+      RemoteChain remote, TrailRepo trailRepo, ExecutorService executor) {
+
+    final long fromBlockNo = Math.max(1L, trailRepo.blockNo());
+
+    Map<ByteBuffer, Receipt> rcpts = new HashMap<>();
+    var errors = new ArrayList<RuntimeException>();
+
+    // 1. crums already trailed in the repo (e.g. on resumption)
+    var remaining = new ArrayList<Crum>(crums.size());
+    for (var crum : crums) {
+      var trail = trailRepo.findTrail(crum.hash());
+      if (trail.isPresent())
+        rcpts.put(crum.hash(), new Receipt(trail.get()));
+      else
+        remaining.add(crum);
+    }
+
+    // 2. block-grouped update requests (one block proof per response)
+    var newTrails = new ArrayList<Crumtrail>(remaining.size());
+    {
+      var futures = new ArrayList<Future<Optional<BlockTrails>>>();
+      for (int start = 0; start < remaining.size(); start += UPDATE_BLOCK_BATCH_SIZE) {
+        var batch = remaining.subList(
+            start, Math.min(start + UPDATE_BLOCK_BATCH_SIZE, remaining.size()));
+        futures.add(executor.submit(() -> remote.updateBlock(batch, fromBlockNo)));
+      }
+      for (var blockTrails : awaitAll(futures, errors))
+        blockTrails.ifPresent(bt -> newTrails.addAll(bt.trails()));
+      for (var trail : newTrails)
+        rcpts.put(trail.crum().hash(), new Receipt(trail));
+    }
+
+    // 3. crums omitted from the block-grouped responses (e.g. expired) are
+    //    updated individually (and so may be witnessed anew)
+    if (errors.isEmpty()) {
+      var futures = new ArrayList<Future<Receipt>>();
+      for (var crum : remaining) {
+        if (!rcpts.containsKey(crum.hash()))
+          futures.add(executor.submit(() -> remote.update(crum, fromBlockNo)));
+      }
+      for (var rcpt : awaitAll(futures, errors)) {
+        if (rcpt.hasTrail() && !sameBlock(rcpt, crums.get(0))) {
+          // a trail from another block may not chain with this batch:
+          // leave it pending (it's picked up on the next pass)
+          rcpt = new Receipt(rcpt.chainParams(), rcpt.crum());
+        }
+        rcpts.put(rcpt.crum().hash(), rcpt);
+        if (rcpt.hasTrail())
+          newTrails.add(rcpt.trail());
+      }
+    }
+
+    trailRepo.addAll(newTrails);
+
+    var out = new ArrayList<Receipt>(crums.size());
+    for (var crum : crums) {
+      var rcpt = rcpts.get(crum.hash());
+      if (rcpt == null)
+        continue;   // failed
+      out.add(rcpt);
+      if (rcpt.hasTrail())
+        repo.removePending(rcpt.crum().hash(), host);
+      else
+        repo.addPending(rcpt.crum(), host);
+    }
+
+    if (!errors.isEmpty())
+      throw errors.get(0);
+
+    return out;
+  }
+
+
+  private boolean sameBlock(Receipt rcpt, Crum crum) {
+    return rcpt.blockNo() == rcpt.chainParams().blockNoForUtc(crum.utc());
+  }
+
+
+  /**
+   * Awaits and returns the result of the given future. The failure, if any,
+   * is rethrown as a runtime exception.
+   */
+  private static <T> T await(Future<T> future) {
+    try {
+      return future.get();
+
+    } catch (InterruptedException ix) {
+      Thread.currentThread().interrupt();
+      throw new NetworkException("interrupted on updating crums", ix);
+
+    } catch (ExecutionException xx) {
+      throw
+          xx.getCause() instanceof RuntimeException rx ?
+              rx : new NetworkException(xx.getCause());
+    }
+  }
+
+
+  /**
+   * Awaits and returns the results of the given futures. Failures are
+   * added to the given {@code errors} list.
+   */
+  private static <T> List<T> awaitAll(
+      List<Future<T>> futures, List<RuntimeException> errors) {
+    
+    var out = new ArrayList<T>(futures.size());
+    for (var future : futures) {
+      try {
+        out.add(await(future));
+      } catch (RuntimeException rx) {
+        errors.add(rx);
+      }
+    }
+    return out;
   }
 
 
@@ -350,6 +869,24 @@ public class Client implements AutoCloseable {
   }
 
 
+  /**
+   * Finds and returns the first crumtrail found from any of the hosts
+   * (chains) this repo knows about. The search stops on the first hit.
+   * 
+   * @param hash        32-bytes
+   * @param incLineage  if {@code true}, then the returned crumtrail (if any)
+   *                    contains a hashproof starting from its chain's genesis
+   *                    block
+   * 
+   * @see Repo#findFirstTrail(ByteBuffer, boolean)
+   */
+  public Optional<Repo.HostedTrail> findFirstTrail(
+      ByteBuffer hash, boolean incLineage) {
+    
+    return repo.findFirstTrail(hash, incLineage);
+  }
+
+
 
 
 
@@ -376,13 +913,23 @@ public class Client implements AutoCloseable {
     
     var rcpt = func.apply(obj, fromBlockNo);
     
+    record(rcpt, trailRepo, host);
+    
+    return rcpt;
+  }
+
+
+  /**
+   * Records the given receipt in the repo: if it has a trail, then the
+   * trail is added (and any pending note removed); otherwise, a pending
+   * note is added.
+   */
+  private void record(Receipt rcpt, TrailRepo trailRepo, String host) {
     if (rcpt.hasTrail()) {
       trailRepo.add(rcpt.trail());
       repo.removePending(rcpt.crum().hash(), host);
     } else
       repo.addPending(rcpt.crum(), host);
-    
-    return rcpt;
   }
 
 
@@ -452,7 +999,7 @@ public class Client implements AutoCloseable {
       var remote = this.remotes.get(host);
 
       if (remote == null) {
-        remote = new RemoteChain(hostUri);
+        remote = new RemoteChain(hostUri, transportProfile);
         this.remotes.put(host, remote);
         return remote;
       }
@@ -5,35 +5,66 @@ package io.crums.tc.client;
 
 
 import java.io.IOException;
+import java.net.ConnectException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Version;
+import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 import io.crums.sldg.json.HashEncoding;
 import io.crums.tc.BlockProof;
+import io.crums.tc.BlockTrails;
 import io.crums.tc.Constants;
 import io.crums.tc.Crum;
 import io.crums.tc.NotaryPolicy;
 import io.crums.tc.NotaryService;
 import io.crums.tc.Receipt;
+import io.crums.tc.ReceiptBundle;
+import io.crums.tc.except.HttpStatusException;
 import io.crums.tc.except.NetworkException;
 import io.crums.tc.json.BlockProofParser;
+import io.crums.tc.json.BlockTrailsParser;
 import io.crums.tc.json.NotaryPolicyParser;
+import io.crums.tc.json.ReceiptBundleParser;
 import io.crums.tc.json.ReceiptParser;
 import io.crums.util.json.JsonEntityReader;
 import io.crums.util.json.JsonParsingException;
+import io.crums.util.json.simple.JSONArray;
+import io.crums.util.json.simple.JSONObject;
+import io.crums.util.json.simple.parser.JSONParser;
+import io.crums.util.json.simple.parser.ParseException;
 
 /**
  * HTTP REST client to a single server.
  * 
+ * <h2>Transport</h2>
+ * <p>
+ * Retries, hedging (of state requests), and circuit breaking are governed
+ * by the instance's {@linkplain TransportProfile}. (Connection pooling is
+ * governed by JVM-wide system properties: see the profile's class doc.)
+ * Per-host request metrics are available via {@linkplain #metrics()}.
+ * </p>
  * <h2>Warning</h2>
  * 
  * <em>Concurrent behavior not tested.</em> Depends on how
@@ -108,6 +139,10 @@ public class RemoteChain implements NotaryService, Channel {
 
   private final HttpClient httpClient;
 
+  private final TransportProfile profile;
+
+  private final CircuitBreaker breaker;
+
 
   /** Request timeout in seconds. */
   private int timeout = DEFAULT_TIMEOUT_SECONDS;
@@ -118,19 +153,23 @@ public class RemoteChain implements NotaryService, Channel {
 
 
   
-  private HttpClient buildClient() {
-    return HttpClient.newBuilder().version(Version.HTTP_1_1).build();
+  private static HttpClient buildClient(TransportProfile profile) {
+    var builder = HttpClient.newBuilder().version(Version.HTTP_1_1);
+    if (profile.executor() != null)
+      builder.executor(profile.executor());
+    return builder.build();
   }
 
 
-  private RemoteChain(String hostUrl) {
+  private RemoteChain(String hostUrl, TransportProfile profile) {
     this.hostUrl = hostUrl;
-    this.httpClient = buildClient();
+    this.profile = profile;
+    this.httpClient = buildClient(profile);
+    this.breaker = CircuitBreaker.forHost(hostUrl, profile);
   }
   
   public RemoteChain(String scheme, String host) {
-    this.hostUrl = remoteURI(scheme, host).toString();
-    this.httpClient = buildClient();
+    this(remoteURI(scheme, host).toString(), TransportProfile.DEFAULT);
   }
 
 
@@ -150,17 +189,33 @@ public class RemoteChain implements NotaryService, Channel {
    * @param port    positive port number
    */
   public RemoteChain(String scheme, String host, int port) {
-    this.hostUrl = remoteURI(scheme, host, port).toString();
-    this.httpClient = buildClient();
+    this(remoteURI(scheme, host, port).toString(), TransportProfile.DEFAULT);
   }
 
 
 
 
   public RemoteChain(URI host) {
-    this.hostUrl = host.toString().toLowerCase();
+    this(host, TransportProfile.DEFAULT);
+  }
+
+
+  /**
+   * Creates an instance with the given transport profile.
+   * 
+   * @param host      absolute URI with no path
+   * @param profile   transport settings
+   * 
+   * @see #checkHostUri(URI)
+   */
+  public RemoteChain(URI host, TransportProfile profile) {
+    this(checkedHostUrl(host), Objects.requireNonNull(profile, "null profile"));
+  }
+
+
+  private static String checkedHostUrl(URI host) {
     checkHostUri(host);
-    this.httpClient = buildClient();
+    return host.toString().toLowerCase();
   }
 
 
@@ -193,6 +248,21 @@ public class RemoteChain implements NotaryService, Channel {
   }
 
 
+  /** Returns the transport profile. */
+  public final TransportProfile transportProfile() {
+    return profile;
+  }
+
+
+  /**
+   * Returns a snapshot of the request metrics for this host. The metrics
+   * are shared by all instances to the same host.
+   */
+  public CircuitBreaker.Metrics metrics() {
+    return breaker.metrics();
+  }
+
+
   public RemoteChain defaultCompression(boolean on) {
     compress = on;
     return this;
@@ -265,6 +335,61 @@ public class RemoteChain implements NotaryService, Channel {
 
 
   private <T> T fetchEntity(String url, JsonEntityReader<T> parser) {
+    return fetchEntity(url, parser, Req.IDEMPOTENT);
+  }
+
+
+  private <T> T fetchEntity(
+      String url, JsonEntityReader<T> parser, Req req) {
+    var body = fetchBody(url, req);
+    try {
+      return parser.toEntity(body);
+    } catch (JsonParsingException jpx) {
+      throw new NetworkException(
+        "failed on parsing JSON: " + jpx.getMessage(), jpx);
+    }
+  }
+
+
+  /** Request kind. Determines retry and hedging behavior. */
+  private enum Req {
+    /** Idempotent: retried on any I/O error, 502, 503, and 504. */
+    IDEMPOTENT,
+    /** Idempotent and hedged (if so configured). */
+    HEDGED,
+    /** Not idempotent: only retried if the request was not processed. */
+    ONCE;
+  }
+
+
+  /** Transient failure (a candidate for retrying). */
+  @SuppressWarnings("serial")
+  private static class TransientException extends NetworkException {
+    /** Whether the request may have been processed by the server. */
+    final boolean mayHaveProcessed;
+    /** Server-advised retry delay (0, if none). */
+    final long retryAfterMillis;
+
+    TransientException(
+        String msg, Throwable cause,
+        boolean mayHaveProcessed, long retryAfterMillis) {
+      super(msg, cause);
+      this.mayHaveProcessed = mayHaveProcessed;
+      this.retryAfterMillis = retryAfterMillis;
+    }
+  }
+
+
+  private String fetchBody(String url) throws NetworkException {
+    return fetchBody(url, Req.IDEMPOTENT);
+  }
+
+
+  /**
+   * Fetches and returns the body of a 200 or 202 response, retrying
+   * transient failures per the transport profile.
+   */
+  private String fetchBody(String url, Req req) throws NetworkException {
 
     HttpRequest request =
         HttpRequest.newBuilder()
@@ -274,25 +399,90 @@ public class RemoteChain implements NotaryService, Channel {
             .GET()
             .build();
 
+    for (int retry = 0; ; ++retry) {
+      breaker.acquire(url);
+      // (attempt records definitive HTTP answers as successes; transient
+      // failures are recorded below; with no outcome, the attempt is
+      // abandoned, releasing the breaker's half-open trial)
+      boolean recorded = false;
+      try {
+        String body = attempt(url, request, req);
+        recorded = true;
+        return body;
+
+      } catch (TransientException tx) {
+        breaker.onFailure();
+        recorded = true;
+        boolean retryable =
+            retry < profile.maxRetries() &&
+            (req != Req.ONCE || !tx.mayHaveProcessed);
+        if (!retryable)
+          throw tx;
+        backoff(url, retry + 1, tx.retryAfterMillis);
+        breaker.onRetry();
+      } finally {
+        if (!recorded)
+          breaker.onAbandon();
+      }
+    }
+  }
+
+
+  private void backoff(String url, int retry, long retryAfterMillis) {
+    long ceiling = profile.backoffCeilingMillis(retry);
+    long millis = ThreadLocalRandom.current().nextLong(ceiling + 1);
+    millis = Math.min(
+        Math.max(millis, retryAfterMillis), profile.backoffMaxMillis());
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ix) {
+      Thread.currentThread().interrupt();
+      throw new NetworkException(
+        "interrupted on backing off retry of " + url, ix);
+    }
+  }
+
+
+  /**
+   * Makes a single attempt (which, if hedged, may involve 2 requests).
+   * 
+   * @throws TransientException on retryable failures
+   * @throws HttpStatusException on definitive HTTP error statuses
+   * @throws NetworkException on other failures not worth retrying
+   */
+  private String attempt(String url, HttpRequest request, Req req)
+      throws NetworkException {
     try {
 
       HttpResponse<String> response =
-          httpClient.send(request, BodyHandlers.ofString());
+          req == Req.HEDGED && profile.isHedged() ?
+              sendHedged(request) :
+              httpClient.send(request, BodyHandlers.ofString());
 
       final var body = response.body();
+      final int status = response.statusCode();
+      // a definitive answer (even an error) means the host is up;
+      // transient statuses are recorded as failures by the caller
+      if (status != 502 && status != 503 && status != 504)
+        breaker.onSuccess();
 
       observeResponse(url, body);
       
-      {
-        int status = response.statusCode() ;
-        
-        if (status != 200 && status != 202)
-          throw new NetworkException(
-            "HTTP status code " + status + " from " + url + "\n" +
-            body);
+      if (status != 200 && status != 202) {
+        var msg = "HTTP status code " + status + " from " + url + "\n" + body;
+        switch (status) {
+        case 503:
+          throw new TransientException(
+              msg, null, false, retryAfterMillis(response));
+        case 502:
+        case 504:
+          throw new TransientException(msg, null, true, 0);
+        default:
+          throw new HttpStatusException(status, msg);
+        }
       }
 
-      return parser.toEntity(body);
+      return body;
       
 
     } catch (IOException iox) {
@@ -304,18 +494,119 @@ public class RemoteChain implements NotaryService, Channel {
       if (iox.getCause() != null && iox.getCause().getMessage() != null)
         msg += " -- Detail: " + iox.getCause().getMessage();
       
-      throw new NetworkException(msg, iox);
+      boolean notSent =
+          iox instanceof ConnectException ||
+          iox instanceof HttpConnectTimeoutException;
+
+      throw new TransientException(msg, iox, !notSent, 0);
 
     } catch (InterruptedException ix) {
+      Thread.currentThread().interrupt();
       throw new NetworkException(
         "interrupted on attempting " + url, ix);
-    } catch (JsonParsingException jpx) {
-      throw new NetworkException(
-        "failed on parsing JSON: " + jpx.getMessage(), jpx);
     }
   }
 
 
+  /** Returns the "Retry-After" header value in millis (0, if none). */
+  private static long retryAfterMillis(HttpResponse<?> response) {
+    var value = response.headers().firstValue("Retry-After");
+    if (value.isEmpty())
+      return 0;
+    try {
+      return Math.max(0, Long.parseLong(value.get().trim())) * 1000;
+    } catch (NumberFormatException nfx) {
+      return 0;   // HTTP-date form not supported
+    }
+  }
+
+
+  /**
+   * Sends the request; if it hasn't completed within the hedge delay, sends
+   * it again, and returns whichever response arrives first.
+   */
+  private HttpResponse<String> sendHedged(HttpRequest request)
+      throws IOException, InterruptedException {
+
+    return awaitHedged(
+        httpClient.sendAsync(request, BodyHandlers.ofString()),
+        () -> httpClient.sendAsync(request, BodyHandlers.ofString()),
+        profile.hedgeDelayMillis(),
+        breaker);
+  }
+
+
+  /**
+   * Awaits the primary request's result; if it hasn't completed within the
+   * given delay, sends the hedge, and returns whichever result first
+   * completes normally. Failures are unwrapped, so that if both fail, the
+   * caller sees the underlying {@code IOException} (a transient failure).
+   * 
+   * @param primary     the request sent
+   * @param hedger      sends the hedge (invoked at most once)
+   * @param breaker     notified of hedges sent, and hedges won
+   */
+  static <T> T awaitHedged(
+      CompletableFuture<T> primary, Supplier<CompletableFuture<T>> hedger,
+      long delayMillis, CircuitBreaker breaker)
+        throws IOException, InterruptedException {
+
+    CompletableFuture<T> hedge = null;
+    try {
+      try {
+        return primary.get(delayMillis, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException tx) {
+        breaker.onHedge();
+        hedge = hedger.get();
+      }
+      var response = firstSuccess(primary, hedge).get();
+      // (primary may have failed: don't getNow unless it completed normally)
+      boolean primaryWon =
+          primary.isDone() &&
+          !primary.isCompletedExceptionally() &&
+          primary.getNow(null) == response;
+      if (!primaryWon)
+        breaker.onHedgeWin();
+      return response;
+
+    } catch (ExecutionException xx) {
+      var cause = xx.getCause();
+      while (cause instanceof CompletionException && cause.getCause() != null)
+        cause = cause.getCause();
+      if (cause instanceof IOException iox)
+        throw iox;
+      if (cause instanceof RuntimeException rx)
+        throw rx;
+      throw new IOException(cause);
+
+    } finally {
+      primary.cancel(true);
+      if (hedge != null)
+        hedge.cancel(true);
+    }
+  }
+
+
+  /**
+   * Returns a future completed by the first of the given futures to
+   * complete normally; it completes exceptionally only if both fail.
+   */
+  private static <T> CompletableFuture<T> firstSuccess(
+      CompletableFuture<T> a, CompletableFuture<T> b) {
+    var first = new CompletableFuture<T>();
+    var failures = new AtomicInteger();
+    BiConsumer<T, Throwable> onDone = (result, error) -> {
+      if (error == null)
+        first.complete(result);
+      else if (failures.incrementAndGet() == 2)
+        first.completeExceptionally(error);
+    };
+    a.whenComplete(onDone);
+    b.whenComplete(onDone);
+    return first;
+  }
+
+
 
   /**
    * Same as {@linkplain #witness(ByteBuffer, long)} interface method, but with
@@ -332,7 +623,7 @@ public class RemoteChain implements NotaryService, Channel {
 
     url = appendQs(url, fromBlockNo, compress);
 
-    return fetchReceipt(url);
+    return fetchEntity(url, ReceiptParser.B64, Req.ONCE);
   }
 
 
@@ -361,10 +652,184 @@ public class RemoteChain implements NotaryService, Channel {
 
 
 
+  /**
+   * Witnesses the given hashes in a single request and returns their
+   * receipts in the same order. Note the server caps the number of hashes
+   * per request (8, by default).
+   * 
+   * @param hashes        32-byte hashes (not empty)
+   * @param fromBlockNo   block no. the returned trails' block proofs
+   *                      (if any) start from
+   * @param compress      if {@code true}, then the block proofs (if any)
+   *                      are compressed
+   * 
+   * @see Client#WITNESS_BATCH_SIZE
+   */
+  public List<Receipt> witness(
+      List<ByteBuffer> hashes, long fromBlockNo, boolean compress)
+        throws NetworkException {
+    
+    final int count = hashes.size();
+    if (count == 0)
+      throw new IllegalArgumentException("empty hashes");
+    if (count == 1)
+      return List.of(witness(hashes.get(0), fromBlockNo, compress));
+    
+    var url = new StringBuilder(hostUrl)
+        .append(Constants.Rest.WITNESS_URI).append('?');
+    for (int index = 0; index < count; ++index) {
+      if (index != 0)
+        url.append('&');
+      url.append(Constants.Rest.QS_HASH).append('=')
+          .append(HashEncoding.BASE64_32.encode(hashes.get(index)));
+    }
+
+    var surl = appendQs(url.toString(), fromBlockNo, compress);
+
+    return fetchReceipts(surl, count, Req.ONCE);
+  }
+
+
+  /**
+   * Same as {@linkplain #witness(List, long, boolean)}, but with
+   * the instance's default compression setting.
+   */
+  public List<Receipt> witness(List<ByteBuffer> hashes, long fromBlockNo)
+      throws NetworkException {
+    return witness(hashes, fromBlockNo, compress);
+  }
+
+
+
+  @Override
+  public Optional<BlockTrails> updateBlock(List<Crum> crums, long fromBlockNo)
+      throws NetworkException {
+    return updateBlock(crums, fromBlockNo, compress);
+  }
+
+
+  /**
+   * Same as {@linkplain #updateBlock(List, long)} interface method, but with
+   * the <em>compression</em> option exposed. Note the server caps the number
+   * of crums per request (64, by default).
+   * 
+   * @see Client#UPDATE_BLOCK_BATCH_SIZE
+   */
+  public Optional<BlockTrails> updateBlock(
+      List<Crum> crums, long fromBlockNo, boolean compress)
+        throws NetworkException {
+    
+    var surl = crumsUrl(
+        Constants.Rest.UPDATE_BLOCK_URI, crums, fromBlockNo, compress);
+    return fetchOptional(surl, BlockTrailsParser.B64);
+  }
+
+
+
+  @Override
+  public Optional<ReceiptBundle> updateBundle(
+      List<Crum> crums, long fromBlockNo) throws NetworkException {
+    return updateBundle(crums, fromBlockNo, compress);
+  }
+
+
+  /**
+   * Same as {@linkplain #updateBundle(List, long)} interface method, but with
+   * the <em>compression</em> option exposed. Note the server caps the number
+   * of crums per request (64, by default).
+   * <p>
+   * A compressed bundle's trails all share the bundle's block proof (it
+   * cannot be {@linkplain ReceiptBundle#split() split}); so if the trails
+   * are to be saved individually, consider not compressing.
+   * </p>
+   *
+   * @throws HttpStatusException
+   *          with status 404, if the server predates this endpoint
+   */
+  public Optional<ReceiptBundle> updateBundle(
+      List<Crum> crums, long fromBlockNo, boolean compress)
+        throws NetworkException {
+    
+    var surl = crumsUrl(
+        Constants.Rest.UPDATE_BUNDLE_URI, crums, fromBlockNo, compress);
+    return fetchOptional(surl, ReceiptBundleParser.B64);
+  }
+
+
+  /** Returns the URL with the given crums in the query string. */
+  private String crumsUrl(
+      String uri, List<Crum> crums, long fromBlockNo, boolean compress) {
+    
+    if (crums.isEmpty())
+      throw new IllegalArgumentException("empty crums");
+
+    var url = new StringBuilder(hostUrl).append(uri).append('?');
+    for (int index = 0; index < crums.size(); ++index) {
+      var crum = crums.get(index);
+      if (index != 0)
+        url.append('&');
+      url.append(Constants.Rest.QS_HASH).append('=')
+          .append(HashEncoding.BASE64_32.encode(crum.hash()))
+          .append('&')
+          .append(Constants.Rest.QS_UTC).append('=').append(crum.utc());
+    }
+
+    return appendQs(url.toString(), fromBlockNo, compress);
+  }
+
+
+  /**
+   * Fetches and returns the entity at the given URL; empty, if the
+   * response is an empty JSON object.
+   */
+  private <T> Optional<T> fetchOptional(String url, JsonEntityReader<T> parser)
+      throws NetworkException {
+    
+    var body = fetchBody(url);
+    try {
+      var jObj = (JSONObject) new JSONParser().parse(body);
+      return
+          jObj.isEmpty() ?
+              Optional.empty() :
+              Optional.of(parser.toEntity(jObj));
+    
+    } catch (ParseException | ClassCastException | JsonParsingException x) {
+      throw new NetworkException(
+        "failed on parsing JSON: " + x.getMessage(), x);
+    }
+  }
+
+
+
   private Receipt fetchReceipt(String url) throws NetworkException {
     return fetchEntity(url, ReceiptParser.B64);
   }
 
+
+  private List<Receipt> fetchReceipts(String url, int expectedCount, Req req)
+      throws NetworkException {
+    
+    var body = fetchBody(url, req);
+    try {
+      if (new JSONParser().parse(body) instanceof JSONArray jArray) {
+        var receipts = new ArrayList<Receipt>(jArray.size());
+        for (var jObj : jArray)
+          receipts.add(ReceiptParser.B64.toEntity((JSONObject) jObj));
+        if (receipts.size() != expectedCount)
+          throw new NetworkException(
+            "expected " + expectedCount + " receipts from " + url +
+            "; actual was " + receipts.size());
+        return receipts;
+      }
+      throw new NetworkException(
+        "expected JSON array from " + url + "\n" + body);
+
+    } catch (ParseException | ClassCastException | JsonParsingException x) {
+      throw new NetworkException(
+        "failed on parsing JSON: " + x.getMessage(), x);
+    }
+  }
+
   
   @Override
   public Receipt update(Crum crum, long fromBlockNo) throws NetworkException {
@@ -430,7 +895,7 @@ public class RemoteChain implements NotaryService, Channel {
 
     final var surl = url.toString();
 
-    return fetchEntity(surl, BlockProofParser.B64);
+    return fetchEntity(surl, BlockProofParser.B64, Req.HEDGED);
   }
 
 
@@ -457,13 +922,19 @@ public class RemoteChain implements NotaryService, Channel {
 
 
 
+  /**
+   * Closes this instance and returns a new one to the same host with
+   * fresh connections, and the same settings. The circuit breaker (and
+   * its metrics) carry over.
+   */
   @SuppressWarnings("resource")
   public RemoteChain reboot() {
     this.close();
     return
-        new RemoteChain(this.hostUrl)
+        new RemoteChain(this.hostUrl, this.profile)
         .defaultCompression(this.compress)
-        .timeout(timeout);
+        .timeout(timeout)
+        .userAgent(userAgent);
   }
 
 
@@ -21,6 +21,11 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import io.crums.io.DirectoryRemover;
 import io.crums.io.Opening;
@@ -113,6 +118,13 @@ public class Repo {
 
   protected final File pending;
 
+  /**
+   * Chain repos loaded (and verified) by this instance, key-ed by hostname.
+   * Chain repos are never deleted by this class, so these live for the life
+   * of the instance.
+   */
+  private final Map<String, ChainRepo> chainRepoCache = new ConcurrentHashMap<>();
+
 
   /**
    * Opens or creates an instance at the given path.
@@ -630,13 +642,19 @@ public class Repo {
    *          if the named chain repo is in invalid state
    */
   public ChainRepo loadChainRepo(String host) throws RepoException {
+    var chainRepo = chainRepoCache.get(host);
+    if (chainRepo != null && chainRepo.dir().isDirectory())
+      return chainRepo;
+
     final File dir = chainDir(host);
     var hostUri = loadOrigin(dir).hostURI();
-    var chainRepo = new ChainRepo(hostUri, dir);
+    chainRepo = new ChainRepo(hostUri, dir);
 
     // assert the policy file is there and works
+    // (the parsed policy is memo-ized in the instance)
     chainRepo.policy();
 
+    chainRepoCache.put(host, chainRepo);
     return chainRepo;
   }
 
@@ -785,6 +803,8 @@ public class Repo {
 
     private final TrailRepo trailRepo;
 
+    private volatile NotaryPolicy policy;
+
 
     private ChainRepo(URI origin, File dir) {
       this(origin, new TrailRepo(dir));
@@ -802,7 +822,19 @@ public class Repo {
     }
 
 
+    /**
+     * Returns the chain's policy. The policy file is written once, when
+     * the repo is created; it is parsed on first access and then memo-ized.
+     */
     public NotaryPolicy policy() throws RepoException {
+      var p = policy;
+      if (p == null)
+        policy = p = loadPolicy();
+      return p;
+    }
+
+
+    private NotaryPolicy loadPolicy() throws RepoException {
       File policyFile = new File(dir(), POLICY_FILE);
       try {
         return NotaryPolicyParser.INSTANCE.toEntity(policyFile);
@@ -843,7 +875,9 @@ public class Repo {
 
   /**
    * Finds and returns crumtrails from <em>all</em> hosts (chains)
-   * this repo knows about.
+   * this repo knows about. If the repo knows about more than one host,
+   * then the hosts are searched concurrently (on virtual threads).
+   * The returned trails are in host-listing order.
    * 
    * @param hash        32-bytes
    * @param incLineage  if {@code true}, then each returned crumtrail (if any)
@@ -851,22 +885,107 @@ public class Repo {
    *                    block
    * 
    * @return  immutable, possibly empty list
+   * @see #findFirstTrail(ByteBuffer, boolean)
    */
   public List<HostedTrail> findTrails(ByteBuffer hash, boolean incLineage) {
     var chainRepos = loadChainRepos();
-    if (chainRepos.isEmpty())
-      return List.of();
+    switch (chainRepos.size()) {
+    case 0:   return List.of();
+    case 1:
+      var found = findTrail(chainRepos.get(0), hash, incLineage);
+      return found.isEmpty() ? List.of() : List.of(found.get());
+    default:
+    }
 
     var out = new ArrayList<HostedTrail>(chainRepos.size());
-    for (var chainRepo : chainRepos) {
-      var trail = chainRepo.trails().findTrail(hash, incLineage);
-      if (trail.isPresent())
-        out.add(new HostedTrail(trail.get(), chainRepo.origin().getHost()));
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      
+      var futures = new ArrayList<Future<Optional<HostedTrail>>>(chainRepos.size());
+      for (var chainRepo : chainRepos)
+        futures.add(
+            executor.submit(() -> findTrail(chainRepo, hash, incLineage)));
+      
+      for (var future : futures)
+        getResult(future).ifPresent(out::add);
     }
     return out.isEmpty() ? List.of() : Collections.unmodifiableList(out);
   }
 
 
+  /**
+   * Finds and returns the first crumtrail found from any of the hosts
+   * (chains) this repo knows about. Hosts are searched concurrently;
+   * the search stops on the first hit. Which of the hosts wins, if the
+   * hash is witnessed on more than one chain, is unspecified.
+   * 
+   * @param hash        32-bytes
+   * @param incLineage  if {@code true}, then the returned crumtrail (if any)
+   *                    contains a hashproof starting from its chain's genesis
+   *                    block
+   * @see #findTrails(ByteBuffer, boolean)
+   */
+  public Optional<HostedTrail> findFirstTrail(
+      ByteBuffer hash, boolean incLineage) {
+    
+    var chainRepos = loadChainRepos();
+    switch (chainRepos.size()) {
+    case 0:   return Optional.empty();
+    case 1:   return findTrail(chainRepos.get(0), hash, incLineage);
+    default:
+    }
+
+    var executor = Executors.newVirtualThreadPerTaskExecutor();
+    try {
+      var completions =
+          new ExecutorCompletionService<Optional<HostedTrail>>(executor);
+      for (var chainRepo : chainRepos)
+        completions.submit(() -> findTrail(chainRepo, hash, incLineage));
+      
+      for (int count = chainRepos.size(); count-- > 0; ) {
+        var found = getResult(completions.take());
+        if (found.isPresent())
+          return found;
+      }
+      return Optional.empty();
+
+    } catch (InterruptedException ix) {
+      Thread.currentThread().interrupt();
+      throw new RepoException("interrupted on finding trail", ix);
+    
+    } finally {
+      // the remaining searches (if any) are abandoned
+      executor.shutdownNow();
+    }
+  }
+
+
+  private Optional<HostedTrail> findTrail(
+      ChainRepo chainRepo, ByteBuffer hash, boolean incLineage) {
+    // the hash buffer is shared across threads: pass each a view
+    return
+        chainRepo.trails().findTrail(hash.duplicate(), incLineage)
+        .map(trail -> new HostedTrail(trail, chainRepo.origin().getHost()));
+  }
+
+
+  private <T> T getResult(Future<T> future) throws RepoException {
+    try {
+      return future.get();
+    
+    } catch (InterruptedException ix) {
+      Thread.currentThread().interrupt();
+      throw new RepoException("interrupted on finding trail", ix);
+    
+    } catch (ExecutionException xx) {
+      var cause = xx.getCause();
+      if (cause instanceof RuntimeException rx)
+        throw rx;
+      throw new RepoException(
+          "on finding trail -- detail: " + cause.getMessage(), cause);
+    }
+  }
+
+
 
 
 }
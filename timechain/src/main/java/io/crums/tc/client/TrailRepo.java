@@ -11,7 +11,9 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.lang.System.Logger.Level;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
@@ -25,6 +27,7 @@ import io.crums.tc.BlockProof;
 import io.crums.tc.Constants;
 import io.crums.tc.Crum;
 import io.crums.tc.Crumtrail;
+import io.crums.tc.ReceiptBundle;
 import io.crums.util.IntegralStrings;
 import io.crums.util.RandomId;
 
@@ -64,8 +67,8 @@ import io.crums.util.RandomId;
  * </p>
  * <h4>Some Details</h4>
  * <p>
- * All files are <em>write-once</em>; furthermore, all file-writes are
- * <em>staged</em>.
+ * All files (save the chain journal) are <em>write-once</em>; furthermore,
+ * all file-writes are <em>staged</em>.
  * The precise rule for concurrency is that the repo's global chain block
  * proof (hereafter <em>chain</em>) can only ever be appended. Altho this
  * class is strict about enforcing these rules, it's also a goal to make it
@@ -77,6 +80,23 @@ import io.crums.util.RandomId;
  * chain files can be removed without loss of information. (There are
  * race condition checks to be made before deleting these.)
  * </p>
+ * <h4>Chain Journal</h4>
+ * <p>
+ * The chain file and state patch are not rewritten every time they
+ * advance. Instead, the new tail (or patch) is appended to a journal
+ * ({@linkplain #JOURNAL}), and the chain state is kept in memory, applying
+ * journal records as they're appended. Once the journal grows past
+ * {@linkplain #journalCompactionBytes()}, it is {@linkplain #compact()
+ * compacted}: the canonical chain and patch files are written, and the
+ * journal is reset. So the latest chain state is given by the
+ * highest numbered chain and patch files, <em>together with</em> the
+ * journal.
+ * </p><p>
+ * Chain updates (and compactions) validate against, and append to, the
+ * journal under its write lock. The lock is held across threads and
+ * across processes sharing the repo's directory, so that concurrent
+ * writers don't lose each other's records.
+ * </p>
  * TODO: patch files need more validation (guard against mischievous timechain
  * servers).
  */
@@ -93,6 +113,9 @@ public class TrailRepo {
   /** Staging directory name. */
   public final static String STAGING = "staging";
 
+  /** Chain journal filename. */
+  public final static String JOURNAL = "chain.journal";
+
 
   public final static String LOG_NAME = "io.crums.tc.client";
 
@@ -115,12 +138,18 @@ public class TrailRepo {
   protected final File stagingDir;
   protected final HexPathTree trailTree;
 
+  private final ChainJournal journal;
+
+  /** In-memory chain state; {@code null}, until first loaded. */
+  private volatile Head head;
+
 
 
   public TrailRepo(File dir) {
     this.dir = dir;
     this.stagingDir = FileUtils.ensureDir(new File(dir, STAGING));
     this.trailTree = new HexPathTree(dir, CARGO_PROOF_EXT);
+    this.journal = new ChainJournal(new File(dir, JOURNAL), stagingDir);
   }
 
 
@@ -168,7 +197,8 @@ public class TrailRepo {
           "crum hash conflicts for hex path " + trailFile);
 
     final long tbn = trail.blockNo();
-    final var stateProof = chainState();
+    final var head = head();
+    final var stateProof = head.chain;
     if (stateProof == null || !stateProof.chainState().hasRow(tbn)) {
       System.getLogger(LOG_NAME).log(
           Level.WARNING,
@@ -179,7 +209,7 @@ public class TrailRepo {
     
     
     var blockProof =
-        chainPatch(stateProof.blockNo())
+        head.patch(stateProof.blockNo())
         .map(patch -> stateProof.appendTail(patch))
         .orElse(stateProof)
         .forBlockNo(trail.blockNo(), incLineage)
@@ -249,16 +279,147 @@ public class TrailRepo {
    *          
    */
   public void add(Crumtrail trail) throws HashConflictException {
+    checkUncondensed(trail);
+
+    // Update the repo's block proof, first
+    try (var lock = journal.lock()) {
+      var repoChain = chainState();
+      if (repoChain == null)
+        appendJournal(
+            new ChainJournal.Entry(ChainJournal.CHAIN, initChain(trail)));
+      else {
+        var tail = chainTail(repoChain, trail);
+        if (tail != null)
+          appendJournal(new ChainJournal.Entry(ChainJournal.CHAIN, tail));
+      }
+    }
+
+    // any necessary update to the chain's block proof is completed
+
+    writeTrail(trail);
+  }
+
+
+  /**
+   * Adds the given crumtrails to the repo as a batch. The trails are
+   * validated against the repo's chain block proof in block no. order,
+   * exactly as in {@linkplain #add(Crumtrail)}, but the chain block proof
+   * is written (updated) at most once for the whole batch. Trails from the
+   * same block, fetched from the same {@code fromBlockNo}, always batch
+   * together.
+   * 
+   * <h4>Failure</h4>
+   * <p>
+   * If any trail fails validation, then nothing is written.
+   * </p>
+   * 
+   * @param trails  the new trails (may be empty)
+   * 
+   * @throws HashConflictException
+   *          if any trail's block hashes conflict with those of the
+   *          timechain recorded in this repo
+   * @see #add(Crumtrail)
+   */
+  public void addAll(List<Crumtrail> trails) throws HashConflictException {
+    switch (trails.size()) {
+    case 0:   return;
+    case 1:   add(trails.get(0)); return;
+    default:
+    }
+
+    var sorted = new ArrayList<>(trails);
+    sorted.forEach(this::checkUncondensed);
+    sorted.sort(Comparator.comparingLong(Crumtrail::blockNo));
+
+    journalChain(sorted);
+
+    sorted.forEach(this::writeTrail);
+  }
+
+
+  /**
+   * Adds the trails in the given receipt bundle to the repo. The trails
+   * are validated against the repo's chain block proof, as in
+   * {@linkplain #addAll(List)}, using the bundle's shared block proof (which
+   * links every block in the bundle); but they are saved individually, in
+   * {@linkplain ReceiptBundle#split() split} form.
+   * 
+   * <h4>Failure</h4>
+   * <p>
+   * If any trail fails validation, then nothing is written.
+   * </p>
+   * 
+   * @param bundle  uncompressed bundle
+   * 
+   * @throws HashConflictException
+   *          if any trail's block hashes conflict with those of the
+   *          timechain recorded in this repo
+   * @throws IllegalArgumentException
+   *          if the bundle's block proof is compressed
+   * @see RemoteChain#updateBundle(List, long, boolean)
+   */
+  public void addBundle(ReceiptBundle bundle) throws HashConflictException {
+    if (bundle.blockProof().isCompressed())
+      throw new IllegalArgumentException(
+          "compressed bundle block proof: " + bundle.blockProof());
+
+    var sorted = new ArrayList<>(bundle.trails());
+    sorted.forEach(this::checkUncondensed);
+    sorted.sort(Comparator.comparingLong(Crumtrail::blockNo));
+
+    journalChain(sorted);
+
+    bundle.split().forEach(this::writeTrail);
+  }
+
+
+  /**
+   * Validates the given trails (sorted by block no.) against the repo's
+   * chain, and journals the chain updates in one append. Nothing is written
+   * on validation failure.
+   */
+  private void journalChain(List<Crumtrail> sorted)
+      throws HashConflictException {
+    try (var lock = journal.lock()) {
+      final var first = sorted.get(0);
+      var entries = new ArrayList<ChainJournal.Entry>();
+
+      // fold the trails into the chain (in memory)
+      var chain = chainState();
+      if (chain == null) {
+        chain = initChain(first);
+        entries.add(new ChainJournal.Entry(ChainJournal.CHAIN, chain));
+      }
+      for (var trail : sorted) {
+        var tail = chainTail(chain, trail);
+        if (tail != null) {
+          chain = chain.appendTail(tail);
+          entries.add(new ChainJournal.Entry(ChainJournal.CHAIN, tail));
+        }
+      }
+
+      // all trails validated.. journal the chain updates in one append
+      appendJournal(entries);
+    }
+  }
+
+
+  private void checkUncondensed(Crumtrail trail) {
     if (trail.isCondensed())
       throw new IllegalArgumentException("condensed crumtrail " + trail);
+  }
 
-    var repoChain = chainState();
-    if (repoChain == null) {
-      init(trail);
-      return;
-    }
 
-    // Update the repo's block proof, first
+  /**
+   * Validates the given trail against the given repo chain and returns the
+   * tail (block proof) advancing the chain to the trail's block no.
+   * If the chain needs no update, then {@code null} is returned. Nothing is
+   * written.
+   * 
+   * @see BlockProof#appendTail(BlockProof)
+   */
+  private BlockProof chainTail(BlockProof repoChain, Crumtrail trail)
+      throws HashConflictException {
 
     var trailChain = trail.blockProof();
 
@@ -275,28 +436,23 @@ public class TrailRepo {
       // following throws HCE on mismatched hashes
       assertBlockHash(repoChain, trailChain, repoBn);
 
-      Path newStatePath =
-          repoChain.chainState().appendTail(
-              trailChain.chainState().headPath(trail.blockNo() + 1));
-
-      var newChain = new BlockProof(repoChain.chainParams(), newStatePath);
-      writeChain(newChain);
+      Path tail = trailChain.chainState().headPath(trailBn + 1);
+      // (fail fast on a tail that doesn't link)
+      repoChain.chainState().appendTail(tail);
 
-    } else { // assert trailBn <= repoBn;
-
-      if (trailBn != repoBn && !repoChain.chainState().hasRow(trailBn))
-        throw new IllegalArgumentException(
-            "trail block [" + trailBn +
-            "] is (behind and) not contained in repo " + this +
-            "'s block proof ending at block [" + repoBn + "]");
+      return new BlockProof(repoChain.chainParams(), tail);
 
-      assertBlockHash(repoChain, trailChain, trailBn);
     }
+    // assert trailBn <= repoBn;
 
-    // any necessary update to the chain's block proof is completed
+    if (trailBn != repoBn && !repoChain.chainState().hasRow(trailBn))
+      throw new IllegalArgumentException(
+          "trail block [" + trailBn +
+          "] is (behind and) not contained in repo " + this +
+          "'s block proof ending at block [" + repoBn + "]");
 
-    writeTrail(trail);
-    cleanUpTo(trail.blockNo());
+    assertBlockHash(repoChain, trailChain, trailBn);
+    return null;
   }
 
 
@@ -318,26 +474,23 @@ public class TrailRepo {
     if (patch.isCondensed())
       throw new IllegalArgumentException(
           "condensed patch block proof: " + patch);
-    
-    long currentPatchNo = patchNos().max(Long::compare).orElse(0L);
-    if (patch.blockNo() <= currentPatchNo)
-      return false;
 
-    
-    var chainState = chainState();
-    if (chainState == null) {
-      writePatch(patch);
-      removePatchesLessThan(patch.blockNo());
-      return true;
-    }
+    try (var lock = journal.lock()) {
+      final var head = head();
+      long currentPatchNo = head.patch == null ? 0L : head.patch.blockNo();
+      if (patch.blockNo() <= currentPatchNo)
+        return false;
 
-    if (!patch.chainState().hasRowCovered(chainState.blockNo()))
-      return false;
+      var chainState = head.chain;
+      if (chainState != null) {
+        if (!patch.chainState().hasRowCovered(chainState.blockNo()))
+          return false;
+        assertBlockHash(chainState, patch, chainState.blockNo());
+      }
 
-    assertBlockHash(chainState, patch, chainState.blockNo());
-    writePatch(patch);
-    removePatchesLessThan(patch.blockNo());
-    return true;
+      appendJournal(new ChainJournal.Entry(ChainJournal.PATCH, patch));
+      return true;
+    }
   }
 
 
@@ -353,30 +506,55 @@ public class TrailRepo {
   }
 
 
-  private void init(Crumtrail trail) {
+  /** Returns the initial repo chain (block proof) for the given first trail. */
+  private BlockProof initChain(Crumtrail trail) {
     final long tbn = trail.blockNo();
-    BlockProof chain;
-    if (tbn != trail.blockProof().blockNo()) {
-      var statePath = trail.blockProof().chainState().headPath(tbn + 1);
-      assert statePath.hi() == tbn;
-      chain = new BlockProof(trail.chainParams(), statePath);
-    } else {
-      chain = trail.blockProof();
-    }
-    writeChain(chain);
-    removePatchesLessThan(tbn + 1L, 0);
-    writeTrail(trail);
+    if (tbn == trail.blockProof().blockNo())
+      return trail.blockProof();
+    
+    var statePath = trail.blockProof().chainState().headPath(tbn + 1);
+    assert statePath.hi() == tbn;
+    return new BlockProof(trail.chainParams(), statePath);
   }
 
 
   public void cleanUp() {
   }
 
-  /** @param blockNo  (exclusive) */
-  private int cleanUpTo(long blockNo) {
-    return
-        removeChainFilesLessThan(blockNo) + 
-        removePatchesLessThan(blockNo + 1);
+
+  /**
+   * Controls how large the chain journal grows before it is compacted.
+   * 
+   * @return &ge; 0; defaults to 256 KiB
+   * @see #compact()
+   */
+  protected long journalCompactionBytes() {
+    return 256 * 1024;
+  }
+
+
+  /**
+   * Compacts the chain journal. The current chain block proof and state
+   * patch are written to their canonical files (if not already written),
+   * older ones are removed (per {@linkplain #historyBufferSize()}), and the
+   * journal is reset. Compaction is serialized with appends (across
+   * processes, too).
+   */
+  public void compact() {
+    try (var lock = journal.lock()) {
+      var h = head();
+      if (h.chain != null && !chainFile(h.chain.blockNo()).exists())
+        writeChain(h.chain);
+      if (h.patch != null && !patchFile(h.patch.blockNo()).exists())
+        writePatch(h.patch);
+      if (h.generation != 0)
+        journal.reset(h.generation + 1);
+      if (h.chain != null)
+        removeChainFilesLessThan(h.chain.blockNo());
+      if (h.patch != null)
+        removePatchesLessThan(h.patch.blockNo());
+      head = null;
+    }
   }
 
 
@@ -495,28 +673,22 @@ public class TrailRepo {
    * repo or {@code null} if the repo is empty. 
    */
   public BlockProof chainState() {
-    return chainNos().max(Long::compare).map(this::loadChain).orElse(null);
+    return head().chain;
   }
 
   public Optional<BlockProof> chainPatch(long fromBlockNo) {
-    return
-        patchNos()
-        .filter(bn -> bn > fromBlockNo)
-        .max(Long::compare)
-        .map(this::loadPatch);
+    return head().patch(fromBlockNo);
   }
 
 
   /**
-   * Returns the crum trail chain's block no. Unless assertions are turned on,
-   * the chain file is not actually loaded.
+   * Returns the crum trail chain's block no.
    * 
    * @return the block no. of the latest (youngest) crum trail.
    */
   public long blockNo() {
-    long bn = chainNos().max(Long::compare).orElse(0L);
-    assert bn == 0 || chainState().blockNo() == bn;
-    return bn;
+    var chain = head().chain;
+    return chain == null ? 0L : chain.blockNo();
   }
 
 
@@ -524,8 +696,105 @@ public class TrailRepo {
    * Returns the highest block no. recorded in this repo.
    */
   public long commitNo() {
-    long pn = patchNos().max(Long::compare).orElse(0L);
-    return Math.max(pn, blockNo());
+    var patch = head().patch;
+    return Math.max(patch == null ? 0L : patch.blockNo(), blockNo());
+  }
+
+
+
+  /**
+   * In-memory chain state, as of the given journal generation and offset.
+   * 
+   * @param chain   the repo's chain block proof (may be {@code null})
+   * @param patch   the latest state patch (may be {@code null})
+   */
+  private record Head(
+      long generation, long offset, BlockProof chain, BlockProof patch) {
+
+    Optional<BlockProof> patch(long fromBlockNo) {
+      return
+          patch == null || patch.blockNo() <= fromBlockNo ?
+              Optional.empty() : Optional.of(patch);
+    }
+
+    /** Applies the given journal entry and returns the result. */
+    Head apply(ChainJournal.Entry entry) {
+      var proof = entry.proof();
+      if (entry.type() == ChainJournal.PATCH)
+        return
+            patch == null || proof.blockNo() > patch.blockNo() ?
+                new Head(generation, offset, chain, proof) : this;
+      if (chain == null)
+        return new Head(generation, offset, proof, patch);
+      if (proof.blockNo() <= chain.blockNo())
+        return this;    // (already compacted)
+      return new Head(generation, offset, chain.appendTail(proof), patch);
+    }
+
+    Head offset(long newOffset) {
+      return new Head(generation, newOffset, chain, patch);
+    }
+  }
+
+
+  /**
+   * Returns the in-memory chain state, first bringing it up-to-date with
+   * the journal, if it changed.
+   */
+  private Head head() {
+    while (true) {
+      var h = head;
+      final long generation = journal.generation();
+      final long size = journal.size();
+      if (h != null && h.generation == generation &&
+          (h.offset == size || generation == 0))
+        return h;
+
+      if (h == null || h.generation != generation || size < h.offset)
+        h = new Head(
+            generation,
+            ChainJournal.HEADER_BYTES,
+            chainNos().max(Long::compare).map(this::loadChain).orElse(null),
+            patchNos().max(Long::compare).map(this::loadPatch).orElse(null));
+
+      var state = new Head[] { h };
+      long offset = journal.read(generation, h.offset, e -> {
+        try {
+          state[0] = state[0].apply(e);
+        } catch (RuntimeException x) {
+          System.getLogger(LOG_NAME).log(
+              Level.WARNING,
+              "ignoring " + (char) e.type() + " journal entry [" +
+              e.proof().blockNo() + "] in " + this + ": " + x.getMessage());
+        }
+      });
+      if (offset == -1)
+        continue;   // compacted (by another process) while reading: retry
+      h = state[0].offset(offset);
+      head = h;
+      return h;
+    }
+  }
+
+
+  private void appendJournal(ChainJournal.Entry entry) {
+    appendJournal(List.of(entry));
+  }
+
+
+  /**
+   * Appends the given entries, and compacts the journal, if need be. The
+   * caller holds the journal lock, and has validated the entries against
+   * the current {@linkplain #head()}.
+   */
+  private void appendJournal(List<ChainJournal.Entry> entries) {
+    if (entries.isEmpty())
+      return;
+    var h = head();
+    journal.append(h.generation, h.offset, entries);
+    head();
+    if (journal.size() > journalCompactionBytes())
+      compact();
   }
 
 
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.client;
+
+
+import java.util.concurrent.Executor;
+
+/**
+ * HTTP transport settings for {@linkplain RemoteChain}. Instances are
+ * immutable; use the {@code withXxx} methods to derive modified copies
+ * from {@linkplain #DEFAULT}.
+ *
+ * <h2>Connection Pool</h2>
+ * <p>
+ * Connection pool settings are <em>not</em> part of a profile: they're
+ * process-wide. {@code java.net.http.HttpClient} sizes its connection pool
+ * and times out idle (keep-alive) connections using JVM-wide system
+ * properties ({@linkplain #POOL_SIZE_PROPERTY},
+ * {@linkplain #KEEP_ALIVE_PROPERTY}) that are read once, when the first
+ * HTTP client in the JVM is created. Set them on the command line (or
+ * before any HTTP client is created); they then apply to every
+ * {@linkplain RemoteChain}, whatever its profile.
+ * </p>
+ * <h2>Retries</h2>
+ * <p>
+ * Failed requests are retried with jittered exponential backoff: the
+ * <em>n</em>th retry waits a random delay in the range
+ * [0, min({@linkplain #backoffMaxMillis()},
+ * {@linkplain #backoffBaseMillis()} &times; 2<sup>n-1</sup>)]. Idempotent
+ * requests are retried on I/O errors and on HTTP status codes 502, 503, and
+ * 504; non-idempotent ones (witness requests) only if the request provably
+ * did not reach the server (connection failures, or status 503).
+ * </p>
+ * <h2>Hedging</h2>
+ * <p>
+ * If {@linkplain #hedgeDelayMillis()} is positive, then a state-proof
+ * request ({@code /api/state}) that has not completed within that delay
+ * is sent again; the first successful response wins.
+ * </p>
+ * <h2>Circuit Breaker</h2>
+ * <p>
+ * After {@linkplain #breakerThreshold()} consecutive failed attempts to a
+ * host, requests to that host fail fast (without touching the network) for
+ * {@linkplain #breakerCooldownMillis()}; after that, one trial request is
+ * let through. The breaker is shared by all instances to the same host
+ * with the same breaker settings.
+ * </p>
+ *
+ * @param executor              HTTP client executor; if {@code null}, then
+ *                              the HTTP client's default is used
+ * @param maxRetries            maximum no. of retries per request (&ge; 0)
+ * @param backoffBaseMillis     initial backoff (&ge; 1)
+ * @param backoffMaxMillis      maximum backoff (&ge; {@code backoffBaseMillis})
+ * @param hedgeDelayMillis      state request hedge delay; 0 to disable
+ * @param breakerThreshold      consecutive failures that trip the breaker;
+ *                              0 to disable
+ * @param breakerCooldownMillis how long a tripped breaker stays open (&ge; 1)
+ *
+ * @see RemoteChain#RemoteChain(java.net.URI, TransportProfile)
+ * @see CircuitBreaker
+ */
+public record TransportProfile(
+    Executor executor,
+    int maxRetries,
+    long backoffBaseMillis,
+    long backoffMaxMillis,
+    long hedgeDelayMillis,
+    int breakerThreshold,
+    long breakerCooldownMillis) {
+
+
+  /**
+   * JVM-wide system property controlling the HTTP client connection pool
+   * size (read once).
+   */
+  public final static String POOL_SIZE_PROPERTY =
+      "jdk.httpclient.connectionPoolSize";
+  /**
+   * JVM-wide system property controlling the HTTP client keep-alive timeout,
+   * in seconds (read once).
+   */
+  public final static String KEEP_ALIVE_PROPERTY =
+      "jdk.httpclient.keepalive.timeout";
+
+
+  /**
+   * Default profile. Up to 2 retries (200 ms base backoff, 5 second max),
+   * no hedging, and the breaker trips after 5 consecutive failures and
+   * cools down for 30 seconds.
+   */
+  public final static TransportProfile DEFAULT =
+      new TransportProfile(null, 2, 200, 5_000, 0, 5, 30_000);
+
+
+  /**
+   * Profile that neither retries, hedges, nor short circuits. This is
+   * the behavior before transport profiles were introduced.
+   */
+  public final static TransportProfile BARE =
+      DEFAULT.withRetries(0).withBreaker(0, 1);
+
+
+
+  public TransportProfile {
+    if (maxRetries < 0)
+      throw new IllegalArgumentException("maxRetries " + maxRetries);
+    if (backoffBaseMillis < 1 || backoffMaxMillis < backoffBaseMillis)
+      throw new IllegalArgumentException(
+          "backoff base/max millis " + backoffBaseMillis + "/" +
+          backoffMaxMillis);
+    if (hedgeDelayMillis < 0)
+      throw new IllegalArgumentException(
+          "hedgeDelayMillis " + hedgeDelayMillis);
+    if (breakerThreshold < 0)
+      throw new IllegalArgumentException(
+          "breakerThreshold " + breakerThreshold);
+    if (breakerCooldownMillis < 1)
+      throw new IllegalArgumentException(
+          "breakerCooldownMillis " + breakerCooldownMillis);
+  }
+
+
+  /** Returns a copy using the given HTTP client executor. */
+  public TransportProfile withExecutor(Executor executor) {
+    return new TransportProfile(
+        executor, maxRetries, backoffBaseMillis, backoffMaxMillis,
+        hedgeDelayMillis, breakerThreshold, breakerCooldownMillis);
+  }
+
+
+  /** Returns a copy with the given maximum no. of retries. */
+  public TransportProfile withRetries(int maxRetries) {
+    return withRetries(maxRetries, backoffBaseMillis, backoffMaxMillis);
+  }
+
+
+  /** Returns a copy with the given retry and backoff settings. */
+  public TransportProfile withRetries(
+      int maxRetries, long backoffBaseMillis, long backoffMaxMillis) {
+    return new TransportProfile(
+        executor, maxRetries, backoffBaseMillis, backoffMaxMillis,
+        hedgeDelayMillis, breakerThreshold, breakerCooldownMillis);
+  }
+
+
+  /**
+   * Returns a copy with the given state request hedge delay.
+   *
+   * @param hedgeDelayMillis    0 to disable
+   */
+  public TransportProfile withHedging(long hedgeDelayMillis) {
+    return new TransportProfile(
+        executor, maxRetries, backoffBaseMillis, backoffMaxMillis,
+        hedgeDelayMillis, breakerThreshold, breakerCooldownMillis);
+  }
+
+
+  /**
+   * Returns a copy with the given circuit breaker settings.
+   *
+   * @param breakerThreshold    0 to disable
+   */
+  public TransportProfile withBreaker(
+      int breakerThreshold, long breakerCooldownMillis) {
+    return new TransportProfile(
+        executor, maxRetries, backoffBaseMillis, backoffMaxMillis,
+        hedgeDelayMillis, breakerThreshold, breakerCooldownMillis);
+  }
+
+
+  /** Determines whether state requests are hedged. */
+  public boolean isHedged() {
+    return hedgeDelayMillis > 0;
+  }
+
+
+  /** Determines whether the circuit breaker is enabled. */
+  public boolean hasBreaker() {
+    return breakerThreshold > 0;
+  }
+
+
+  /**
+   * Returns the upper bound of the (jittered) backoff before the
+   * given retry.
+   *
+   * @param retry   retry no. (&ge; 1)
+   */
+  public long backoffCeilingMillis(int retry) {
+    int shift = Math.min(retry - 1, 30);
+    long ceiling = backoffBaseMillis << shift;
+    return ceiling < 0 || ceiling > backoffMaxMillis ? backoffMaxMillis : ceiling;
+  }
+
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.except;
+
+/**
+ * Indicates a definitive (non-transient) HTTP error status from a
+ * remote timechain. For example, a 404 from an older server that doesn't
+ * support the requested endpoint.
+ */
+@SuppressWarnings("serial")
+public class HttpStatusException extends NetworkException {
+
+  private final int statusCode;
+
+  public HttpStatusException(int statusCode, String message) {
+    super(message);
+    this.statusCode = statusCode;
+  }
+
+  /** Returns the HTTP status code. */
+  public int statusCode() {
+    return statusCode;
+  }
+
+}
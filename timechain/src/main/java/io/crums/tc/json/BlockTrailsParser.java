@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.json;
+
+
+import static io.crums.tc.json.JsonTags.*;
+
+import java.util.ArrayList;
+
+import io.crums.sldg.json.HashEncoding;
+import io.crums.tc.BlockTrails;
+import io.crums.tc.CargoProof;
+import io.crums.util.json.JsonParsingException;
+import io.crums.util.json.JsonUtils;
+import io.crums.util.json.simple.JSONArray;
+import io.crums.util.json.simple.JSONObject;
+
+/**
+ * {@linkplain BlockTrails} parser. The block proof is written once,
+ * followed by an array of cargo proofs. A lone crum is written as
+ * a single element array (in the same format the crum is written in
+ * a {@linkplain CrumtrailParser lone crumtrail}).
+ */
+public class BlockTrailsParser extends BaseParser<BlockTrails> {
+
+  public final static BlockTrailsParser B64 =
+      new BlockTrailsParser(HashEncoding.BASE64_32);
+
+  public final static BlockTrailsParser HEX =
+      new BlockTrailsParser(HashEncoding.HEX);
+
+
+  public static BlockTrailsParser forEncoding(HashEncoding encoding) {
+    return encoding == HashEncoding.HEX ? HEX : B64;
+  }
+
+
+  private final BlockProofParser blockProofParser;
+  private final CargoProofParser cargoProofParser;
+  private final CrumParser crumParser;
+
+
+  public BlockTrailsParser(HashEncoding hashCodec) {
+    super(hashCodec);
+    this.blockProofParser = new BlockProofParser(hashCodec);
+    this.cargoProofParser = new CargoProofParser(hashCodec);
+    this.crumParser = new CrumParser(hashCodec);
+  }
+
+
+  @Override
+  public JSONObject injectEntity(BlockTrails blockTrails, JSONObject jObj) {
+    var jBlockProof = blockProofParser.toJsonObject(blockTrails.blockProof());
+    jObj.put(BLOCK_PROOF, jBlockProof);
+
+    var jCargoProofs = new JSONArray();
+    if (blockTrails.isLone()) {
+      var jCrum = new JSONObject();
+      jCrum.put(CRUM_COUNT, 1);
+      crumParser.injectEntity(blockTrails.trails().get(0).crum(), jCrum);
+      jCargoProofs.add(jCrum);
+    } else {
+      for (var cargoProof : blockTrails.cargoProofs())
+        jCargoProofs.add(cargoProofParser.toJsonObject(cargoProof));
+    }
+    jObj.put(CARGO_PROOFS, jCargoProofs);
+    return jObj;
+  }
+
+
+  @Override
+  public BlockTrails toEntity(JSONObject jObj) throws JsonParsingException {
+    var jBlockProof = JsonUtils.getJsonObject(jObj, BLOCK_PROOF, true);
+    var blockProof = blockProofParser.toEntity(jBlockProof);
+
+    var jCargoProofs = JsonUtils.getJsonArray(jObj, CARGO_PROOFS, true);
+    if (jCargoProofs.isEmpty())
+      throw new JsonParsingException(
+          "empty \"" + CARGO_PROOFS + "\" on parsing:\n" + jObj);
+
+    try {
+      var first = (JSONObject) jCargoProofs.get(0);
+      if (JsonUtils.getInt(first, CRUM_COUNT) == 1) {
+        if (jCargoProofs.size() != 1)
+          throw new JsonParsingException(
+              "lone crum with multiple \"" + CARGO_PROOFS + "\" on parsing:\n" +
+              jObj);
+        return BlockTrails.forLone(blockProof, crumParser.toEntity(first));
+      }
+
+      var cargoProofs = new ArrayList<CargoProof>(jCargoProofs.size());
+      for (var jCargoProof : jCargoProofs)
+        cargoProofs.add(cargoProofParser.toEntity((JSONObject) jCargoProof));
+
+      return new BlockTrails(blockProof, cargoProofs);
+
+    } catch (JsonParsingException jpx) {
+      throw jpx;
+    } catch (Exception x) {
+      throw new JsonParsingException(x, jObj);
+    }
+  }
+
+}
+
@@ -27,6 +27,7 @@ public class JsonTags {
   public final static String CARGO_PROOF = "cargo_proof";
   
   public final static String BLOCK_PROOF = "block_proof";
+  public final static String CARGO_PROOFS = "cargo_proofs";
 
   public final static String INDEX = "index";
   public final static String CRUM_COUNT = "cc";
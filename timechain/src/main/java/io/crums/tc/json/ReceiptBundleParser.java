@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.json;
+
+
+import static io.crums.tc.json.JsonTags.*;
+
+import java.util.ArrayList;
+
+import io.crums.sldg.json.HashEncoding;
+import io.crums.tc.CargoProof;
+import io.crums.tc.Crum;
+import io.crums.tc.ReceiptBundle;
+import io.crums.util.json.JsonParsingException;
+import io.crums.util.json.JsonUtils;
+import io.crums.util.json.simple.JSONArray;
+import io.crums.util.json.simple.JSONObject;
+
+/**
+ * {@linkplain ReceiptBundle} parser. The (multi-target) block proof is
+ * written once, followed by an array of cargo proofs. Lone crums are
+ * written in the same array, in the same format as in
+ * {@linkplain BlockTrailsParser} (with a crum count of 1).
+ */
+public class ReceiptBundleParser extends BaseParser<ReceiptBundle> {
+
+  public final static ReceiptBundleParser B64 =
+      new ReceiptBundleParser(HashEncoding.BASE64_32);
+
+  public final static ReceiptBundleParser HEX =
+      new ReceiptBundleParser(HashEncoding.HEX);
+
+
+  public static ReceiptBundleParser forEncoding(HashEncoding encoding) {
+    return encoding == HashEncoding.HEX ? HEX : B64;
+  }
+
+
+  private final BlockProofParser blockProofParser;
+  private final CargoProofParser cargoProofParser;
+  private final CrumParser crumParser;
+
+
+  public ReceiptBundleParser(HashEncoding hashCodec) {
+    super(hashCodec);
+    this.blockProofParser = new BlockProofParser(hashCodec);
+    this.cargoProofParser = new CargoProofParser(hashCodec);
+    this.crumParser = new CrumParser(hashCodec);
+  }
+
+
+  @Override
+  public JSONObject injectEntity(ReceiptBundle bundle, JSONObject jObj) {
+    var jBlockProof = blockProofParser.toJsonObject(bundle.blockProof());
+    jObj.put(BLOCK_PROOF, jBlockProof);
+
+    var jCargoProofs = new JSONArray();
+    for (var cargoProof : bundle.cargoProofs())
+      jCargoProofs.add(cargoProofParser.toJsonObject(cargoProof));
+    for (var crum : bundle.loneCrums()) {
+      var jCrum = new JSONObject();
+      jCrum.put(CRUM_COUNT, 1);
+      crumParser.injectEntity(crum, jCrum);
+      jCargoProofs.add(jCrum);
+    }
+    jObj.put(CARGO_PROOFS, jCargoProofs);
+    return jObj;
+  }
+
+
+  @Override
+  public ReceiptBundle toEntity(JSONObject jObj) throws JsonParsingException {
+    var jBlockProof = JsonUtils.getJsonObject(jObj, BLOCK_PROOF, true);
+    var blockProof = blockProofParser.toEntity(jBlockProof);
+
+    var jCargoProofs = JsonUtils.getJsonArray(jObj, CARGO_PROOFS, true);
+    if (jCargoProofs.isEmpty())
+      throw new JsonParsingException(
+          "empty \"" + CARGO_PROOFS + "\" on parsing:\n" + jObj);
+
+    try {
+      var cargoProofs = new ArrayList<CargoProof>(jCargoProofs.size());
+      var loneCrums = new ArrayList<Crum>();
+      for (var element : jCargoProofs) {
+        var jCargoProof = (JSONObject) element;
+        if (JsonUtils.getInt(jCargoProof, CRUM_COUNT) == 1)
+          loneCrums.add(crumParser.toEntity(jCargoProof));
+        else
+          cargoProofs.add(cargoProofParser.toEntity(jCargoProof));
+      }
+      return new ReceiptBundle(blockProof, cargoProofs, loneCrums);
+
+    } catch (JsonParsingException jpx) {
+      throw jpx;
+    } catch (Exception x) {
+      throw new JsonParsingException(x, jObj);
+    }
+  }
+
+}
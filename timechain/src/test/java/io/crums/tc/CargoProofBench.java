@@ -0,0 +1,92 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares verifying serialized cargo proofs by loading them
+ * ({@linkplain CargoProof#load(ByteBuffer)}) against verifying them
+ * in place ({@linkplain CargoProofView#verify()}). Run with the GC
+ * profiler to see allocations per verification
+ * ({@code gc.alloc.rate.norm}); {@linkplain #main(String[])} does so.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CargoProofBench {
+
+  /** No. of distinct proofs cycled through. */
+  private final static int PROOFS = 64;
+
+  @Param({ "16", "1000", "100000" })
+  public int leafCount;
+
+  private ByteBuffer[] proofs;
+  private CargoProofView view;
+  private int next;
+
+
+  @Setup
+  public void setup() {
+    var rand = new Random(leafCount);
+    proofs = new ByteBuffer[PROOFS];
+    for (int index = 0; index < PROOFS; ++index) {
+      var proof = CargoProofTest.randomCargoProof(
+          rand.nextInt(leafCount), leafCount, System.currentTimeMillis(), rand);
+      proofs[index] = CargoProofViewTest.serialize(proof);
+    }
+    view = new CargoProofView();
+  }
+
+
+  private ByteBuffer nextProof() {
+    var proof = proofs[next];
+    next = (next + 1) % PROOFS;
+    return proof;
+  }
+
+
+  @Benchmark
+  public CargoProof load() {
+    return CargoProof.load(nextProof().duplicate());
+  }
+
+
+  @Benchmark
+  public boolean view() {
+    return view.wrap(nextProof(), 0).verify();
+  }
+
+
+  public static void main(String[] args) throws RunnerException {
+    var options = new OptionsBuilder()
+        .include(CargoProofBench.class.getSimpleName())
+        .addProfiler("gc")
+        .build();
+    new Runner(options).run();
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class CargoProofViewTest {
+
+
+  static ByteBuffer serialize(CargoProof proof) {
+    return proof.writeTo(ByteBuffer.allocate(proof.serialSize())).flip();
+  }
+
+
+  @Test
+  public void testAllShapes() {
+    var view = new CargoProofView();
+    for (int leafCount = 2; leafCount <= 67; ++leafCount) {
+      for (int index = 0; index < leafCount; ++index) {
+        var proof = CargoProofTest.randomCargoProof(index, leafCount);
+        var buffer = serialize(proof);
+        view.wrap(buffer, 0);
+        assertEquals(proof.serialSize(), view.serialSize());
+        assertEquals(proof.crum().utc(), view.utc());
+        assertTrue(
+            view.verifyInPlace(),
+            "leafCount " + leafCount + ", index " + index);
+      }
+    }
+  }
+
+
+  @Test
+  public void testOffset() {
+    var proof = CargoProofTest.randomCargoProof(1_044, 129_083);
+    final int offset = 19;
+    var buffer = ByteBuffer.allocate(offset + proof.serialSize() + 5);
+    proof.writeTo(buffer.position(offset));
+    var view = new CargoProofView().wrap(buffer, offset);
+    assertTrue(view.verifyInPlace());
+    assertArrayEquals(proof.rootHash(), view.rootHash(new byte[32]));
+    assertEquals(proof.crum(), view.toCargoProof().crum());
+  }
+
+
+  @Test
+  public void testTampered() {
+    var rand = new Random(7);
+    var view = new CargoProofView();
+    for (int leafCount : new int[] { 2, 3, 16, 37, 1_000 }) {
+      var proof = CargoProofTest.randomCargoProof(
+          rand.nextInt(leafCount), leafCount);
+      var buffer = serialize(proof);
+      // flip a bit in a random byte past the header
+      int pos = 8 + rand.nextInt(buffer.limit() - 8 - 8);
+      buffer.put(pos, (byte) (buffer.get(pos) ^ 1));
+      assertFalse(view.wrap(buffer, 0).verify());
+    }
+  }
+
+}
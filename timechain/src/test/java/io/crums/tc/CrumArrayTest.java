@@ -0,0 +1,125 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class CrumArrayTest {
+
+  private final static long UTC = HashUtc.INCEPTION_UTC + 1_000_000;
+
+
+  private static List<Crum> randomCrums(int count, int sharedPrefix, Random rand) {
+    byte[] prefix = new byte[sharedPrefix];
+    rand.nextBytes(prefix);
+    var crums = new ArrayList<Crum>(count);
+    for (int index = 0; index < count; ++index) {
+      byte[] hash = new byte[Constants.HASH_WIDTH];
+      rand.nextBytes(hash);
+      System.arraycopy(prefix, 0, hash, 0, sharedPrefix);
+      crums.add(new Crum(hash, UTC + rand.nextInt(1000)));
+    }
+    return crums;
+  }
+
+
+  private static CrumArray toArray(List<Crum> crums) {
+    var array = new CrumArray(1);
+    crums.forEach(array::add);
+    return array;
+  }
+
+
+  @Test
+  public void testRoundTrip() {
+    var crums = randomCrums(100, 0, new Random(1));
+    var array = toArray(crums);
+    assertEquals(crums.size(), array.size());
+    for (int index = 0; index < crums.size(); ++index) {
+      assertEquals(crums.get(index), array.get(index));
+      assertEquals(crums.get(index).utc(), array.utc(index));
+      assertEquals(crums.get(index).hash(), ByteBuffer.wrap(array.hash(index)));
+    }
+  }
+
+
+  @Test
+  public void testSort() {
+    var rand = new Random(2);
+    for (int sharedPrefix : new int[] { 0, 1, 7, 8, 31 }) {
+      for (int count : new int[] { 0, 1, 2, 24, 25, 1_000, 20_000 }) {
+        var crums = randomCrums(count, sharedPrefix, rand);
+        if (count > 2)
+          crums.add(crums.get(0));    // a duplicate
+        var array = toArray(crums);
+        int[] order = array.sortOrder();
+        array.sort();
+        assertTrue(array.isSorted());
+
+        var expected = new ArrayList<>(crums);
+        Collections.sort(expected);
+        assertEquals(expected, array.asList());
+        for (int k = 0; k < order.length; ++k)
+          assertEquals(crums.get(order[k]), array.get(k));
+      }
+    }
+  }
+
+
+  @Test
+  public void testOrderMatchesHashComparator() {
+    var rand = new Random(3);
+    var crums = randomCrums(2_000, 0, rand);
+    var array = toArray(crums);
+    for (int trial = 0; trial < 10_000; ++trial) {
+      int i = rand.nextInt(crums.size());
+      int j = rand.nextInt(crums.size());
+      var a = crums.get(i);
+      var b = crums.get(j);
+      int expected = Integer.signum(HashUtc.HASH_COMPARATOR.compare(a, b));
+      assertEquals(expected, Integer.signum(array.compareHash(i, b.hash())));
+      assertEquals(expected, Integer.signum(a.hash().compareTo(b.hash())));
+      assertEquals(
+          expected,
+          Integer.signum(
+              HashUtc.compareHashes(a.serialForm(), 0, b.serialForm(), 0)));
+    }
+  }
+
+
+  @Test
+  public void testBinarySearch() {
+    var rand = new Random(4);
+    var crums = randomCrums(5_000, 2, rand);
+    var array = toArray(crums);
+    array.sort();
+    for (var crum : crums) {
+      int index = array.binarySearch(crum.hash());
+      assertTrue(index >= 0);
+      assertEquals(crum, array.get(index));
+    }
+    for (var crum : randomCrums(100, 2, rand)) {
+      int index = array.binarySearch(crum.hash());
+      assertTrue(index < 0);
+      int insertion = -index - 1;
+      if (insertion > 0)
+        assertTrue(array.compareHash(insertion - 1, crum.hash()) < 0);
+      if (insertion < array.size())
+        assertTrue(array.compareHash(insertion, crum.hash()) > 0);
+    }
+  }
+
+}
@@ -246,6 +246,34 @@ public class CrumtrailTest extends TimeChainTestCase {
     testStatics(new RandArgs(356, 1030, 67, TimeBinner.EIGTH_SEC, 10L));
   }
   
+  @Test
+  public void testCompact() {
+    testCompact(new RandArgs(11, 62, 1, TimeBinner.EIGTH_SEC, 5L));
+    testCompact(new RandArgs(356, 1030, 67, TimeBinner.EIGTH_SEC, 10L));
+    testCompact(new RandArgs(1, 2, 2, TimeBinner.MINUTE, 11L));
+    testCompact(new RandArgs(2049, 2049, 1_044, TimeBinner.HOUR, 12L));
+  }
+  
+  private void testCompact(RandArgs args) {
+    Crumtrail trail = newRandomCrumtrail(args);
+    var compact = trail.serializeCompact();
+    assertEquals(trail.compactSize(), compact.remaining());
+    assertTrue(trail.compactSize() < trail.serialSize());
+    
+    var rt = Crumtrail.load(compact);
+    assertFalse(compact.hasRemaining());
+    assertEquals(trail.crum(), rt.crum());
+    assertEquals(trail.blockNo(), rt.blockNo());
+    assertEquals(trail.crumsInBlock(), rt.crumsInBlock());
+    assertEquals(trail.blockProof(), rt.blockProof());
+    assertEquals(trail.cargoHash(), rt.cargoHash());
+    
+    // the original form still loads
+    var orig = Crumtrail.load(trail.serialize());
+    assertEquals(trail.crum(), orig.crum());
+    assertEquals(trail.blockProof(), orig.blockProof());
+  }
+  
   private void testStatics(RandArgs args) {
     Crumtrail trail = newRandomCrumtrail(args);
     assertEquals(args.blockNo, trail.blockNo());
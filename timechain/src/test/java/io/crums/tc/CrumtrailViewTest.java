@@ -0,0 +1,87 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import io.crums.tc.CrumtrailTest.RandArgs;
+
+/**
+ *
+ */
+public class CrumtrailViewTest {
+
+  private final static int PAD = 17;
+
+
+  @Test
+  public void testLoneTrail() {
+    testView(new RandArgs(11, 62, 1, TimeBinner.EIGTH_SEC, 5L));
+  }
+
+
+  @Test
+  public void testMerkleTrail() {
+    testView(new RandArgs(356, 1030, 67, TimeBinner.EIGTH_SEC, 10L));
+    testView(new RandArgs(2049, 2049, 1_044, TimeBinner.HOUR, 12L));
+  }
+
+
+  @Test
+  public void testCompact() {
+    var trail = CrumtrailTest.newRandomCrumtrail(
+        new RandArgs(356, 1030, 67, TimeBinner.EIGTH_SEC, 13L));
+    var view = new CrumtrailView().wrap(trail.serializeCompact());
+    assertTrue(view.isCompact());
+    assertEquals(trail.compactSize(), view.serialSize());
+    assertView(trail, view);
+  }
+
+
+  private void testView(RandArgs args) {
+    var trail = CrumtrailTest.newRandomCrumtrail(args);
+
+    // write the trail at an offset, between padding
+    var buffer = ByteBuffer.allocate(trail.serialSize() + 2 * PAD);
+    buffer.position(PAD);
+    trail.writeTo(buffer);
+
+    var view = new CrumtrailView().wrap(buffer, PAD, trail.serialSize());
+    assertFalse(view.isCompact());
+    assertEquals(trail.serialSize(), view.serialSize());
+    assertView(trail, view);
+
+    // tamper with the crum hash: the view still reads it, but it won't verify
+    int index = PAD + trail.serialSize() - Crum.DATA_SIZE;
+    buffer.put(index, (byte) (buffer.get(index) + 1));
+    view.wrap(buffer, PAD, trail.serialSize());
+    assertEquals(trail.crum().utc(), view.utc());
+    assertFalse(view.hashEquals(trail.crum().hash()));
+    assertFalse(view.verify());
+  }
+
+
+  private void assertView(Crumtrail trail, CrumtrailView view) {
+    var crum = trail.crum();
+    assertEquals(crum.utc(), view.utc());
+    assertEquals(trail.blockNo(), view.blockNo());
+    assertEquals(crum, view.crum());
+    assertTrue(view.hashEquals(crum.hash()));
+    assertEquals(
+        crum.hash(),
+        ByteBuffer.wrap(view.hash(new byte[Constants.HASH_WIDTH])));
+
+    assertTrue(view.verify());
+    var rt = view.materialize();
+    assertEquals(crum, rt.crum());
+    assertEquals(trail.blockProof(), rt.blockProof());
+    assertEquals(trail.crumsInBlock(), rt.crumsInBlock());
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the long-wise {@linkplain HashUtc#HASH_COMPARATOR} against
+ * the byte-wise {@linkplain HashUtc#LEGACY_HASH_COMPARATOR}: both on
+ * sorting crums, and on comparing crums that share a prefix (the
+ * worst case for the byte-wise loop).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashComparatorBench {
+
+  @Param({ "1000", "100000" })
+  public int count;
+
+  /** No. of leading bytes the "near" crums share. */
+  @Param({ "0", "24" })
+  public int sharedPrefix;
+
+  private List<Crum> crums;
+
+
+  @Setup
+  public void setup() {
+    var rand = new Random(count);
+    byte[] prefix = new byte[sharedPrefix];
+    rand.nextBytes(prefix);
+    crums = new ArrayList<>(count);
+    for (int index = 0; index < count; ++index) {
+      byte[] hash = new byte[Constants.HASH_WIDTH];
+      rand.nextBytes(hash);
+      System.arraycopy(prefix, 0, hash, 0, sharedPrefix);
+      crums.add(new Crum(hash, HashUtc.INCEPTION_UTC + index));
+    }
+  }
+
+
+  private List<Crum> sort(Comparator<HashUtc> comparator) {
+    var copy = new ArrayList<>(crums);
+    copy.sort(comparator);
+    return copy;
+  }
+
+
+  @Benchmark
+  public List<Crum> sortLegacy() {
+    return sort(HashUtc.LEGACY_HASH_COMPARATOR);
+  }
+
+
+  @Benchmark
+  public List<Crum> sortLongWise() {
+    return sort(HashUtc.HASH_COMPARATOR);
+  }
+
+
+  @Benchmark
+  public CrumArray sortCrumArray() {
+    var array = new CrumArray(count);
+    crums.forEach(array::add);
+    array.sort();
+    return array;
+  }
+
+
+  private int compareAdjacent(Comparator<HashUtc> comparator) {
+    int sum = 0;
+    for (int index = 1; index < count; ++index)
+      sum += comparator.compare(crums.get(index - 1), crums.get(index));
+    return sum;
+  }
+
+
+  @Benchmark
+  public int compareLegacy() {
+    return compareAdjacent(HashUtc.LEGACY_HASH_COMPARATOR);
+  }
+
+
+  @Benchmark
+  public int compareLongWise() {
+    return compareAdjacent(HashUtc.HASH_COMPARATOR);
+  }
+
+
+  public static void main(String[] args) throws RunnerException {
+    var options = new OptionsBuilder()
+        .include(HashComparatorBench.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+
+}
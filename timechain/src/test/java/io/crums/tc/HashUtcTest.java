@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Ordering equivalence of the hash comparators.
+ */
+public class HashUtcTest {
+
+  private final static long UTC = HashUtc.INCEPTION_UTC + 1_000_000;
+
+
+  /**
+   * Returns crums whose hashes differ at a random byte, often in the sign
+   * bit, and at every word boundary.
+   */
+  private static List<Crum> nearCrums(int count, Random rand) {
+    byte[] base = new byte[Constants.HASH_WIDTH];
+    rand.nextBytes(base);
+    var crums = new ArrayList<Crum>(count);
+    for (int index = 0; index < count; ++index) {
+      byte[] hash = base.clone();
+      int pos = rand.nextInt(Constants.HASH_WIDTH);
+      switch (rand.nextInt(4)) {
+      case 0:   hash[pos] ^= (byte) 0x80; break;
+      case 1:   hash[pos] = (byte) 0x7f; break;
+      case 2:   hash[pos] = (byte) 0x80; break;
+      default:  hash[pos] = (byte) rand.nextInt();
+      }
+      crums.add(new Crum(hash, UTC + index));
+    }
+    return crums;
+  }
+
+
+  @Test
+  public void testOrderEquivalence() {
+    var rand = new Random(47);
+    var crums = nearCrums(500, rand);
+    for (var a : crums) {
+      for (var b : crums) {
+        int legacy = Integer.signum(HashUtc.LEGACY_HASH_COMPARATOR.compare(a, b));
+        assertEquals(legacy, Integer.signum(HashUtc.HASH_COMPARATOR.compare(a, b)));
+        assertEquals(legacy, Integer.signum(a.hash().compareTo(b.hash())));
+        assertEquals(legacy == 0, a.hashEquals(b));
+        assertEquals(legacy == 0 && a.utc() == b.utc(), a.equalsHashUtc(b));
+
+        byte[] ha = new byte[Constants.HASH_WIDTH];
+        byte[] hb = new byte[Constants.HASH_WIDTH];
+        a.hash().get(ha);
+        b.hash().get(hb);
+        assertEquals(
+            Integer.signum(Arrays.compareUnsigned(ha, hb)),
+            Integer.signum(HashUtc.UNSIGNED_HASH_COMPARATOR.compare(a, b)));
+      }
+    }
+  }
+
+
+  @Test
+  public void testSortEquivalence() {
+    var rand = new Random(48);
+    var crums = nearCrums(2_000, rand);
+    var legacy = new ArrayList<>(crums);
+    var fast = new ArrayList<>(crums);
+    legacy.sort(HashUtc.LEGACY_HASH_COMPARATOR.thenComparing(HashUtc.UTC_COMPARATOR));
+    fast.sort(HashUtc.HASH_COMPARATOR.thenComparing(HashUtc.UTC_COMPARATOR));
+    assertEquals(legacy, fast);
+  }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.crums.tc.json.ReceiptBundleParser;
+
+/**
+ *
+ */
+public class ReceiptBundleTest extends TimeChainTestCase {
+
+
+  @Test
+  public void testSplit() throws Exception {
+    Object label = new Object() { };
+    var chainFile = newSingleRunFilepath(label);
+    var binner = TimeBinner.MINUTE;
+
+    final long blockCount = 300;
+    final Set<Long> loneBlocks = Set.of(5L, 113L);
+    final Set<Long> mrklBlocks = Set.of(12L, 87L, 250L);
+
+    Random rand = new Random(44);
+    final long startUtc =
+        binner.binTime(
+            System.currentTimeMillis() - binner.duration() * (blockCount + 1));
+
+    var cargoProofs = new ArrayList<CargoProof>();
+    var loneCrums = new ArrayList<Crum>();
+
+    try (var chain = TimeChain.inceptNewChain(chainFile, binner, startUtc)) {
+      for (long bn = 1; bn <= blockCount; ++bn) {
+        long utc = startUtc + (bn - 1) * binner.duration();
+        byte[] cargoHash;
+        if (loneBlocks.contains(bn)) {
+          byte[] hash = new byte[Constants.HASH_WIDTH];
+          rand.nextBytes(hash);
+          var crum = new Crum(hash, utc);
+          loneCrums.add(crum);
+          cargoHash = crum.witnessHash();
+        } else if (mrklBlocks.contains(bn)) {
+          var cargoProof = CargoProofTest.randomCargoProofForUtc(17, utc, rand);
+          cargoProofs.add(cargoProof);
+          cargoHash = cargoProof.rootHash();
+        } else {
+          cargoHash = new byte[Constants.HASH_WIDTH];
+          rand.nextBytes(cargoHash);
+        }
+        chain.recordBlockForUtc(utc, ByteBuffer.wrap(cargoHash));
+      }
+    }
+
+    try (var chain = TimeChain.load(chainFile, true)) {
+      var params = chain.params();
+      var bundleProof =
+          new BlockProof(
+              params, chain.getPath(1L, 5L, 12L, 87L, 113L, 250L, blockCount));
+
+      var bundle = new ReceiptBundle(bundleProof, cargoProofs, loneCrums);
+      assertEquals(5, bundle.size());
+      assertEquals(List.of(5L, 12L, 87L, 113L, 250L), List.copyOf(bundle.blockNos()));
+
+      // the shared proof is smaller than the sum of per-receipt proofs
+      int receiptProofBytes = 0;
+      var trails = bundle.split();
+      assertEquals(bundle.size(), trails.size());
+      for (int index = 0; index < trails.size(); ++index) {
+        var trail = trails.get(index);
+        var shared = bundle.trails().get(index);
+        assertEquals(shared.crum(), trail.crum());
+        var chainState = trail.blockProof().chainState();
+        assertTrue(chainState.hasRow(1L));
+        assertTrue(chainState.hasRow(trail.blockNo()));
+        assertEquals(blockCount, trail.blockProof().blockNo());
+        receiptProofBytes += trail.blockProof().serialSize();
+      }
+      assertTrue(bundleProof.serialSize() < receiptProofBytes);
+
+      // JSON round trip
+      var parser = ReceiptBundleParser.B64;
+      var rt = parser.toEntity(parser.toJsonObject(bundle.compress()));
+      assertTrue(rt.blockProof().isCompressed());
+      assertEquals(bundle.size(), rt.size());
+      assertEquals(bundle.blockNos(), rt.blockNos());
+      assertEquals(rt.trails(), rt.split());
+    }
+  }
+
+}
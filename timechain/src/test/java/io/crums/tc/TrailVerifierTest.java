@@ -0,0 +1,224 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.crums.util.mrkl.Builder;
+import io.crums.util.mrkl.FixedLeafBuilder;
+import io.crums.util.mrkl.Proof;
+
+/**
+ *
+ */
+public class TrailVerifierTest extends TimeChainTestCase {
+
+
+  private static ByteBuffer serialize(Crumtrail trail) {
+    return trail.writeTo(ByteBuffer.allocate(trail.serialSize())).flip();
+  }
+
+
+  private final static long BLOCK_COUNT = 20;
+  private final static long MERKLE_BLOCK_NO = 7;
+  private final static long LONE_BLOCK_NO = 12;
+  private final static int CRUM_COUNT = 37;
+
+
+  /**
+   * Creates a new chain with a merkle block and a lone block, and returns
+   * a trail for each crum in them (the lone trail last).
+   */
+  private List<Crumtrail> newTrails(Object label) throws Exception {
+    File chainFile = newSingleRunFilepath(label);
+    var binner = TimeBinner.MINUTE;
+
+    Random rand = new Random(41);
+
+    final long startUtc =
+        binner.binTime(
+            System.currentTimeMillis() - binner.duration() * (BLOCK_COUNT + 1));
+
+    final long merkleUtc = startUtc + (MERKLE_BLOCK_NO - 1) * binner.duration();
+    final long loneUtc = startUtc + (LONE_BLOCK_NO - 1) * binner.duration();
+
+    List<Crum> crums = new ArrayList<>();
+    Builder builder = new FixedLeafBuilder(Constants.HASH_ALGO);
+    for (int index = 0; index < CRUM_COUNT; ++index) {
+      byte[] hash = new byte[Constants.HASH_WIDTH];
+      rand.nextBytes(hash);
+      var crum = new Crum(hash, merkleUtc + index);
+      crums.add(crum);
+      builder.add(crum.witnessHash());
+    }
+    var tree = builder.build();
+    List<CargoProof> cargoProofs = new ArrayList<>();
+    for (int index = 0; index < CRUM_COUNT; ++index)
+      cargoProofs.add(new CargoProof(new Proof(tree, index), crums.get(index)));
+
+    Crum loneCrum;
+    {
+      byte[] hash = new byte[Constants.HASH_WIDTH];
+      rand.nextBytes(hash);
+      loneCrum = new Crum(hash, loneUtc);
+    }
+
+    try (var chain = TimeChain.inceptNewChain(chainFile, binner, startUtc)) {
+      for (long b = 1; b <= BLOCK_COUNT; ++b) {
+        long utc = startUtc + (b - 1) * binner.duration();
+        if (b == MERKLE_BLOCK_NO)
+          chain.recordBlockForUtc(utc, cargoProofs.get(0).rootHash());
+        else if (b == LONE_BLOCK_NO)
+          chain.recordBlockForUtc(utc, loneCrum.witnessHash());
+        else {
+          byte[] mockHash = new byte[Constants.HASH_WIDTH];
+          rand.nextBytes(mockHash);
+          chain.recordBlockForUtc(utc, ByteBuffer.wrap(mockHash));
+        }
+      }
+    }
+
+    List<Crumtrail> trails = new ArrayList<>();
+    try (var chain = TimeChain.load(chainFile, true)) {
+      var merkleProof = new BlockProof(
+          chain.params(), chain.getPath(1L, MERKLE_BLOCK_NO, BLOCK_COUNT));
+      for (var cargoProof : cargoProofs)
+        trails.add(Crumtrail.newMerkleTrail(merkleProof, cargoProof));
+
+      var loneProof = new BlockProof(
+          chain.params(), chain.getPath(1L, LONE_BLOCK_NO, BLOCK_COUNT));
+      trails.add(Crumtrail.newLoneTrail(loneProof, loneCrum));
+    }
+    return trails;
+  }
+
+
+  @Test
+  public void testBatch() throws Exception {
+    Object label = new Object() { };
+    var crumtrails = newTrails(label);
+    var loneCrum = crumtrails.get(crumtrails.size() - 1).crum();
+
+    List<ByteBuffer> trails = new ArrayList<>();
+    for (var trail : crumtrails)
+      trails.add(serialize(trail));
+    final int tamperedIndex = 5;
+
+    // tamper with the crum's hash in one of the trails
+    {
+      var tampered = ByteBuffer.allocate(trails.get(tamperedIndex).remaining());
+      tampered.put(trails.get(tamperedIndex).duplicate()).flip();
+      int pos = tampered.limit() - Crum.DATA_SIZE;
+      tampered.put(pos, (byte) (tampered.get(pos) + 1));
+      trails.set(tamperedIndex, tampered);
+    }
+
+    var verifier = new TrailVerifier(4);
+    List<Crumtrail> verified = new ArrayList<>();
+    var report = verifier.verify(
+        trails.stream(),
+        trail -> { synchronized (verified) { verified.add(trail); } });
+
+    assertEquals(trails.size(), report.trails());
+    assertEquals(1, report.failed());
+    assertFalse(report.ok());
+    assertEquals(tamperedIndex, report.failures().get(0).index());
+    assertEquals(trails.size() - 1, verified.size());
+    assertEquals(2, report.blockProofs());
+    assertEquals(trails.size() - 2, report.blockProofHits());
+    assertTrue(report.merkleHits() > 0);
+
+    // memo-ised state carries over to the next call
+    var again = verifier.verify(trails.stream().skip(tamperedIndex + 1));
+    assertTrue(again.ok());
+    assertEquals(0, again.blockProofs());
+
+    var lone = verifier.verify(trails.get(trails.size() - 1));
+    assertEquals(loneCrum, lone.crum());
+    assertEquals(LONE_BLOCK_NO, lone.blockNo());
+  }
+
+
+
+  @Test
+  public void testThrowingSink() throws Exception {
+    Object label = new Object() { };
+    var crumtrails = newTrails(label);
+    List<ByteBuffer> trails = new ArrayList<>();
+    for (var trail : crumtrails)
+      trails.add(serialize(trail));
+
+    final int rejectedIndex = 3;
+    var rejected = crumtrails.get(rejectedIndex).crum();
+    List<Crumtrail> accepted = new ArrayList<>();
+    var report = new TrailVerifier(2).verify(
+        trails.stream(),
+        trail -> {
+          if (trail.crum().equals(rejected))
+            throw new IllegalStateException("sink rejected " + trail.crum());
+          synchronized (accepted) { accepted.add(trail); }
+        });
+
+    // the rest of the batch is still delivered; the rejected trail
+    // is not counted as verified
+    assertEquals(trails.size(), report.trails());
+    assertEquals(1, report.failed());
+    assertEquals(trails.size() - 1, report.verified());
+    assertEquals(trails.size() - 1, accepted.size());
+    var failure = report.failures().get(0);
+    assertEquals(rejectedIndex, failure.index());
+    assertInstanceOf(IllegalStateException.class, failure.error());
+  }
+
+
+
+  @Test
+  public void testCompact() throws Exception {
+    Object label = new Object() { };
+    var crumtrails = newTrails(label);
+    List<ByteBuffer> trails = new ArrayList<>();
+    for (var trail : crumtrails)
+      trails.add(trail.serializeCompact());
+
+    var verifier = new TrailVerifier(2);
+    List<Crumtrail> verified = new ArrayList<>();
+    var report = verifier.verify(
+        trails.stream(),
+        trail -> { synchronized (verified) { verified.add(trail); } });
+
+    assertTrue(report.ok());
+    assertEquals(trails.size(), report.verified());
+    assertEquals(2, report.blockProofs());
+    assertEquals(trails.size() - 2, report.blockProofHits());
+    assertTrue(report.merkleHits() > 0);
+    assertEquals(trails.size(), verified.size());
+
+    var lone = verifier.verify(trails.get(trails.size() - 1));
+    assertEquals(crumtrails.get(crumtrails.size() - 1).crum(), lone.crum());
+    assertEquals(LONE_BLOCK_NO, lone.blockNo());
+    var merkle = verifier.verify(trails.get(0));
+    assertEquals(crumtrails.get(0).crum(), merkle.crum());
+    assertEquals(MERKLE_BLOCK_NO, merkle.blockNo());
+
+    // both forms in the same stream
+    var mixed = new ArrayList<ByteBuffer>();
+    for (int index = 0; index < crumtrails.size(); ++index) {
+      var trail = crumtrails.get(index);
+      mixed.add(index % 2 == 0 ? trail.serializeCompact() : serialize(trail));
+    }
+    var mixedReport = new TrailVerifier(2).verify(mixed.stream());
+    assertTrue(mixedReport.ok());
+    assertEquals(mixed.size(), mixedReport.verified());
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.client;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import io.crums.tc.client.CircuitBreaker.State;
+import io.crums.tc.except.NetworkException;
+
+public class CircuitBreakerTest {
+
+
+  @Test
+  public void testTripAndRecover() throws Exception {
+    final int threshold = 3;
+    final long cooldown = 20;
+    var profile = TransportProfile.DEFAULT.withBreaker(threshold, cooldown);
+    var breaker = CircuitBreaker.forHost("http://trip.example.com", profile);
+    final String url = "http://trip.example.com/api/policy";
+
+    for (int count = threshold; count-- > 0; ) {
+      assertEquals(State.CLOSED, breaker.state());
+      breaker.acquire(url);
+      breaker.onFailure();
+    }
+    assertEquals(State.OPEN, breaker.state());
+    assertThrows(NetworkException.class, () -> breaker.acquire(url));
+
+    Thread.sleep(cooldown + 5);
+    breaker.acquire(url);   // trial request
+    assertEquals(State.HALF_OPEN, breaker.state());
+    assertThrows(NetworkException.class, () -> breaker.acquire(url));
+    breaker.onSuccess();
+    assertEquals(State.CLOSED, breaker.state());
+
+    var metrics = breaker.metrics();
+    assertEquals(threshold + 1, metrics.requests());
+    assertEquals(threshold, metrics.failures());
+    assertEquals(2, metrics.rejected());
+    assertEquals(1, metrics.trips());
+  }
+
+
+  @Test
+  public void testAbandonedTrial() throws Exception {
+    final long cooldown = 20;
+    var profile = TransportProfile.DEFAULT.withBreaker(1, cooldown);
+    var breaker = CircuitBreaker.forHost("http://abandon.example.com", profile);
+    final String url = "http://abandon.example.com/api/policy";
+
+    breaker.acquire(url);
+    breaker.onFailure();
+    assertEquals(State.OPEN, breaker.state());
+
+    Thread.sleep(cooldown + 5);
+    breaker.acquire(url);   // trial request
+    assertEquals(State.HALF_OPEN, breaker.state());
+    breaker.onAbandon();    // e.g. interrupted: no outcome
+    assertEquals(State.OPEN, breaker.state());
+
+    // the cool-down is not restarted: the next request is a new trial
+    breaker.acquire(url);
+    assertEquals(State.HALF_OPEN, breaker.state());
+    breaker.onSuccess();
+    assertEquals(State.CLOSED, breaker.state());
+
+    // abandoning after an outcome is recorded is a no-op
+    breaker.acquire(url);
+    breaker.onSuccess();
+    breaker.onAbandon();
+    assertEquals(State.CLOSED, breaker.state());
+  }
+
+
+  @Test
+  public void testPerProfile() {
+    final String host = "http://profiles.example.com";
+    var profile = TransportProfile.DEFAULT.withBreaker(1, 60_000);
+    var breaker = CircuitBreaker.forHost(host, profile);
+    assertSame(breaker, CircuitBreaker.forHost(host, profile));
+
+    // a later, differently configured chain doesn't reconfigure it
+    var bare = CircuitBreaker.forHost(host, TransportProfile.BARE);
+    assertNotSame(breaker, bare);
+    breaker.acquire(host + "/api/policy");
+    breaker.onFailure();
+    assertEquals(State.OPEN, breaker.state());
+    assertEquals(State.CLOSED, bare.state());
+  }
+
+
+  @Test
+  public void testDisabled() {
+    var profile = TransportProfile.BARE;
+    var breaker = CircuitBreaker.forHost("http://bare.example.com", profile);
+    for (int count = 100; count-- > 0; ) {
+      breaker.acquire("http://bare.example.com/api/policy");
+      breaker.onFailure();
+    }
+    assertEquals(State.CLOSED, breaker.state());
+  }
+
+
+  @Test
+  public void testBackoffCeiling() {
+    var profile = TransportProfile.DEFAULT.withRetries(5, 100, 1000);
+    assertEquals(100, profile.backoffCeilingMillis(1));
+    assertEquals(200, profile.backoffCeilingMillis(2));
+    assertEquals(800, profile.backoffCeilingMillis(4));
+    assertEquals(1000, profile.backoffCeilingMillis(5));
+    assertEquals(1000, profile.backoffCeilingMillis(64));
+  }
+
+}
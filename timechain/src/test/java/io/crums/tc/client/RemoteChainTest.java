@@ -0,0 +1,88 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.client;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class RemoteChainTest {
+
+  private final static long HEDGE_DELAY = 10;
+
+
+  /** Returns a future failing with an (async-wrapped) I/O error. */
+  private static CompletableFuture<String> failLater(long millis) {
+    return CompletableFuture.supplyAsync(
+        () -> { throw new CompletionException(new IOException("reset")); },
+        CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS));
+  }
+
+  private static CompletableFuture<String> succeedLater(
+      String value, long millis) {
+    return CompletableFuture.supplyAsync(
+        () -> value,
+        CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS));
+  }
+
+
+  @Test
+  public void testHedgeWinsAfterPrimaryFails() throws Exception {
+    var profile = TransportProfile.DEFAULT.withHedging(HEDGE_DELAY);
+    var breaker = CircuitBreaker.forHost("http://hedge1.example.com", profile);
+
+    // primary fails after the hedge is sent, but before the hedge completes
+    var response = RemoteChain.awaitHedged(
+        failLater(3 * HEDGE_DELAY),
+        () -> succeedLater("hedge", 6 * HEDGE_DELAY),
+        HEDGE_DELAY,
+        breaker);
+
+    assertEquals("hedge", response);
+    var metrics = breaker.metrics();
+    assertEquals(1, metrics.hedges());
+    assertEquals(1, metrics.hedgeWins());
+  }
+
+
+  @Test
+  public void testPrimaryWins() throws Exception {
+    var profile = TransportProfile.DEFAULT.withHedging(HEDGE_DELAY);
+    var breaker = CircuitBreaker.forHost("http://hedge2.example.com", profile);
+
+    var response = RemoteChain.awaitHedged(
+        succeedLater("primary", 3 * HEDGE_DELAY),
+        () -> succeedLater("hedge", 30 * HEDGE_DELAY),
+        HEDGE_DELAY,
+        breaker);
+
+    assertEquals("primary", response);
+    var metrics = breaker.metrics();
+    assertEquals(1, metrics.hedges());
+    assertEquals(0, metrics.hedgeWins());
+  }
+
+
+  @Test
+  public void testBothFail() throws Exception {
+    var profile = TransportProfile.DEFAULT.withHedging(HEDGE_DELAY);
+    var breaker = CircuitBreaker.forHost("http://hedge3.example.com", profile);
+
+    // the I/O error surfaces unwrapped (so that it's retried as transient)
+    assertThrows(
+        IOException.class,
+        () -> RemoteChain.awaitHedged(
+            failLater(3 * HEDGE_DELAY),
+            () -> failLater(3 * HEDGE_DELAY),
+            HEDGE_DELAY,
+            breaker));
+  }
+
+}
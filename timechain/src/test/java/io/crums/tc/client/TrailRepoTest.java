@@ -0,0 +1,304 @@
+/*
+ * Copyright 2024 Babak Farhang
+ */
+package io.crums.tc.client;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import io.crums.io.FileUtils;
+import io.crums.tc.BlockProof;
+import io.crums.tc.Constants;
+import io.crums.tc.Crum;
+import io.crums.tc.Crumtrail;
+import io.crums.tc.ReceiptBundle;
+import io.crums.tc.TimeBinner;
+import io.crums.tc.TimeChain;
+import io.crums.tc.TimeChainTestCase;
+
+public class TrailRepoTest extends TimeChainTestCase {
+
+
+  @Test
+  public void testJournal() throws Exception {
+    Object label = new Object() { };
+    File chainFile = newSingleRunFilepath(label);
+    File repoDir = new File(chainFile.getParentFile(), "repo");
+    var binner = TimeBinner.MINUTE;
+
+    final long blockCount = 30;
+    final long[] crumBlocks = { 5, 12, 20, 27 };
+
+    Random rand = new Random(43);
+    final long startUtc =
+        binner.binTime(
+            System.currentTimeMillis() - binner.duration() * (blockCount + 1));
+
+    Map<Long, Crum> crums = new TreeMap<>();
+    for (long bn : crumBlocks) {
+      byte[] hash = new byte[Constants.HASH_WIDTH];
+      rand.nextBytes(hash);
+      crums.put(bn, new Crum(hash, startUtc + (bn - 1) * binner.duration()));
+    }
+
+    try (var chain = TimeChain.inceptNewChain(chainFile, binner, startUtc)) {
+      for (long bn = 1; bn <= blockCount; ++bn) {
+        long utc = startUtc + (bn - 1) * binner.duration();
+        var crum = crums.get(bn);
+        if (crum != null)
+          chain.recordBlockForUtc(utc, crum.witnessHash());
+        else {
+          byte[] mockHash = new byte[Constants.HASH_WIDTH];
+          rand.nextBytes(mockHash);
+          chain.recordBlockForUtc(utc, ByteBuffer.wrap(mockHash));
+        }
+      }
+    }
+
+    try (var chain = TimeChain.load(chainFile, true)) {
+      var params = chain.params();
+
+      var repo = new TrailRepo(repoDir) {
+        @Override
+        protected long journalCompactionBytes() {
+          return Long.MAX_VALUE;
+        }
+      };
+
+      repo.add(Crumtrail.newLoneTrail(
+          new BlockProof(params, chain.getPath(1L, 5L, blockCount)),
+          crums.get(5L)));
+      assertEquals(5, repo.blockNo());
+
+      repo.add(Crumtrail.newLoneTrail(
+          new BlockProof(params, chain.getPath(1L, 5L, 12L, blockCount)),
+          crums.get(12L)));
+      assertEquals(12, repo.blockNo());
+
+      assertTrue(
+          repo.patchState(
+              new BlockProof(params, chain.getPath(1L, 12L, blockCount))));
+      assertEquals(blockCount, repo.commitNo());
+
+      // nothing written to the canonical files, yet
+      assertTrue(repo.listChainFileNos().isEmpty());
+      assertTrue(repo.listPatchFileNos().isEmpty());
+
+      // another instance sees the same state (from the journal)
+      var reader = new TrailRepo(repoDir);
+      assertEquals(12, reader.blockNo());
+      assertEquals(blockCount, reader.commitNo());
+      var trail = reader.findTrail(crums.get(5L).hash()).get();
+      assertEquals(5, trail.blockNo());
+      assertEquals(blockCount, trail.blockProof().blockNo());
+
+      // .. and picks up appends as they're made
+      repo.add(Crumtrail.newLoneTrail(
+          new BlockProof(params, chain.getPath(1L, 12L, 20L, blockCount)),
+          crums.get(20L)));
+      assertEquals(20, reader.blockNo());
+
+      repo.compact();
+      assertEquals(List.of(20L), repo.listChainFileNos());
+      assertEquals(List.of(blockCount), repo.listPatchFileNos());
+      assertEquals(
+          ChainJournal.HEADER_BYTES,
+          new File(repoDir, TrailRepo.JOURNAL).length());
+      assertEquals(20, reader.blockNo());
+      assertEquals(blockCount, reader.commitNo());
+
+      repo.add(Crumtrail.newLoneTrail(
+          new BlockProof(params, chain.getPath(1L, 20L, 27L, blockCount)),
+          crums.get(27L)));
+      assertEquals(27, repo.blockNo());
+      assertEquals(27, reader.blockNo());
+      assertEquals(27, new TrailRepo(repoDir).blockNo());
+    }
+  }
+
+
+
+  @Test
+  public void testAddBundle() throws Exception {
+    Object label = new Object() { };
+    File chainFile = newSingleRunFilepath(label);
+    File repoDir = new File(chainFile.getParentFile(), "repo");
+    var binner = TimeBinner.MINUTE;
+
+    final long blockCount = 30;
+    final long[] crumBlocks = { 5, 12, 20, 27 };
+
+    Random rand = new Random(45);
+    final long startUtc =
+        binner.binTime(
+            System.currentTimeMillis() - binner.duration() * (blockCount + 1));
+
+    Map<Long, Crum> crums = new TreeMap<>();
+    for (long bn : crumBlocks) {
+      byte[] hash = new byte[Constants.HASH_WIDTH];
+      rand.nextBytes(hash);
+      crums.put(bn, new Crum(hash, startUtc + (bn - 1) * binner.duration()));
+    }
+
+    try (var chain = TimeChain.inceptNewChain(chainFile, binner, startUtc)) {
+      for (long bn = 1; bn <= blockCount; ++bn) {
+        long utc = startUtc + (bn - 1) * binner.duration();
+        var crum = crums.get(bn);
+        if (crum != null)
+          chain.recordBlockForUtc(utc, crum.witnessHash());
+        else {
+          byte[] mockHash = new byte[Constants.HASH_WIDTH];
+          rand.nextBytes(mockHash);
+          chain.recordBlockForUtc(utc, ByteBuffer.wrap(mockHash));
+        }
+      }
+    }
+
+    try (var chain = TimeChain.load(chainFile, true)) {
+      var params = chain.params();
+      var repo = new TrailRepo(repoDir);
+
+      // the first 2 crums, from block 1
+      var first = new ReceiptBundle(
+          new BlockProof(params, chain.getPath(1L, 5L, 12L, blockCount)),
+          List.of(),
+          List.of(crums.get(5L), crums.get(12L)));
+      repo.addBundle(first);
+      assertEquals(12, repo.blockNo());
+
+      // the next 2, from the repo's last block
+      var bundle = new ReceiptBundle(
+          new BlockProof(params, chain.getPath(12L, 20L, 27L, blockCount)),
+          List.of(),
+          List.of(crums.get(20L), crums.get(27L)));
+      repo.addBundle(bundle);
+      assertEquals(27, repo.blockNo());
+
+      for (var e : crums.entrySet()) {
+        var trail = repo.findTrail(e.getValue().hash()).get();
+        assertEquals(e.getKey(), trail.blockNo());
+      }
+
+      // the trails are saved split (each with its own block proof)
+      var split = bundle.split();
+      var saved = Crumtrail.load(
+          FileUtils.loadFileToMemory(
+              repo.trailTree.find(crums.get(20L).hashHex())));
+      assertEquals(split.get(0).blockProof().chainState().rowNumbers(),
+          saved.blockProof().chainState().rowNumbers());
+
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> repo.addBundle(bundle.compress()));
+    }
+  }
+
+
+  @Test
+  public void testConcurrentWriters() throws Exception {
+    Object label = new Object() { };
+    File chainFile = newSingleRunFilepath(label);
+    File repoDir = new File(chainFile.getParentFile(), "repo");
+    var binner = TimeBinner.MINUTE;
+
+    final long blockCount = 64;
+    final int writers = 4;
+
+    Random rand = new Random(44);
+    final long startUtc =
+        binner.binTime(
+            System.currentTimeMillis() - binner.duration() * (blockCount + 1));
+
+    // a crum in every other block
+    Map<Long, Crum> crums = new TreeMap<>();
+    for (long bn = 2; bn < blockCount; bn += 2) {
+      byte[] hash = new byte[Constants.HASH_WIDTH];
+      rand.nextBytes(hash);
+      crums.put(bn, new Crum(hash, startUtc + (bn - 1) * binner.duration()));
+    }
+
+    try (var chain = TimeChain.inceptNewChain(chainFile, binner, startUtc)) {
+      for (long bn = 1; bn <= blockCount; ++bn) {
+        long utc = startUtc + (bn - 1) * binner.duration();
+        var crum = crums.get(bn);
+        if (crum != null)
+          chain.recordBlockForUtc(utc, crum.witnessHash());
+        else {
+          byte[] mockHash = new byte[Constants.HASH_WIDTH];
+          rand.nextBytes(mockHash);
+          chain.recordBlockForUtc(utc, ByteBuffer.wrap(mockHash));
+        }
+      }
+    }
+
+    List<Crumtrail> trails = new ArrayList<>();
+    try (var chain = TimeChain.load(chainFile, true)) {
+      // every trail's block proof covers every crum block, so that the
+      // trails may be added in any order
+      var targets = new ArrayList<Long>();
+      targets.add(1L);
+      targets.addAll(crums.keySet());
+      targets.add(blockCount);
+      var blockProof = new BlockProof(
+          chain.params(), chain.getPath(targets.toArray(new Long[0])));
+      for (var crum : crums.values())
+        trails.add(Crumtrail.newLoneTrail(blockProof, crum));
+    }
+    Collections.shuffle(trails, rand);
+
+    // each writer is its own instance, compacting often
+    var start = new CountDownLatch(1);
+    var executor = Executors.newFixedThreadPool(writers);
+    try {
+      var futures = new ArrayList<Future<?>>();
+      for (int w = 0; w < writers; ++w) {
+        final int first = w;
+        futures.add(executor.submit(() -> {
+          var repo = new TrailRepo(repoDir) {
+            @Override
+            protected long journalCompactionBytes() {
+              return 4 * 1024;
+            }
+          };
+          start.await();
+          for (int index = first; index < trails.size(); index += writers)
+            repo.add(trails.get(index));
+          return null;
+        }));
+      }
+      start.countDown();
+      for (var future : futures)
+        future.get();
+    } finally {
+      executor.shutdown();
+    }
+
+    // no writer lost another's chain updates
+    final long lastCrumBn = blockCount - 2;
+    var repo = new TrailRepo(repoDir);
+    assertEquals(lastCrumBn, repo.blockNo());
+    for (var e : crums.entrySet()) {
+      var trail = repo.findTrail(e.getValue().hash());
+      assertTrue(trail.isPresent(), "block " + e.getKey());
+      assertEquals(e.getKey(), trail.get().blockNo());
+      assertEquals(lastCrumBn, trail.get().blockProof().blockNo());
+    }
+    repo.compact();
+    assertEquals(lastCrumBn, new TrailRepo(repoDir).blockNo());
+  }
+
+}